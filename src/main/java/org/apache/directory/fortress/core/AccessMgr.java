@@ -179,6 +179,22 @@ public interface AccessMgr extends Manageable
     Session createSession( User user, boolean isTrusted )
         throws SecurityException;
 
+
+    /**
+     * Same as {@link #createSession(User, boolean)} except that rejected credentials, a locked user or a failed user
+     * temporal constraint are returned as a failed {@link AuthResult} rather than thrown as an exception.  Use this
+     * variant where failed logons are routine and the cost of the exception matters.
+     *
+     * @param user      Contains {@link User#userId}, {@link User#password} (optional if {@code isTrusted} is 'true'),
+     * optional {@link User#roles}, optional {@link User#adminRoles}
+     * @param isTrusted if true password is not required.
+     * @return result containing the session if created, otherwise the error id and message of the failure.
+     * @throws SecurityException
+     *          in the event of data validation failure or DAO error.
+     */
+    AuthResult tryCreateSession( User user, boolean isTrusted )
+        throws SecurityException;
+
     /**
      * Perform group {@link Group} role activations {@link Group#members}.<br>
      * Group sessions are always trusted. <br>
@@ -273,6 +289,22 @@ public interface AccessMgr extends Manageable
         throws SecurityException;
 
 
+    /**
+     * Same as {@link #checkAccess(Session, Permission)} except that a failed user temporal constraint or a permission
+     * that does not exist are returned as a denied {@link Decision} carrying the error id, rather than thrown.
+     *
+     * @param session This object must be instantiated by calling {@link AccessMgr#createSession} method before passing
+     * into the method.
+     * @param perm    must contain the object, {@link Permission#objName}, and operation, {@link Permission#opName}, of
+     * permission User is trying to access.
+     * @return decision containing the result of the check.
+     * @throws SecurityException
+     *          in the event of data validation failure or DAO error.
+     */
+    Decision tryCheckAccess( Session session, Permission perm )
+        throws SecurityException;
+
+
     /**
      * This function returns the permissions of the session, i.e., the permissions assigned
      * to its authorized roles. The function is valid if and only if the session is a valid Fortress session.
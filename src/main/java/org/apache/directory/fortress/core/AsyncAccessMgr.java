@@ -0,0 +1,126 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.directory.fortress.core.model.Group;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+
+/**
+ * Asynchronous form of the runtime {@link AccessMgr} functions, for callers such as reactive gateways that must not
+ * block their own threads on directory round trips.
+ * <p>
+ * Each method returns immediately with a {@link CompletableFuture} that completes with the result of the matching
+ * {@link AccessMgr} method, or completes exceptionally with the {@link SecurityException} it would have thrown.  The work
+ * runs on a bounded executor owned by fortress, sized by {@code async.threads} (default the admin pool maximum) with up
+ * to {@code async.queue.size} (default 10000) requests waiting.  Requests beyond that complete exceptionally with
+ * {@link GlobalErrIds#FT_ASYNC_REJECTED}.
+ * <p>
+ * This interface's implementer will NOT be thread safe if parent instance variables ({@link Manageable#setContextId(String)}
+ * or {@link Manageable#setAdmin(org.apache.directory.fortress.core.model.Session)}) are set after requests are submitted.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface AsyncAccessMgr extends Manageable
+{
+    /**
+     * Perform user authentication only, see {@link AccessMgr#authenticate(String, String)}.
+     *
+     * @param userId   Contains the userid of the user signing on.
+     * @param password Contains the user's password.
+     * @return future of the Session, which will not contain the user's roles.
+     */
+    CompletableFuture<Session> authenticate( String userId, String password );
+
+
+    /**
+     * Perform user authentication and role activation, see {@link AccessMgr#createSession(User, boolean)}.
+     *
+     * @param user      Contains {@link User#userId}, {@link User#password} (optional if {@code isTrusted} is 'true'),
+     *                  optional {@link User#roles}, optional {@link User#props}.
+     * @param isTrusted if true password is not required.
+     * @return future of the Session containing the user's activated roles.
+     */
+    CompletableFuture<Session> createSession( User user, boolean isTrusted );
+
+
+    /**
+     * Create a group session, see {@link AccessMgr#createSession(Group)}.
+     *
+     * @param group Contains {@link Group#name}.
+     * @return future of the Session containing the group's activated roles.
+     */
+    CompletableFuture<Session> createSession( Group group );
+
+
+    /**
+     * Perform an authorization check, see {@link AccessMgr#checkAccess(Session, Permission)}.
+     *
+     * @param session object contains the user's returned RBAC session from the createSession method.
+     * @param perm    must contain the object, {@link Permission#objName}, and the operation, {@link Permission#opName},
+     *                and optionally object id of targeted permission entity.
+     * @return future of true if the session is authorized for the permission.
+     */
+    CompletableFuture<Boolean> checkAccess( Session session, Permission perm );
+
+
+    /**
+     * Return the permissions of the session's activated roles, see {@link AccessMgr#sessionPermissions(Session)}.
+     *
+     * @param session object contains the user's returned RBAC session from the createSession method.
+     * @return future of the list of permissions authorized for the session.
+     */
+    CompletableFuture<List<Permission>> sessionPermissions( Session session );
+
+
+    /**
+     * Return the active roles of the session, see {@link AccessMgr#sessionRoles(Session)}.
+     *
+     * @param session object contains the user's returned RBAC session from the createSession method.
+     * @return future of the list of active roles.
+     */
+    CompletableFuture<List<UserRole>> sessionRoles( Session session );
+
+
+    /**
+     * Return the active roles of the session and their ascendants, see {@link AccessMgr#authorizedRoles(Session)}.
+     *
+     * @param session object contains the user's returned RBAC session from the createSession method.
+     * @return future of the set of authorized role names.
+     */
+    CompletableFuture<Set<String>> authorizedRoles( Session session );
+
+
+    /**
+     * Read the session's user entity, see {@link AccessMgr#getUser(Session)}.
+     *
+     * @param session object contains the user's returned RBAC session from the createSession method.
+     * @return future of the User.
+     */
+    CompletableFuture<User> getUser( Session session );
+}
@@ -0,0 +1,61 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+import org.apache.directory.fortress.core.impl.AsyncAccessMgrImpl;
+import org.apache.directory.fortress.core.util.VUtil;
+
+/**
+ * Creates an instance of the AsyncAccessMgr object.
+ * <p>
+ * The implementation, {@link AsyncAccessMgrImpl}, runs the {@link AccessMgr} returned by {@link AccessMgrFactory}, so
+ * the {@link GlobalIds#ACCESS_IMPLEMENTATION} and REST settings apply to it as well.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class AsyncAccessMgrFactory
+{
+    private static final String CLS_NM = AsyncAccessMgrFactory.class.getName();
+
+    /**
+     * Create and return a reference to {@link AsyncAccessMgr} object using HOME context.
+     *
+     * @return instance of {@link AsyncAccessMgr}.
+     * @throws SecurityException in the event of failure during instantiation.
+     */
+    public static AsyncAccessMgr createInstance()
+        throws SecurityException
+    {
+        return createInstance( GlobalIds.HOME );
+    }
+
+    /**
+     * Create and return a reference to {@link AsyncAccessMgr} object.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return instance of {@link AsyncAccessMgr}.
+     * @throws SecurityException in the event of failure during instantiation.
+     */
+    public static AsyncAccessMgr createInstance( String contextId ) throws SecurityException
+    {
+        VUtil.assertNotNull( contextId, GlobalErrIds.CONTEXT_NULL, CLS_NM + ".createInstance" );
+        return new AsyncAccessMgrImpl( AccessMgrFactory.createInstance( contextId ) );
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.directory.fortress.core.model.PermObj;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+
+/**
+ * Asynchronous form of the {@link ReviewMgr} read functions most often used on request paths.  Each method returns a
+ * {@link CompletableFuture} that completes with the result of the matching {@link ReviewMgr} method, or exceptionally
+ * with the {@link SecurityException} it would have thrown.  Requests share the executor described in
+ * {@link AsyncAccessMgr}.
+ * <p>
+ * This interface's implementer will NOT be thread safe if parent instance variables ({@link Manageable#setContextId(String)}
+ * or {@link Manageable#setAdmin(org.apache.directory.fortress.core.model.Session)}) are set after requests are submitted.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface AsyncReviewMgr extends Manageable
+{
+    /**
+     * See {@link ReviewMgr#readUser(User)}.
+     *
+     * @param user entity contains a value {@link User#userId} that matches record in the directory.
+     * @return future of the User.
+     */
+    CompletableFuture<User> readUser( User user );
+
+
+    /**
+     * See {@link ReviewMgr#readRole(Role)}.
+     *
+     * @param role contains role name to be read.
+     * @return future of the Role.
+     */
+    CompletableFuture<Role> readRole( Role role );
+
+
+    /**
+     * See {@link ReviewMgr#readPermission(Permission)}.
+     *
+     * @param permission must contain the object, {@link Permission#objName}, and the operation,
+     *                   {@link Permission#opName}, and optionally object id of targeted permission entity.
+     * @return future of the Permission.
+     */
+    CompletableFuture<Permission> readPermission( Permission permission );
+
+
+    /**
+     * See {@link ReviewMgr#readPermObj(PermObj)}.
+     *
+     * @param permObj must contain the {@link PermObj#objName} and optionally the {@link PermObj#objId}.
+     * @return future of the PermObj.
+     */
+    CompletableFuture<PermObj> readPermObj( PermObj permObj );
+
+
+    /**
+     * See {@link ReviewMgr#assignedRoles(User)}.
+     *
+     * @param user contains {@link User#userId} matching user entity stored in the directory.
+     * @return future of the user's role assignments.
+     */
+    CompletableFuture<List<UserRole>> assignedRoles( User user );
+
+
+    /**
+     * See {@link ReviewMgr#authorizedRoles(User)}.
+     *
+     * @param user contains {@link User#userId} matching user entity stored in the directory.
+     * @return future of the names of the roles assigned or inherited by the user.
+     */
+    CompletableFuture<Set<String>> authorizedRoles( User user );
+
+
+    /**
+     * See {@link ReviewMgr#assignedUsers(Role)}.
+     *
+     * @param role contains the role name, {@link Role#name} used to search the directory.
+     * @return future of the users assigned the role.
+     */
+    CompletableFuture<List<User>> assignedUsers( Role role );
+
+
+    /**
+     * See {@link ReviewMgr#userPermissions(User)}.
+     *
+     * @param user contains {@link User#userId} matching user entity stored in the directory.
+     * @return future of the permissions authorized for the user.
+     */
+    CompletableFuture<List<Permission>> userPermissions( User user );
+}
@@ -0,0 +1,78 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+import org.apache.directory.fortress.core.impl.AsyncReviewMgrImpl;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.util.VUtil;
+
+/**
+ * Creates an instance of the AsyncReviewMgr object.
+ * <p>
+ * The implementation, {@link AsyncReviewMgrImpl}, runs the {@link ReviewMgr} returned by {@link ReviewMgrFactory}, so
+ * the {@link GlobalIds#REVIEW_IMPLEMENTATION} and REST settings apply to it as well.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class AsyncReviewMgrFactory
+{
+    private static final String CLS_NM = AsyncReviewMgrFactory.class.getName();
+
+    /**
+     * Create and return a reference to {@link AsyncReviewMgr} object using HOME context.
+     *
+     * @return instance of {@link AsyncReviewMgr}.
+     * @throws SecurityException in the event of failure during instantiation.
+     */
+    public static AsyncReviewMgr createInstance()
+        throws SecurityException
+    {
+        return createInstance( GlobalIds.HOME );
+    }
+
+    /**
+     * Create and return a reference to {@link AsyncReviewMgr} object.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return instance of {@link AsyncReviewMgr}.
+     * @throws SecurityException in the event of failure during instantiation.
+     */
+    public static AsyncReviewMgr createInstance( String contextId )
+        throws SecurityException
+    {
+        VUtil.assertNotNull( contextId, GlobalErrIds.CONTEXT_NULL, CLS_NM + ".createInstance" );
+        return new AsyncReviewMgrImpl( ReviewMgrFactory.createInstance( contextId ) );
+    }
+
+    /**
+     * Create and return a reference to {@link AsyncReviewMgr} object.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @param adminSess contains a valid Fortress A/RBAC Session object.
+     * @return instance of {@link AsyncReviewMgr}.
+     * @throws SecurityException in the event of failure during instantiation.
+     */
+    public static AsyncReviewMgr createInstance( String contextId, Session adminSess )
+        throws SecurityException
+    {
+        VUtil.assertNotNull( contextId, GlobalErrIds.CONTEXT_NULL, CLS_NM + ".createInstance" );
+        return new AsyncReviewMgrImpl( ReviewMgrFactory.createInstance( contextId, adminSess ) );
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+
+/**
+ * Callback used by the streaming {@link AuditMgr} searches.  Each audit event matching the search is passed to
+ * {@link #handle(Object)} in time order as it is read from the access log, so the caller never holds the full result in
+ * memory.
+ * <p>
+ * The handler is always called on the thread that started the search.
+ *
+ * @param <T> type of audit event, e.g. {@link org.apache.directory.fortress.core.model.AuthZ},
+ *            {@link org.apache.directory.fortress.core.model.Bind} or {@link org.apache.directory.fortress.core.model.Mod}.
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface AuditHandler<T>
+{
+    /**
+     * Process one audit event.
+     *
+     * @param event contains one audit event.
+     * @return true to continue the search, false to stop it and discard any remaining events.
+     * @throws SecurityException to stop the search, the exception is passed through to the caller of the search.
+     */
+    boolean handle( T event ) throws SecurityException;
+}
@@ -26,6 +26,7 @@ import org.apache.directory.fortress.core.model.UserAudit;
 import org.apache.directory.fortress.core.model.Bind;
 
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -102,6 +103,23 @@ import java.util.List;
  */
 public interface AuditMgr extends Manageable
 {
+    /**
+     * Grouping used by {@link #countAuthZs(UserAudit, CountBy)} and {@link #countBinds(UserAudit, CountBy)}.  The
+     * counts are tallied by the client, the OpenLDAP access log has no server-side aggregation.
+     */
+    enum CountBy
+    {
+        /** Count by the userId of the event. */
+        USER,
+
+        /** Count by the objName.opName of the permission checked, authorization events only. */
+        PERMISSION,
+
+        /** Count by the ldap result code of the event. */
+        RESULT
+    }
+
+
     /**
      * This method returns a list of authorization events for a particular user 
      * {@link org.apache.directory.fortress.core.model.UserAudit#userId}
@@ -253,4 +271,103 @@ public interface AuditMgr extends Manageable
      */
     List<AuthZ> searchInvalidUsers( UserAudit uAudit )
         throws SecurityException;
+
+
+    /**
+     * This method passes the authorization events selected as in {@link #getUserAuthZs(UserAudit)} to the handler in
+     * time order, without holding them in memory.  The range from {@link UserAudit#beginDate} to
+     * {@link UserAudit#endDate} is split into time slices that are searched concurrently.
+     * <h3></h3>
+     * <h4>optional parameters</h4>
+     * <ul>
+     *   <li>{@link UserAudit#userId} - contains the target userId</li>
+     *   <li>{@link UserAudit#beginDate} - contains the date in which to begin search</li>
+     *   <li>{@link UserAudit#endDate} - contains the date in which to end search</li>
+     *   <li>{@link UserAudit#failedOnly} - if set to 'true', return only failed authorization events</li>
+     * </ul>
+     *
+     * @param uAudit This entity is instantiated and populated before invocation.
+     * @param handler receives each AuthZ event, returns false to end the search.
+     * @throws SecurityException if a runtime system error occurs or is thrown by the handler.
+     */
+    void searchAuthZs( UserAudit uAudit, AuditHandler<AuthZ> handler )
+        throws SecurityException;
+
+
+    /**
+     * This method passes the authentication events selected as in {@link #searchBinds(UserAudit)} to the handler in
+     * time order, without holding them in memory.  The range from {@link UserAudit#beginDate} to
+     * {@link UserAudit#endDate} is split into time slices that are searched concurrently.
+     * <h3></h3>
+     * <h4>optional parameters</h4>
+     * <ul>
+     *   <li>{@link UserAudit#userId} - contains the target userId</li>
+     *   <li>{@link UserAudit#beginDate} - contains the date in which to begin search</li>
+     *   <li>{@link UserAudit#endDate} - contains the date in which to end search</li>
+     *   <li>{@link UserAudit#failedOnly} - if set to 'true', return only failed authentication events</li>
+     * </ul>
+     *
+     * @param uAudit This entity is instantiated and populated before invocation.
+     * @param handler receives each Bind event, returns false to end the search.
+     * @throws SecurityException if a runtime system error occurs or is thrown by the handler.
+     */
+    void searchBinds( UserAudit uAudit, AuditHandler<Bind> handler )
+        throws SecurityException;
+
+
+    /**
+     * This method passes the admin operation events selected as in {@link #searchAdminMods(UserAudit)} to the handler
+     * in time order, without holding them in memory.  The range from {@link UserAudit#beginDate} to
+     * {@link UserAudit#endDate} is split into time slices that are searched concurrently.
+     * <h3></h3>
+     * <h4>optional parameters</h4>
+     * <ul>
+     *   <li>{@link UserAudit#dn} - contains the LDAP distinguished name for the updated object</li>
+     *   <li>{@link UserAudit#objName} - contains the object (authorization resource) name</li>
+     *   <li>{@link UserAudit#opName} - contains the operation name</li>
+     *   <li>{@link UserAudit#userId} - contains the userId of the administrator</li>
+     *   <li>{@link UserAudit#beginDate} - contains the date in which to begin search</li>
+     *   <li>{@link UserAudit#endDate} - contains the date in which to end search</li>
+     * </ul>
+     *
+     * @param uAudit This entity is instantiated and populated before invocation.
+     * @param handler receives each Mod event, returns false to end the search.
+     * @throws SecurityException if a runtime system error occurs or is thrown by the handler.
+     */
+    void searchAdminMods( UserAudit uAudit, AuditHandler<Mod> handler )
+        throws SecurityException;
+
+
+    /**
+     * This method counts the authorization events selected as in {@link #getUserAuthZs(UserAudit)} over the range
+     * {@link UserAudit#beginDate} to {@link UserAudit#endDate}, grouped by user, permission or result code.
+     * <p>
+     * This is a client-side count, the OpenLDAP access log offers no server-side aggregation.  Every matching event is
+     * still returned by the server, paged and carrying only the grouping attribute, and tallied in memory, so the cost
+     * grows with the number of events in the range.
+     *
+     * @param uAudit This entity is instantiated and populated before invocation.
+     * @param countBy the grouping.
+     * @return number of events keyed by userId, objName.opName or result code.
+     * @throws SecurityException if a runtime system error occurs.
+     */
+    Map<String, Long> countAuthZs( UserAudit uAudit, CountBy countBy )
+        throws SecurityException;
+
+
+    /**
+     * This method counts the authentication events selected as in {@link #searchBinds(UserAudit)} over the range
+     * {@link UserAudit#beginDate} to {@link UserAudit#endDate}, grouped by user or result code.
+     * <p>
+     * This is a client-side count, the OpenLDAP access log offers no server-side aggregation.  Every matching event is
+     * still returned by the server, paged and carrying only the grouping attribute, and tallied in memory, so the cost
+     * grows with the number of events in the range.
+     *
+     * @param uAudit This entity is instantiated and populated before invocation.
+     * @param countBy the grouping, {@link CountBy#USER} or {@link CountBy#RESULT}.
+     * @return number of events keyed by userId or result code.
+     * @throws SecurityException if a runtime system error occurs.
+     */
+    Map<String, Long> countBinds( UserAudit uAudit, CountBy countBy )
+        throws SecurityException;
 }
@@ -0,0 +1,123 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+
+import org.apache.directory.fortress.core.model.Session;
+
+
+/**
+ * Outcome of {@link AccessMgr#tryCreateSession(org.apache.directory.fortress.core.model.User, boolean)}: the new
+ * session, or the reason it couldn't be created as an error id from {@link GlobalErrIds} with a message.  Failures of
+ * the user's credentials are reported here, e.g. {@link GlobalErrIds#USER_PW_INVLD}, {@link GlobalErrIds#USER_PW_LOCKED},
+ * {@link GlobalErrIds#USER_PW_EXPIRED}, {@link GlobalErrIds#USER_LOCKED_BY_CONST} or a failed temporal constraint such as
+ * {@link GlobalErrIds#ACTV_FAILED_DAY}.  Invalid arguments and system errors are still thrown.
+ * <p>
+ * This class is immutable and thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class AuthResult implements StandardException
+{
+    private final Session session;
+    private final int errorId;
+    private final String msg;
+
+
+    private AuthResult( Session session, int errorId, String msg )
+    {
+        this.session = session;
+        this.errorId = errorId;
+        this.msg = msg;
+    }
+
+
+    /**
+     * @param session created for the user.
+     * @return successful result.
+     */
+    public static AuthResult success( Session session )
+    {
+        return new AuthResult( session, 0, null );
+    }
+
+
+    /**
+     * @param errorId see {@link GlobalErrIds}.
+     * @param msg     describes the failure.
+     * @return failed result.
+     */
+    public static AuthResult failure( int errorId, String msg )
+    {
+        return new AuthResult( null, errorId, msg );
+    }
+
+
+    /**
+     * Return true if the error id is one reported by a result rather than thrown, i.e. a failure of the user's
+     * credentials, password policy, lock or temporal constraints.
+     *
+     * @param errorId see {@link GlobalErrIds}.
+     * @return true if it is an authentication failure.
+     */
+    public static boolean isAuthFailure( int errorId )
+    {
+        return ( errorId >= GlobalErrIds.USER_PW_INVLD && errorId <= GlobalErrIds.USER_PW_IN_HISTORY )
+            || errorId == GlobalErrIds.USER_LOCKED_BY_CONST
+            || ( errorId >= GlobalErrIds.ACTV_FAILED_DAY && errorId <= GlobalErrIds.ACTV_FAILED_AUTHN );
+    }
+
+
+    /**
+     * @return true if the session was created.
+     */
+    public boolean isSuccess()
+    {
+        return session != null;
+    }
+
+
+    /**
+     * @return the new session, null if it wasn't created.
+     */
+    public Session getSession()
+    {
+        return session;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getErrorId()
+    {
+        return errorId;
+    }
+
+
+    /**
+     * @return description of the failure, null on success.
+     */
+    public String getMsg()
+    {
+        return msg;
+    }
+}
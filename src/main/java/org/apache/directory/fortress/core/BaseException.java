@@ -63,6 +63,21 @@ public abstract class BaseException extends Exception implements StandardExcepti
     }
 
 
+    /**
+     * Create exception containing error code and message, optionally without a stack trace.  Filling in the stack trace
+     * is most of the cost of an exception, and is of no use for expected failures such as a wrong password.
+     *
+     * @param  errorId see {@link GlobalErrIds} for list of valid error codes that can be set.  Valid values between 0 & 100_000.
+     * @param msg contains textual information including method of origin and description of the root cause.
+     * @param writableStackTrace false to skip the stack trace.
+     */
+    BaseException( int errorId, String msg, boolean writableStackTrace )
+    {
+        super( msg, null, false, writableStackTrace );
+        this.errorId = errorId;
+    }
+
+
     /**
      * Return the error id that is defined by this class {@link GlobalErrIds}.
      *
@@ -0,0 +1,111 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+
+/**
+ * Outcome of {@link AccessMgr#tryCheckAccess(org.apache.directory.fortress.core.model.Session,
+ * org.apache.directory.fortress.core.model.Permission)}.  A denial carries the reason as an error id from
+ * {@link GlobalErrIds}, e.g. {@link GlobalErrIds#PERM_NOT_EXIST} if the permission doesn't exist, or 0 if it exists but
+ * none of the session's roles are granted it.
+ * <p>
+ * This class is immutable and thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class Decision implements StandardException
+{
+    /** The permission is granted. */
+    public static final Decision ALLOWED = new Decision( true, 0 );
+
+    /** The permission exists but isn't granted. */
+    public static final Decision DENIED = new Decision( false, 0 );
+
+    /** The permission doesn't exist. */
+    public static final Decision NOT_FOUND = new Decision( false, GlobalErrIds.PERM_NOT_EXIST );
+
+    private final boolean isAllowed;
+    private final int errorId;
+
+
+    private Decision( boolean isAllowed, int errorId )
+    {
+        this.isAllowed = isAllowed;
+        this.errorId = errorId;
+    }
+
+
+    /**
+     * Return the decision for a boolean result.
+     *
+     * @param isAllowed true if the permission is granted.
+     * @return {@link #ALLOWED} or {@link #DENIED}.
+     */
+    public static Decision valueOf( boolean isAllowed )
+    {
+        return isAllowed ? ALLOWED : DENIED;
+    }
+
+
+    /**
+     * Return a denial for a reason other than a missing grant.
+     *
+     * @param errorId see {@link GlobalErrIds}, e.g. the reason code of a failed user constraint.
+     * @return denial carrying the error id.
+     */
+    public static Decision denied( int errorId )
+    {
+        if ( errorId == 0 )
+        {
+            return DENIED;
+        }
+        else if ( errorId == GlobalErrIds.PERM_NOT_EXIST )
+        {
+            return NOT_FOUND;
+        }
+        return new Decision( false, errorId );
+    }
+
+
+    /**
+     * @return true if the permission is granted.
+     */
+    public boolean isAllowed()
+    {
+        return isAllowed;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getErrorId()
+    {
+        return errorId;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return isAllowed ? "Decision{allowed}" : "Decision{denied, errorId=" + errorId + "}";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+
+/**
+ * This exception extends {@link BaseRuntimeException} and is thrown by the getters of a
+ * {@link org.apache.directory.fortress.core.model.User} when the attributes its
+ * {@link org.apache.directory.fortress.core.model.UserProjection} deferred cannot be read.  The read is tried again
+ * the next time one of them is accessed.
+ * See the {@link GlobalErrIds} javadoc for list of error ids.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DeferredLoadException extends BaseRuntimeException
+{
+    /** Default serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+
+    /**
+     * Create exception with error id, message and related exception.
+     * @param errorId contains error code that is contained within {@link GlobalErrIds}
+     * @param newMsgText contains text related to the exception.
+     * @param newException contains related exception.
+     */
+    public DeferredLoadException( int errorId, String newMsgText, Exception newException )
+    {
+        super( errorId, newMsgText, newException );
+    }
+}
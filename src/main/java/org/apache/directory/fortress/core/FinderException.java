@@ -45,6 +45,21 @@ public class FinderException extends SecurityException
     }
 
 
+    /**
+     * Create an exception with an error code and message text, optionally without a stack trace for failures expected on
+     * busy paths.
+     *
+     * @param  errorId see {@link GlobalErrIds} for list of valid error codes that can be set.  Valid values between 
+     * 0 &amp; 100_000.
+     * @param msg contains textual information including method of origin and description of the root cause.
+     * @param writableStackTrace false to skip filling in the stack trace.
+     */
+    public FinderException( int errorId, String msg, boolean writableStackTrace )
+    {
+        super( errorId, msg, writableStackTrace );
+    }
+
+
     /**
      * Create exception with error id, message and related exception.
      * @param  errorId see {@link GlobalErrIds} for list of valid error codes that can be set.  Valid values between 
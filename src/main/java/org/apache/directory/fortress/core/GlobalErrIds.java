@@ -186,6 +186,21 @@ public final class GlobalErrIds
      */
     public static final int FT_CONFIG_JSSE_TRUSTSTORE_NULL = 136;
 
+    /**
+     * An asynchronous request was rejected because the queue of pending requests is full.
+     */
+    public static final int FT_ASYNC_REJECTED = 137;
+
+    /**
+     * The directory change feed search failed or was ended by the server.
+     */
+    public static final int FT_CHANGE_FEED_FAILED = 138;
+
+    /**
+     * The cache invalidation bus could not be joined.
+     */
+    public static final int FT_CACHE_BUS_FAILED = 139;
+
     /**
      * 1000's - User Entity Rule and LDAP Errors
      */
@@ -1182,6 +1197,31 @@ public final class GlobalErrIds
      */
     public static final int AUDT_AUTHN_INVALID_FAILED = 7005;
 
+    /**
+     * The Audit handler is required on this method and cannot be supplied as null.
+     */
+    public static final int AUDT_HANDLER_NULL = 7006;
+
+    /**
+     * The Audit count grouping is required on this method and must be valid for the event type.
+     */
+    public static final int AUDT_COUNT_BY_INVALID = 7007;
+
+    /**
+     * The audit sink named by the audit.sink property could not be created.
+     */
+    public static final int AUDT_SINK_NOT_CONFIGURED = 7008;
+
+    /**
+     * An authorization event could not be written to the audit sink.
+     */
+    public static final int AUDT_SINK_WRITE_FAILED = 7009;
+
+    /**
+     * The audit sink could not be searched.
+     */
+    public static final int AUDT_SINK_READ_FAILED = 7010;
+
 
     /**
      * 8000's Organizational Unit Rule and System errors
@@ -1752,4 +1792,23 @@ public final class GlobalErrIds
      * The entity was not found
      */
     public static final int ENTITY_PROPS_LOAD_FAILED = 10503;
+
+    /**
+     * 10600's - Tenant Export and Import Error Ids
+     */
+
+    /**
+     * The tenant could not be exported from ldap into the target file.
+     */
+    public static final int TENANT_EXPORT_FAILED = 10601;
+
+    /**
+     * The tenant could not be imported from the source file into ldap.
+     */
+    public static final int TENANT_IMPORT_FAILED = 10602;
+
+    /**
+     * The file name for tenant export or import is required and cannot be null.
+     */
+    public static final int TENANT_FILE_NULL = 10603;
 }
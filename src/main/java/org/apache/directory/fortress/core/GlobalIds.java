@@ -43,6 +43,7 @@ public final class GlobalIds
     public static final String TENANT = "tenant";
     public static final String DISABLE_AUDIT = "disable.audit";
     public static final String ENABLE_REST = "enable.mgr.impl.rest";
+    public static final String DISABLE_ARBAC_CACHE = "disable.arbac.cache";
 
     /**
      * The following constants are used within the factory classes:
@@ -437,6 +438,7 @@ public final class GlobalIds
     public static final String TRUST_STORE = "trust.store";
     public static final String TRUST_STORE_PW = "trust.store.password";
     public static final String TRUST_STORE_ON_CLASSPATH = "trust.store.onclasspath";
+    public static final String TRUST_STORE_RELOAD_INTERVAL = "trust.store.reload.interval";
 
     // coordinates to the LDAP server:
     public static final String LDAP_HOST = "host";
@@ -116,6 +116,7 @@ public interface GroupMgr extends Manageable
 
     /**
      * Search for groups by userId.  Member (maps to userId) and is required.
+     * When {@code group.cache} is true the groups are found in a cached index of the tenant's groups by member.
      *
      * @param user contains userId that maps to Group member attribute.
      * @return {@link Group} containing entity just added.
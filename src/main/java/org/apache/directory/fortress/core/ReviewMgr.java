@@ -20,6 +20,7 @@
 package org.apache.directory.fortress.core;
 
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -32,6 +33,7 @@ import org.apache.directory.fortress.core.model.RoleConstraint;
 import org.apache.directory.fortress.core.model.RoleConstraint.RCType;
 import org.apache.directory.fortress.core.model.SDSet;
 import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserProjection;
 import org.apache.directory.fortress.core.model.UserRole;
 
 
@@ -263,6 +265,34 @@ public interface ReviewMgr extends Manageable
         throws SecurityException;
 
 
+    /**
+     * Same as {@link #readUser(User)} but returns only the attributes of the projection, e.g.
+     * {@link UserProjection#AUTHZ} when only the role assignments are needed.  The address, phones, mobiles, emails and
+     * photo left out by the projection are read when first accessed.
+     *
+     * @param user       entity contains a value {@link User#userId} that matches record in the directory.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return entity containing the attributes of the projection.
+     * @throws SecurityException if record not found or system error occurs.
+     */
+    User readUser( User user, UserProjection projection )
+        throws SecurityException;
+
+
+    /**
+     * Read many users at once, e.g. a page of a listing, for about the cost of one {@link #readUser(User)} rather than one
+     * per user.  The users are returned in the order requested and userIds that aren't found are reported in the result
+     * rather than thrown.
+     *
+     * @param userIds    contains the userIds to read, each must be non-empty.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return the users found and the userIds missing.
+     * @throws SecurityException in the event of system error.
+     */
+    UserBatch readUsers( Collection<String> userIds, UserProjection projection )
+        throws SecurityException;
+
+
     /**
      * Return a list of type User of all users in the people container that match all or part of the {@link User#userId} 
      * field passed in User entity.
@@ -280,6 +310,19 @@ public interface ReviewMgr extends Manageable
         throws SecurityException;
 
 
+    /**
+     * Same as {@link #findUsers(User)} but returns only the attributes of the projection, e.g.
+     * {@link UserProjection#LISTING} for directory listings.
+     *
+     * @param user       contains all or some leading chars that match userIds stored in the directory.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return List of type User.
+     * @throws SecurityException In the event of system error.
+     */
+    List<User> findUsers( User user, UserProjection projection )
+        throws SecurityException;
+
+
     /**
      * Return a list of type User of all users in the people container that match the name field passed in OrgUnit entity.
      * <h3></h3>
@@ -374,6 +417,18 @@ public interface ReviewMgr extends Manageable
     List<User> assignedUsers( Role role )
         throws SecurityException;
 
+
+    /**
+     * Same as {@link #assignedUsers(Role)} but returns only the attributes of the projection.
+     *
+     * @param role       contains the role name, {@link Role#name} used to search the User data set.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return List of type User containing the users assigned data.
+     * @throws SecurityException If system error occurs.
+     */
+    List<User> assignedUsers( Role role, UserProjection projection )
+        throws SecurityException;
+
     /**
      * This method returns the data set of all users who are assigned the given role.  This searches the User data set for
      * Role relationship.  This method does NOT search for hierarchical RBAC Roles relationships.
@@ -431,6 +486,18 @@ public interface ReviewMgr extends Manageable
         throws SecurityException;
 
 
+    /**
+     * Same as {@link #authorizedUsers(Role)} but returns only the attributes of the projection.
+     *
+     * @param role       Contains role name, {@link Role#name} of Role entity assigned to User.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return List of type User containing all user's that having matching role assignment.
+     * @throws SecurityException In the event the role is not present in directory or system error occurs.
+     */
+    List<User> authorizedUsers( Role role, UserProjection projection )
+        throws SecurityException;
+
+
     /**
      * This function returns the set of roles authorized for a given user. The function is valid if
      * and only if the user is a member of the USERS data set.
@@ -0,0 +1,79 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core;
+
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.directory.fortress.core.model.User;
+
+
+/**
+ * Outcome of {@link ReviewMgr#readUsers(java.util.Collection, org.apache.directory.fortress.core.model.UserProjection)}:
+ * the users that were found, and the userIds that were not, both in the order they were requested.
+ * <p>
+ * This class is immutable and thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class UserBatch
+{
+    private final List<User> users;
+    private final List<String> missing;
+
+
+    /**
+     * @param users   found, in the order requested.
+     * @param missing userIds that were not found, in the order requested.
+     */
+    public UserBatch( List<User> users, List<String> missing )
+    {
+        this.users = Collections.unmodifiableList( users );
+        this.missing = Collections.unmodifiableList( missing );
+    }
+
+
+    /**
+     * @return the users found, in the order requested.
+     */
+    public List<User> getUsers()
+    {
+        return users;
+    }
+
+
+    /**
+     * @return the userIds that were not found, in the order requested.
+     */
+    public List<String> getMissing()
+    {
+        return missing;
+    }
+
+
+    /**
+     * @return true if every userId was found.
+     */
+    public boolean isComplete()
+    {
+        return missing.isEmpty();
+    }
+}
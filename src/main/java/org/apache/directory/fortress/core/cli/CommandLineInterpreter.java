@@ -42,6 +42,7 @@ import org.apache.directory.fortress.core.GroupMgrFactory;
 import org.apache.directory.fortress.core.model.Address;
 import org.apache.directory.fortress.core.model.PermObj;
 import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.impl.TenantP;
 import org.apache.directory.fortress.core.util.PropUtil;
 import org.apache.directory.fortress.core.model.Role;
 import org.apache.directory.fortress.core.model.SDSet;
@@ -73,6 +74,7 @@ public class CommandLineInterpreter
     //private DelReviewMgr delReviewMgr;
     //private DelAccessMgr delAccessMgr;
     //private PwPolicyMgr pwPolicyMgr;
+    private String contextId = GlobalIds.HOME;
 
     /* THESE ARE THE HIGH LEVEL COMMANDS: */
     private static final String ADMIN = "admin";
@@ -149,6 +151,9 @@ public class CommandLineInterpreter
     private static final String AUTHENTICATE = "authenticate";
     private static final String ASSIGNED_ROLES = "assignedroles";
     private static final String CHECK_ACCESS = "checkaccess";
+    private static final String EXPORT_TENANT = "export";
+    private static final String IMPORT_TENANT = "import";
+    private static final String WARMUP_TENANT = "warmup";
 
 
     /**
@@ -894,6 +899,26 @@ public class CommandLineInterpreter
                 boolean result = accessMgr.checkAccess( session, inPerm );
                 printRow( "CA", "PERM", "" + result );
             }
+            else if ( commands.contains( EXPORT_TENANT ) )
+            {
+                command = EXPORT_TENANT;
+                LOG.info( command );
+                int count = new TenantP().exportTenant( contextId, options.getFile() );
+                printRow( "EX", "ENTRIES", "" + count );
+            }
+            else if ( commands.contains( IMPORT_TENANT ) )
+            {
+                command = IMPORT_TENANT;
+                LOG.info( command );
+                int count = new TenantP().importTenant( contextId, options.getFile() );
+                printRow( "IM", "ENTRIES", "" + count );
+            }
+            else if ( commands.contains( WARMUP_TENANT ) )
+            {
+                command = WARMUP_TENANT;
+                LOG.info( command );
+                new TenantP().warmUp( contextId );
+            }
             else
             {
                 LOG.warn( "unknown system operation detected" );
@@ -1458,7 +1483,6 @@ public class CommandLineInterpreter
      */
     private boolean constructManagers()
     {
-        String contextId = GlobalIds.HOME;
         boolean success = false;
         // This property can be overriden with system property:
         String tenant = System.getProperty( GlobalIds.TENANT );
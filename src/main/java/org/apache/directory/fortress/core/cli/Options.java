@@ -89,6 +89,7 @@ public class Options implements java.io.Serializable
     private final CmdLineParser.Option postalOfficeBox;
     private final CmdLineParser.Option protocol;
     private final CmdLineParser.Option member;
+    private final CmdLineParser.Option file;
 
     /**
      * @param parser
@@ -140,6 +141,7 @@ public class Options implements java.io.Serializable
         this.employeeType = parser.addStringOption('4', "employeeType");
         this.protocol = parser.addStringOption('X', "protocol");
         this.member = parser.addStringOption('M', "member");
+        this.file = parser.addStringOption('F', "file");
     }
 
     /**
@@ -684,4 +686,9 @@ public class Options implements java.io.Serializable
     {
         return (String) parser.getOptionValue(member);
     }
+
+    String getFile()
+    {
+        return (String) parser.getOptionValue(file);
+    }
 }
@@ -96,7 +96,7 @@ final class AcceleratorDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             ld.setTimeOut( 0 );
             // Create a new RBAC session
             RbacCreateSessionRequest rbacCreateSessionRequest = new RbacCreateSessionRequestImpl();
@@ -171,7 +171,7 @@ final class AcceleratorDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( session.getContextId() );
             RbacCheckAccessRequest rbacCheckAccessRequest = new RbacCheckAccessRequestImpl();
             rbacCheckAccessRequest.setSessionId( session.getSessionId() );
             rbacCheckAccessRequest.setObject( perm.getObjName() );
@@ -222,7 +222,7 @@ final class AcceleratorDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( session.getContextId() );
             RbacDropRoleRequest dropRoleRequest = new RbacDropRoleRequestImpl();
             dropRoleRequest.setSessionId( session.getSessionId() );
             dropRoleRequest.setRole( userRole.getName() );
@@ -268,7 +268,7 @@ final class AcceleratorDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( session.getContextId() );
             RbacAddRoleRequest addRoleRequest = new RbacAddRoleRequestImpl();
             addRoleRequest.setSessionId( session.getSessionId() );
             addRoleRequest.setRole( userRole.getName() );
@@ -325,7 +325,7 @@ final class AcceleratorDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( session.getContextId() );
             RbacDeleteSessionRequest deleteSessionRequest = new RbacDeleteSessionRequestImpl();
             deleteSessionRequest.setSessionId( session.getSessionId() );
             deleteSessionRequest.setUserIdentity( session.getUserId() );
@@ -364,7 +364,7 @@ final class AcceleratorDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( session.getContextId() );
             RbacSessionRolesRequest sessionRolesRequest = new RbacSessionRolesRequestImpl();
             sessionRolesRequest.setSessionId( session.getSessionId() );
             sessionRolesRequest.setUserIdentity( session.getUserId() );
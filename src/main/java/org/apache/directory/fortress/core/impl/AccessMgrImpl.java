@@ -27,9 +27,12 @@ import java.util.Set;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.directory.fortress.annotation.AdminPermissionOperation;
 import org.apache.directory.fortress.core.AccessMgr;
+import org.apache.directory.fortress.core.AuthResult;
+import org.apache.directory.fortress.core.Decision;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.model.*;
+import org.apache.directory.fortress.core.util.TenantMetrics;
 import org.apache.directory.fortress.core.util.VUtil;
 
 
@@ -114,7 +117,44 @@ public class AccessMgrImpl extends Manageable implements AccessMgr, Serializable
         String methodName = "createSession";
         assertContext( CLS_NM, methodName, user, GlobalErrIds.USER_NULL );
 
-        return userP.createSession( user, isTrusted );
+        long start = System.nanoTime();
+        boolean isSuccess = false;
+        try
+        {
+            Session session = userP.createSession( user, isTrusted );
+            isSuccess = true;
+            return session;
+        }
+        finally
+        {
+            TenantMetrics.record( this.contextId, TenantMetrics.Operation.CREATE_SESSION, System.nanoTime() - start,
+                isSuccess );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AuthResult tryCreateSession( User user, boolean isTrusted )
+        throws SecurityException
+    {
+        String methodName = "tryCreateSession";
+        assertContext( CLS_NM, methodName, user, GlobalErrIds.USER_NULL );
+
+        long start = System.nanoTime();
+        boolean isSuccess = false;
+        try
+        {
+            AuthResult result = userP.tryCreateSession( user, isTrusted );
+            isSuccess = result.isSuccess();
+            return result;
+        }
+        finally
+        {
+            TenantMetrics.record( this.contextId, TenantMetrics.Operation.CREATE_SESSION, System.nanoTime() - start,
+                isSuccess );
+        }
     }
 
     /**
@@ -127,7 +167,19 @@ public class AccessMgrImpl extends Manageable implements AccessMgr, Serializable
         String methodName = "createSession";
         assertContext( CLS_NM, methodName, group, GlobalErrIds.GROUP_NULL );
 
-        return groupP.createSession( group );
+        long start = System.nanoTime();
+        boolean isSuccess = false;
+        try
+        {
+            Session session = groupP.createSession( group );
+            isSuccess = true;
+            return session;
+        }
+        finally
+        {
+            TenantMetrics.record( this.contextId, TenantMetrics.Operation.CREATE_SESSION, System.nanoTime() - start,
+                isSuccess );
+        }
     }
 
 
@@ -147,10 +199,65 @@ public class AccessMgrImpl extends Manageable implements AccessMgr, Serializable
             getFullMethodName( CLS_NM, methodName ) );
         VUtil.getInstance().assertNotNullOrEmpty( perm.getObjName(), GlobalErrIds.PERM_OBJECT_NULL,
             getFullMethodName( CLS_NM, methodName ) );
-        VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.USER, false );
-        VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.ROLE, false );
-        setEntitySession(CLS_NM, methodName, session);
-        return permP.checkPermission( session, perm );
+        long start = System.nanoTime();
+        boolean isSuccess = false;
+        try
+        {
+            VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.USER, false );
+            VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.ROLE, false );
+            setEntitySession(CLS_NM, methodName, session);
+            boolean result = permP.checkPermission( session, perm );
+            isSuccess = true;
+            return result;
+        }
+        finally
+        {
+            TenantMetrics.record( this.contextId, TenantMetrics.Operation.CHECK_ACCESS, System.nanoTime() - start,
+                isSuccess );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public Decision tryCheckAccess( Session session, Permission perm )
+        throws SecurityException
+    {
+        String methodName = "tryCheckAccess";
+        assertContext( CLS_NM, methodName, perm, GlobalErrIds.PERM_NULL );
+        assertContext( CLS_NM, methodName, session, GlobalErrIds.USER_SESS_NULL );
+
+        VUtil.getInstance().assertNotNullOrEmpty( perm.getOpName(), GlobalErrIds.PERM_OPERATION_NULL,
+            getFullMethodName( CLS_NM, methodName ) );
+        VUtil.getInstance().assertNotNullOrEmpty( perm.getObjName(), GlobalErrIds.PERM_OBJECT_NULL,
+            getFullMethodName( CLS_NM, methodName ) );
+        long start = System.nanoTime();
+        boolean isSuccess = false;
+        try
+        {
+            Decision decision;
+            int rc = VUtil.getInstance().checkUserConstraints( session );
+            if ( rc > 0 )
+            {
+                decision = Decision.denied( rc );
+            }
+            else
+            {
+                VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.ROLE, false );
+                setEntitySession( CLS_NM, methodName, session );
+                decision = permP.tryCheckPermission( session, perm );
+            }
+            isSuccess = decision.getErrorId() == 0;
+            return decision;
+        }
+        finally
+        {
+            TenantMetrics.record( this.contextId, TenantMetrics.Operation.CHECK_ACCESS, System.nanoTime() - start,
+                isSuccess );
+        }
     }
 
 
@@ -255,7 +362,7 @@ public class AccessMgrImpl extends Manageable implements AccessMgr, Serializable
         {
             User inUser = new User(session.getUserId());
             inUser.setContextId(this.contextId);
-            User ue = userP.read(inUser, true);
+            User ue = userP.read(inUser, UserProjection.AUTHZ);
             uRoles = ue.getRoles();
         }
         int indx;
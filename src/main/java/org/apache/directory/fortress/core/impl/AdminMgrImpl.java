@@ -1003,7 +1003,10 @@ public final class AdminMgrImpl extends Manageable implements AdminMgr, Serializ
             // default cardinality == 2
             dsdSet.setCardinality( 2 );
         }
-        return sdP.add( dsdSet );
+        SDSet dsdOut = sdP.add( dsdSet );
+        // the new members may have been cached as belonging to no DSD:
+        clearDSDCache( dsdSet.getMembers() );
+        return dsdOut;
     }
 
 
@@ -1017,7 +1020,11 @@ public final class AdminMgrImpl extends Manageable implements AdminMgr, Serializ
         assertContext( CLS_NM, methodName, dsdSet, GlobalErrIds.DSD_NULL );
         setEntitySession( CLS_NM, methodName, dsdSet );
         dsdSet.setType( SDSet.SDType.DYNAMIC );
-        return sdP.update( dsdSet );
+        SDSet dsdOut = sdP.update( dsdSet );
+        // remove any references to the old DSD from cache:
+        clearDSDCache( dsdSet );
+        clearDSDCache( dsdSet.getMembers() );
+        return dsdOut;
     }
 
 
@@ -1039,6 +1046,7 @@ public final class AdminMgrImpl extends Manageable implements AdminMgr, Serializ
         SDSet dsdOut = sdP.update( entity );
         // remove any references to the old DSD from cache:
         clearDSDCache( dsdSet );
+        clearDSDCache( role );
         return dsdOut;
     }
 
@@ -1116,4 +1124,32 @@ public final class AdminMgrImpl extends Manageable implements AdminMgr, Serializ
     {
         SDUtil.getInstance().clearDsdCacheEntry( dsdSet.getName(), contextId );
     }
+
+
+    /**
+     * Clear the DSD cache entry that corresponds to this Role.
+     *
+     * @param role
+     */
+    private void clearDSDCache( Role role )
+    {
+        SDUtil.getInstance().clearDsdCacheMember( role.getName(), contextId );
+    }
+
+
+    /**
+     * Clear the DSD cache entries that correspond to these Role names.
+     *
+     * @param members
+     */
+    private void clearDSDCache( Set<String> members )
+    {
+        if ( members != null )
+        {
+            for ( String member : members )
+            {
+                SDUtil.getInstance().clearDsdCacheMember( member, contextId );
+            }
+        }
+    }
 }
@@ -0,0 +1,212 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.model.UserAdminRole;
+import org.apache.directory.fortress.core.util.cache.Cache;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * This utility compiles the delegated administration policy of a {@link UserAdminRole} into an {@link AdminRolePolicy}
+ * and caches the result.  Compilation walks the user ou, perm ou and role hierarchies once using {@link UsoUtil},
+ * {@link PsoUtil} and {@link RoleUtil}, after which {@link DelAccessMgrImpl} can answer canAssign, canDeassign, canGrant
+ * and canRevoke without traversing the graphs again.
+ * <p>
+ * Compiled policies are keyed by tenant, admin role name, ou scopes and role range, so a change to the admin role's
+ * delegation attributes produces a new entry.  The {@code fortress.admin.policies} cache is flushed whenever one of the
+ * underlying hierarchies is updated.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class AdminPolicyUtil
+{
+    private static final String CLS_NM = AdminPolicyUtil.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String POLICY_CACHE = "fortress.admin.policies";
+    private static final ConcurrentMap<String, AdminRolePolicy.OuIndex> ouIndexes = new ConcurrentHashMap<>();
+    private static final CacheMgr cacheMgr = CacheMgr.getInstance();
+
+
+    /**
+     * Private constructor
+     *
+     */
+    private AdminPolicyUtil()
+    {
+    }
+
+
+    /**
+     * Return the compiled delegation policy for an admin role, building it on first use.
+     *
+     * @param uaRole    contains the admin role as activated in the admin's session.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return compiled policy for the admin role.
+     */
+    static AdminRolePolicy getPolicy( UserAdminRole uaRole, String contextId )
+    {
+        String key = getKey( uaRole, contextId );
+        Cache policyCache = cacheMgr.getCache( POLICY_CACHE, contextId );
+        AdminRolePolicy policy = ( AdminRolePolicy ) policyCache.get( key );
+        if ( policy == null )
+        {
+            try
+            {
+                policy = compile( uaRole, contextId );
+            }
+            finally
+            {
+                // always put, a miss on the blocking cache holds a lock on the key until released:
+                policyCache.put( key, policy );
+            }
+        }
+        return policy;
+    }
+
+
+    /**
+     * Remove all compiled policies.  Called whenever the user ou, perm ou or role hierarchies change.
+     */
+    static void clear()
+    {
+        cacheMgr.flush( POLICY_CACHE );
+        cacheMgr.publish( POLICY_CACHE, null, null );
+    }
+
+
+    /**
+     * Flatten the admin role's scopes and role range.
+     *
+     * @param uaRole    contains the admin role.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return compiled policy.
+     */
+    private static AdminRolePolicy compile( UserAdminRole uaRole, String contextId )
+    {
+        LOG.debug( "compile admin role [{}] contextId [{}]", uaRole.getName(), contextId );
+        AdminRolePolicy.OuIndex userOuIndex = getOuIndex( HierUtil.Type.USO.toString(), contextId );
+        AdminRolePolicy.OuIndex permOuIndex = getOuIndex( HierUtil.Type.PSO.toString(), contextId );
+        Set<String> osUs = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        if ( uaRole.getOsUSet() != null )
+        {
+            for ( String osU : uaRole.getOsUSet() )
+            {
+                osUs.add( osU );
+                osUs.addAll( UsoUtil.getInstance().getDescendants( osU, contextId ) );
+            }
+        }
+        Set<String> osPs = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        if ( uaRole.getOsPSet() != null )
+        {
+            for ( String osP : uaRole.getOsPSet() )
+            {
+                osPs.add( osP );
+                osPs.addAll( PsoUtil.getInstance().getDescendants( osP, contextId ) );
+            }
+        }
+
+        // matched the same way as the ascendant set returned by RoleUtil, and equalsIgnoreCase for a single role:
+        Set<String> range = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        String beginRange = uaRole.getBeginRange();
+        String endRange = uaRole.getEndRange();
+        if ( beginRange != null && endRange != null && !beginRange.equalsIgnoreCase( endRange ) )
+        {
+            range.addAll( RoleUtil.getInstance().getAscendants( beginRange, endRange, uaRole.isEndInclusive(),
+                contextId ) );
+            if ( uaRole.isBeginInclusive() )
+            {
+                range.add( beginRange );
+            }
+        }
+        else if ( beginRange != null )
+        {
+            range.add( beginRange );
+        }
+
+        return new AdminRolePolicy( userOuIndex, userOuIndex.toBits( osUs ), permOuIndex,
+            permOuIndex.toBits( osPs ), range );
+    }
+
+
+    private static AdminRolePolicy.OuIndex getOuIndex( String type, String contextId )
+    {
+        String key = type + ":" + contextId;
+        AdminRolePolicy.OuIndex index = ouIndexes.get( key );
+        if ( index == null )
+        {
+            AdminRolePolicy.OuIndex newIndex = new AdminRolePolicy.OuIndex();
+            index = ouIndexes.putIfAbsent( key, newIndex );
+            if ( index == null )
+            {
+                index = newIndex;
+            }
+        }
+        return index;
+    }
+
+
+    /**
+     *
+     * @param uaRole    contains the admin role.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return key to the compiled policy's cache entry.
+     */
+    private static String getKey( UserAdminRole uaRole, String contextId )
+    {
+        StringBuilder key = new StringBuilder();
+        if ( StringUtils.isNotEmpty( contextId ) && !contextId.equalsIgnoreCase( GlobalIds.NULL ) )
+        {
+            key.append( contextId );
+        }
+        // names are not upper cased, String.toUpperCase depends on the locale and may map different names to one key:
+        key.append( ':' ).append( uaRole.getName() );
+        appendSorted( key.append( ":U" ), uaRole.getOsUSet() );
+        appendSorted( key.append( ":P" ), uaRole.getOsPSet() );
+        key.append( ':' ).append( uaRole.getRoleRangeRaw() );
+        return key.toString();
+    }
+
+
+    private static void appendSorted( StringBuilder key, Set<String> values )
+    {
+        if ( values != null )
+        {
+            Set<String> sorted = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+            sorted.addAll( values );
+            for ( String value : sorted )
+            {
+                key.append( ',' ).append( value );
+            }
+        }
+    }
+}
@@ -186,7 +186,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
             // These multi-valued attributes are optional.  The utility function will return quietly if no items are loaded into collection:
             loadAttrs( entity.getParents(), entry, GlobalIds.PARENT_NODES );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
         }
         catch ( LdapException e )
@@ -261,7 +261,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
             }
         }
@@ -293,7 +293,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
         {
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, GlobalIds.PARENT_NODES ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, dn, mods, entity );
         }
         catch ( LdapException e )
@@ -326,7 +326,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
         {
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE, ROLE_OCCUPANT, userDn ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, dn, mods, entity );
         }
         catch ( LdapException e )
@@ -363,7 +363,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification(
                 ModificationOperation.REMOVE_ATTRIBUTE, ROLE_OCCUPANT, userDn ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, dn, mods, entity );
         }
         catch ( LdapException e )
@@ -394,7 +394,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( role.getContextId() );
             delete( ld, dn, role );
         }
         catch ( LdapException e )
@@ -424,7 +424,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( adminRole.getContextId() );
             Entry findEntry = read( ld, dn, ROLE_ATRS );
             if ( findEntry != null )
             {
@@ -474,7 +474,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
             String searchVal = encodeSafeText( adminRole.getName(), GlobalIds.ROLE_LEN );
             filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")("
                 + ROLE_NM + "=" + searchVal + "*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( adminRole.getContextId() );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, ROLE_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -523,7 +523,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
             searchVal = encodeSafeText( adminRole.getName(), GlobalIds.ROLE_LEN );
             filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")("
                 + ROLE_NM + "=" + searchVal + "*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( adminRole.getContextId() );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, ROLE_NM_ATR, false, limit );
 
@@ -567,7 +567,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
         {
             String filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")";
             filter += "(" + ROLE_OCCUPANT + "=" + userDn + "))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( contextId );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, ROLE_NM_ATR, false, GlobalIds.BATCH_SIZE );
 
@@ -615,7 +615,7 @@ final class AdminRoleDAO extends LdapDataProvider implements PropertyProvider<Ad
         {
             filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")("
                 + GlobalIds.PARENT_NODES + "=*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( contextId );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, DESC_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
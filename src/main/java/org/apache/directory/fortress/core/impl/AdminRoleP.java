@@ -149,6 +149,7 @@ final class AdminRoleP
     {
         validate( entity );
         AdminRole updateEntity = rDao.update( entity );
+        AdminUtil.clearDecisionCache();
         return read( updateEntity );
     }
 
@@ -164,6 +165,7 @@ final class AdminRoleP
     {
         validate( entity );
         rDao.deleteParent( entity );
+        AdminUtil.clearDecisionCache();
     }
 
 
@@ -283,6 +285,7 @@ final class AdminRoleP
         try
         {
             rDao.remove( entity );
+            AdminUtil.clearDecisionCache();
         }
         catch ( RemoveException re )
         {
@@ -0,0 +1,161 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.directory.fortress.core.model.UserAdminRole;
+
+
+/**
+ * Compiled form of the ARBAC02 delegation policy carried by a single {@link UserAdminRole}.  The user and perm ou scopes,
+ * including every descendant ou, are flattened into bitsets over a per-tenant ou index, and the role range is expanded
+ * into a set of role names.  Ou and role names are compared with {@link String#CASE_INSENSITIVE_ORDER}, as the
+ * uncompiled checks did.  Once built, the can-assign and can-grant checks made by {@link DelAccessMgrImpl} do no graph
+ * traversal or allocation.
+ * <p>
+ * Instances are created and cached by {@link AdminPolicyUtil} and are immutable.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class AdminRolePolicy
+{
+    private final OuIndex userOuIndex;
+    private final OuIndex permOuIndex;
+    private final BitSet userOus;
+    private final BitSet permOus;
+    private final Set<String> roleRange;
+
+
+    AdminRolePolicy( OuIndex userOuIndex, BitSet userOus, OuIndex permOuIndex, BitSet permOus,
+        Set<String> roleRange )
+    {
+        // roleRange must use String.CASE_INSENSITIVE_ORDER, role names are matched with it:
+        this.userOuIndex = userOuIndex;
+        this.userOus = userOus;
+        this.permOuIndex = permOuIndex;
+        this.permOus = permOus;
+        this.roleRange = Collections.unmodifiableSet( roleRange );
+    }
+
+
+    /**
+     * Return true if the admin role may perform user-role assignment for a user in the given ou over the given role.
+     *
+     * @param userOu  contains the ou of the target user.
+     * @param roleNm  contains the name of the target role.
+     * @return boolean true if authorized.
+     */
+    boolean canAssign( String userOu, String roleNm )
+    {
+        return userOuIndex.contains( userOus, userOu ) && isInRange( roleNm );
+    }
+
+
+    /**
+     * Return true if the admin role may perform permission-role assignment for a perm object in the given ou over the
+     * given role.
+     *
+     * @param permOu  contains the ou of the target perm object.
+     * @param roleNm  contains the name of the target role.
+     * @return boolean true if authorized.
+     */
+    boolean canGrant( String permOu, String roleNm )
+    {
+        return permOuIndex.contains( permOus, permOu ) && isInRange( roleNm );
+    }
+
+
+    private boolean isInRange( String roleNm )
+    {
+        return roleNm != null && roleRange.contains( roleNm );
+    }
+
+
+    /**
+     * Assigns each ou name of a tenant a stable bit position.  Positions are only ever added so that compiled policies
+     * remain valid when new ous are registered.
+     */
+    static final class OuIndex
+    {
+        private final ConcurrentMap<String, Integer> positions = new ConcurrentSkipListMap<>(
+            String.CASE_INSENSITIVE_ORDER );
+        private final AtomicInteger next = new AtomicInteger();
+
+
+        /**
+         * Build the bitset covering all of the given ou names.
+         *
+         * @param ous contains ou names, case insensitive.
+         * @return BitSet with one bit set for every ou.
+         */
+        BitSet toBits( Set<String> ous )
+        {
+            BitSet bits = new BitSet();
+            if ( CollectionUtils.isNotEmpty( ous ) )
+            {
+                for ( String ou : ous )
+                {
+                    bits.set( position( ou ) );
+                }
+            }
+            return bits;
+        }
+
+
+        /**
+         * @return true if the ou has been indexed and its bit is set.
+         */
+        boolean contains( BitSet bits, String ou )
+        {
+            if ( ou == null )
+            {
+                return false;
+            }
+            Integer position = positions.get( ou );
+            return position != null && bits.get( position );
+        }
+
+
+        private int position( String ou )
+        {
+            Integer position = positions.get( ou );
+            if ( position == null )
+            {
+                Integer candidate = next.getAndIncrement();
+                position = positions.putIfAbsent( ou, candidate );
+                if ( position == null )
+                {
+                    position = candidate;
+                }
+            }
+            return position;
+        }
+    }
+}
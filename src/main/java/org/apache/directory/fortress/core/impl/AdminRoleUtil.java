@@ -25,8 +25,6 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang.StringUtils;
-import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.ValidationException;
 import org.apache.directory.fortress.core.model.AdminRole;
@@ -34,7 +32,6 @@ import org.apache.directory.fortress.core.model.Graphable;
 import org.apache.directory.fortress.core.model.Hier;
 import org.apache.directory.fortress.core.model.Relationship;
 import org.apache.directory.fortress.core.model.UserAdminRole;
-import org.apache.directory.fortress.core.util.cache.Cache;
 import org.apache.directory.fortress.core.util.cache.CacheMgr;
 import org.jgrapht.graph.SimpleDirectedGraph;
 import org.slf4j.Logger;
@@ -63,7 +60,8 @@ import org.slf4j.LoggerFactory;
  */
 final class AdminRoleUtil
 {
-    private static final Cache adminRoleCache;
+    private static final String CACHE_NAME = "fortress.admin.roles";
+    private static final GraphCache adminRoleCache;
     private static final AdminRoleP adminRoleP = new AdminRoleP();
     private static final String CLS_NM = AdminRoleUtil.class.getName();
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
@@ -75,7 +73,15 @@ final class AdminRoleUtil
     static
     {
         CacheMgr cacheMgr = CacheMgr.getInstance();
-        adminRoleCache = cacheMgr.getCache( "fortress.admin.roles" );
+        adminRoleCache = new GraphCache( cacheMgr.getCache( CACHE_NAME ), HierUtil.Type.ARLE, new GraphCache.Loader()
+        {
+            @Override
+            public List<Graphable> getAllDescendants( String contextId ) throws SecurityException
+            {
+                return adminRoleP.getAllDescendants( contextId );
+            }
+        } );
+        ChangeRouter.getInstance().subscribe( CACHE_NAME, ChangeRouter.Container.ADMIN_ROLE );
     }
 
     /**
@@ -233,81 +239,56 @@ final class AdminRoleUtil
      */
     static void updateHier( String contextId, Relationship relationship, Hier.Op op ) throws SecurityException
     {
-        HierUtil.updateHier( getGraph( contextId ), relationship, op );
+        adminRoleCache.updateHier( contextId, relationship, op );
+        AdminUtil.clearDecisionCache();
+        CacheMgr.getInstance().publish( CACHE_NAME, contextId, relationship.getChild() );
     }
 
 
     /**
-     * Read this ldap record,{@code cn=Hierarchies, ou=OS-P} into this entity, {@link Hier}, before loading into this collection class,{@code org.jgrapht.graph.SimpleDirectedGraph}
-     * using 3rd party lib, <a href="http://www.jgrapht.org/">JGraphT</a>.
+     * Apply a change to one admin role, made outside of this process, to the cached hierarchy.
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return handle to simple digraph containing adminRole hierarchies.
+     * @param name      of the admin role that changed.
+     * @param parents   names of its parents as stored in ldap, null if it was deleted.
+     * @throws SecurityException in the event of a system error.
      */
-    private static synchronized SimpleDirectedGraph<String, Relationship> loadGraph( String contextId )
+    static void syncParents( String contextId, String name, Set<String> parents ) throws SecurityException
     {
-        Hier inHier = new Hier( Hier.Type.ROLE );
-        inHier.setContextId( contextId );
-        LOG.info( "loadGraph initializing ADMIN ROLE context [{}]", inHier.getContextId() );
-        List<Graphable> descendants = null;
-
-        try
-        {
-            descendants = adminRoleP.getAllDescendants( inHier.getContextId() );
-        }
-        catch ( SecurityException se )
-        {
-            LOG.info( "loadGraph caught SecurityException={}", se );
-        }
-
-        Hier hier = HierUtil.loadHier( contextId, descendants );
-        SimpleDirectedGraph<String, Relationship> graph;
+        adminRoleCache.syncParents( contextId, name, parents );
+        AdminUtil.clearDecisionCache();
+    }
 
-        graph = HierUtil.buildGraph( hier );
-        adminRoleCache.put( getKey( contextId ), graph );
 
-        return graph;
+    /**
+     * Reload this tenant's cached hierarchy in the background on next use.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    static void expire( String contextId )
+    {
+        adminRoleCache.expire( contextId );
     }
 
 
     /**
-     * Read this ldap record,{@code cn=Hierarchies, ou=OS-P} into this entity, {@link Hier}, before loading into this collection class,{@code org.jgrapht.graph.SimpleDirectedGraph}
-     * using 3rd party lib, <a href="http://www.jgrapht.org/">JGraphT</a>.
+     * Load this tenant's adminRole hierarchy now, if not already cached, so the first request does not pay for the ldap read.
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return handle to simple digraph containing adminRole hierarchies.
      */
-    private static SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
+    static void warmUp( String contextId )
     {
-        String key = getKey( contextId );        
-        LOG.debug("Getting graph for key " + contextId);
-         
-        SimpleDirectedGraph<String, Relationship> graph = ( SimpleDirectedGraph<String, Relationship> ) adminRoleCache
-                 .get( key );
-             
-        if(graph == null){
-            LOG.debug("Graph was null, creating... " + contextId);
-            return loadGraph( contextId );
-        }
-        else{
-            LOG.debug("Graph found in cache, returning...");
-            return graph;
-        }
+        adminRoleCache.warmUp( contextId );
     }
 
 
     /**
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return containing key to cache entry for this tenant.
+     * @return handle to simple digraph containing adminRole hierarchies.
      */
-    private static String getKey( String contextId )
+    private static SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
     {
-        String key = HierUtil.Type.ARLE.toString();
-        if ( StringUtils.isNotEmpty( contextId ) && !contextId.equalsIgnoreCase( GlobalIds.NULL ) )
-        {
-            key += ":" + contextId;
-        }
-        return key;
+        return adminRoleCache.getGraph( contextId );
     }
 }
@@ -19,21 +19,38 @@
  */
 package org.apache.directory.fortress.core.impl;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.directory.fortress.core.DelAccessMgr;
 import org.apache.directory.fortress.core.AuthorizationException;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.DelAccessMgrFactory;
+import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.model.FortEntity;
 import org.apache.directory.fortress.core.model.Permission;
 import org.apache.directory.fortress.core.model.Role;
 import org.apache.directory.fortress.core.model.Session;
 import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserAdminRole;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.VUtil;
+import org.apache.directory.fortress.core.util.cache.Cache;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
 
 /**
  * This class supplies static wrapper utilities to provide ARBAC functionality to Fortress internal Manager APIs.
  * The utilities within this class are all static and can not be called by code outside of Fortress.
  * <p>
+ * The {@link DelAccessMgr} used for the checks is created once per contextId and reused.  The admin permission lookups
+ * of {@link #checkAccess} are held for a short time in the {@code fortress.arbac} cache, keyed by the admin session, its
+ * activated admin roles and the target permission, so batch jobs do not pay an ldap read on every administrative call.
+ * The session's temporal constraints are still evaluated, and the check still audited, on every call.  The cache is
+ * cleared whenever an admin role, admin role hierarchy or admin permission is changed, and may be turned off by setting
+ * {@link GlobalIds#DISABLE_ARBAC_CACHE} to 'true'.
+ * <p>
  * This class is thread safe.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
@@ -41,6 +58,10 @@ import org.apache.directory.fortress.core.model.User;
 final class AdminUtil
 {
     private static final String CLS_NM = AdminUtil.class.getName();
+    private static final String ARBAC_CACHE = "fortress.arbac";
+    private static final ConcurrentMap<String, DelAccessMgr> accessMgrs = new ConcurrentHashMap<>();
+    private static final boolean isCacheDisabled = Config.getInstance().getBoolean( GlobalIds.DISABLE_ARBAC_CACHE, false );
+    private static final PermP permP = new PermP();
 
     /**
      * Private constructor
@@ -64,7 +85,7 @@ final class AdminUtil
     {
         if (session != null)
         {
-            DelAccessMgr dAccessMgr = DelAccessMgrFactory.createInstance(contextId);
+            DelAccessMgr dAccessMgr = getDelAccessMgr(contextId);
             boolean result = dAccessMgr.canAssign(session, user, role);
             if (!result)
             {
@@ -89,7 +110,7 @@ final class AdminUtil
     {
         if (session != null)
         {
-            DelAccessMgr dAccessMgr = DelAccessMgrFactory.createInstance(contextId);
+            DelAccessMgr dAccessMgr = getDelAccessMgr(contextId);
             boolean result = dAccessMgr.canDeassign(session, user, role);
             if (!result)
             {
@@ -116,7 +137,7 @@ final class AdminUtil
     {
         if (session != null)
         {
-            DelAccessMgr dAccessMgr = DelAccessMgrFactory.createInstance(contextId);
+            DelAccessMgr dAccessMgr = getDelAccessMgr(contextId);
             boolean result = dAccessMgr.canGrant(session, role, perm);
             if (!result)
             {
@@ -142,7 +163,7 @@ final class AdminUtil
     {
         if (session != null)
         {
-            DelAccessMgr dAccessMgr = DelAccessMgrFactory.createInstance(contextId);
+            DelAccessMgr dAccessMgr = getDelAccessMgr(contextId);
             boolean result = dAccessMgr.canRevoke(session, role, perm);
             if (!result)
             {
@@ -197,14 +218,119 @@ final class AdminUtil
     {
         if (session != null)
         {
-            DelAccessMgr dAccessMgr = DelAccessMgrFactory.createInstance(contextId);
-            boolean result = dAccessMgr.checkAccess(session, perm);
+            boolean result;
+            if (isCacheDisabled)
+            {
+                result = getDelAccessMgr(contextId).checkAccess(session, perm);
+            }
+            else
+            {
+                // the constraints are never cached, they may also deactivate admin roles so the key is taken after:
+                VUtil.getInstance().validateConstraints(session, VUtil.ConstraintType.USER, false);
+                VUtil.getInstance().validateConstraints(session, VUtil.ConstraintType.ROLE, false);
+                String key = getKey(session, perm, contextId);
+                Cache arbacCache = CacheMgr.getInstance().getCache(ARBAC_CACHE, contextId);
+                Boolean cached = (Boolean) arbacCache.get(key);
+                if (cached != null)
+                {
+                    result = cached;
+                    Permission adminPerm = new Permission(perm.getObjName(), perm.getOpName(), perm.getObjId());
+                    adminPerm.setAdmin(true);
+                    adminPerm.setContextId(contextId);
+                    permP.audit(session, adminPerm, result);
+                }
+                else
+                {
+                    Boolean checked = null;
+                    try
+                    {
+                        checked = getDelAccessMgr(contextId).checkAccess(session, perm);
+                    }
+                    finally
+                    {
+                        // a null releases the lock the blocking cache holds on a missed key:
+                        arbacCache.put(key, checked);
+                    }
+                    result = checked;
+                }
+            }
             if (!result)
             {
                 String info = "checkAccess failed for user [" + session.getUserId() + "] object [" + perm.getObjName() + "] operation [" + perm.getOpName() + "]";
-                throw new AuthorizationException(GlobalErrIds.USER_ADMIN_NOT_AUTHORIZED, info);
+                throw new AuthorizationException(GlobalErrIds.USER_ADMIN_NOT_AUTHORIZED, info, false);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached administrative access decisions.  Called whenever an admin role, admin role hierarchy or
+     * admin permission is changed.
+     */
+    static void clearDecisionCache()
+    {
+        if (!isCacheDisabled)
+        {
+            CacheMgr.getInstance().flush(ARBAC_CACHE);
+            CacheMgr.getInstance().publish(ARBAC_CACHE, null, null);
+        }
+    }
+
+    /**
+     * Return the {@link DelAccessMgr} for a particular tenant, creating it on first use.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return DelAccessMgr instance with no admin session set.
+     * @throws SecurityException in the event of failure during instantiation.
+     */
+    private static DelAccessMgr getDelAccessMgr(String contextId) throws SecurityException
+    {
+        DelAccessMgr dAccessMgr = accessMgrs.get(contextId);
+        if (dAccessMgr == null)
+        {
+            dAccessMgr = DelAccessMgrFactory.createInstance(contextId);
+            DelAccessMgr existing = accessMgrs.putIfAbsent(contextId, dAccessMgr);
+            if (existing != null)
+            {
+                dAccessMgr = existing;
             }
         }
+        return dAccessMgr;
+    }
+
+    /**
+     * Build the cache key for an administrative permission lookup.  The activated admin roles are part of the key so that
+     * changes made to the session's admin roles are never answered from a stale entry.  Each part is length prefixed, as
+     * in {@link DecisionCache#getKey}, so names containing the separator cannot make two keys collide.
+     *
+     * @param session contains the admin user's id, session id and activated admin roles.
+     * @param perm    contains the target admin permission.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return String containing the key.
+     */
+    private static String getKey(Session session, Permission perm, String contextId)
+    {
+        StringBuilder key = new StringBuilder();
+        appendPart(key, contextId);
+        appendPart(key, session.getUserId());
+        appendPart(key, session.getSessionId());
+        appendPart(key, perm.getObjName());
+        appendPart(key, perm.getOpName());
+        appendPart(key, perm.getObjId());
+        List<UserAdminRole> roles = session.getAdminRoles();
+        if (roles != null)
+        {
+            for (UserAdminRole role : roles)
+            {
+                appendPart(key, role.getName());
+            }
+        }
+        return key.toString();
+    }
+
+    private static void appendPart(StringBuilder key, String part)
+    {
+        String value = part != null ? part : "";
+        key.append(value.length()).append(GlobalIds.PROP_SEP).append(value);
     }
 
     /**
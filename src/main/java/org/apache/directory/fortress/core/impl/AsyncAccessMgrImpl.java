@@ -0,0 +1,220 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.directory.fortress.core.AccessMgr;
+import org.apache.directory.fortress.core.AsyncAccessMgr;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Group;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+
+/**
+ * Implementation of {@link AsyncAccessMgr} that runs each request against an {@link AccessMgr} on the fortress async
+ * executor, {@link AsyncExecutor}.
+ * <p>
+ * The Apache LDAP API's asynchronous operations return futures that can only be waited on, with no completion
+ * callback, so a request still occupies a thread while its ldap operations are outstanding.  Running them on a small
+ * dedicated executor keeps that cost off the caller's threads and bounds it by the size of the connection pool.
+ * <p>
+ * This class is NOT thread safe if parent instance variables ({@link #setContextId} or {@link #setAdmin}) are set after
+ * requests are submitted.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AsyncAccessMgrImpl implements AsyncAccessMgr
+{
+    private final AccessMgr accessMgr;
+    private final AsyncExecutor executor = AsyncExecutor.getInstance();
+
+
+    /**
+     * @param accessMgr runs the requests, its contextId and admin session are used.
+     */
+    public AsyncAccessMgrImpl( AccessMgr accessMgr )
+    {
+        this.accessMgr = accessMgr;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdmin( Session session )
+    {
+        accessMgr.setAdmin( session );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setContextId( String contextId )
+    {
+        accessMgr.setContextId( contextId );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Session> authenticate( final String userId, final String password )
+    {
+        return executor.submit( new Callable<Session>()
+        {
+            @Override
+            public Session call() throws SecurityException
+            {
+                return accessMgr.authenticate( userId, password );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Session> createSession( final User user, final boolean isTrusted )
+    {
+        return executor.submit( new Callable<Session>()
+        {
+            @Override
+            public Session call() throws SecurityException
+            {
+                return accessMgr.createSession( user, isTrusted );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Session> createSession( final Group group )
+    {
+        return executor.submit( new Callable<Session>()
+        {
+            @Override
+            public Session call() throws SecurityException
+            {
+                return accessMgr.createSession( group );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Boolean> checkAccess( final Session session, final Permission perm )
+    {
+        return executor.submit( new Callable<Boolean>()
+        {
+            @Override
+            public Boolean call() throws SecurityException
+            {
+                return accessMgr.checkAccess( session, perm );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<Permission>> sessionPermissions( final Session session )
+    {
+        return executor.submit( new Callable<List<Permission>>()
+        {
+            @Override
+            public List<Permission> call() throws SecurityException
+            {
+                return accessMgr.sessionPermissions( session );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<UserRole>> sessionRoles( final Session session )
+    {
+        return executor.submit( new Callable<List<UserRole>>()
+        {
+            @Override
+            public List<UserRole> call() throws SecurityException
+            {
+                return accessMgr.sessionRoles( session );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Set<String>> authorizedRoles( final Session session )
+    {
+        return executor.submit( new Callable<Set<String>>()
+        {
+            @Override
+            public Set<String> call() throws SecurityException
+            {
+                return accessMgr.authorizedRoles( session );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<User> getUser( final Session session )
+    {
+        return executor.submit( new Callable<User>()
+        {
+            @Override
+            public User call() throws SecurityException
+            {
+                return accessMgr.getUser( session );
+            }
+        } );
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Runs the requests of the asynchronous managers, {@link AsyncAccessMgrImpl} and {@link AsyncReviewMgrImpl}.
+ * <p>
+ * Each request holds at most one pooled ldap connection while it runs, so the number of threads, {@code async.threads},
+ * defaults to the admin pool maximum.  Up to {@code async.queue.size} requests wait for a thread, after which new
+ * requests fail fast rather than pile up.  Threads exit after a minute idle and are virtual threads if
+ * {@code enable.virtual.threads} is set, see {@link ThreadUtil}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class AsyncExecutor
+{
+    private static final String CLS_NM = AsyncExecutor.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String ASYNC_THREADS = "async.threads";
+    private static final String ASYNC_QUEUE_SIZE = "async.queue.size";
+    private final ThreadPoolExecutor executor;
+
+    private static volatile AsyncExecutor sINSTANCE = null;
+
+
+    static AsyncExecutor getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( AsyncExecutor.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new AsyncExecutor();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    /**
+     * Private constructor
+     *
+     */
+    private AsyncExecutor()
+    {
+        int threads = Config.getInstance().getInt( ASYNC_THREADS, Config.getInstance().getInt(
+            GlobalIds.LDAP_ADMIN_POOL_MAX, 10 ) );
+        int queueSize = Config.getInstance().getInt( ASYNC_QUEUE_SIZE, 10000 );
+        executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>( queueSize ), ThreadUtil.newThreadFactory( "fortress-async-" ) );
+        executor.allowCoreThreadTimeOut( true );
+        LOG.info( "AsyncExecutor threads [{}] queue size [{}]", threads, queueSize );
+    }
+
+
+    /**
+     * Run the task on the executor.
+     *
+     * @param task to run.
+     * @param <T>  type of result.
+     * @return future completed with the task's result or exception.  A task cancelled before it starts is not run.
+     */
+    <T> CompletableFuture<T> submit( final Callable<T> task )
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try
+        {
+            executor.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if ( future.isDone() )
+                    {
+                        return;
+                    }
+                    try
+                    {
+                        future.complete( task.call() );
+                    }
+                    catch ( Exception e )
+                    {
+                        future.completeExceptionally( e );
+                    }
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            String error = "submit rejected, [" + executor.getQueue().size() + "] requests pending";
+            LOG.warn( error );
+            future.completeExceptionally( new SecurityException( GlobalErrIds.FT_ASYNC_REJECTED, error, e ) );
+        }
+        return future;
+    }
+}
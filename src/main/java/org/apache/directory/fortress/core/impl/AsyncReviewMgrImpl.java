@@ -0,0 +1,217 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.directory.fortress.core.AsyncReviewMgr;
+import org.apache.directory.fortress.core.ReviewMgr;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.PermObj;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+
+
+/**
+ * Implementation of {@link AsyncReviewMgr} that runs each request against a {@link ReviewMgr} on the fortress async
+ * executor, {@link AsyncExecutor}.
+ * <p>
+ * This class is NOT thread safe if parent instance variables ({@link #setContextId} or {@link #setAdmin}) are set after
+ * requests are submitted.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AsyncReviewMgrImpl implements AsyncReviewMgr
+{
+    private final ReviewMgr reviewMgr;
+    private final AsyncExecutor executor = AsyncExecutor.getInstance();
+
+
+    /**
+     * @param reviewMgr runs the requests, its contextId and admin session are used.
+     */
+    public AsyncReviewMgrImpl( ReviewMgr reviewMgr )
+    {
+        this.reviewMgr = reviewMgr;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdmin( Session session )
+    {
+        reviewMgr.setAdmin( session );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setContextId( String contextId )
+    {
+        reviewMgr.setContextId( contextId );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<User> readUser( final User user )
+    {
+        return executor.submit( new Callable<User>()
+        {
+            @Override
+            public User call() throws SecurityException
+            {
+                return reviewMgr.readUser( user );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Role> readRole( final Role role )
+    {
+        return executor.submit( new Callable<Role>()
+        {
+            @Override
+            public Role call() throws SecurityException
+            {
+                return reviewMgr.readRole( role );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Permission> readPermission( final Permission permission )
+    {
+        return executor.submit( new Callable<Permission>()
+        {
+            @Override
+            public Permission call() throws SecurityException
+            {
+                return reviewMgr.readPermission( permission );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<PermObj> readPermObj( final PermObj permObj )
+    {
+        return executor.submit( new Callable<PermObj>()
+        {
+            @Override
+            public PermObj call() throws SecurityException
+            {
+                return reviewMgr.readPermObj( permObj );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<UserRole>> assignedRoles( final User user )
+    {
+        return executor.submit( new Callable<List<UserRole>>()
+        {
+            @Override
+            public List<UserRole> call() throws SecurityException
+            {
+                return reviewMgr.assignedRoles( user );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Set<String>> authorizedRoles( final User user )
+    {
+        return executor.submit( new Callable<Set<String>>()
+        {
+            @Override
+            public Set<String> call() throws SecurityException
+            {
+                return reviewMgr.authorizedRoles( user );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<User>> assignedUsers( final Role role )
+    {
+        return executor.submit( new Callable<List<User>>()
+        {
+            @Override
+            public List<User> call() throws SecurityException
+            {
+                return reviewMgr.assignedUsers( role );
+            }
+        } );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<Permission>> userPermissions( final User user )
+    {
+        return executor.submit( new Callable<List<Permission>>()
+        {
+            @Override
+            public List<Permission> call() throws SecurityException
+            {
+                return reviewMgr.userPermissions( user );
+            }
+        } );
+    }
+}
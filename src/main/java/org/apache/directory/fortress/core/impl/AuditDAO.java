@@ -20,8 +20,10 @@
 package org.apache.directory.fortress.core.impl;
 
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
@@ -31,12 +33,16 @@ import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
 import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.fortress.core.AuditHandler;
+import org.apache.directory.fortress.core.AuditMgr;
 import org.apache.directory.fortress.core.FinderException;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.ldap.LdapDataProvider;
 import org.apache.directory.fortress.core.model.AuthZ;
 import org.apache.directory.fortress.core.model.Bind;
+import org.apache.directory.fortress.core.model.FortEntity;
 import org.apache.directory.fortress.core.model.Mod;
 import org.apache.directory.fortress.core.model.ObjectFactory;
 import org.apache.directory.fortress.core.model.UserAudit;
@@ -160,6 +166,8 @@ final class AuditDAO extends LdapDataProvider
     private static final String ACCESS_MOD_CLASS_NM = "auditModify";
     private static final String ACCESS_ADD_CLASS_NM = "auditAdd";
     private static final String AUDIT_ROOT = "audit.root";
+    private static final String PAGE_SIZE = "audit.query.page.size";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
 
     private static final String[] AUDIT_AUTHZ_ATRS =
         {
@@ -400,29 +408,10 @@ final class AuditDAO extends LdapDataProvider
         List<AuthZ> auditList = new ArrayList<>();
         LdapConnection ld = null;
         String auditRoot = Config.getInstance().getProperty( AUDIT_ROOT );
-        String userRoot = getRootDn( audit.getContextId(), GlobalIds.USER_ROOT );
 
         try
         {
-            String filter = GlobalIds.FILTER_PREFIX + ACCESS_AUTHZ_CLASS_NM + ")(";
-
-            if ( audit.getUserId() != null && audit.getUserId().length() > 0 )
-            {
-                filter += REQUAUTHZID + "=" + SchemaConstants.UID_AT + "=" + audit.getUserId() + "," + userRoot + ")";
-            }
-            else
-            {
-                // have to limit the query to only authorization entries.
-                // TODO: determine why the cn=Manager user is showing up in this search:
-                filter += REQUAUTHZID + "=*)(!(" + REQUAUTHZID + "=cn=Manager," + Config.getInstance().getProperty( GlobalIds.SUFFIX )
-                    + "))";
-
-                // TODO: fix this so filter by only the Fortress AuthZ entries and not the others:
-                if ( audit.isFailedOnly() )
-                {
-                    filter += "(" + REQRESULT + "=" + GlobalIds.AUTHZ_COMPARE_FAILURE_FLAG + ")";
-                }
-            }
+            String filter = getAuthZFilter( audit );
 
             if ( audit.getBeginDate() != null )
             {
@@ -473,47 +462,18 @@ final class AuditDAO extends LdapDataProvider
         List<Bind> auditList = new ArrayList<>();
         LdapConnection ld = null;
         String auditRoot = Config.getInstance().getProperty( AUDIT_ROOT );
-        String userRoot = getRootDn( audit.getContextId(), GlobalIds.USER_ROOT );
 
         try
         {
-            String filter;
+            String filter = getBindFilter( audit );
 
-            if ( audit.getUserId() != null && audit.getUserId().length() > 0 )
+            if ( audit.getBeginDate() != null )
             {
-                filter = GlobalIds.FILTER_PREFIX + ACCESS_BIND_CLASS_NM + ")(" +
-                    REQDN + "=" + SchemaConstants.UID_AT + "=" + audit.getUserId() + "," + userRoot + ")";
-
-                if ( audit.isFailedOnly() )
-                {
-                    filter += "(" + REQRESULT + ">=" + 1 + ")";
-                }
-
-                if ( audit.getBeginDate() != null )
-                {
-                    String szTime = TUtil.encodeGeneralizedTime( audit.getBeginDate() );
-                    filter += "(" + REQEND + ">=" + szTime + ")";
-                }
-
-                filter += ")";
+                String szTime = TUtil.encodeGeneralizedTime( audit.getBeginDate() );
+                filter += "(" + REQEND + ">=" + szTime + ")";
             }
-            else
-            {
-                filter = GlobalIds.FILTER_PREFIX + ACCESS_BIND_CLASS_NM + ")";
-
-                if ( audit.isFailedOnly() )
-                {
-                    filter += "(" + REQRESULT + ">=" + 1 + ")";
-                }
-
-                if ( audit.getBeginDate() != null )
-                {
-                    String szTime = TUtil.encodeGeneralizedTime( audit.getBeginDate() );
-                    filter += "(" + REQEND + ">=" + szTime + ")";
-                }
 
-                filter += ")";
-            }
+            filter += ")";
 
             //log.warn("filter=" + filter);
             ld = getLogConnection();
@@ -614,39 +574,7 @@ final class AuditDAO extends LdapDataProvider
 
         try
         {
-            String filter = "(&(|(objectclass=" + ACCESS_MOD_CLASS_NM + ")";
-            filter += "(objectclass=" + ACCESS_ADD_CLASS_NM + "))";
-
-            if ( StringUtils.isNotEmpty( audit.getDn() ) )
-            {
-                filter += "(" + REQDN + "=" + audit.getDn() + ")";
-            }
-
-            if ( StringUtils.isNotEmpty( audit.getObjName() ) )
-            {
-                filter += "(|(" + REQMOD + "=" + GlobalIds.FT_MODIFIER_CODE + ":= " + audit.getObjName() + ".";
-
-                if ( StringUtils.isNotEmpty( audit.getOpName() ) )
-                {
-                    filter += audit.getOpName();
-                }
-
-                filter += "*)";
-                filter += "(" + REQMOD + "=" + GlobalIds.FT_MODIFIER_CODE + ":+ " + audit.getObjName() + ".";
-
-                if ( StringUtils.isNotEmpty( audit.getOpName() ) )
-                {
-                    filter += audit.getOpName();
-                }
-
-                filter += "*))";
-            }
-
-            if ( StringUtils.isNotEmpty( audit.getInternalUserId() ) )
-            {
-                filter += "(|(" + REQMOD + "=" + GlobalIds.FT_MODIFIER + ":= " + audit.getInternalUserId() + ")";
-                filter += "(" + REQMOD + "=" + GlobalIds.FT_MODIFIER + ":+ " + audit.getInternalUserId() + "))";
-            }
+            String filter = getAdminModFilter( audit );
 
             if ( audit.getBeginDate() != null )
             {
@@ -691,6 +619,403 @@ final class AuditDAO extends LdapDataProvider
     }
 
 
+    /**
+     * Stream the authorization events selected as in {@link #getAllAuthZs(UserAudit)} to the handler, searching the range
+     * from {@link UserAudit#beginDate} to {@link UserAudit#endDate} in concurrent time slices.
+     *
+     * @param audit   contains the search criteria.
+     * @param handler receives the events in time order.
+     * @throws SecurityException if the search fails or is thrown by the handler.
+     */
+    void searchAuthZs( UserAudit audit, AuditHandler<AuthZ> handler ) throws SecurityException
+    {
+        AuditQueryEngine.getInstance().stream( audit.getBeginDate(), audit.getEndDate(),
+            new SliceQuery<AuthZ>( getAuthZFilter( audit ), AUDIT_AUTHZ_ATRS, GlobalErrIds.AUDT_AUTHZ_SEARCH_FAILED )
+            {
+                @Override
+                AuthZ map( Entry le ) throws LdapInvalidAttributeValueException
+                {
+                    return getAuthzEntityFromLdapEntry( le, 0 );
+                }
+            }, sequence( handler ), GlobalErrIds.AUDT_AUTHZ_SEARCH_FAILED );
+    }
+
+
+    /**
+     * Stream the bind events selected as in {@link #searchBinds(UserAudit)} to the handler, searching the range
+     * from {@link UserAudit#beginDate} to {@link UserAudit#endDate} in concurrent time slices.
+     *
+     * @param audit   contains the search criteria.
+     * @param handler receives the events in time order.
+     * @throws SecurityException if the search fails or is thrown by the handler.
+     */
+    void searchBinds( UserAudit audit, AuditHandler<Bind> handler ) throws SecurityException
+    {
+        AuditQueryEngine.getInstance().stream( audit.getBeginDate(), audit.getEndDate(),
+            new SliceQuery<Bind>( getBindFilter( audit ), AUDIT_BIND_ATRS, GlobalErrIds.AUDT_BIND_SEARCH_FAILED )
+            {
+                @Override
+                Bind map( Entry le ) throws LdapInvalidAttributeValueException
+                {
+                    return getBindEntityFromLdapEntry( le, 0 );
+                }
+            }, sequence( handler ), GlobalErrIds.AUDT_BIND_SEARCH_FAILED );
+    }
+
+
+    /**
+     * Stream the modification events selected as in {@link #searchAdminMods(UserAudit)} to the handler, searching the
+     * range from {@link UserAudit#beginDate} to {@link UserAudit#endDate} in concurrent time slices.
+     *
+     * @param audit   contains the search criteria.
+     * @param handler receives the events in time order.
+     * @throws SecurityException if the search fails or is thrown by the handler.
+     */
+    void searchAdminMods( UserAudit audit, AuditHandler<Mod> handler ) throws SecurityException
+    {
+        AuditQueryEngine.getInstance().stream( audit.getBeginDate(), audit.getEndDate(),
+            new SliceQuery<Mod>( getAdminModFilter( audit ), AUDIT_MOD_ATRS, GlobalErrIds.AUDT_MOD_ADMIN_SEARCH_FAILED )
+            {
+                @Override
+                Mod map( Entry le ) throws LdapInvalidAttributeValueException
+                {
+                    return getModEntityFromLdapEntry( le, 0 );
+                }
+            }, sequence( handler ), GlobalErrIds.AUDT_MOD_ADMIN_SEARCH_FAILED );
+    }
+
+
+    /**
+     * Count the authorization events selected as in {@link #getAllAuthZs(UserAudit)}.  The access log has no
+     * aggregation, so each matching entry is read, with only the attribute holding the grouping key, and tallied here.
+     *
+     * @param audit   contains the search criteria.
+     * @param countBy the grouping, one of user, permission or result.
+     * @return number of events for each key.
+     * @throws SecurityException if the search fails.
+     */
+    Map<String, Long> countAuthZs( UserAudit audit, final AuditMgr.CountBy countBy ) throws SecurityException
+    {
+        final String attr;
+        switch ( countBy )
+        {
+            case USER:
+                attr = REQUAUTHZID;
+                break;
+
+            case PERMISSION:
+                attr = REQDN;
+                break;
+
+            default:
+                attr = REQRESULT;
+                break;
+        }
+        return AuditQueryEngine.getInstance().count( audit.getBeginDate(), audit.getEndDate(),
+            new SliceQuery<String>( getAuthZFilter( audit ), new String[]{ attr }, GlobalErrIds.AUDT_AUTHZ_SEARCH_FAILED )
+            {
+                @Override
+                String map( Entry le ) throws LdapInvalidAttributeValueException
+                {
+                    String value = getAttribute( le, attr );
+                    switch ( countBy )
+                    {
+                        case USER:
+                            return AuditUtil.getAuthZId( value );
+
+                        case PERMISSION:
+                            return getPermissionKey( value );
+
+                        default:
+                            return value;
+                    }
+                }
+            }, GlobalErrIds.AUDT_AUTHZ_SEARCH_FAILED );
+    }
+
+
+    /**
+     * Count the bind events selected as in {@link #searchBinds(UserAudit)}.  The access log has no aggregation, so
+     * each matching entry is read, with only the attribute holding the grouping key, and tallied here.
+     *
+     * @param audit   contains the search criteria.
+     * @param countBy the grouping, user or result.
+     * @return number of events for each key.
+     * @throws SecurityException if the search fails.
+     */
+    Map<String, Long> countBinds( UserAudit audit, final AuditMgr.CountBy countBy ) throws SecurityException
+    {
+        final String attr = countBy == AuditMgr.CountBy.USER ? REQDN : REQRESULT;
+        return AuditQueryEngine.getInstance().count( audit.getBeginDate(), audit.getEndDate(),
+            new SliceQuery<String>( getBindFilter( audit ), new String[]{ attr }, GlobalErrIds.AUDT_BIND_SEARCH_FAILED )
+            {
+                @Override
+                String map( Entry le ) throws LdapInvalidAttributeValueException
+                {
+                    String value = getAttribute( le, attr );
+                    return countBy == AuditMgr.CountBy.USER ? AuditUtil.getAuthZId( value ) : value;
+                }
+            }, GlobalErrIds.AUDT_BIND_SEARCH_FAILED );
+    }
+
+
+    /**
+     * Number the events in the order they are handed to the caller, since slices are read concurrently.
+     */
+    private static <T extends FortEntity> AuditHandler<T> sequence( final AuditHandler<T> handler )
+    {
+        return new AuditHandler<T>()
+        {
+            private long sequence = 0;
+
+
+            @Override
+            public boolean handle( T event ) throws SecurityException
+            {
+                event.setSequenceId( sequence++ );
+                return handler.handle( event );
+            }
+        };
+    }
+
+
+    /**
+     * Runs a paged search of one time slice on a log pool connection.
+     *
+     * @param <T> type of result mapped from each entry.
+     */
+    private abstract class SliceQuery<T> implements AuditQueryEngine.Query<T>
+    {
+        private final String filter;
+        private final String[] attrs;
+        private final int errorId;
+
+
+        /**
+         * @param filter  open search filter, less the time clauses and closing parenthesis.
+         * @param attrs   attributes to read.
+         * @param errorId used if the search fails.
+         */
+        SliceQuery( String filter, String[] attrs, int errorId )
+        {
+            this.filter = filter;
+            this.attrs = attrs;
+            this.errorId = errorId;
+        }
+
+
+        abstract T map( Entry le ) throws LdapInvalidAttributeValueException;
+
+
+        @Override
+        public void search( AuditQueryEngine.Slice slice, AuditQueryEngine.Sink<T> sink ) throws SecurityException
+        {
+            String auditRoot = Config.getInstance().getProperty( AUDIT_ROOT );
+            String sliceFilter = filter + getSliceFilter( slice ) + ")";
+            int pageSize = Config.getInstance().getInt( PAGE_SIZE, DEFAULT_PAGE_SIZE );
+            LdapConnection ld = null;
+
+            try
+            {
+                ld = getLogConnection();
+                byte[] cookie = null;
+                do
+                {
+                    try ( SearchCursor searchResults = searchPaged( ld, auditRoot, SearchScope.ONELEVEL, sliceFilter,
+                        attrs, pageSize, cookie ) )
+                    {
+                        while ( searchResults.next() )
+                        {
+                            if ( !sink.add( map( searchResults.getEntry() ) ) )
+                            {
+                                return;
+                            }
+                        }
+                        cookie = getPagedCookie( searchResults );
+                    }
+                }
+                while ( cookie != null );
+            }
+            catch ( LdapException e )
+            {
+                String error = "SliceQuery.search caught LdapException filter=" + sliceFilter + " id=" + e.getMessage();
+                throw new FinderException( errorId, error, e );
+            }
+            catch ( CursorException e )
+            {
+                String error = "SliceQuery.search caught CursorException filter=" + sliceFilter + " id=" + e.getMessage();
+                throw new FinderException( errorId, error, e );
+            }
+            catch ( IOException e )
+            {
+                String error = "SliceQuery.search caught IOException filter=" + sliceFilter + " id=" + e.getMessage();
+                throw new FinderException( errorId, error, e );
+            }
+            finally
+            {
+                closeLogConnection( ld );
+            }
+        }
+    }
+
+
+    /**
+     * Build the authorization search filter, less the time clauses and closing parenthesis.
+     *
+     * @param audit contains the optional userId and failedOnly flag.
+     * @return open filter string.
+     */
+    private String getAuthZFilter( UserAudit audit )
+    {
+        String filter = GlobalIds.FILTER_PREFIX + ACCESS_AUTHZ_CLASS_NM + ")(";
+
+        if ( audit.getUserId() != null && audit.getUserId().length() > 0 )
+        {
+            String userRoot = getRootDn( audit.getContextId(), GlobalIds.USER_ROOT );
+            filter += REQUAUTHZID + "=" + SchemaConstants.UID_AT + "=" + audit.getUserId() + "," + userRoot + ")";
+        }
+        else
+        {
+            // have to limit the query to only authorization entries.
+            // TODO: determine why the cn=Manager user is showing up in this search:
+            filter += REQUAUTHZID + "=*)(!(" + REQUAUTHZID + "=cn=Manager," + Config.getInstance().getProperty( GlobalIds.SUFFIX )
+                + "))";
+
+            // TODO: fix this so filter by only the Fortress AuthZ entries and not the others:
+            if ( audit.isFailedOnly() )
+            {
+                filter += "(" + REQRESULT + "=" + GlobalIds.AUTHZ_COMPARE_FAILURE_FLAG + ")";
+            }
+        }
+
+        return filter;
+    }
+
+
+    /**
+     * Build the bind search filter, less the time clauses and closing parenthesis.
+     *
+     * @param audit contains the optional userId and failedOnly flag.
+     * @return open filter string.
+     */
+    private String getBindFilter( UserAudit audit )
+    {
+        String filter = GlobalIds.FILTER_PREFIX + ACCESS_BIND_CLASS_NM + ")";
+
+        if ( audit.getUserId() != null && audit.getUserId().length() > 0 )
+        {
+            String userRoot = getRootDn( audit.getContextId(), GlobalIds.USER_ROOT );
+            filter += "(" + REQDN + "=" + SchemaConstants.UID_AT + "=" + audit.getUserId() + "," + userRoot + ")";
+        }
+
+        if ( audit.isFailedOnly() )
+        {
+            filter += "(" + REQRESULT + ">=" + 1 + ")";
+        }
+
+        return filter;
+    }
+
+
+    /**
+     * Build the admin modification search filter, less the time clauses and closing parenthesis.
+     *
+     * @param audit contains the optional dn, objName, opName and internalUserId.
+     * @return open filter string.
+     */
+    private String getAdminModFilter( UserAudit audit )
+    {
+        String filter = "(&(|(objectclass=" + ACCESS_MOD_CLASS_NM + ")";
+        filter += "(objectclass=" + ACCESS_ADD_CLASS_NM + "))";
+
+        if ( StringUtils.isNotEmpty( audit.getDn() ) )
+        {
+            filter += "(" + REQDN + "=" + audit.getDn() + ")";
+        }
+
+        if ( StringUtils.isNotEmpty( audit.getObjName() ) )
+        {
+            filter += "(|(" + REQMOD + "=" + GlobalIds.FT_MODIFIER_CODE + ":= " + audit.getObjName() + ".";
+
+            if ( StringUtils.isNotEmpty( audit.getOpName() ) )
+            {
+                filter += audit.getOpName();
+            }
+
+            filter += "*)";
+            filter += "(" + REQMOD + "=" + GlobalIds.FT_MODIFIER_CODE + ":+ " + audit.getObjName() + ".";
+
+            if ( StringUtils.isNotEmpty( audit.getOpName() ) )
+            {
+                filter += audit.getOpName();
+            }
+
+            filter += "*))";
+        }
+
+        if ( StringUtils.isNotEmpty( audit.getInternalUserId() ) )
+        {
+            filter += "(|(" + REQMOD + "=" + GlobalIds.FT_MODIFIER + ":= " + audit.getInternalUserId() + ")";
+            filter += "(" + REQMOD + "=" + GlobalIds.FT_MODIFIER + ":+ " + audit.getInternalUserId() + "))";
+        }
+
+        return filter;
+    }
+
+
+    /**
+     * Build the time clauses for one slice of a sliced search.
+     *
+     * @param slice contains the time bounds.
+     * @return filter clauses, empty if the slice is unbounded.
+     */
+    private static String getSliceFilter( AuditQueryEngine.Slice slice )
+    {
+        String filter = "";
+
+        if ( slice.getBegin() != null )
+        {
+            filter += "(" + REQEND + ">=" + TUtil.encodeGeneralizedTime( slice.getBegin() ) + ")";
+        }
+
+        if ( slice.getEnd() != null )
+        {
+            String szTime = TUtil.encodeGeneralizedTime( slice.getEnd() );
+            // only the last slice includes its end time, so events on a slice boundary are returned once:
+            filter += slice.isLast() ? "(" + REQEND + "<=" + szTime + ")" : "(!(" + REQEND + ">=" + szTime + "))";
+        }
+
+        return filter;
+    }
+
+
+    /**
+     * Parse the objName.opName of the permission checked from the reqDN of an authorization event, e.g.
+     * ftOpNm=opName+ftObjId=objId,ftObjNm=objName,ou=Permissions,dc=example,dc=com.
+     *
+     * @param reqDn raw slapd access log data.
+     * @return objName.opName or null if the dn is not a permission.
+     */
+    private static String getPermissionKey( String reqDn )
+    {
+        String key = null;
+        if ( reqDn != null )
+        {
+            String[] rdns = reqDn.split( ",", 3 );
+            if ( rdns.length > 1 )
+            {
+                String opName = AuditUtil.getAuthZId( rdns[0].split( "\\+" )[0] );
+                String objName = AuditUtil.getAuthZId( rdns[1] );
+                if ( opName != null && objName != null )
+                {
+                    key = objName + "." + opName;
+                }
+            }
+        }
+        return key;
+    }
+
+
     /**
      * @param le
      * @return
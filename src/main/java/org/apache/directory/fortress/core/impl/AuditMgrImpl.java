@@ -21,9 +21,11 @@ package org.apache.directory.fortress.core.impl;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.directory.fortress.annotation.AdminPermissionOperation;
+import org.apache.directory.fortress.core.AuditHandler;
 import org.apache.directory.fortress.core.AuditMgr;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.ReviewMgr;
@@ -204,4 +206,85 @@ public class AuditMgrImpl extends Manageable implements AuditMgr, Serializable
         checkAccess(CLS_NM, methodName);
         return auditP.searchInvalidAuthNs(uAudit);
     }
-}
\ No newline at end of file
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public void searchAuthZs(UserAudit uAudit, AuditHandler<AuthZ> handler)
+        throws SecurityException
+    {
+        String methodName = "searchAuthZs";
+        assertContext(CLS_NM, methodName, uAudit, GlobalErrIds.AUDT_INPUT_NULL);
+        checkAccess(CLS_NM, methodName);
+        auditP.searchAuthZs(uAudit, handler);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public void searchBinds(UserAudit uAudit, AuditHandler<Bind> handler)
+        throws SecurityException
+    {
+        String methodName = "searchBinds";
+        assertContext(CLS_NM, methodName, uAudit, GlobalErrIds.AUDT_INPUT_NULL);
+        checkAccess(CLS_NM, methodName);
+        auditP.searchBinds(uAudit, handler);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public void searchAdminMods(UserAudit uAudit, AuditHandler<Mod> handler)
+        throws SecurityException
+    {
+        String methodName = "searchAdminMods";
+        assertContext(CLS_NM, methodName, uAudit, GlobalErrIds.AUDT_INPUT_NULL);
+        checkAccess(CLS_NM, methodName);
+        if ( StringUtils.isNotEmpty( uAudit.getUserId() ))
+        {
+            ReviewMgr rMgr = ReviewMgrFactory.createInstance(this.contextId);
+            User user = rMgr.readUser(new User(uAudit.getUserId()));
+            uAudit.setInternalUserId(user.getInternalId());
+        }
+        auditP.searchAdminMods(uAudit, handler);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public Map<String, Long> countAuthZs(UserAudit uAudit, CountBy countBy)
+        throws SecurityException
+    {
+        String methodName = "countAuthZs";
+        assertContext(CLS_NM, methodName, uAudit, GlobalErrIds.AUDT_INPUT_NULL);
+        checkAccess(CLS_NM, methodName);
+        return auditP.countAuthZs(uAudit, countBy);
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public Map<String, Long> countBinds(UserAudit uAudit, CountBy countBy)
+        throws SecurityException
+    {
+        String methodName = "countBinds";
+        assertContext(CLS_NM, methodName, uAudit, GlobalErrIds.AUDT_INPUT_NULL);
+        checkAccess(CLS_NM, methodName);
+        return auditP.countBinds(uAudit, countBy);
+    }
+}
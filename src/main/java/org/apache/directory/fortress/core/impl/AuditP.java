@@ -21,12 +21,19 @@ package org.apache.directory.fortress.core.impl;
 
 
 import java.util.List;
+import java.util.Map;
 
+import org.apache.directory.fortress.core.AuditHandler;
+import org.apache.directory.fortress.core.AuditMgr;
+import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.ValidationException;
 import org.apache.directory.fortress.core.model.AuthZ;
 import org.apache.directory.fortress.core.model.Bind;
 import org.apache.directory.fortress.core.model.Mod;
 import org.apache.directory.fortress.core.model.UserAudit;
+import org.apache.directory.fortress.core.util.VUtil;
+import org.apache.directory.fortress.core.util.audit.AuditSinkMgr;
 
 
 /**
@@ -36,6 +43,8 @@ import org.apache.directory.fortress.core.model.UserAudit;
  * The audit data is passed using {@link org.apache.directory.fortress.core.model.AuthZ} class.  This class does perform simple data validations to ensure data reasonability and
  * the required fields are present..<BR>
  * The methods in this class are called by {@link AuditMgrImpl} methods during audit log interrogations.
+ * Authorization events are read from the {@link org.apache.directory.fortress.core.util.audit.AuditSink} instead of the
+ * access log when one is configured, see {@link AuditSinkMgr}.
  * <p>
  * Class will throw {@link SecurityException} to caller in the event of security policy, data constraint violation or system
  * error internal to DAO object. This class will forward DAO exception {@link org.apache.directory.fortress.core.FinderException},
@@ -50,7 +59,9 @@ import org.apache.directory.fortress.core.model.UserAudit;
  */
 final class AuditP
 {
+    private static final String CLS_NM = AuditP.class.getName();
     private AuditDAO aDao = new AuditDAO();
+    private AuditSinkDAO sDao = new AuditSinkDAO();
 
 
     /**
@@ -64,6 +75,10 @@ final class AuditP
      */
     List<AuthZ> getAuthZs( UserAudit uAudit ) throws SecurityException
     {
+        if ( AuditSinkMgr.getInstance().isEnabled() )
+        {
+            return sDao.searchAuthZs( uAudit );
+        }
         return aDao.getAllAuthZs( uAudit );
     }
 
@@ -79,6 +94,10 @@ final class AuditP
      */
     List<AuthZ> searchAuthZs( UserAudit uAudit ) throws SecurityException
     {
+        if ( AuditSinkMgr.getInstance().isEnabled() )
+        {
+            return sDao.searchAuthZs( uAudit );
+        }
         return aDao.searchAuthZs( uAudit );
     }
 
@@ -142,4 +161,96 @@ final class AuditP
     {
         return aDao.searchInvalidAuthNs( uAudit );
     }
+
+
+    /**
+     * Stream the authorization events selected as in {@link #getAuthZs(UserAudit)} over the range
+     * {@link UserAudit#beginDate} to {@link UserAudit#endDate} to the handler.
+     *
+     * @param uAudit  This entity is instantiated and populated before invocation.
+     * @param handler receives each AuthZ event in time order.
+     * @throws SecurityException if a runtime system error occurs.
+     */
+    void searchAuthZs( UserAudit uAudit, AuditHandler<AuthZ> handler ) throws SecurityException
+    {
+        VUtil.assertNotNull( handler, GlobalErrIds.AUDT_HANDLER_NULL, CLS_NM + ".searchAuthZs" );
+        if ( AuditSinkMgr.getInstance().isEnabled() )
+        {
+            sDao.searchAuthZs( uAudit, handler );
+        }
+        else
+        {
+            aDao.searchAuthZs( uAudit, handler );
+        }
+    }
+
+
+    /**
+     * Stream the authentication events selected as in {@link #searchBinds(UserAudit)} over the range
+     * {@link UserAudit#beginDate} to {@link UserAudit#endDate} to the handler.
+     *
+     * @param uAudit  This entity is instantiated and populated before invocation.
+     * @param handler receives each Bind event in time order.
+     * @throws SecurityException if a runtime system error occurs.
+     */
+    void searchBinds( UserAudit uAudit, AuditHandler<Bind> handler ) throws SecurityException
+    {
+        VUtil.assertNotNull( handler, GlobalErrIds.AUDT_HANDLER_NULL, CLS_NM + ".searchBinds" );
+        aDao.searchBinds( uAudit, handler );
+    }
+
+
+    /**
+     * Stream the admin operation events selected as in {@link #searchAdminMods(UserAudit)} over the range
+     * {@link UserAudit#beginDate} to {@link UserAudit#endDate} to the handler.
+     *
+     * @param uAudit  This entity is instantiated and populated before invocation.
+     * @param handler receives each Mod event in time order.
+     * @throws SecurityException if a runtime system error occurs.
+     */
+    void searchAdminMods( UserAudit uAudit, AuditHandler<Mod> handler ) throws SecurityException
+    {
+        VUtil.assertNotNull( handler, GlobalErrIds.AUDT_HANDLER_NULL, CLS_NM + ".searchAdminMods" );
+        aDao.searchAdminMods( uAudit, handler );
+    }
+
+
+    /**
+     * Count the authorization events selected as in {@link #getAuthZs(UserAudit)} over the range
+     * {@link UserAudit#beginDate} to {@link UserAudit#endDate}.
+     *
+     * @param uAudit  This entity is instantiated and populated before invocation.
+     * @param countBy grouping of the counts.
+     * @return number of events keyed by userId, objName.opName or result code.
+     * @throws SecurityException if a runtime system error occurs.
+     */
+    Map<String, Long> countAuthZs( UserAudit uAudit, AuditMgr.CountBy countBy ) throws SecurityException
+    {
+        VUtil.assertNotNull( countBy, GlobalErrIds.AUDT_COUNT_BY_INVALID, CLS_NM + ".countAuthZs" );
+        if ( AuditSinkMgr.getInstance().isEnabled() )
+        {
+            return sDao.countAuthZs( uAudit, countBy );
+        }
+        return aDao.countAuthZs( uAudit, countBy );
+    }
+
+
+    /**
+     * Count the authentication events selected as in {@link #searchBinds(UserAudit)} over the range
+     * {@link UserAudit#beginDate} to {@link UserAudit#endDate}.
+     *
+     * @param uAudit  This entity is instantiated and populated before invocation.
+     * @param countBy grouping of the counts, user or result.
+     * @return number of events keyed by userId or result code.
+     * @throws SecurityException if a runtime system error occurs.
+     */
+    Map<String, Long> countBinds( UserAudit uAudit, AuditMgr.CountBy countBy ) throws SecurityException
+    {
+        if ( countBy == null || countBy == AuditMgr.CountBy.PERMISSION )
+        {
+            String error = CLS_NM + ".countBinds invalid countBy [" + countBy + "]";
+            throw new ValidationException( GlobalErrIds.AUDT_COUNT_BY_INVALID, error );
+        }
+        return aDao.countBinds( uAudit, countBy );
+    }
 }
@@ -0,0 +1,436 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.directory.fortress.core.AuditHandler;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Runs audit log searches over long time ranges by splitting the range into time slices that are searched concurrently,
+ * each on its own log pool connection.
+ * <p>
+ * {@link #stream} hands events to the caller's {@link AuditHandler} as they arrive.  Slices are consumed in time order
+ * and each slice's events in the order the server returns them, while later slices are read ahead into bounded queues,
+ * so memory use is limited to {@code audit.query.threads} times {@code audit.query.queue.size} events regardless of the
+ * size of the range.  {@link #count} aggregates each slice into its own map and merges the maps when all slices finish.
+ * <p>
+ * The slice length is {@code audit.query.slice.minutes} (default 1440), widened if needed so a range never has more
+ * than {@code audit.query.max.slices} (default 256) slices.  A search with no begin date is run as one slice.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class AuditQueryEngine
+{
+    private static final String CLS_NM = AuditQueryEngine.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String SLICE_MINUTES = "audit.query.slice.minutes";
+    private static final String MAX_SLICES = "audit.query.max.slices";
+    private static final String THREADS = "audit.query.threads";
+    private static final String QUEUE_SIZE = "audit.query.queue.size";
+    private static final int DEFAULT_SLICE_MINUTES = 1440;
+    private static final int DEFAULT_MAX_SLICES = 256;
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final long OFFER_WAIT_MILLIS = 100;
+    // marks the end of a slice's events:
+    private static final Object END = new Object();
+    private static volatile AuditQueryEngine sINSTANCE = null;
+
+    private final long sliceMillis;
+    private final int maxSlices;
+    private final int queueSize;
+    private final ExecutorService executor;
+
+
+    /**
+     * Searches one slice of the time range.
+     *
+     * @param <T> type of result produced.
+     */
+    interface Query<T>
+    {
+        /**
+         * Pass every result within the slice to the sink, stopping early if the sink returns false.
+         *
+         * @param slice contains the time bounds to add to the search filter.
+         * @param sink  receives the results in order.
+         * @throws SecurityException if the search fails.
+         */
+        void search( Slice slice, Sink<T> sink ) throws SecurityException;
+    }
+
+
+    /**
+     * Receives the results of one slice.
+     *
+     * @param <T> type of result.
+     */
+    interface Sink<T>
+    {
+        /**
+         * @param result one search result.
+         * @return false if the search has been abandoned and the slice should stop.
+         */
+        boolean add( T result );
+    }
+
+
+    /**
+     * Time bounds of one slice.  Begin is inclusive.  End is exclusive, except on the last slice of a range where it is
+     * the inclusive end of the whole search.  Either may be null for no bound.
+     */
+    static final class Slice
+    {
+        private final Date begin;
+        private final Date end;
+        private final boolean last;
+
+
+        Slice( Date begin, Date end, boolean last )
+        {
+            this.begin = begin;
+            this.end = end;
+            this.last = last;
+        }
+
+
+        Date getBegin()
+        {
+            return begin;
+        }
+
+
+        Date getEnd()
+        {
+            return end;
+        }
+
+
+        boolean isLast()
+        {
+            return last;
+        }
+    }
+
+
+    /**
+     * Holds the failure of a slice so it can be rethrown on the caller's thread.
+     */
+    private static final class Failure
+    {
+        private final SecurityException exception;
+
+
+        Failure( SecurityException exception )
+        {
+            this.exception = exception;
+        }
+    }
+
+
+    static AuditQueryEngine getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( AuditQueryEngine.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new AuditQueryEngine();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private AuditQueryEngine()
+    {
+        Config cfg = Config.getInstance();
+        sliceMillis = TimeUnit.MINUTES.toMillis( Math.max( 1, cfg.getInt( SLICE_MINUTES, DEFAULT_SLICE_MINUTES ) ) );
+        maxSlices = Math.max( 1, cfg.getInt( MAX_SLICES, DEFAULT_MAX_SLICES ) );
+        queueSize = Math.max( 1, cfg.getInt( QUEUE_SIZE, DEFAULT_QUEUE_SIZE ) );
+        int threads = Math.max( 1, cfg.getInt( THREADS, DEFAULT_THREADS ) );
+        executor = Executors.newFixedThreadPool( threads, ThreadUtil.newThreadFactory( "fortress-audit-query-" ) );
+        LOG.info( "AuditQueryEngine slice minutes [{}] max slices [{}] threads [{}] queue size [{}]",
+            TimeUnit.MILLISECONDS.toMinutes( sliceMillis ), maxSlices, threads, queueSize );
+    }
+
+
+    /**
+     * Split the range into slices.
+     *
+     * @param begin start of the range, null for a single unbounded slice.
+     * @param end   inclusive end of the range, null for no upper bound.
+     * @return slices in time order.
+     */
+    List<Slice> getSlices( Date begin, Date end )
+    {
+        List<Slice> slices = new ArrayList<>();
+        if ( begin == null )
+        {
+            slices.add( new Slice( null, end, true ) );
+            return slices;
+        }
+        long from = begin.getTime();
+        long to = end != null ? end.getTime() : System.currentTimeMillis();
+        long length = sliceMillis;
+        if ( ( to - from ) / length >= maxSlices )
+        {
+            length = ( to - from ) / maxSlices + 1;
+        }
+        while ( to - from > length )
+        {
+            slices.add( new Slice( new Date( from ), new Date( from + length ), false ) );
+            from += length;
+        }
+        // the last slice is left open when no end was given so events logged during the search are not lost:
+        slices.add( new Slice( new Date( from ), end, true ) );
+        return slices;
+    }
+
+
+    /**
+     * Search every slice of the range concurrently and pass the results to the handler in time order, on the caller's
+     * thread.  The search stops when the handler returns false or throws.
+     *
+     * @param begin   start of the range, may be null.
+     * @param end     inclusive end of the range, may be null.
+     * @param query   searches one slice.
+     * @param handler receives the results.
+     * @param errorId used if a slice fails with a runtime error or the caller is interrupted.
+     * @param <T>     type of result.
+     * @throws SecurityException if a slice search fails or is thrown by the handler.
+     */
+    @SuppressWarnings("unchecked")
+    <T> void stream( Date begin, Date end, final Query<T> query, AuditHandler<T> handler, final int errorId )
+        throws SecurityException
+    {
+        final AtomicBoolean stopped = new AtomicBoolean();
+        List<BlockingQueue<Object>> queues = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try
+        {
+            for ( final Slice slice : getSlices( begin, end ) )
+            {
+                final BlockingQueue<Object> queue = new ArrayBlockingQueue<>( queueSize );
+                queues.add( queue );
+                futures.add( executor.submit( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        Object last = END;
+                        try
+                        {
+                            if ( !stopped.get() )
+                            {
+                                query.search( slice, new Sink<T>()
+                                {
+                                    @Override
+                                    public boolean add( T result )
+                                    {
+                                        return offer( queue, result, stopped );
+                                    }
+                                } );
+                            }
+                        }
+                        catch ( SecurityException e )
+                        {
+                            last = new Failure( e );
+                        }
+                        catch ( RuntimeException e )
+                        {
+                            last = new Failure( new FinderException( errorId, CLS_NM + ".stream slice failed", e ) );
+                        }
+                        offer( queue, last, stopped );
+                    }
+                } ) );
+            }
+            for ( BlockingQueue<Object> queue : queues )
+            {
+                Object item;
+                while ( ( item = take( queue, errorId ) ) != END )
+                {
+                    if ( item instanceof Failure )
+                    {
+                        throw ( ( Failure ) item ).exception;
+                    }
+                    if ( !handler.handle( ( T ) item ) )
+                    {
+                        return;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            // releases the slices still reading ahead:
+            stopped.set( true );
+            for ( Future<?> future : futures )
+            {
+                future.cancel( false );
+            }
+        }
+    }
+
+
+    /**
+     * Search every slice of the range concurrently and count the keys produced.
+     *
+     * @param begin   start of the range, may be null.
+     * @param end     inclusive end of the range, may be null.
+     * @param query   searches one slice, producing the grouping key of each event, null keys are skipped.
+     * @param errorId used if a slice fails with a runtime error or the caller is interrupted.
+     * @return number of events for each key.
+     * @throws SecurityException if a slice search fails.
+     */
+    Map<String, Long> count( Date begin, Date end, final Query<String> query, int errorId ) throws SecurityException
+    {
+        final AtomicBoolean stopped = new AtomicBoolean();
+        List<Future<Map<String, Long>>> futures = new ArrayList<>();
+        Map<String, Long> totals = new HashMap<>();
+        try
+        {
+            for ( final Slice slice : getSlices( begin, end ) )
+            {
+                futures.add( executor.submit( new Callable<Map<String, Long>>()
+                {
+                    @Override
+                    public Map<String, Long> call() throws SecurityException
+                    {
+                        final Map<String, Long> counts = new HashMap<>();
+                        query.search( slice, new Sink<String>()
+                        {
+                            @Override
+                            public boolean add( String key )
+                            {
+                                increment( counts, key, 1 );
+                                return !stopped.get();
+                            }
+                        } );
+                        return counts;
+                    }
+                } ) );
+            }
+            for ( Future<Map<String, Long>> future : futures )
+            {
+                for ( Map.Entry<String, Long> entry : future.get().entrySet() )
+                {
+                    increment( totals, entry.getKey(), entry.getValue() );
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new FinderException( errorId, CLS_NM + ".count interrupted", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof SecurityException )
+            {
+                throw ( SecurityException ) e.getCause();
+            }
+            throw new FinderException( errorId, CLS_NM + ".count slice failed", e );
+        }
+        finally
+        {
+            // interrupting a slice could close its pooled connection mid read, the flag ends it at the next entry:
+            stopped.set( true );
+            for ( Future<Map<String, Long>> future : futures )
+            {
+                future.cancel( false );
+            }
+        }
+        return totals;
+    }
+
+
+    private static void increment( Map<String, Long> counts, String key, long amount )
+    {
+        if ( key != null )
+        {
+            Long count = counts.get( key );
+            counts.put( key, count == null ? amount : count + amount );
+        }
+    }
+
+
+    /**
+     * Wait for room in the queue, giving up if the search is abandoned.
+     */
+    private static boolean offer( BlockingQueue<Object> queue, Object item, AtomicBoolean stopped )
+    {
+        try
+        {
+            while ( !stopped.get() )
+            {
+                if ( queue.offer( item, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS ) )
+                {
+                    return true;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+
+    private static Object take( BlockingQueue<Object> queue, int errorId ) throws FinderException
+    {
+        try
+        {
+            return queue.take();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new FinderException( errorId, CLS_NM + ".stream interrupted", e );
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.fortress.core.AuditHandler;
+import org.apache.directory.fortress.core.AuditMgr;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.ldap.LdapDataProvider;
+import org.apache.directory.fortress.core.model.AuthZ;
+import org.apache.directory.fortress.core.model.ObjectFactory;
+import org.apache.directory.fortress.core.model.UserAudit;
+import org.apache.directory.fortress.core.util.audit.AuditSinkMgr;
+import org.apache.directory.fortress.core.util.audit.AuthZRecord;
+import org.apache.directory.fortress.core.util.time.TUtil;
+
+
+/**
+ * This class reads authorization events from the {@link org.apache.directory.fortress.core.util.audit.AuditSink}
+ * configured with {@code audit.sink}, and returns them as {@link AuthZ} entities shaped like the ones read from the
+ * OpenLDAP access log by {@link AuditDAO}, so callers of {@link AuditMgr} see the same data whichever is in use.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class AuditSinkDAO extends LdapDataProvider
+{
+    private static final String ACCESS_AUTHZ_CLASS_NM = "auditCompare";
+    private static final String COMPARE = "compare";
+    private static final String COMPARE_TRUE = "6";
+    private static final String COMPARE_FALSE = String.valueOf( GlobalIds.AUTHZ_COMPARE_FAILURE_FLAG );
+
+
+    /**
+     * @param audit contains the search criteria.
+     * @return the matching events in the order they were recorded.
+     * @throws SecurityException if the sink cannot be read.
+     */
+    List<AuthZ> searchAuthZs( UserAudit audit ) throws SecurityException
+    {
+        final List<AuthZ> authZs = new ArrayList<>();
+        searchAuthZs( audit, new AuditHandler<AuthZ>()
+        {
+            @Override
+            public boolean handle( AuthZ authZ )
+            {
+                authZs.add( authZ );
+                return true;
+            }
+        } );
+        return authZs;
+    }
+
+
+    /**
+     * @param audit   contains the search criteria.
+     * @param handler receives the matching events in the order they were recorded.
+     * @throws SecurityException if the sink cannot be read or is thrown by the handler.
+     */
+    void searchAuthZs( final UserAudit audit, final AuditHandler<AuthZ> handler ) throws SecurityException
+    {
+        AuditSinkMgr.getInstance().getSink().searchAuthZs( audit, new AuditHandler<AuthZRecord>()
+        {
+            private long sequence = 0;
+
+
+            @Override
+            public boolean handle( AuthZRecord record ) throws SecurityException
+            {
+                return handler.handle( getAuthZEntity( record, audit.getContextId(), sequence++ ) );
+            }
+        } );
+    }
+
+
+    /**
+     * @param audit   contains the search criteria.
+     * @param countBy the grouping.
+     * @return number of events keyed by userId, objName.opName or result code.
+     * @throws SecurityException if the sink cannot be read.
+     */
+    Map<String, Long> countAuthZs( UserAudit audit, final AuditMgr.CountBy countBy ) throws SecurityException
+    {
+        final Map<String, Long> counts = new HashMap<>();
+        AuditSinkMgr.getInstance().getSink().searchAuthZs( audit, new AuditHandler<AuthZRecord>()
+        {
+            @Override
+            public boolean handle( AuthZRecord record )
+            {
+                String key;
+                switch ( countBy )
+                {
+                    case USER:
+                        key = record.getUserId();
+                        break;
+
+                    case PERMISSION:
+                        key = record.getObjName() + "." + record.getOpName();
+                        break;
+
+                    default:
+                        key = record.isGranted() ? COMPARE_TRUE : COMPARE_FALSE;
+                        break;
+                }
+                Long count = counts.get( key );
+                counts.put( key, count == null ? 1 : count + 1 );
+                return true;
+            }
+        } );
+        return counts;
+    }
+
+
+    private AuthZ getAuthZEntity( AuthZRecord record, String contextId, long sequence )
+    {
+        String permRoot = getRootDn( contextId, record.isAdmin() ? GlobalIds.ADMIN_PERM_ROOT : GlobalIds.PERM_ROOT );
+        String userRoot = getRootDn( contextId, GlobalIds.USER_ROOT );
+        String time = TUtil.encodeGeneralizedTime( new Date( record.getTimestamp() ) );
+        AuthZ authZ = new ObjectFactory().createAuthZ();
+        authZ.setSequenceId( sequence );
+        authZ.setObjectClass( ACCESS_AUTHZ_CLASS_NM );
+        authZ.setReqType( COMPARE );
+        authZ.setReqAuthzID( SchemaConstants.UID_AT + "=" + record.getUserId() + "," + userRoot );
+        authZ.setReqDN( PermDAO.getOpRdn( record.getOpName(), record.getObjId() ) + "," + GlobalIds.POBJ_NAME + "="
+            + record.getObjName() + "," + permRoot );
+        authZ.setReqAssertion( GlobalIds.POP_NAME + "=" + record.getOpName()
+            + ( record.isGranted() ? "" : GlobalIds.FAILED_AUTHZ_INDICATOR ) );
+        authZ.setReqResult( record.isGranted() ? COMPARE_TRUE : COMPARE_FALSE );
+        authZ.setReqStart( time );
+        authZ.setReqEnd( time );
+        return authZ;
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Follows the changes made to the directory by other processes and applies them to this process's caches, so a change
+ * made on one node is seen by the others within moments rather than when their cache entries expire.  With the feed
+ * running the cache time to live, and {@code hierarchy.refresh.interval}, only bound how long a change missed by the feed
+ * can go unseen, and may be raised accordingly.  Enable with {@code changefeed.enable=true}.
+ * <p>
+ * One background thread runs a {@link ChangeFeedDAO} search below {@code changefeed.base} (default the suffix) matching
+ * {@code changefeed.filter} (default all entries), using {@code changefeed.mode} {@code syncrepl} (default, RFC 4533) or
+ * {@code psearch} (persistent search).  Each changed DN is handed to a {@link ChangeRouter}, which updates the caches
+ * holding that entry.  If the search fails it is restarted after {@code changefeed.retry.interval} seconds (default 10),
+ * resuming from the last syncrepl cookie.  Whenever changes may have been missed, on a persistent search restart or when
+ * the server can't resume, every cache is dropped.
+ * <p>
+ * The feed is started when the {@link CacheMgr} is created, or by {@link #start()}.  Changes made by this process are reported too
+ * and applied again, which is harmless.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class ChangeFeed
+{
+    private static final String CLS_NM = ChangeFeed.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String ENABLE = "changefeed.enable";
+    private static final String MODE = "changefeed.mode";
+    private static final String BASE = "changefeed.base";
+    private static final String FILTER = "changefeed.filter";
+    private static final String RETRY_INTERVAL = "changefeed.retry.interval";
+    private static final String DEFAULT_FILTER = "(objectClass=*)";
+    private static final int DEFAULT_RETRY_INTERVAL = 10;
+    private static volatile ChangeFeed sINSTANCE = null;
+
+    private final boolean isEnabled;
+    private final ChangeFeedDAO.Mode mode;
+    private final String baseDn;
+    private final String filter;
+    private final long retryMillis;
+    private final ChangeRouter router = ChangeRouter.getInstance();
+    private final ChangeFeedDAO dao = new ChangeFeedDAO();
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean connected;
+    // guarded by this:
+    private Thread thread;
+    // used only by the feed thread:
+    private byte[] cookie;
+
+
+    /**
+     * Create or return the change feed for this process.
+     *
+     * @return the change feed.
+     */
+    public static ChangeFeed getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( ChangeFeed.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new ChangeFeed();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private ChangeFeed()
+    {
+        Config cfg = Config.getInstance();
+        isEnabled = cfg.getBoolean( ENABLE, false );
+        mode = "psearch".equalsIgnoreCase( cfg.getProperty( MODE ) ) ? ChangeFeedDAO.Mode.PSEARCH :
+            ChangeFeedDAO.Mode.SYNCREPL;
+        baseDn = cfg.getProperty( BASE, cfg.getProperty( GlobalIds.SUFFIX ) );
+        filter = cfg.getProperty( FILTER, DEFAULT_FILTER );
+        retryMillis = TimeUnit.SECONDS.toMillis( Math.max( 1, cfg.getInt( RETRY_INTERVAL, DEFAULT_RETRY_INTERVAL ) ) );
+        LOG.info( "ChangeFeed enabled [{}] mode [{}] base [{}] filter [{}]", isEnabled, mode, baseDn, filter );
+    }
+
+
+    /**
+     * @return true if {@code changefeed.enable} is true.
+     */
+    public boolean isEnabled()
+    {
+        return isEnabled;
+    }
+
+
+    /**
+     * Start following changes, if enabled and not already started.
+     */
+    public synchronized void start()
+    {
+        if ( !isEnabled || thread != null || StringUtils.isEmpty( baseDn ) )
+        {
+            return;
+        }
+        running = true;
+        thread = ThreadUtil.newThreadFactory( "fortress-changefeed-" ).newThread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                follow();
+            }
+        } );
+        thread.start();
+    }
+
+
+    /**
+     * Stop following changes.  The caches are no longer updated with changes made by other processes.
+     */
+    public synchronized void stop()
+    {
+        if ( thread == null )
+        {
+            return;
+        }
+        running = false;
+        dao.close();
+        thread.interrupt();
+        thread = null;
+        LOG.info( "stop changes [{}] resyncs [{}] failures [{}]", changes.get(), resyncs.get(), failures.get() );
+    }
+
+
+    /**
+     * @return true if the change search is currently running.
+     */
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+
+    /**
+     * @return number of changes received.
+     */
+    public long getChangeCount()
+    {
+        return changes.get();
+    }
+
+
+    /**
+     * @return number of times every cache was dropped because changes may have been missed.
+     */
+    public long getResyncCount()
+    {
+        return resyncs.get();
+    }
+
+
+    /**
+     * @return number of times the change search failed and was restarted.
+     */
+    public long getFailureCount()
+    {
+        return failures.get();
+    }
+
+
+    /**
+     * @return maps the changes onto the caches, and tells its listeners about them.
+     */
+    ChangeRouter getRouter()
+    {
+        return router;
+    }
+
+
+    private void follow()
+    {
+        boolean isRestart = false;
+        while ( running )
+        {
+            // a restart without a resume point has missed the changes made while disconnected:
+            boolean isMissed = isRestart && ( mode == ChangeFeedDAO.Mode.PSEARCH || cookie == null );
+            try
+            {
+                dao.listen( mode, baseDn, filter, mode == ChangeFeedDAO.Mode.SYNCREPL ? cookie : null, new Receiver(
+                    isMissed ) );
+            }
+            catch ( SecurityException | RuntimeException e )
+            {
+                if ( !running )
+                {
+                    break;
+                }
+                failures.incrementAndGet();
+                LOG.warn( "follow {} restarting in [{}] ms, caught {}", mode, retryMillis, e.toString() );
+            }
+            finally
+            {
+                connected = false;
+            }
+            isRestart = true;
+            try
+            {
+                Thread.sleep( retryMillis );
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        LOG.info( "follow {} stopped", mode );
+    }
+
+
+    private void resync()
+    {
+        resyncs.incrementAndGet();
+        router.resync();
+    }
+
+
+    /**
+     * Applies the changes of one run of the search.
+     */
+    private final class Receiver implements ChangeFeedDAO.Handler
+    {
+        private boolean isMissed;
+
+
+        Receiver( boolean isMissed )
+        {
+            this.isMissed = isMissed;
+        }
+
+
+        @Override
+        public void started()
+        {
+            connected = true;
+            if ( isMissed )
+            {
+                // dropped once the search is running, so no change can fall in between:
+                resync();
+            }
+        }
+
+
+        @Override
+        public void changed( final String dn, final boolean deleted )
+        {
+            changes.incrementAndGet();
+            // every process follows the directory itself, so this isn't published on the invalidation bus:
+            CacheMgr.getInstance().applyLocally( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    router.changed( dn, deleted );
+                }
+            } );
+        }
+
+
+        @Override
+        public void cookie( byte[] value )
+        {
+            cookie = value;
+        }
+
+
+        @Override
+        public void missed()
+        {
+            if ( !isMissed )
+            {
+                isMissed = true;
+                resync();
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.io.IOException;
+
+import org.apache.directory.api.ldap.extras.controls.SynchronizationModeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncInfoValue.SyncRequestValue;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncInfoValue.SyncRequestValueImpl;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateTypeEnum;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncState.SyncStateValue;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AliasDerefMode;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.ChangeType;
+import org.apache.directory.api.ldap.model.message.controls.EntryChange;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearch;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearchImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.ldap.LdapDataProvider;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Data access class for the directory change feed.  Runs one long lived subtree search that returns the DN of every entry
+ * added, modified, deleted or renamed, with no attributes, on its own connection so no pooled connection is held.
+ * <p>
+ * Two protocols are supported:
+ * <ul>
+ *   <li>{@link Mode#SYNCREPL} - RFC 4533 content synchronization in refreshAndPersist mode, supported by OpenLDAP and
+ *   ApacheDS.  The server's cookie is passed back to the caller after each change so the feed can resume where it
+ *   stopped.  When resuming, changes made in the meantime are returned during the refresh phase, but deletions are only
+ *   identified there by entryUUID, so if the server reports any the caller is told it has missed changes.  Without a
+ *   cookie the refresh phase, which returns every entry, is skipped.</li>
+ *   <li>{@link Mode#PSEARCH} - the persistent search control (draft-ietf-ldapext-psearch), supported by ApacheDS and
+ *   others.  It has no resume point, changes made while disconnected are lost.</li>
+ * </ul>
+ * <p>
+ * This class is thread safe, but each instance runs one search at a time.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class ChangeFeedDAO extends LdapDataProvider
+{
+    private static final String CLS_NM = ChangeFeedDAO.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+
+    /** RFC 4533 Sync Info Message, sent as an intermediate response. */
+    private static final String SYNC_INFO_OID = "1.3.6.1.4.1.4203.1.9.1.4";
+    private static final int NEW_COOKIE = 0x80;
+    private static final int REFRESH_DELETE = 0xA1;
+    private static final int REFRESH_PRESENT = 0xA2;
+    private static final int SYNC_ID_SET = 0xA3;
+    private static final int OCTET_STRING = 0x04;
+    private static final int BOOLEAN = 0x01;
+    /** e-syncRefreshRequired, the server can't resume from the cookie. */
+    private static final int SYNC_REFRESH_REQUIRED = 4096;
+
+    /**
+     * Protocol used to follow changes.
+     */
+    enum Mode
+    {
+        SYNCREPL,
+        PSEARCH
+    }
+
+    /**
+     * Receives the changes, on the thread running {@link #listen}.
+     */
+    interface Handler
+    {
+        /**
+         * The search was sent, changes from now on will be received.
+         */
+        void started();
+
+
+        /**
+         * @param dn      of the entry.
+         * @param deleted true if the entry was deleted, or renamed away from this DN.
+         */
+        void changed( String dn, boolean deleted );
+
+
+        /**
+         * @param cookie to resume from, null if the stored cookie can no longer be used.
+         */
+        void cookie( byte[] cookie );
+
+
+        /**
+         * The server reported changes that can't be mapped to a DN.
+         */
+        void missed();
+    }
+
+    private volatile LdapConnection active;
+
+
+    /**
+     * Follow changes below the base until {@link #close()} is called or the search fails.
+     *
+     * @param mode    protocol to use.
+     * @param baseDn  of the subtree to follow.
+     * @param filter  selects the entries to follow.
+     * @param cookie  syncrepl cookie to resume from, null to start from now.
+     * @param handler receives the changes.
+     * @throws FinderException if the search can't be started, fails, or is ended by the server.
+     */
+    void listen( Mode mode, String baseDn, String filter, byte[] cookie, Handler handler ) throws FinderException
+    {
+        LdapConnection ld = null;
+        try
+        {
+            ld = openStreamConnection();
+            active = ld;
+            SearchRequest request = new SearchRequestImpl();
+            request.setBase( new Dn( baseDn ) );
+            request.setFilter( filter );
+            request.setScope( SearchScope.SUBTREE );
+            request.setDerefAliases( AliasDerefMode.NEVER_DEREF_ALIASES );
+            request.addAttributes( SchemaConstants.NO_ATTRIBUTE );
+            if ( mode == Mode.SYNCREPL )
+            {
+                SyncRequestValue syncRequest = new SyncRequestValueImpl();
+                syncRequest.setMode( SynchronizationModeEnum.REFRESH_AND_PERSIST );
+                syncRequest.setCookie( cookie );
+                request.addControl( syncRequest );
+            }
+            else
+            {
+                PersistentSearch psearch = new PersistentSearchImpl();
+                psearch.setChangesOnly( true );
+                psearch.setReturnECs( true );
+                psearch.setChangeTypes( ChangeType.ADD.getValue() | ChangeType.DELETE.getValue() | ChangeType.MODIFY
+                    .getValue() | ChangeType.MODDN.getValue() );
+                request.addControl( psearch );
+            }
+            LOG.info( "listen {} base [{}] filter [{}] resuming [{}]", mode, baseDn, filter, cookie != null );
+            try ( SearchCursor cursor = ld.search( request ) )
+            {
+                handler.started();
+                // a syncrepl search starts with the refresh phase:
+                boolean refreshing = mode == Mode.SYNCREPL;
+                while ( cursor.next() )
+                {
+                    Response response = cursor.get();
+                    if ( response instanceof SearchResultEntry )
+                    {
+                        SearchResultEntry entry = ( SearchResultEntry ) response;
+                        if ( mode == Mode.SYNCREPL )
+                        {
+                            syncEntry( entry, refreshing, cookie == null, handler );
+                        }
+                        else
+                        {
+                            psearchEntry( entry, handler );
+                        }
+                    }
+                    else if ( response instanceof IntermediateResponse )
+                    {
+                        refreshing = syncInfo( ( IntermediateResponse ) response, refreshing, cookie == null, handler );
+                    }
+                }
+                SearchResultDone done = cursor.getSearchResultDone();
+                ResultCodeEnum resultCode = done != null ? done.getLdapResult().getResultCode() : null;
+                if ( resultCode != null && resultCode.getResultCode() == SYNC_REFRESH_REQUIRED )
+                {
+                    handler.cookie( null );
+                    handler.missed();
+                }
+                String error = "listen " + mode + " base [" + baseDn + "] ended by server, result [" + resultCode + "]";
+                throw new FinderException( GlobalErrIds.FT_CHANGE_FEED_FAILED, error );
+            }
+        }
+        catch ( LdapException e )
+        {
+            String error = "listen " + mode + " base [" + baseDn + "] caught LdapException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.FT_CHANGE_FEED_FAILED, error, e );
+        }
+        catch ( CursorException e )
+        {
+            String error = "listen " + mode + " base [" + baseDn + "] caught CursorException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.FT_CHANGE_FEED_FAILED, error, e );
+        }
+        catch ( IOException e )
+        {
+            String error = "listen " + mode + " base [" + baseDn + "] caught IOException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.FT_CHANGE_FEED_FAILED, error, e );
+        }
+        finally
+        {
+            active = null;
+            closeQuietly( ld );
+        }
+    }
+
+
+    /**
+     * End the running search, which makes {@link #listen} throw.
+     */
+    void close()
+    {
+        closeQuietly( active );
+    }
+
+
+    private static void syncEntry( SearchResultEntry entry, boolean refreshing, boolean isInitial, Handler handler )
+    {
+        Control control = entry.getControl( SyncStateValue.OID );
+        if ( !( control instanceof SyncStateValue ) )
+        {
+            return;
+        }
+        SyncStateValue state = ( SyncStateValue ) control;
+        // on first start the refresh phase returns the current content, which isn't a change:
+        if ( refreshing && isInitial )
+        {
+            return;
+        }
+        String dn = entry.getObjectName().getName();
+        if ( state.getSyncStateType() == SyncStateTypeEnum.DELETE )
+        {
+            handler.changed( dn, true );
+        }
+        else if ( state.getSyncStateType() == SyncStateTypeEnum.PRESENT )
+        {
+            // present phase, entries not listed were deleted:
+            handler.missed();
+        }
+        else
+        {
+            handler.changed( dn, false );
+        }
+        if ( state.getCookie() != null )
+        {
+            handler.cookie( state.getCookie() );
+        }
+    }
+
+
+    private static void psearchEntry( SearchResultEntry entry, Handler handler )
+    {
+        String dn = entry.getObjectName().getName();
+        Control control = entry.getControl( EntryChange.OID );
+        if ( control instanceof EntryChange )
+        {
+            EntryChange change = ( EntryChange ) control;
+            if ( change.getChangeType() == ChangeType.DELETE )
+            {
+                handler.changed( dn, true );
+                return;
+            }
+            if ( change.getChangeType() == ChangeType.MODDN && change.getPreviousDn() != null )
+            {
+                handler.changed( change.getPreviousDn().getName(), true );
+            }
+        }
+        handler.changed( dn, false );
+    }
+
+
+    /**
+     * Process a Sync Info Message, decoded here as only its choice, cookie and flags are needed.
+     *
+     * @return true if the refresh phase continues.
+     */
+    private static boolean syncInfo( IntermediateResponse response, boolean refreshing, boolean isInitial,
+        Handler handler )
+    {
+        byte[] value = response.getResponseValue();
+        if ( !SYNC_INFO_OID.equals( response.getResponseName() ) || value == null || value.length < 2 )
+        {
+            return refreshing;
+        }
+        int tag = value[0] & 0xFF;
+        int[] pos = { 1 };
+        int end = readLength( value, pos );
+        end = Math.min( value.length, pos[0] + end );
+        if ( tag == NEW_COOKIE )
+        {
+            handler.cookie( copy( value, pos[0], end ) );
+            return refreshing;
+        }
+        byte[] cookie = null;
+        boolean flag = tag != SYNC_ID_SET;
+        if ( pos[0] < end && ( value[pos[0]] & 0xFF ) == OCTET_STRING )
+        {
+            pos[0]++;
+            int length = readLength( value, pos );
+            cookie = copy( value, pos[0], pos[0] + length );
+            pos[0] += length;
+        }
+        if ( pos[0] + 2 < end && ( value[pos[0]] & 0xFF ) == BOOLEAN )
+        {
+            flag = value[pos[0] + 2] != 0;
+        }
+        if ( tag == SYNC_ID_SET || tag == REFRESH_PRESENT )
+        {
+            // entries deleted while disconnected are only known by uuid, or by their absence:
+            if ( !isInitial )
+            {
+                handler.missed();
+            }
+        }
+        if ( cookie != null )
+        {
+            handler.cookie( cookie );
+        }
+        if ( ( tag == REFRESH_DELETE || tag == REFRESH_PRESENT ) && flag )
+        {
+            LOG.info( "syncInfo refresh phase done, following changes" );
+            return false;
+        }
+        return refreshing;
+    }
+
+
+    /**
+     * Read a BER length and advance past it.
+     */
+    private static int readLength( byte[] value, int[] pos )
+    {
+        int first = value[pos[0]++] & 0xFF;
+        if ( first < 0x80 )
+        {
+            return first;
+        }
+        int length = 0;
+        for ( int i = 0; i < ( first & 0x7F ) && pos[0] < value.length; i++ )
+        {
+            length = ( length << 8 ) | ( value[pos[0]++] & 0xFF );
+        }
+        return length;
+    }
+
+
+    private static byte[] copy( byte[] value, int start, int end )
+    {
+        byte[] result = new byte[Math.max( 0, Math.min( end, value.length ) - start )];
+        System.arraycopy( value, start, result, 0, result.length );
+        return result;
+    }
+
+
+    private static void closeQuietly( LdapConnection ld )
+    {
+        if ( ld != null )
+        {
+            try
+            {
+                ld.close();
+            }
+            catch ( IOException e )
+            {
+                LOG.debug( "closeQuietly caught IOException={}", e.getMessage() );
+            }
+        }
+    }
+}
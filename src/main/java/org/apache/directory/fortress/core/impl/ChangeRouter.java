@@ -0,0 +1,851 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.AdminRole;
+import org.apache.directory.fortress.core.model.OrgUnit;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.SDSet;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.apache.directory.fortress.core.util.cache.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Maps the DN of an entry changed in the directory to the fortress caches holding it and applies the change to them.
+ * Used by {@link ChangeFeed}, and by the cache invalidation bus (see {@link CacheMgr#subscribe}), for changes made by
+ * other processes:
+ * <ul>
+ *   <li>Role and admin role - the parents are read and the entity's edges in the cached hierarchy are replaced.</li>
+ *   <li>User and perm ou - the same for the ou hierarchy, and the tenant's cached set of ou names is dropped.</li>
+ *   <li>SD set - the cached DSD entries of its old and new members are cleared and the SSD partition is flushed.</li>
+ *   <li>Permission operation - the operation is read again into the {@link PermIndex}, and the cached permission
+ *   searches are dropped.</li>
+ *   <li>Admin permission - the cached ARBAC decisions are dropped.</li>
+ *   <li>Password policy - the tenant's cached policies are dropped.</li>
+ *   <li>Group, and role - the tenant's cached groups are dropped from the {@link GroupCache}, and a deleted role's
+ *   occupants from the {@link RoleOccupantIndex}.</li>
+ *   <li>User - the user's role assignments are read again into the {@link RoleOccupantIndex}.</li>
+ * </ul>
+ * Users themselves aren't cached by this package, every change from the directory is passed on to the registered
+ * {@link Listener}s.  If a changed entity can't be read its tenant's hierarchy is reloaded in the background, or its
+ * index dropped, instead.
+ * <p>
+ * The containers are located with the {@code *.root} properties of the config, the entries of a tenant other than HOME are
+ * under {@code ou=<contextId>} just above the suffix.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class ChangeRouter
+{
+    private static final String CLS_NM = ChangeRouter.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String OU = "ou";
+
+    /**
+     * The fortress containers whose changes are routed.
+     */
+    enum Container
+    {
+        ROLE( GlobalIds.ROLE_ROOT ),
+        ADMIN_ROLE( GlobalIds.ADMIN_ROLE_ROOT ),
+        PERM( GlobalIds.PERM_ROOT ),
+        ADMIN_PERM( GlobalIds.ADMIN_PERM_ROOT ),
+        SD( GlobalIds.SD_ROOT ),
+        USER_OU( GlobalIds.OSU_ROOT ),
+        PERM_OU( GlobalIds.PSU_ROOT ),
+        POLICY( GlobalIds.PPOLICY_ROOT ),
+        USER( GlobalIds.USER_ROOT ),
+        GROUP( GlobalIds.GROUP_ROOT );
+
+        private final String root;
+
+
+        Container( String root )
+        {
+            this.root = root;
+        }
+    }
+
+    /**
+     * Told about every change routed, after the fortress caches were updated.
+     */
+    interface Listener
+    {
+        /**
+         * @param container holding the entry.
+         * @param contextId of the tenant.
+         * @param dn        of the changed entry.
+         * @param deleted   true if the entry was deleted or renamed away.
+         */
+        void changed( Container container, String contextId, String dn, boolean deleted );
+
+
+        /**
+         * Changes may have been missed, everything cached must be reloaded.
+         */
+        void resync();
+    }
+
+    private final List<String> suffix;
+    private final List<Branch> branches = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final RoleDAO rDao = new RoleDAO();
+    private final AdminRoleDAO arDao = new AdminRoleDAO();
+    private final OrgUnitDAO oDao = new OrgUnitDAO();
+    private final SdDAO sdDao = new SdDAO();
+    private final PermDAO pDao = new PermDAO();
+    private static volatile ChangeRouter sINSTANCE = null;
+
+
+    /**
+     * @return the router shared by the change feed and the invalidation bus.
+     */
+    static ChangeRouter getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( ChangeRouter.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new ChangeRouter();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private ChangeRouter()
+    {
+        Config cfg = Config.getInstance();
+        suffix = normalize( parse( cfg.getProperty( GlobalIds.SUFFIX, "" ) ) );
+        for ( Container container : Container.values() )
+        {
+            String root = cfg.getProperty( container.root );
+            if ( StringUtils.isEmpty( root ) )
+            {
+                continue;
+            }
+            List<String> rdns = normalize( parse( root ) );
+            if ( !endsWith( rdns, rdns.size(), suffix ) || rdns.size() == suffix.size() )
+            {
+                LOG.warn( "ChangeRouter {} root [{}] is not below suffix, its changes are ignored", container, root );
+                continue;
+            }
+            branches.add( new Branch( container, rdns.subList( 0, rdns.size() - suffix.size() ) ) );
+        }
+        // match the most specific container first:
+        Collections.sort( branches, new Comparator<Branch>()
+        {
+            @Override
+            public int compare( Branch left, Branch right )
+            {
+                return right.rdns.size() - left.rdns.size();
+            }
+        } );
+    }
+
+
+    /**
+     * @param listener told about each change after the caches of this package were updated.
+     */
+    void addListener( Listener listener )
+    {
+        listeners.add( listener );
+    }
+
+
+    /**
+     * @param listener no longer told about changes.
+     */
+    void removeListener( Listener listener )
+    {
+        listeners.remove( listener );
+    }
+
+
+    /**
+     * Update the caches holding an entry that was added, modified, deleted or renamed.  A renamed entry is reported twice,
+     * deleted under its previous DN and added under its new one.
+     *
+     * @param dn      of the entry.
+     * @param deleted true if the entry no longer exists under this DN.
+     */
+    void changed( String dn, boolean deleted )
+    {
+        Target target = locate( dn );
+        if ( target == null )
+        {
+            LOG.debug( "changed dn [{}] not in a fortress container", dn );
+            return;
+        }
+        LOG.debug( "changed {} contextId [{}] dn [{}] deleted [{}]", target.container, target.contextId, dn, deleted );
+        try
+        {
+            apply( target, deleted );
+        }
+        catch ( SecurityException se )
+        {
+            LOG.warn( "changed dn [{}] could not be applied, dropping {} cache of contextId [{}], caught "
+                + "SecurityException={}", dn, target.container, target.contextId, se );
+            drop( target );
+        }
+        for ( Listener listener : listeners )
+        {
+            listener.changed( target.container, target.contextId, dn, deleted );
+        }
+    }
+
+
+    /**
+     * Update the caches holding an entity another fortress process changed, as published on the invalidation bus.  The
+     * entity is read again, if it can't be found it was deleted.
+     *
+     * @param container holding the entity, a hierarchy or SD.
+     * @param contextId of the tenant, null for HOME.
+     * @param name      of the entity.
+     */
+    void changed( Container container, String contextId, String name )
+    {
+        if ( StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) )
+        {
+            contextId = GlobalIds.HOME;
+        }
+        Map<String, String> rdn = Collections.singletonMap( SchemaConstants.CN_AT, name );
+        Target target = new Target( container, contextId, Collections.singletonList( rdn ) );
+        try
+        {
+            apply( target, false );
+        }
+        catch ( SecurityException se )
+        {
+            LOG.warn( "changed {} [{}] could not be applied, dropping cache of contextId [{}], caught "
+                + "SecurityException={}", container, name, contextId, se );
+            drop( target );
+        }
+    }
+
+
+    /**
+     * Apply the changes of the other fortress processes to a hierarchy.
+     *
+     * @param cacheName published by the changes.
+     * @param container they are applied to.
+     */
+    void subscribe( final String cacheName, final Container container )
+    {
+        CacheMgr.getInstance().subscribe( cacheName, new InvalidationListener()
+        {
+            @Override
+            public void invalidate( String contextId, String key )
+            {
+                if ( key == null )
+                {
+                    CacheMgr.getInstance().flush( cacheName );
+                }
+                else
+                {
+                    changed( container, contextId, key );
+                }
+            }
+
+
+            @Override
+            public void refresh()
+            {
+                // the hierarchies were cleared with the other caches
+            }
+        } );
+    }
+
+
+    /**
+     * Re-read a permission operation another fortress process changed into the index, or remove it.
+     *
+     * @param contextId of the tenant.
+     * @param objName   of the permission object.
+     * @param opName    of the operation, null if the object was deleted.
+     * @param objId     of the operation, may be null.
+     */
+    void permChanged( String contextId, String objName, String opName, String objId )
+    {
+        try
+        {
+            applyPerm( contextId, objName, opName, objId, opName == null );
+        }
+        catch ( SecurityException se )
+        {
+            LOG.warn( "permChanged [{}.{}] could not be applied, dropping index of contextId [{}], caught "
+                + "SecurityException={}", objName, opName, contextId, se );
+            PermIndex.getInstance().invalidate( contextId );
+        }
+    }
+
+
+    /**
+     * Drop everything cached because changes may have been missed, e.g. while the change feed was disconnected.  The
+     * hierarchies are reloaded on next use.
+     */
+    void resync()
+    {
+        LOG.info( "resync dropping all caches" );
+        CacheMgr.getInstance().clearAll();
+        PermIndex.getInstance().invalidateAll();
+        DecisionCache.getInstance().invalidate( null, null );
+        GroupCache.getInstance().expire( null );
+        RoleOccupantIndex.getInstance().invalidateAll();
+        for ( Listener listener : listeners )
+        {
+            listener.resync();
+        }
+    }
+
+
+    private void apply( Target target, boolean deleted ) throws SecurityException
+    {
+        String name = target.getName();
+        switch ( target.container )
+        {
+            case ROLE:
+                Set<String> roleParents = deleted ? null : getRoleParents( name, target.contextId );
+                for ( String contextId : target.getCacheIds() )
+                {
+                    RoleUtil.getInstance().syncParents( contextId, name, roleParents );
+                }
+                GroupCache.getInstance().expire( target.contextId );
+                if ( deleted )
+                {
+                    RoleOccupantIndex.getInstance().expireRole( target.contextId, name );
+                }
+                break;
+
+            case ADMIN_ROLE:
+                Set<String> adminParents = deleted ? null : getAdminRoleParents( name, target.contextId );
+                for ( String contextId : target.getCacheIds() )
+                {
+                    AdminRoleUtil.syncParents( contextId, name, adminParents );
+                }
+                AdminPolicyUtil.clear();
+                break;
+
+            case USER_OU:
+            case PERM_OU:
+                OrgUnit.Type type = target.container == Container.USER_OU ? OrgUnit.Type.USER : OrgUnit.Type.PERM;
+                Set<String> ouParents = deleted ? null : getOrgUnitParents( name, type, target.contextId );
+                for ( String contextId : target.getCacheIds() )
+                {
+                    OrgUnitP.clearCache( type, contextId );
+                    if ( type == OrgUnit.Type.USER )
+                    {
+                        UsoUtil.getInstance().syncParents( contextId, name, ouParents );
+                    }
+                    else
+                    {
+                        PsoUtil.getInstance().syncParents( contextId, name, ouParents );
+                    }
+                }
+                break;
+
+            case SD:
+                // permission attribute sets are kept here too, under ou, and aren't cached:
+                if ( target.isNamedBy( SchemaConstants.CN_AT ) )
+                {
+                    SDUtil.getInstance().clearSdSet( name, deleted ? null : getSdMembers( name, target.contextId ),
+                        target.contextId );
+                }
+                break;
+
+            case PERM:
+                applyPerm( target, deleted );
+                PermSearchPlanner.getInstance().invalidate();
+                DecisionCache.getInstance().invalidate( target.contextId, target.getValue( 0, GlobalIds.POBJ_NAME ) );
+                break;
+
+            case ADMIN_PERM:
+                AdminUtil.clearDecisionCache();
+                PermSearchPlanner.getInstance().invalidate();
+                DecisionCache.getInstance().invalidate( target.contextId, target.getValue( 0, GlobalIds.POBJ_NAME ) );
+                break;
+
+            case POLICY:
+                for ( String contextId : target.getCacheIds() )
+                {
+                    PolicyP.clearCache( contextId );
+                }
+                break;
+
+            case GROUP:
+                GroupCache.getInstance().expire( target.contextId );
+                break;
+
+            case USER:
+                RoleOccupantIndex.getInstance().syncUser( target.contextId, name );
+                break;
+
+            default:
+                break;
+        }
+    }
+
+
+    /**
+     * Re-read a changed permission operation into the index, or remove it.  The objects above the operations hold no
+     * grants, only their deletion matters.
+     */
+    private void applyPerm( Target target, boolean deleted ) throws SecurityException
+    {
+        String objName = target.getValue( 0, GlobalIds.POBJ_NAME );
+        if ( target.rdns.size() == 1 )
+        {
+            if ( deleted && objName != null )
+            {
+                applyPerm( target.contextId, objName, null, null, true );
+            }
+            return;
+        }
+        String opName = target.getValue( 1, GlobalIds.POP_NAME );
+        if ( opName != null )
+        {
+            applyPerm( target.contextId, objName, opName, target.getValue( 1, GlobalIds.POBJ_ID ), deleted );
+        }
+    }
+
+
+    /**
+     * @param opName null to remove the whole object.
+     */
+    private void applyPerm( String contextId, String objName, String opName, String objId, boolean deleted )
+        throws SecurityException
+    {
+        PermIndex index = PermIndex.getInstance();
+        if ( !index.isEnabled() )
+        {
+            return;
+        }
+        if ( opName == null )
+        {
+            index.removeObject( contextId, objName );
+            return;
+        }
+        Permission permission = new Permission( objName, opName, objId );
+        permission.setContextId( contextId );
+        if ( !deleted )
+        {
+            try
+            {
+                index.put( contextId, pDao.getPerm( permission ) );
+                return;
+            }
+            catch ( FinderException fe )
+            {
+                if ( fe.getErrorId() != GlobalErrIds.PERM_OP_NOT_FOUND )
+                {
+                    throw fe;
+                }
+            }
+        }
+        index.remove( contextId, permission );
+    }
+
+
+    /**
+     * Fall back when a change could not be applied precisely.
+     */
+    private void drop( Target target )
+    {
+        if ( target.container == Container.SD )
+        {
+            SDUtil.getInstance().clearSdSet( target.getName(), null, target.contextId );
+        }
+        else if ( target.container == Container.PERM )
+        {
+            PermIndex.getInstance().invalidate( target.contextId );
+        }
+        for ( String contextId : target.getCacheIds() )
+        {
+            switch ( target.container )
+            {
+                case ROLE:
+                    RoleUtil.getInstance().expire( contextId );
+                    break;
+
+                case ADMIN_ROLE:
+                    AdminRoleUtil.expire( contextId );
+                    break;
+
+                case USER_OU:
+                    UsoUtil.getInstance().expire( contextId );
+                    break;
+
+                case PERM_OU:
+                    PsoUtil.getInstance().expire( contextId );
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * @return the role's parents, empty if it has none, null if it doesn't exist.
+     */
+    private Set<String> getRoleParents( String name, String contextId ) throws FinderException
+    {
+        Role role = new Role( name );
+        role.setContextId( contextId );
+        try
+        {
+            return copyOf( rDao.getRole( role ).getParents() );
+        }
+        catch ( FinderException fe )
+        {
+            if ( fe.getErrorId() == GlobalErrIds.ROLE_NOT_FOUND )
+            {
+                return null;
+            }
+            throw fe;
+        }
+    }
+
+
+    /**
+     * @return the admin role's parents, empty if it has none, null if it doesn't exist.
+     */
+    private Set<String> getAdminRoleParents( String name, String contextId ) throws FinderException
+    {
+        AdminRole adminRole = new AdminRole( name );
+        adminRole.setContextId( contextId );
+        try
+        {
+            return copyOf( arDao.getRole( adminRole ).getParents() );
+        }
+        catch ( FinderException fe )
+        {
+            if ( fe.getErrorId() == GlobalErrIds.ARLE_NOT_FOUND )
+            {
+                return null;
+            }
+            throw fe;
+        }
+    }
+
+
+    /**
+     * @return the ou's parents, empty if it has none, null if it doesn't exist.
+     */
+    private Set<String> getOrgUnitParents( String name, OrgUnit.Type type, String contextId ) throws FinderException
+    {
+        OrgUnit orgUnit = new OrgUnit( name, type );
+        orgUnit.setContextId( contextId );
+        try
+        {
+            return copyOf( oDao.findByKey( orgUnit ).getParents() );
+        }
+        catch ( FinderException fe )
+        {
+            if ( fe.getErrorId() == GlobalErrIds.ORG_NOT_FOUND_USER || fe.getErrorId() == GlobalErrIds
+                .ORG_NOT_FOUND_PERM )
+            {
+                return null;
+            }
+            throw fe;
+        }
+    }
+
+
+    /**
+     * @return the SD set's members, null if it doesn't exist.
+     */
+    private Set<String> getSdMembers( String name, String contextId ) throws FinderException
+    {
+        SDSet sdSet = new SDSet();
+        sdSet.setName( name );
+        sdSet.setContextId( contextId );
+        try
+        {
+            return copyOf( sdDao.getSD( sdSet ).getMembers() );
+        }
+        catch ( FinderException fe )
+        {
+            if ( fe.getErrorId() == GlobalErrIds.SSD_NOT_FOUND )
+            {
+                return null;
+            }
+            throw fe;
+        }
+    }
+
+
+    private static Set<String> copyOf( Set<String> names )
+    {
+        Set<String> result = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        if ( names != null )
+        {
+            result.addAll( names );
+        }
+        return result;
+    }
+
+
+    /**
+     * Find the container and tenant of a DN.
+     *
+     * @return the entity below its container, or null if the DN isn't below one.
+     */
+    private Target locate( String dn )
+    {
+        List<Map<String, String>> rdns = parse( dn );
+        List<String> normalized = normalize( rdns );
+        if ( normalized.size() <= suffix.size() || !endsWith( normalized, normalized.size(), suffix ) )
+        {
+            return null;
+        }
+        int end = normalized.size() - suffix.size();
+        for ( Branch branch : branches )
+        {
+            int size = branch.rdns.size();
+            if ( end > size && endsWith( normalized, end, branch.rdns ) )
+            {
+                return new Target( branch.container, GlobalIds.HOME, rdns.subList( 0, end - size ) );
+            }
+            // tenants are one level below the suffix:
+            Map<String, String> tenant = rdns.get( end - 1 );
+            if ( end - 1 > size && tenant.size() == 1 && tenant.containsKey( OU ) && endsWith( normalized, end - 1,
+                branch.rdns ) )
+            {
+                return new Target( branch.container, tenant.get( OU ), rdns.subList( 0, end - 1 - size ) );
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * @return true if the first {@code end} rdns of the list end with the tail.
+     */
+    private static boolean endsWith( List<String> rdns, int end, List<String> tail )
+    {
+        int start = end - tail.size();
+        if ( start < 0 )
+        {
+            return false;
+        }
+        return rdns.subList( start, end ).equals( tail );
+    }
+
+
+    /**
+     * @return the rdns in a form that can be compared, types and values in lower case and multi-valued rdns sorted.
+     */
+    private static List<String> normalize( List<Map<String, String>> rdns )
+    {
+        List<String> normalized = new ArrayList<>( rdns.size() );
+        for ( Map<String, String> rdn : rdns )
+        {
+            List<String> avas = new ArrayList<>( rdn.size() );
+            for ( Map.Entry<String, String> ava : rdn.entrySet() )
+            {
+                avas.add( ava.getKey() + "=" + ava.getValue().toLowerCase( Locale.ROOT ) );
+            }
+            Collections.sort( avas );
+            normalized.add( StringUtils.join( avas.iterator(), '+' ) );
+        }
+        return normalized;
+    }
+
+
+    /**
+     * Split a string DN into its rdns, each a map of lower case attribute type to unescaped value, leftmost rdn first.
+     * Values in hex ({@code #...}) form aren't decoded, fortress doesn't create them.
+     */
+    static List<Map<String, String>> parse( String dn )
+    {
+        List<Map<String, String>> rdns = new ArrayList<>();
+        Map<String, String> rdn = new LinkedHashMap<>();
+        String type = null;
+        int start = 0;
+        int length = dn.length();
+        for ( int i = 0; i <= length; i++ )
+        {
+            char c = i < length ? dn.charAt( i ) : ',';
+            if ( c == '\\' )
+            {
+                i++;
+            }
+            else if ( c == '=' && type == null )
+            {
+                type = dn.substring( start, i ).trim().toLowerCase( Locale.ROOT );
+                start = i + 1;
+            }
+            else if ( c == ',' || c == ';' || c == '+' )
+            {
+                if ( type != null )
+                {
+                    rdn.put( type, unescape( dn.substring( start, Math.min( i, length ) ).trim() ) );
+                }
+                type = null;
+                start = i + 1;
+                if ( c != '+' && !rdn.isEmpty() )
+                {
+                    rdns.add( rdn );
+                    rdn = new LinkedHashMap<>();
+                }
+            }
+        }
+        return rdns;
+    }
+
+
+    private static String unescape( String value )
+    {
+        if ( value.indexOf( '\\' ) < 0 )
+        {
+            return value;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            char c = value.charAt( i );
+            if ( c == '\\' && i + 1 < value.length() )
+            {
+                int hi = i + 2 < value.length() ? Character.digit( value.charAt( i + 1 ), 16 ) : -1;
+                int lo = hi >= 0 ? Character.digit( value.charAt( i + 2 ), 16 ) : -1;
+                if ( lo >= 0 )
+                {
+                    bytes.write( ( hi << 4 ) | lo );
+                    i += 2;
+                    continue;
+                }
+                c = value.charAt( ++i );
+            }
+            byte[] encoded = String.valueOf( c ).getBytes( StandardCharsets.UTF_8 );
+            bytes.write( encoded, 0, encoded.length );
+        }
+        return new String( bytes.toByteArray(), StandardCharsets.UTF_8 );
+    }
+
+
+    /**
+     * The configured location of a container, without the suffix.
+     */
+    private static final class Branch
+    {
+        private final Container container;
+        private final List<String> rdns;
+
+
+        Branch( Container container, List<String> rdns )
+        {
+            this.container = container;
+            this.rdns = rdns;
+        }
+    }
+
+
+    /**
+     * A changed entry, located.
+     */
+    private static final class Target
+    {
+        private final Container container;
+        private final String contextId;
+        // the rdns below the container, leftmost first:
+        private final List<Map<String, String>> rdns;
+
+
+        Target( Container container, String contextId, List<Map<String, String>> rdns )
+        {
+            this.container = container;
+            this.contextId = contextId;
+            this.rdns = rdns;
+        }
+
+
+        /**
+         * @return value of the rdn just below the container.
+         */
+        String getName()
+        {
+            Map<String, String> top = rdns.get( rdns.size() - 1 );
+            return top.values().iterator().next();
+        }
+
+
+        boolean isNamedBy( String type )
+        {
+            return rdns.size() == 1 && rdns.get( 0 ).containsKey( type.toLowerCase( Locale.ROOT ) );
+        }
+
+
+        /**
+         * @return value of the attribute in the rdn counted from the top of the container, null if absent.
+         */
+        String getValue( int depth, String type )
+        {
+            int index = rdns.size() - 1 - depth;
+            return index >= 0 ? rdns.get( index ).get( type.toLowerCase( Locale.ROOT ) ) : null;
+        }
+
+
+        /**
+         * Callers address the HOME tenant's caches both with its name and with no contextId.
+         *
+         * @return the contextIds of this tenant's cache entries.
+         */
+        List<String> getCacheIds()
+        {
+            if ( GlobalIds.HOME.equals( contextId ) )
+            {
+                return Arrays.asList( GlobalIds.HOME, null );
+            }
+            return Collections.singletonList( contextId );
+        }
+    }
+}
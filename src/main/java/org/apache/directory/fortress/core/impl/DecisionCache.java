@@ -0,0 +1,309 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.cache.Cache;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.apache.directory.fortress.core.util.cache.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Caches the outcome of {@link PermDAO#checkPermission}, including that the permission does not exist, so repeated
+ * checks of the same permission by sessions with the same roles skip the ldap read.  Enable with
+ * {@code perm.decision.cache=true}.
+ * <p>
+ * Decisions are kept in the {@code fortress.perm.decisions} cache, keyed by tenant, permission and the fingerprint of the
+ * session's inherited roles.  A change to the role hierarchy changes the inherited roles, and so the key.  The users
+ * granted the permission directly are kept with the decision and matched against the session's user on every hit,
+ * rather than adding the userId to the key.
+ * <p>
+ * Each decision records the generation it was computed under, the sum of a global counter and a counter per permission
+ * object.  {@link PermDAO} bumps the object's counter when its operations are created, updated, deleted, granted or
+ * revoked, and the change is published on the cache invalidation bus, so invalidation is O(1) and stale decisions are
+ * simply never returned again.  A decision computed while its object changed is recorded under the old generation.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class DecisionCache
+{
+    private static final String CLS_NM = DecisionCache.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    static final String DECISION_CACHE = "fortress.perm.decisions";
+    private static final String ENABLE = "perm.decision.cache";
+    private static volatile DecisionCache sINSTANCE = null;
+
+    private final boolean isEnabled;
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> objGenerations = new ConcurrentHashMap<>();
+
+
+    /**
+     * The cached outcome of one permission check.
+     */
+    static final class Entry
+    {
+        private final long generation;
+        private final boolean isFound;
+        private final boolean isRoleGranted;
+        private final Set<String> users;
+
+
+        private Entry( long generation, boolean isFound, boolean isRoleGranted, Set<String> users )
+        {
+            this.generation = generation;
+            this.isFound = isFound;
+            this.isRoleGranted = isRoleGranted;
+            this.users = users;
+        }
+
+
+        /**
+         * @return false if the permission does not exist.
+         */
+        boolean isFound()
+        {
+            return isFound;
+        }
+
+
+        /**
+         * @param session contains the userId, matched against the direct grants.
+         * @return true if the session is authorized.
+         */
+        boolean isAuthorized( Session session )
+        {
+            return isRoleGranted || ( !session.isGroupSession() && users != null
+                && users.contains( session.getUserId() ) );
+        }
+    }
+
+
+    static DecisionCache getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( DecisionCache.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new DecisionCache();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private DecisionCache()
+    {
+        isEnabled = Config.getInstance().getBoolean( ENABLE, false );
+        LOG.info( "DecisionCache enabled [{}]", isEnabled );
+        if ( isEnabled )
+        {
+            // the other processes publish the objects they changed, null for all:
+            CacheMgr.getInstance().subscribe( DECISION_CACHE, new InvalidationListener()
+            {
+                @Override
+                public void invalidate( String contextId, String key )
+                {
+                    bump( contextId, key );
+                }
+
+
+                @Override
+                public void refresh()
+                {
+                    bump( null, null );
+                }
+            } );
+        }
+    }
+
+
+    /**
+     * @return true if {@code perm.decision.cache} is true.
+     */
+    boolean isEnabled()
+    {
+        return isEnabled;
+    }
+
+
+    /**
+     * Return the current generation of a permission object, to be passed to {@link #put} with the decision computed
+     * after this call.
+     *
+     * @param contextId of the tenant.
+     * @param objName   name of the permission object.
+     * @return the generation.
+     */
+    long getGeneration( String contextId, String objName )
+    {
+        AtomicLong objGeneration = objGenerations.get( getObjKey( contextId, objName ) );
+        return generation.get() + ( objGeneration != null ? objGeneration.get() : 0 );
+    }
+
+
+    /**
+     * Return the decision if one was cached and its permission object has not changed since.
+     *
+     * @param contextId of the tenant.
+     * @param key       from {@link #getKey}.
+     * @param objName   name of the permission object.
+     * @return the decision or null.
+     */
+    Entry get( String contextId, String key, String objName )
+    {
+        Entry entry = ( Entry ) getCache( contextId ).get( key );
+        return entry != null && entry.generation == getGeneration( contextId, objName ) ? entry : null;
+    }
+
+
+    /**
+     * Cache the decision for a permission that exists.
+     *
+     * @param contextId     of the tenant.
+     * @param key           from {@link #getKey}.
+     * @param generation    from {@link #getGeneration}, read before the permission was.
+     * @param isRoleGranted true if one of the inherited roles is granted the permission.
+     * @param users         granted the permission directly, may be null.
+     */
+    void put( String contextId, String key, long generation, boolean isRoleGranted, Set<String> users )
+    {
+        getCache( contextId ).put( key, new Entry( generation, true, isRoleGranted, users ) );
+    }
+
+
+    /**
+     * Cache that the permission does not exist.
+     *
+     * @param contextId  of the tenant.
+     * @param key        from {@link #getKey}.
+     * @param generation from {@link #getGeneration}, read before the permission was.
+     */
+    void putNotFound( String contextId, String key, long generation )
+    {
+        getCache( contextId ).put( key, new Entry( generation, false, false, null ) );
+    }
+
+
+    /**
+     * Release a key that missed without caching a decision, e.g. because the permission couldn't be read.  A miss on
+     * the blocking cache holds a lock on the key until something is put.
+     *
+     * @param contextId of the tenant.
+     * @param key       from {@link #getKey}.
+     */
+    void release( String contextId, String key )
+    {
+        getCache( contextId ).put( key, null );
+    }
+
+
+    /**
+     * Drop the decisions of a permission object, and tell the other processes to do the same.
+     *
+     * @param contextId of the tenant.
+     * @param objName   name of the permission object, null for every object.
+     */
+    void invalidate( String contextId, String objName )
+    {
+        if ( isEnabled )
+        {
+            bump( contextId, objName );
+            CacheMgr.getInstance().publish( DECISION_CACHE, contextId, objName );
+        }
+    }
+
+
+    /**
+     * Build the key of a decision.  The inherited roles are length prefixed so no two sets share a key.
+     *
+     * @param permission     contains the tenant, object name, operation name, optional object id and admin flag.
+     * @param activatedRoles the session's inherited roles, sorted case insensitive.
+     * @return the key.
+     */
+    static String getKey( Permission permission, Set<String> activatedRoles )
+    {
+        // the cache may be shared by the tenants:
+        StringBuilder key = new StringBuilder( getObjKey( permission.getContextId(), permission.getObjName() ) );
+        key.append( GlobalIds.PROP_SEP ).append( permission.isAdmin() ? "A" : "R" );
+        key.append( GlobalIds.PROP_SEP ).append( StringUtils.lowerCase( permission.getOpName() ) );
+        key.append( GlobalIds.PROP_SEP ).append( StringUtils.lowerCase( StringUtils.defaultString(
+            permission.getObjId() ) ) );
+        for ( String role : activatedRoles )
+        {
+            key.append( GlobalIds.PROP_SEP ).append( role.length() ).append( GlobalIds.PROP_SEP ).append(
+                role.toLowerCase() );
+        }
+        return key.toString();
+    }
+
+
+    private void bump( String contextId, String objName )
+    {
+        if ( objName == null )
+        {
+            generation.incrementAndGet();
+            return;
+        }
+        String objKey = getObjKey( contextId, objName );
+        AtomicLong objGeneration = objGenerations.get( objKey );
+        if ( objGeneration == null )
+        {
+            AtomicLong created = new AtomicLong();
+            objGeneration = objGenerations.putIfAbsent( objKey, created );
+            if ( objGeneration == null )
+            {
+                objGeneration = created;
+            }
+        }
+        objGeneration.incrementAndGet();
+    }
+
+
+    private static Cache getCache( String contextId )
+    {
+        return CacheMgr.getInstance().getCache( DECISION_CACHE, contextId );
+    }
+
+
+    private static String getObjKey( String contextId, String objName )
+    {
+        String ctx = StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) ? GlobalIds.HOME
+            : contextId;
+        return ctx + GlobalIds.PROP_SEP + StringUtils.lowerCase( objName );
+    }
+}
@@ -22,7 +22,6 @@ package org.apache.directory.fortress.core.impl;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.directory.fortress.annotation.AdminPermissionOperation;
@@ -35,6 +34,7 @@ import org.apache.directory.fortress.core.model.Role;
 import org.apache.directory.fortress.core.model.Session;
 import org.apache.directory.fortress.core.model.User;
 import org.apache.directory.fortress.core.model.UserAdminRole;
+import org.apache.directory.fortress.core.model.UserProjection;
 import org.apache.directory.fortress.core.util.Config;
 import org.apache.directory.fortress.core.util.VUtil;
 
@@ -170,7 +170,7 @@ public class DelAccessMgrImpl extends AccessMgrImpl implements DelAccessMgr, Ser
             throw new SecurityException(GlobalErrIds.ARLE_ALREADY_ACTIVE, info);
         }
 
-        User ue = userP.read(session.getUser(), true);
+        User ue = userP.read(session.getUser(), UserProjection.AUTHZ);
         List<UserAdminRole> uRoles = ue.getAdminRoles();
         int indx;
         // Is the admin role activation target valid for this user?
@@ -256,7 +256,8 @@ public class DelAccessMgrImpl extends AccessMgrImpl implements DelAccessMgr, Ser
     }
 
     /**
-     * This helper function processes ARBAC URA "can assign".
+     * This helper function processes ARBAC URA "can assign".  Each admin role's scope is evaluated against its compiled
+     * policy, see {@link AdminPolicyUtil}.
      * @param session
      * @param user
      * @param role
@@ -279,48 +280,11 @@ public class DelAccessMgrImpl extends AccessMgrImpl implements DelAccessMgr, Ser
                     result = true;
                     break;
                 }
-                Set<String> osUs = uaRole.getOsUSet();
-                if(CollectionUtils.isNotEmpty( osUs ))
+                // does the admin role have authority over the user object and role?
+                if(AdminPolicyUtil.getPolicy(uaRole, this.contextId).canAssign(ue.getOu(), role.getName()))
                 {
-                    // create Set with case insensitive comparator:
-                    Set<String> osUsFinal = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
-                    for(String osU : osUs)
-                    {
-                        // Add osU children to the set:
-                        osUsFinal.add(osU);
-                        Set<String> children = UsoUtil.getInstance().getDescendants( osU, this.contextId );
-                        osUsFinal.addAll(children);
-                    }
-                    // does the admin role have authority over the user object?
-                    if(osUsFinal.contains(ue.getOu()))
-                    {
-                        // Get the Role range for admin role:
-                        Set<String> range;
-                        if(uaRole.getBeginRange() != null && uaRole.getEndRange() != null && !uaRole.getBeginRange().equalsIgnoreCase(uaRole.getEndRange()))
-                        {
-                            range = RoleUtil.getInstance().getAscendants( uaRole.getBeginRange(), uaRole.getEndRange(),
-                                uaRole.isEndInclusive(), this.contextId );
-                            if(uaRole.isBeginInclusive())
-                            {
-                                range.add(uaRole.getBeginRange());
-                            }
-                            if(CollectionUtils.isNotEmpty( range ))
-                            {
-                                // Does admin role have authority over a role contained with the allowable role range?
-                                if(range.contains(role.getName()))
-                                {
-                                    result = true;
-                                    break;
-                                }
-                            }
-                        }
-                        // Does admin role have authority over the role?
-                        else if(uaRole.getBeginRange() != null && uaRole.getBeginRange().equalsIgnoreCase(role.getName()))
-                        {
-                            result = true;
-                            break;
-                        }
-                    }
+                    result = true;
+                    break;
                 }
             }
         }
@@ -328,7 +292,8 @@ public class DelAccessMgrImpl extends AccessMgrImpl implements DelAccessMgr, Ser
     }
 
     /**
-     * This helper function processes ARBAC PRA "can assign".
+     * This helper function processes ARBAC PRA "can assign".  Each admin role's scope is evaluated against its compiled
+     * policy, see {@link AdminPolicyUtil}.
      * @param session
      * @param role
      * @param perm
@@ -353,47 +318,11 @@ public class DelAccessMgrImpl extends AccessMgrImpl implements DelAccessMgr, Ser
                     result = true;
                     break;
                 }
-                Set<String> osPs = uaRole.getOsPSet();
-                if(CollectionUtils.isNotEmpty( osPs ))
+                // does the admin role have authority over the perm object and role?
+                if(AdminPolicyUtil.getPolicy(uaRole, this.contextId).canGrant(pObj.getOu(), role.getName()))
                 {
-                    // create Set with case insensitive comparator:
-                    Set<String> osPsFinal = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
-                    for(String osP : osPs)
-                    {
-                        // Add osU children to the set:
-                        osPsFinal.add(osP);
-                        Set<String> children = PsoUtil.getInstance().getDescendants( osP, this.contextId );
-                        osPsFinal.addAll(children);
-                    }
-                    // does the admin role have authority over the perm object?
-                    if(osPsFinal.contains(pObj.getOu()))
-                    {
-                        // Get the Role range for admin role:
-                        Set<String> range;
-                        if(uaRole.getBeginRange() != null && uaRole.getEndRange() != null && !uaRole.getBeginRange().equalsIgnoreCase(uaRole.getEndRange()))
-                        {
-                            range = RoleUtil.getInstance().getAscendants(uaRole.getBeginRange(), uaRole.getEndRange(), uaRole.isEndInclusive(), this.contextId);
-                            if(uaRole.isBeginInclusive())
-                            {
-                                range.add(uaRole.getBeginRange());
-                            }
-                            if( CollectionUtils.isNotEmpty( range ))
-                            {
-                                // Does admin role have authority over a role contained with the allowable role range?
-                                if(range.contains(role.getName()))
-                                {
-                                    result = true;
-                                    break;
-                                }
-                            }
-                        }
-                        // Does admin role have authority over the role?
-                        else if(uaRole.getBeginRange() != null && uaRole.getBeginRange().equalsIgnoreCase(role.getName()))
-                        {
-                            result = true;
-                            break;
-                        }
-                    }
+                    result = true;
+                    break;
                 }
             }
         }
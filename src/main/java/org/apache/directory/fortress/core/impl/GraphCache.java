@@ -0,0 +1,448 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.Graphable;
+import org.apache.directory.fortress.core.model.Hier;
+import org.apache.directory.fortress.core.model.Relationship;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.GraphLoadMetrics;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.apache.directory.fortress.core.util.cache.Cache;
+import org.jgrapht.graph.SimpleDirectedGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Refresh-ahead holder for the hierarchy graphs of one {@link HierUtil.Type}, one graph per tenant.  Used by
+ * {@link RoleUtil}, {@link AdminRoleUtil}, {@link UsoUtil} and {@link PsoUtil}.
+ * <p>
+ * Only the first request for a tenant loads its graph.  Callers arriving during that load wait on its future rather than
+ * a monitor, and no monitor here is held across ldap i/o, so virtual threads are not pinned.  Afterwards the graph is
+ * served from the cache and, once its refresh interval has passed, a single background task reloads it from ldap while
+ * callers keep using the previous snapshot.  The interval is set by {@code hierarchy.refresh.interval} (seconds, default 600) and is
+ * shortened by a random amount of up to {@code hierarchy.refresh.jitter} percent (default 10) so tenants loaded together
+ * do not all refresh at once.  A refresh that fails keeps the previous snapshot.  Load times are reported by
+ * {@link GraphLoadMetrics}.
+ * <p>
+ * Updates made by this process through {@link #updateHier} are applied to the snapshot in place.  A background reload
+ * that started before such an update is discarded and retried, so it cannot overwrite the newer edge.  Changes made by other
+ * processes and reported by the directory change feed are applied the same way through {@link #syncParents}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class GraphCache
+{
+    private static final String CLS_NM = GraphCache.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String REFRESH_INTERVAL = "hierarchy.refresh.interval";
+    private static final String REFRESH_JITTER = "hierarchy.refresh.jitter";
+    private static final int DEFAULT_REFRESH_INTERVAL = 600;
+    private static final int DEFAULT_REFRESH_JITTER = 10;
+    private static final ExecutorService REFRESHER = Executors.newCachedThreadPool( ThreadUtil.newThreadFactory(
+        "fortress-graph-refresh-" ) );
+
+    /**
+     * Reads the hierarchical relationships of one tenant from ldap.
+     */
+    interface Loader
+    {
+        /**
+         * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+         * @return list of entities having parents.
+         * @throws SecurityException in the event of ldap or system error.
+         */
+        List<Graphable> getAllDescendants( String contextId ) throws SecurityException;
+    }
+
+    private final Cache cache;
+    private final HierUtil.Type type;
+    private final Loader loader;
+    private final long intervalMillis;
+    private final int jitterPercent;
+    // first loads in progress, by cache key:
+    private final ConcurrentMap<String, CompletableFuture<Snapshot>> loading = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param cache  holds one {@link Snapshot} per tenant.
+     * @param type   of hierarchy, used for cache keys and logging.
+     * @param loader reads the hierarchy from ldap.
+     */
+    GraphCache( Cache cache, HierUtil.Type type, Loader loader )
+    {
+        this.cache = cache;
+        this.type = type;
+        this.loader = loader;
+        Config cfg = Config.getInstance();
+        this.intervalMillis = TimeUnit.SECONDS.toMillis( Math.max( 1, cfg.getInt( REFRESH_INTERVAL,
+            DEFAULT_REFRESH_INTERVAL ) ) );
+        this.jitterPercent = Math.min( 100, Math.max( 0, cfg.getInt( REFRESH_JITTER, DEFAULT_REFRESH_JITTER ) ) );
+    }
+
+
+    /**
+     * Return the tenant's graph, loading it if not yet cached and starting a background refresh if due.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return handle to simple digraph containing the hierarchy.
+     */
+    SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
+    {
+        Snapshot snapshot = getSnapshot( contextId );
+        if ( System.currentTimeMillis() >= snapshot.refreshAt && snapshot.refreshing.compareAndSet( false, true ) )
+        {
+            scheduleRefresh( contextId, snapshot );
+        }
+        return snapshot.graph;
+    }
+
+
+    /**
+     * Apply a relationship change to the tenant's graph.
+     *
+     * @param contextId    maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @param relationship contains parent-child relationship targeted for change.
+     * @param op           used to pass the ldap op {@link Hier.Op#ADD}, {@link Hier.Op#MOD}, {@link Hier.Op#REM}
+     * @throws SecurityException in the event of a system error.
+     */
+    void updateHier( String contextId, Relationship relationship, Hier.Op op ) throws SecurityException
+    {
+        Snapshot snapshot = getSnapshot( contextId );
+        synchronized ( snapshot )
+        {
+            HierUtil.updateHier( snapshot.graph, relationship, op );
+            snapshot.version++;
+        }
+    }
+
+
+    /**
+     * Make the edges leaving an entity in the tenant's cached graph match the parents it has in ldap.  Does nothing if the
+     * graph isn't cached, it will be loaded with the change.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @param name      of the entity that changed.
+     * @param parents   names of the entity's parents, null if the entity was deleted.
+     * @throws SecurityException in the event of a system error.
+     */
+    void syncParents( String contextId, String name, Set<String> parents ) throws SecurityException
+    {
+        // peek, a miss here is not followed by a load and must not lock the key:
+        Snapshot snapshot = ( Snapshot ) cache.peek( getKey( contextId ) );
+        if ( snapshot == null )
+        {
+            return;
+        }
+        String child = name.toUpperCase();
+        synchronized ( snapshot )
+        {
+            SimpleDirectedGraph<String, Relationship> graph = snapshot.graph;
+            if ( parents == null )
+            {
+                synchronized ( graph )
+                {
+                    graph.removeVertex( child );
+                }
+            }
+            else
+            {
+                Set<String> added = new HashSet<>();
+                for ( String parent : parents )
+                {
+                    added.add( parent.toUpperCase() );
+                }
+                if ( graph.containsVertex( child ) )
+                {
+                    for ( Relationship edge : new ArrayList<>( graph.outgoingEdgesOf( child ) ) )
+                    {
+                        if ( !added.remove( graph.getEdgeTarget( edge ) ) )
+                        {
+                            HierUtil.updateHier( graph, edge, Hier.Op.REM );
+                        }
+                    }
+                }
+                for ( String parent : added )
+                {
+                    HierUtil.updateHier( graph, new Relationship( child, parent ), Hier.Op.ADD );
+                }
+            }
+            snapshot.version++;
+        }
+    }
+
+
+    /**
+     * Reload the tenant's cached graph in the background on its next use, keeping the current graph until then.  Used when
+     * changes may have been missed.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    void expire( String contextId )
+    {
+        Snapshot snapshot = ( Snapshot ) cache.peek( getKey( contextId ) );
+        if ( snapshot != null )
+        {
+            snapshot.refreshAt = 0;
+        }
+    }
+
+
+    /**
+     * Load the tenant's graph now if it isn't cached yet.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    void warmUp( String contextId )
+    {
+        getSnapshot( contextId );
+    }
+
+
+    private Snapshot getSnapshot( String contextId )
+    {
+        String key = getKey( contextId );
+        Snapshot snapshot = ( Snapshot ) cache.get( key );
+        if ( snapshot == null )
+        {
+            CompletableFuture<Snapshot> load = new CompletableFuture<>();
+            CompletableFuture<Snapshot> pending = loading.putIfAbsent( key, load );
+            if ( pending != null )
+            {
+                // Another caller is loading this graph, wait for it without holding a monitor:
+                Snapshot loaded = null;
+                try
+                {
+                    loaded = await( pending );
+                }
+                finally
+                {
+                    // this caller missed too, release the entry it may hold, unless it was flushed or replaced since:
+                    if ( cache.peek( key ) == null )
+                    {
+                        cache.put( key, loaded );
+                    }
+                }
+                return loaded;
+            }
+            LOG.debug( "getSnapshot {} graph was null, creating... {}", type, contextId );
+            try
+            {
+                SimpleDirectedGraph<String, Relationship> graph;
+                try
+                {
+                    graph = loadGraph( contextId );
+                }
+                catch ( SecurityException se )
+                {
+                    LOG.info( "getSnapshot {} context [{}] caught SecurityException={}", type, contextId, se );
+                    graph = HierUtil.buildGraph( HierUtil.loadHier( contextId, null ) );
+                }
+                snapshot = new Snapshot( graph, nextRefresh() );
+            }
+            catch ( RuntimeException | Error e )
+            {
+                load.completeExceptionally( e );
+                throw e;
+            }
+            finally
+            {
+                load.complete( snapshot );
+                // Stop sharing the load before releasing the entry, so a caller blocked on it never waits on the load:
+                loading.remove( key, load );
+                // Always put after a miss, a null value releases the entry without caching it:
+                cache.put( key, snapshot );
+            }
+        }
+        return snapshot;
+    }
+
+
+    private static Snapshot await( CompletableFuture<Snapshot> pending )
+    {
+        try
+        {
+            return pending.join();
+        }
+        catch ( CompletionException e )
+        {
+            if ( e.getCause() instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+
+    private void scheduleRefresh( final String contextId, final Snapshot snapshot )
+    {
+        final long version;
+        synchronized ( snapshot )
+        {
+            version = snapshot.version;
+        }
+        try
+        {
+            REFRESHER.execute( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    refresh( contextId, snapshot, version );
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e )
+        {
+            LOG.warn( "scheduleRefresh {} context [{}] rejected={}", type, contextId, e.getMessage() );
+            snapshot.refreshing.set( false );
+        }
+    }
+
+
+    private void refresh( String contextId, Snapshot snapshot, long version )
+    {
+        try
+        {
+            SimpleDirectedGraph<String, Relationship> graph = loadGraph( contextId );
+            synchronized ( snapshot )
+            {
+                if ( snapshot.version == version )
+                {
+                    snapshot.graph = graph;
+                    snapshot.refreshAt = nextRefresh();
+                }
+                else
+                {
+                    // The graph was updated locally during the load, which may have missed the change.  Retry on next use:
+                    LOG.debug( "refresh {} context [{}] discarded, graph changed during load", type, contextId );
+                }
+            }
+        }
+        catch ( SecurityException se )
+        {
+            LOG.warn( "refresh {} context [{}] keeping previous graph, caught SecurityException={}", type, contextId,
+                se );
+            snapshot.refreshAt = nextRefresh();
+        }
+        catch ( RuntimeException re )
+        {
+            LOG.warn( "refresh {} context [{}] keeping previous graph, caught RuntimeException={}", type, contextId,
+                re );
+            snapshot.refreshAt = nextRefresh();
+        }
+        finally
+        {
+            snapshot.refreshing.set( false );
+        }
+    }
+
+
+    /**
+     * Read the hierarchy from ldap and build its graph, recording the load time.
+     */
+    private SimpleDirectedGraph<String, Relationship> loadGraph( String contextId ) throws SecurityException
+    {
+        LOG.info( "loadGraph initializing {} context [{}]", type, contextId );
+        long start = System.nanoTime();
+        boolean success = false;
+        try
+        {
+            List<Graphable> descendants = loader.getAllDescendants( contextId );
+            SimpleDirectedGraph<String, Relationship> graph = HierUtil.buildGraph( HierUtil.loadHier( contextId,
+                descendants ) );
+            success = true;
+            return graph;
+        }
+        finally
+        {
+            long nanos = System.nanoTime() - start;
+            GraphLoadMetrics.record( type.toString(), success, nanos );
+            LOG.info( "loadGraph {} context [{}] success [{}] took [{}] ms", type, contextId, success,
+                TimeUnit.NANOSECONDS.toMillis( nanos ) );
+        }
+    }
+
+
+    private long nextRefresh()
+    {
+        long jitter = jitterPercent == 0 ? 0 : ThreadLocalRandom.current().nextLong( intervalMillis * jitterPercent /
+            100 + 1 );
+        return System.currentTimeMillis() + intervalMillis - jitter;
+    }
+
+
+    /**
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return key to this tenant's cache entry.
+     */
+    private String getKey( String contextId )
+    {
+        String key = type.toString();
+        if ( StringUtils.isNotEmpty( contextId ) && !contextId.equalsIgnoreCase( GlobalIds.NULL ) )
+        {
+            key += ":" + contextId;
+        }
+        return key;
+    }
+
+
+    /**
+     * The cached value, one tenant's graph along with its refresh state.
+     */
+    private static final class Snapshot
+    {
+        private volatile SimpleDirectedGraph<String, Relationship> graph;
+        private volatile long refreshAt;
+        // guarded by this:
+        private long version;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+
+        Snapshot( SimpleDirectedGraph<String, Relationship> graph, long refreshAt )
+        {
+            this.graph = graph;
+            this.refreshAt = refreshAt;
+        }
+    }
+}
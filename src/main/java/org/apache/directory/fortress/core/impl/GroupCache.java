@@ -0,0 +1,360 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.model.ConstraintUtil;
+import org.apache.directory.fortress.core.model.Group;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.cache.Cache;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.apache.directory.fortress.core.util.cache.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Caches groups for {@link GroupP}, so group sessions and membership lookups skip the ldap searches.  Enable with
+ * {@code group.cache=true}.
+ * <p>
+ * Two things are kept in the {@code fortress.groups} cache, per tenant:
+ * <ul>
+ *   <li>Each group read by createSession, with its roles resolved and their constraints copied.</li>
+ *   <li>A reverse index of every group of the tenant by member dn, searched in place of the directory when finding the
+ *   groups of a user.</li>
+ * </ul>
+ * Callers always get copies, which are theirs to change.
+ * <p>
+ * Entries record the generation of their tenant when they were loaded.  {@link GroupP} bumps it when a group of the
+ * tenant is added, updated, deleted, assigned or deassigned, and {@link RoleP} when a role is updated or deleted, and the
+ * change is published on the cache invalidation bus.  Stale entries are then never returned again.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class GroupCache
+{
+    private static final String CLS_NM = GroupCache.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    static final String GROUP_CACHE = "fortress.groups";
+    private static final String ENABLE = "group.cache";
+    private static final String GROUP_KEY = "G";
+    private static final String MEMBER_KEY = "M";
+    private static volatile GroupCache sINSTANCE = null;
+
+    private final boolean isEnabled;
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> tenantGenerations = new ConcurrentHashMap<>();
+
+
+    /**
+     * A cached value and the generation of its tenant when it was loaded.
+     */
+    private static final class Entry
+    {
+        private final long generation;
+        private final Object value;
+
+
+        private Entry( long generation, Object value )
+        {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+
+
+    static GroupCache getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( GroupCache.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new GroupCache();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private GroupCache()
+    {
+        isEnabled = Config.getInstance().getBoolean( ENABLE, false );
+        LOG.info( "GroupCache enabled [{}]", isEnabled );
+        if ( isEnabled )
+        {
+            // the other processes publish the tenants whose groups or roles they changed, null for all:
+            CacheMgr.getInstance().subscribe( GROUP_CACHE, new InvalidationListener()
+            {
+                @Override
+                public void invalidate( String contextId, String key )
+                {
+                    expire( contextId );
+                }
+
+
+                @Override
+                public void refresh()
+                {
+                    expire( null );
+                }
+            } );
+        }
+    }
+
+
+    /**
+     * @return true if {@code group.cache} is true.
+     */
+    boolean isEnabled()
+    {
+        return isEnabled;
+    }
+
+
+    /**
+     * Return the current generation of a tenant, to be passed to the put methods with the groups loaded after this call.
+     *
+     * @param contextId of the tenant.
+     * @return the generation.
+     */
+    long getGeneration( String contextId )
+    {
+        AtomicLong tenantGeneration = tenantGenerations.get( getContextId( contextId ) );
+        return generation.get() + ( tenantGeneration != null ? tenantGeneration.get() : 0 );
+    }
+
+
+    /**
+     * Return a copy of a group, with its roles, if it was cached and its tenant has not changed since.
+     *
+     * @param contextId of the tenant.
+     * @param name      of the group.
+     * @return the group or null.
+     */
+    Group getGroup( String contextId, String name )
+    {
+        Group group = ( Group ) get( contextId, getGroupKey( contextId, name ) );
+        return group != null ? copy( group, group.getSequenceId() ) : null;
+    }
+
+
+    /**
+     * Cache a group with its roles resolved.  Must follow every miss of {@link #getGroup}, with a null group if it
+     * couldn't be read, to release the key.
+     *
+     * @param contextId  of the tenant.
+     * @param name       of the group, as passed to {@link #getGroup}.
+     * @param generation from {@link #getGeneration}, read before the group was.
+     * @param group      contains the roles, a copy is cached, or null.
+     */
+    void putGroup( String contextId, String name, long generation, Group group )
+    {
+        getCache( contextId ).put( getGroupKey( contextId, name ), group != null ? new Entry( generation, copy( group,
+            group.getSequenceId() ) ) : null );
+    }
+
+
+    /**
+     * Return copies of the groups with the member, if the tenant's index was cached and has not changed since.
+     *
+     * @param contextId of the tenant.
+     * @param memberDn  dn of the member.
+     * @return the groups, empty if the dn is not a member of any, or null if the index must be loaded.
+     */
+    @SuppressWarnings("unchecked")
+    List<Group> getMemberGroups( String contextId, String memberDn )
+    {
+        Map<String, List<Group>> index = ( Map<String, List<Group>> ) get( contextId, getMemberKey( contextId ) );
+        if ( index == null )
+        {
+            return null;
+        }
+        List<Group> groups = index.get( StringUtils.lowerCase( memberDn ) );
+        List<Group> copies = new ArrayList<>();
+        if ( groups != null )
+        {
+            long sequence = 0;
+            for ( Group group : groups )
+            {
+                copies.add( copy( group, sequence++ ) );
+            }
+        }
+        return copies;
+    }
+
+
+    /**
+     * Cache the index of every group of a tenant by member dn.  The dns are matched case insensitive.  Must follow every
+     * miss of {@link #getMemberGroups}, with null groups if they couldn't be read, to release the key.
+     *
+     * @param contextId  of the tenant.
+     * @param generation from {@link #getGeneration}, read before the groups were.
+     * @param groups     every group of the tenant, with their members in dn format, or null.
+     */
+    void putMemberIndex( String contextId, long generation, List<Group> groups )
+    {
+        if ( groups == null )
+        {
+            getCache( contextId ).put( getMemberKey( contextId ), null );
+            return;
+        }
+        Map<String, List<Group>> index = new HashMap<>();
+        for ( Group group : groups )
+        {
+            if ( group.getMembers() == null )
+            {
+                continue;
+            }
+            for ( String member : group.getMembers() )
+            {
+                String memberDn = StringUtils.lowerCase( member );
+                List<Group> memberGroups = index.get( memberDn );
+                if ( memberGroups == null )
+                {
+                    memberGroups = new ArrayList<>();
+                    index.put( memberDn, memberGroups );
+                }
+                memberGroups.add( group );
+            }
+        }
+        getCache( contextId ).put( getMemberKey( contextId ), new Entry( generation, Collections.unmodifiableMap(
+            index ) ) );
+    }
+
+
+    /**
+     * Drop the groups of a tenant, and tell the other processes to do the same.
+     *
+     * @param contextId of the tenant.
+     */
+    void invalidate( String contextId )
+    {
+        if ( isEnabled )
+        {
+            expire( contextId );
+            CacheMgr.getInstance().publish( GROUP_CACHE, getContextId( contextId ), null );
+        }
+    }
+
+
+    /**
+     * Drop the groups of a tenant in this process only, e.g. for a change the directory reported to every process.
+     *
+     * @param contextId of the tenant, null for every tenant.
+     */
+    void expire( String contextId )
+    {
+        if ( contextId == null )
+        {
+            generation.incrementAndGet();
+            return;
+        }
+        String ctx = getContextId( contextId );
+        AtomicLong tenantGeneration = tenantGenerations.get( ctx );
+        if ( tenantGeneration == null )
+        {
+            AtomicLong created = new AtomicLong();
+            tenantGeneration = tenantGenerations.putIfAbsent( ctx, created );
+            if ( tenantGeneration == null )
+            {
+                tenantGeneration = created;
+            }
+        }
+        tenantGeneration.incrementAndGet();
+    }
+
+
+    private Object get( String contextId, String key )
+    {
+        Entry entry = ( Entry ) getCache( contextId ).get( key );
+        return entry != null && entry.generation == getGeneration( contextId ) ? entry.value : null;
+    }
+
+
+    /**
+     * Copy everything read from ldap, the session and the caller may change the members and roles.
+     */
+    private static Group copy( Group src, long sequence )
+    {
+        Group group = new Group( src.getName(), src.getDescription(), src.getType() );
+        group.setContextId( src.getContextId() );
+        group.setProtocol( src.getProtocol() );
+        group.setMembers( src.getMembers() != null ? new ArrayList<>( src.getMembers() ) : null );
+        group.setMemberDn( src.isMemberDn() );
+        group.setProperties( src.getProperties() );
+        group.setSequenceId( sequence );
+        if ( src.getRoles() != null )
+        {
+            List<UserRole> roles = new ArrayList<>();
+            for ( UserRole srcRole : src.getRoles() )
+            {
+                UserRole role = new UserRole( src.getName(), srcRole.getName(), true );
+                ConstraintUtil.copy( srcRole, role );
+                roles.add( role );
+            }
+            group.setRoles( roles );
+        }
+        return group;
+    }
+
+
+    private static Cache getCache( String contextId )
+    {
+        return CacheMgr.getInstance().getCache( GROUP_CACHE, contextId );
+    }
+
+
+    private static String getGroupKey( String contextId, String name )
+    {
+        // the cache may be shared by the tenants:
+        return getContextId( contextId ) + GlobalIds.PROP_SEP + GROUP_KEY + GlobalIds.PROP_SEP
+            + StringUtils.lowerCase( name );
+    }
+
+
+    private static String getMemberKey( String contextId )
+    {
+        return getContextId( contextId ) + GlobalIds.PROP_SEP + MEMBER_KEY;
+    }
+
+
+    private static String getContextId( String contextId )
+    {
+        return StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) ? GlobalIds.HOME
+            : contextId;
+    }
+}
@@ -60,6 +60,7 @@ final class GroupP
         validate( group );
 
         Group outGroup = gDao.create(group);
+        GroupCache.getInstance().invalidate( group.getContextId() );
         fillRoles(outGroup);
         return outGroup;
     }
@@ -76,7 +77,9 @@ final class GroupP
     {
         validate( group );
 
-        return gDao.update( group );
+        Group outGroup = gDao.update( group );
+        GroupCache.getInstance().invalidate( group.getContextId() );
+        return outGroup;
     }
 
 
@@ -88,7 +91,9 @@ final class GroupP
      */
     Group delete( Group group ) throws SecurityException
     {
-        return gDao.remove( group );
+        Group outGroup = gDao.remove( group );
+        GroupCache.getInstance().invalidate( group.getContextId() );
+        return outGroup;
     }
 
 
@@ -104,7 +109,9 @@ final class GroupP
      */
     Group add( Group group, String key, String value ) throws SecurityException
     {
-        return gDao.add( group, key, value );
+        Group outGroup = gDao.add( group, key, value );
+        GroupCache.getInstance().invalidate( group.getContextId() );
+        return outGroup;
     }
 
 
@@ -120,7 +127,9 @@ final class GroupP
      */
     Group delete( Group group, String key, String value ) throws SecurityException
     {
-        return gDao.delete( group, key, value );
+        Group outGroup = gDao.delete( group, key, value );
+        GroupCache.getInstance().invalidate( group.getContextId() );
+        return outGroup;
     }
 
 
@@ -137,7 +146,9 @@ final class GroupP
         Group group = read( entity );
         group.setContextId( entity.getContextId() );
 
-        return gDao.assign( group, userDn );
+        Group outGroup = gDao.assign( group, userDn );
+        GroupCache.getInstance().invalidate( entity.getContextId() );
+        return outGroup;
     }
 
 
@@ -154,7 +165,9 @@ final class GroupP
         Group group = read( entity );
         group.setContextId( entity.getContextId() );
 
-        return gDao.deassign( group, userDn );
+        Group outGroup = gDao.deassign( group, userDn );
+        GroupCache.getInstance().invalidate( entity.getContextId() );
+        return outGroup;
     }
 
 
@@ -189,7 +202,8 @@ final class GroupP
 
 
     /**
-     * Takes a search string that contains full or partial Group name in directory.
+     * Takes a search string that contains full or partial Group name in directory.  When the {@link GroupCache} is
+     * enabled the groups are found in its index of the tenant's groups by member, which is loaded with one search.
      *
      * @param user contains full dn for existing user.
      * @return List of type Group containing fully populated matching entities.  If no records found this will be empty.
@@ -197,7 +211,35 @@ final class GroupP
      */
     List<Group> search( User user ) throws SecurityException
     {
-        return gDao.find( user );
+        GroupCache cache = GroupCache.getInstance();
+        if ( !cache.isEnabled() )
+        {
+            return gDao.find( user );
+        }
+        List<Group> groups = cache.getMemberGroups( user.getContextId(), user.getDn() );
+        if ( groups == null )
+        {
+            long generation = cache.getGeneration( user.getContextId() );
+            Group allGroups = new Group( "" );
+            allGroups.setContextId( user.getContextId() );
+            List<Group> all = null;
+            try
+            {
+                all = gDao.find( allGroups );
+            }
+            finally
+            {
+                // always put, a miss on the blocking cache holds a lock on the key until released:
+                cache.putMemberIndex( user.getContextId(), generation, all );
+            }
+            groups = cache.getMemberGroups( user.getContextId(), user.getDn() );
+            if ( groups == null )
+            {
+                // the tenant changed while the index was loaded:
+                groups = gDao.find( user );
+            }
+        }
+        return groups;
     }
 
     /**
@@ -242,13 +284,14 @@ final class GroupP
         // Did the caller pass in a set of roles for selective activation?
         if ( CollectionUtils.isNotEmpty( group.getMembers() ) )
         {
-            // Process selective activation of user's RBAC roles into session:
-            List<String> availableRoles = session.getGroup().getMembers();
+            // Process selective activation of user's RBAC roles into session, on the session's own copy of the members:
+            Group sessionGroup = session.getGroup();
+            List<String> availableRoles = new ArrayList<>( sessionGroup.getMembers() );
             availableRoles.retainAll( group.getMembers() );
+            sessionGroup.setMembers( availableRoles );
+            // Fill aux field 'roles' with the Role entities of the members left:
+            fillRoles( sessionGroup );
         }
-        // Fill aux field 'roles' with Role entities
-        fillRoles( session.getGroup() );
-
         // Check role temporal constraints + activate roles:
         VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.ROLE, true );
         return session;
@@ -257,7 +300,8 @@ final class GroupP
 
     private Session createSessionTrusted( Group inGroup) throws SecurityException
     {
-        Group group = read( inGroup );
+        // Read the group with aux field 'roles' filled with Role entities:
+        Group group = readResolved( inGroup );
         group.setContextId( inGroup.getContextId() );
 
         if ( group.getType() != Group.Type.ROLE )
@@ -275,6 +319,34 @@ final class GroupP
     }
 
 
+    /**
+     * Same as {@link #read(Group)}, from the {@link GroupCache} when it is enabled.
+     */
+    private Group readResolved( Group inGroup ) throws SecurityException
+    {
+        GroupCache cache = GroupCache.getInstance();
+        if ( !cache.isEnabled() )
+        {
+            return read( inGroup );
+        }
+        Group group = cache.getGroup( inGroup.getContextId(), inGroup.getName() );
+        if ( group == null )
+        {
+            long generation = cache.getGeneration( inGroup.getContextId() );
+            try
+            {
+                group = read( inGroup );
+            }
+            finally
+            {
+                // always put, a miss on the blocking cache holds a lock on the key until released:
+                cache.putGroup( inGroup.getContextId(), inGroup.getName(), generation, group );
+            }
+        }
+        return group;
+    }
+
+
     /**
      * Populates the auxiliary field 'roles' in given group object with
      * {@link UserRole} data
@@ -155,7 +155,7 @@ final class OrgUnitDAO extends LdapDataProvider
             // These multi-valued attributes are optional.  The utility function will return quietly if no items are loaded into collection:
             loadAttrs( entity.getParents(), entry, GlobalIds.PARENT_NODES );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
         }
         catch ( LdapException e )
@@ -210,7 +210,7 @@ final class OrgUnitDAO extends LdapDataProvider
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
             }
         }
@@ -254,7 +254,7 @@ final class OrgUnitDAO extends LdapDataProvider
         {
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, GlobalIds.PARENT_NODES ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, dn, mods, entity );
         }
         catch ( LdapException e )
@@ -294,7 +294,7 @@ final class OrgUnitDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             delete( ld, dn, entity );
         }
         catch ( LdapException e )
@@ -337,7 +337,7 @@ final class OrgUnitDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             Entry findEntry = read( ld, dn, ORGUNIT_ATRS );
 
             if ( findEntry == null )
@@ -419,7 +419,7 @@ final class OrgUnitDAO extends LdapDataProvider
             String searchVal = encodeSafeText( orgUnit.getName(), GlobalIds.ROLE_LEN );
             String filter = GlobalIds.FILTER_PREFIX + ORGUNIT_OBJECT_CLASS_NM + ")("
                 + SchemaConstants.OU_AT + "=" + searchVal + "*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( orgUnit.getContextId() );
             SearchCursor searchResults = search( ld, orgUnitRoot,
                 SearchScope.ONELEVEL, filter, ORGUNIT_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -488,7 +488,7 @@ final class OrgUnitDAO extends LdapDataProvider
         try
         {
             String filter = "(objectclass=" + ORGUNIT_OBJECT_CLASS_NM + ")";
-            ld = getAdminConnection();
+            ld = getAdminConnection( orgUnit.getContextId() );
             SearchCursor searchResults = search( ld, orgUnitRoot,
                 SearchScope.ONELEVEL, filter, ORGUNIT_ATR, false, GlobalIds.BATCH_SIZE );
 
@@ -578,7 +578,7 @@ final class OrgUnitDAO extends LdapDataProvider
         {
             filter = GlobalIds.FILTER_PREFIX + ORGUNIT_OBJECT_CLASS_NM + ")("
                 + GlobalIds.PARENT_NODES + "=*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( orgUnit.getContextId() );
             SearchCursor searchResults = search( ld, orgUnitRoot,
                 SearchScope.ONELEVEL, filter, DESC_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
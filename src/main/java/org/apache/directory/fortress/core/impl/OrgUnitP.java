@@ -308,6 +308,7 @@ final class OrgUnitP
                 permPoolLock.writeLock().unlock();
             }
         }
+        publishChange( entity );
 
         return oe;
     }
@@ -393,6 +394,7 @@ final class OrgUnitP
                 permPoolLock.writeLock().unlock();
             }
         }
+        publishChange( entity );
 
         return entity;
     }
@@ -438,6 +440,31 @@ final class OrgUnitP
     }
 
 
+    /**
+     * Drop a tenant's cached set of ou names so it is reloaded from ldap on next use.
+     *
+     * @param type      {@link OrgUnit.Type#USER} or {@link OrgUnit.Type#PERM}.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    static void clearCache( OrgUnit.Type type, String contextId )
+    {
+        ouCache.clear( getKey( type == OrgUnit.Type.USER ? USER_OUS : PERM_OUS, contextId ) );
+    }
+
+
+    /**
+     * Tell the other fortress processes to drop their copy of the tenant's set of ou names after one was added or
+     * removed here.
+     *
+     * @param entity contains the type and contextId of the ou.
+     */
+    private static void publishChange( OrgUnit entity )
+    {
+        CacheMgr.getInstance().publish( FORTRESS_OUS, entity.getContextId(), getKey(
+            entity.getType() == OrgUnit.Type.USER ? USER_OUS : PERM_OUS, entity.getContextId() ) );
+    }
+
+
     /**
      * Build a key that is composed of the OU type ({@link #USER_OUS} or {@link #PERM_OUS}) and the contextId which is the id of tenant.
      *
@@ -104,7 +104,7 @@ final class OrganizationalUnitDAO extends LdapDataProvider
                 SchemaConstants.OU_AT, oe.getName(),
                 SchemaConstants.DESCRIPTION_AT, oe.getDescription() );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( oe.getContextId() );
             add( ld, myEntry );
         }
         catch ( LdapException e )
@@ -141,7 +141,7 @@ final class OrganizationalUnitDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( oe.getContextId() );
             deleteRecursive( ld, nodeDn );
         }
         catch ( CursorException e )
@@ -20,9 +20,12 @@
 package org.apache.directory.fortress.core.impl;
 
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -40,14 +43,20 @@ import org.apache.directory.api.ldap.model.entry.ModificationOperation;
 import org.apache.directory.api.ldap.model.exception.LdapAttributeInUseException;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.exception.LdapNoSuchAttributeException;
 import org.apache.directory.api.ldap.model.exception.LdapNoSuchObjectException;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
 import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
 import org.apache.directory.fortress.core.CreateException;
+import org.apache.directory.fortress.core.Decision;
 import org.apache.directory.fortress.core.FinderException;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.RemoveException;
+import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.UpdateException;
 import org.apache.directory.fortress.core.ldap.LdapDataProvider;
 import org.apache.directory.fortress.core.model.AdminRole;
@@ -61,7 +70,11 @@ import org.apache.directory.fortress.core.util.PropUtil;
 import org.apache.directory.fortress.core.model.Role;
 import org.apache.directory.fortress.core.model.Session;
 import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
 import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.audit.AuditSink;
+import org.apache.directory.fortress.core.util.audit.AuditSinkMgr;
+import org.apache.directory.fortress.core.util.audit.AuthZRecord;
 import org.apache.directory.ldap.client.api.LdapConnection;
 
 
@@ -293,7 +306,7 @@ class PermDAO extends LdapDataProvider
             }
 
             // now add the new entry to directory:
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
             entity.setDn( dn );
         }
@@ -353,7 +366,7 @@ class PermDAO extends LdapDataProvider
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
                 entity.setDn( dn );
             }
@@ -385,8 +398,12 @@ class PermDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             deleteRecursive( ld, dn, entity );
+            if ( !entity.isAdmin() )
+            {
+                PermIndex.getInstance().removeObject( entity.getContextId(), entity.getObjName() );
+            }
         }
         catch ( LdapException e )
         {
@@ -403,6 +420,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( entity.getContextId(), entity.getObjName() );
         }
     }
 
@@ -471,9 +490,10 @@ class PermDAO extends LdapDataProvider
             }
 
             // now add the new entry to directory:
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
             entity.setDn( dn );
+            PermIndex.getInstance().put( entity.getContextId(), entity );
         }
         catch ( LdapException e )
         {
@@ -484,6 +504,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( entity.getContextId(), entity.getObjName() );
         }
 
         return entity;
@@ -529,7 +551,7 @@ class PermDAO extends LdapDataProvider
             entry.add( SchemaConstants.CN_AT, entity.getName() );                    
             
             // now add the new entry to directory:
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
             entity.setDn( dn );
         }
@@ -616,7 +638,7 @@ class PermDAO extends LdapDataProvider
             
             
             // now add the new entry to directory:
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
             entity.setDn( dn );
         }
@@ -688,7 +710,7 @@ class PermDAO extends LdapDataProvider
             	           
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
                 entity.setDn( dn );
             }
@@ -757,9 +779,10 @@ class PermDAO extends LdapDataProvider
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
                 entity.setDn( dn );
+                reindex( entity );
             }
         }
         catch ( LdapException e )
@@ -771,6 +794,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( entity.getContextId(), entity.getObjName() );
         }
 
         return entity;
@@ -790,8 +815,9 @@ class PermDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             deleteRecursive( ld, dn, entity );
+            PermIndex.getInstance().remove( entity.getContextId(), entity );
         }
         catch ( LdapException e )
         {
@@ -808,6 +834,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( entity.getContextId(), entity.getObjName() );
         }
     }
 
@@ -822,7 +850,7 @@ class PermDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             deleteRecursive( ld, dn, entity );
         }
         catch ( LdapException e )
@@ -854,7 +882,7 @@ class PermDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             delete(ld,  dn);
         }
         catch ( LdapException e )
@@ -889,8 +917,9 @@ class PermDAO extends LdapDataProvider
 
             mods.add( new DefaultModification(
                 ModificationOperation.ADD_ATTRIBUTE, ROLES, role.getName() ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( pOp.getContextId() );
             modify( ld, dn, mods, pOp );
+            PermIndex.getInstance().update( pOp.getContextId(), pOp, role.getName(), true, true );
         }
         catch ( LdapAttributeInUseException e )
         {
@@ -916,6 +945,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( pOp.getContextId(), pOp.getObjName() );
         }
     }
 
@@ -939,8 +970,9 @@ class PermDAO extends LdapDataProvider
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification(
                 ModificationOperation.REMOVE_ATTRIBUTE, ROLES, role.getName() ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( pOp.getContextId() );
             modify( ld, dn, mods, pOp );
+            PermIndex.getInstance().update( pOp.getContextId(), pOp, role.getName(), true, false );
         }
         catch ( LdapNoSuchAttributeException e )
         {
@@ -958,6 +990,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( pOp.getContextId(), pOp.getObjName() );
         }
     }
 
@@ -981,8 +1015,9 @@ class PermDAO extends LdapDataProvider
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification(
                 ModificationOperation.ADD_ATTRIBUTE, USERS, user.getUserId() ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( pOp.getContextId() );
             modify( ld, dn, mods, pOp );
+            PermIndex.getInstance().update( pOp.getContextId(), pOp, user.getUserId(), false, true );
         }
         catch ( LdapAttributeInUseException e )
         {
@@ -1009,6 +1044,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( pOp.getContextId(), pOp.getObjName() );
         }
     }
 
@@ -1033,8 +1070,9 @@ class PermDAO extends LdapDataProvider
 
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE,
                 USERS, user.getUserId() ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( pOp.getContextId() );
             modify( ld, dn, mods, pOp );
+            PermIndex.getInstance().update( pOp.getContextId(), pOp, user.getUserId(), false, false );
         }
         catch ( LdapNoSuchAttributeException e )
         {
@@ -1052,6 +1090,8 @@ class PermDAO extends LdapDataProvider
         finally
         {
             closeAdminConnection( ld );
+            PermSearchPlanner.getInstance().invalidate();
+            DecisionCache.getInstance().invalidate( pOp.getContextId(), pOp.getObjName() );
         }
     }
 
@@ -1072,7 +1112,7 @@ class PermDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( permission.getContextId() );
             Entry findEntry = read( ld, dn, PERMISSION_OP_ATRS );
             if ( findEntry == null )
             {
@@ -1099,6 +1139,89 @@ class PermDAO extends LdapDataProvider
     }
 
 
+    /**
+     * Replace the indexed copy of an updated permission with what is now stored, or drop the tenant's index if it cannot
+     * be read back.
+     *
+     * @param entity contains the object name, operation name and optional object id of the updated permission.
+     */
+    private void reindex( Permission entity )
+    {
+        PermIndex index = PermIndex.getInstance();
+        if ( index.isEnabled() && !entity.isAdmin() )
+        {
+            try
+            {
+                Permission stored = getPerm( entity );
+                stored.setContextId( entity.getContextId() );
+                index.put( entity.getContextId(), stored );
+            }
+            catch ( FinderException e )
+            {
+                // the update succeeded, reload the index rather than fail the caller:
+                index.invalidate( entity.getContextId() );
+            }
+        }
+    }
+
+
+    /**
+     * Read every RBAC permission operation of the tenant, one page at a time, to load the {@link PermIndex}.
+     *
+     * @param contextId of the tenant.
+     * @param pageSize  number of entries requested per page.
+     * @return all permission operations with their role and user grants.
+     * @throws FinderException if the search fails.
+     */
+    List<Permission> findAllPermissions( String contextId, int pageSize ) throws FinderException
+    {
+        List<Permission> permList = new ArrayList<>();
+        LdapConnection ld = null;
+        String permRoot = getRootDn( false, contextId );
+        String filter = "(" + SchemaConstants.OBJECT_CLASS_AT + "=" + PERM_OP_OBJECT_CLASS_NAME + ")";
+        try
+        {
+            ld = getAdminConnection( contextId );
+            long sequence = 0;
+            byte[] cookie = null;
+            do
+            {
+                try ( SearchCursor searchResults = searchPaged( ld, permRoot, SearchScope.SUBTREE, filter,
+                    PERMISSION_OP_ATRS, pageSize, cookie ) )
+                {
+                    while ( searchResults.next() )
+                    {
+                        permList.add( unloadPopLdapEntry( searchResults.getEntry(), sequence++, false ) );
+                    }
+                    cookie = getPagedCookie( searchResults );
+                }
+            }
+            while ( cookie != null );
+        }
+        catch ( LdapException e )
+        {
+            String error = "findAllPermissions contextId [" + contextId + "] caught LdapException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.PERM_SEARCH_FAILED, error, e );
+        }
+        catch ( CursorException e )
+        {
+            String error = "findAllPermissions contextId [" + contextId + "] caught CursorException="
+                + e.getMessage();
+            throw new FinderException( GlobalErrIds.PERM_SEARCH_FAILED, error, e );
+        }
+        catch ( IOException e )
+        {
+            String error = "findAllPermissions contextId [" + contextId + "] caught IOException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.PERM_SEARCH_FAILED, error, e );
+        }
+        finally
+        {
+            closeAdminConnection( ld );
+        }
+        return permList;
+    }
+
+
     /**
      * @param permObj
      * @return
@@ -1115,7 +1238,7 @@ class PermDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( permObj.getContextId() );
             Entry findEntry = read( ld, dn, PERMISION_OBJ_ATRS );
             if ( findEntry == null )
             {
@@ -1151,7 +1274,7 @@ class PermDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( permAttributeSet.getContextId() );
             Entry findEntry = read( ld, dn, PERMISION_ATTRIBUTE_SET_ATRS );
             if ( findEntry == null )
             {
@@ -1199,7 +1322,7 @@ class PermDAO extends LdapDataProvider
             filterbuf.append( "=" );
             filterbuf.append( paSetVal );
             filterbuf.append(  "))" );
-            ld = getAdminConnection();
+            ld = getAdminConnection( paSet.getContextId() );
             SearchCursor searchResults = search( ld, permRoot,
                 SearchScope.SUBTREE, filterbuf.toString(), PERMISION_ATTRIBUTE_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -1238,24 +1361,66 @@ class PermDAO extends LdapDataProvider
      *          In the event system error occurs looking up data on ldap server.
      */
     boolean checkPermission( Session session, Permission inPerm ) throws FinderException
+    {
+        Decision decision = tryCheckPermission( session, inPerm );
+        if ( decision.getErrorId() == GlobalErrIds.PERM_NOT_EXIST )
+        {
+            // if permission not found, cannot continue.
+            String error = "checkPermission DOES NOT EXIST : obj name [" + inPerm.getObjName() + "], obj id ["
+                + inPerm.getObjId() + "], op name [" + inPerm.getOpName() + "], idAdmin [" + inPerm.isAdmin() + "]";
+            throw new FinderException( GlobalErrIds.PERM_NOT_EXIST, error, false );
+        }
+        return decision.isAllowed();
+    }
+
+
+    /**
+     * Same as {@link #checkPermission(Session, Permission)} except a permission that does not exist is returned as
+     * {@link Decision#NOT_FOUND} instead of thrown.
+     *
+     * @param session contains the user's activated roles.
+     * @param inPerm  must contain required attributes {@link Permission#objName} and {@link Permission#opName}.
+     * @return decision containing result of check.
+     * @throws org.apache.directory.fortress.core.FinderException
+     *          In the event system error occurs looking up data on ldap server.
+     */
+    Decision tryCheckPermission( Session session, Permission inPerm ) throws FinderException
     {
         boolean isAuthZd = false;
         LdapConnection ld = null;
-        String dn = getOpRdn( inPerm.getOpName(), inPerm.getObjId() ) + "," + GlobalIds.POBJ_NAME + "="
-            + inPerm.getObjName() + "," + getRootDn( inPerm.isAdmin(), inPerm.getContextId() );
+        Dn dn = getOpDn( inPerm );
+        Set<String> activatedRoles = getActivatedRoles( session, inPerm );
+        DecisionCache decisions = DecisionCache.getInstance();
+        String key = null;
+        long generation = 0;
+        boolean isCached = false;
+        if ( decisions.isEnabled() )
+        {
+            key = DecisionCache.getKey( inPerm, activatedRoles );
+            DecisionCache.Entry cached = decisions.get( inPerm.getContextId(), key, inPerm.getObjName() );
+            if ( cached != null )
+            {
+                return getCachedDecision( session, inPerm, dn, cached );
+            }
+            // taken before the read, a change made meanwhile leaves the decision stale:
+            generation = decisions.getGeneration( inPerm.getContextId(), inPerm.getObjName() );
+        }
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( inPerm.getContextId() );
 
             // LDAP Operation #1: Read the targeted permission from ldap server
             Entry entry = read( ld, dn, PERMISSION_OP_ATRS );
             if ( entry == null )
             {
+                if ( key != null )
+                {
+                    decisions.putNotFound( inPerm.getContextId(), key, generation );
+                    isCached = true;
+                }
                 // if permission not found, cannot continue.
-                String error = "checkPermission DOES NOT EXIST : obj name [" + inPerm.getObjName() + "], obj id ["
-                    + inPerm.getObjId() + "], op name [" + inPerm.getOpName() + "], idAdmin [" + inPerm.isAdmin() + "]";
-                throw new FinderException( GlobalErrIds.PERM_NOT_EXIST, error );
+                return Decision.NOT_FOUND;
             }
 
             // load the permission entity with data retrieved from the permission node:
@@ -1273,7 +1438,13 @@ class PermDAO extends LdapDataProvider
             String attributeValue;
 
             // This method determines if the user is authorized for this permission:
-            isAuthZd = isAuthorized( session, outPerm );
+            isAuthZd = isAuthorized( session, outPerm, activatedRoles );
+            if ( key != null )
+            {
+                decisions.put( inPerm.getContextId(), key, generation, isGranted( outPerm.getRoles(),
+                    activatedRoles ), outPerm.getUsers() );
+                isCached = true;
+            }
 
             // This is done to leave an audit trail in ldap server log:
             if ( isAuthZd )
@@ -1292,7 +1463,7 @@ class PermDAO extends LdapDataProvider
             // LDAP Operation #2: Compare.
             if ( !session.isGroupSession() )
             {
-                addAuthZAudit( ld, dn, session.getUser().getDn(), attributeValue );
+                addAuthZAudit( ld, dn, session, outPerm, isAuthZd, attributeValue );
             }
         }
         catch ( LdapException e ) {
@@ -1305,38 +1476,75 @@ class PermDAO extends LdapDataProvider
             // There is a switch in fortress config to disable the audit ops.
             if (!session.isGroupSession())
             {
-                addAuthZAudit(ld, dn, session.getUser().getDn(), "AuthZ Invalid");
+                addAuthZAudit(ld, dn, session, inPerm, false, "AuthZ Invalid");
             }
         }
         finally
         {
+            // the key missed above, release it if nothing was cached:
+            if ( key != null && !isCached )
+            {
+                decisions.release( inPerm.getContextId(), key );
+            }
             closeAdminConnection( ld );
         }
 
-        return isAuthZd;
+        return Decision.valueOf( isAuthZd );
     }
 
 
     /**
-     * Perform LDAP compare operation here to associate audit record with user authorization event.
+     * Record the user authorization event.  If an {@link AuditSink} is configured the event is written to it, otherwise
+     * an LDAP compare operation is performed here to associate audit record with user authorization event.
      *
      * @param ld this method expects the ldap connection to be good
      * @param permDn contains distinguished name of the permission object.
-     * @param userDn contains the distinguished name of the user object.
+     * @param session contains the user and activated roles.
+     * @param permission contains the permission checked.
+     * @param result true if the user was authorized.
      * @param attributeValue string value will be associated with the 'audit' record stored in ldap.
      * @throws FinderException in the event ldap system exception occurs.
      */
-    private void addAuthZAudit( LdapConnection ld, String permDn, String userDn, String attributeValue )
-        throws FinderException
+    private void addAuthZAudit( LdapConnection ld, Dn permDn, Session session, Permission permission,
+        boolean result, String attributeValue ) throws FinderException
     {
         // Audit can be turned off here with fortress config param: 'disable.audit=true'
-        if ( Config.getInstance().isOpenldap() && ! Config.getInstance().isAuditDisabled() )
+        if ( Config.getInstance().isAuditDisabled() )
+        {
+            return;
+        }
+
+        AuditSink sink = AuditSinkMgr.getInstance().getSink();
+        if ( sink != null )
+        {
+            List<String> roleNames = new ArrayList<>();
+            List<? extends UserRole> roles = permission.isAdmin() ? session.getAdminRoles() : session.getRoles();
+            if ( roles != null )
+            {
+                for ( UserRole role : roles )
+                {
+                    roleNames.add( role.getName() );
+                }
+            }
+            try
+            {
+                sink.recordAuthZ( new AuthZRecord( System.currentTimeMillis(), session.getUserId(),
+                    permission.getObjName(), permission.getOpName(), permission.getObjId(), result,
+                    permission.isAdmin(), AuthZRecord.hashRoles( roleNames ) ) );
+            }
+            catch ( SecurityException e )
+            {
+                String error = "addAuthZAudit caught SecurityException=" + e.getMessage();
+                throw new FinderException( GlobalErrIds.AUDT_SINK_WRITE_FAILED, error, e );
+            }
+        }
+        else if ( Config.getInstance().isOpenldap() )
         {
             try
             {
                 // The compare method uses OpenLDAP's Proxy Authorization Control to assert identity of end user onto connection:
                 // LDAP Operation #2: Compare:
-                compareNode( ld, permDn, userDn, new DefaultAttribute( GlobalIds.POP_NAME, attributeValue ) );
+                compareNode( ld, permDn, session.getUser().getDn(), new DefaultAttribute( GlobalIds.POP_NAME, attributeValue ) );
             }
             catch ( UnsupportedEncodingException ee )
             {
@@ -1358,15 +1566,14 @@ class PermDAO extends LdapDataProvider
     /**
      * This function will first compare the userId from the session object with the list of users attached to permission object.
      * If match does not occur there, determine if there is a match between the authorized roles of user with roles attached to permission object.
-     * For this use {@link org.apache.directory.fortress.core.model.Permission#isAdmin()} to determine if admin permissions or normal permissions have been passed in by caller.
      *
-     * @param session contains the {@link org.apache.directory.fortress.core.model.Session#getUserId()},{@link Session#getRoles()} or {@link org.apache.directory.fortress.core.model.Session#getAdminRoles()}.
+     * @param session contains the {@link org.apache.directory.fortress.core.model.Session#getUserId()}.
      * @param permission contains {@link org.apache.directory.fortress.core.model.Permission#getUsers()} and {@link Permission#getRoles()}.
+     * @param activatedRoles the session's inherited RBAC or admin roles, from {@link #getActivatedRoles}.
      * @return binary result.
      */
-    private boolean isAuthorized( Session session, Permission permission )
+    private boolean isAuthorized( Session session, Permission permission, Set<String> activatedRoles )
     {
-        boolean result = false;
         Set<String> userIds = permission.getUsers();
 
         if ( !session.isGroupSession() && CollectionUtils.isNotEmpty( userIds )
@@ -1376,44 +1583,111 @@ class PermDAO extends LdapDataProvider
             return true;
         }
 
-        Set<String> roles = permission.getRoles();
+        return isGranted( permission.getRoles(), activatedRoles );
+    }
+
 
+    /**
+     * @param roles          granted the permission.
+     * @param activatedRoles the session's inherited roles.
+     * @return true if one of the activated roles is granted the permission.
+     */
+    private static boolean isGranted( Set<String> roles, Set<String> activatedRoles )
+    {
         if ( CollectionUtils.isNotEmpty( roles ) )
         {
-            if ( permission.isAdmin() )
+            for ( String role : roles )
             {
-                // ARBAC Permission check include's User's inherited admin roles:
-                Set<String> activatedRoles = AdminRoleUtil.getInheritedRoles( session.getAdminRoles(),
-                    permission.getContextId() );
-
-                for ( String role : roles )
+                // This is case insensitive op determines if user has matching role:
+                if ( activatedRoles.contains( role ) )
                 {
-                    // This is case insensitive op determines if user has matching admin role to the admin permission::
-                    if ( activatedRoles.contains( role ) )
-                    {
-                        result = true;
-                        break;
-                    }
+                    return true;
                 }
             }
-            else
-            {
-                // RBAC Permission check include's User's inherited roles:
-                Set<String> activatedRoles = RoleUtil.getInstance().getInheritedRoles( session.getRoles(), permission.getContextId() );
+        }
+        return false;
+    }
+
+
+    /**
+     * @param session    contains the activated RBAC and ARBAC roles.
+     * @param permission contains the admin flag and tenant.
+     * @return the session's inherited admin roles for an ARBAC permission, else its inherited RBAC roles.
+     */
+    private static Set<String> getActivatedRoles( Session session, Permission permission )
+    {
+        if ( permission.isAdmin() )
+        {
+            // ARBAC Permission check include's User's inherited admin roles:
+            return AdminRoleUtil.getInheritedRoles( session.getAdminRoles(), permission.getContextId() );
+        }
+        // RBAC Permission check include's User's inherited roles:
+        return RoleUtil.getInstance().getInheritedRoles( session.getRoles(), permission.getContextId() );
+    }
+
+
+    /**
+     * Answer a check from the {@link DecisionCache}.  The check is audited as if the permission had been read.
+     *
+     * @param session contains the userId.
+     * @param inPerm  contains the permission checked.
+     * @param dn      of the permission.
+     * @param cached  decision.
+     * @return the decision.
+     * @throws FinderException in the event ldap system exception occurs.
+     */
+    private Decision getCachedDecision( Session session, Permission inPerm, Dn dn, DecisionCache.Entry cached )
+        throws FinderException
+    {
+        if ( !cached.isFound() )
+        {
+            return Decision.NOT_FOUND;
+        }
+        boolean isAuthZd = cached.isAuthorized( session );
+        audit( session, inPerm, dn, isAuthZd );
+        return Decision.valueOf( isAuthZd );
+    }
+
 
-                for ( String role : roles )
+    /**
+     * Record the outcome of a check answered without reading the permission, as the read would have.
+     *
+     * @param session  contains the userId and activated roles.
+     * @param inPerm   must contain {@link Permission#objName}, {@link Permission#opName}, the admin flag and contextId.
+     * @param isAuthZd the outcome of the check.
+     * @throws FinderException in the event the audit compare fails.
+     */
+    void audit( Session session, Permission inPerm, boolean isAuthZd ) throws FinderException
+    {
+        audit( session, inPerm, getOpDn( inPerm ), isAuthZd );
+    }
+
+
+    private void audit( Session session, Permission inPerm, Dn dn, boolean isAuthZd ) throws FinderException
+    {
+        if ( !session.isGroupSession() && !Config.getInstance().isAuditDisabled() )
+        {
+            LdapConnection ld = null;
+            try
+            {
+                // only the ldap compare needs a connection:
+                if ( AuditSinkMgr.getInstance().getSink() == null && Config.getInstance().isOpenldap() )
                 {
-                    // This is case insensitive op determines if user has matching role:
-                    if ( activatedRoles.contains( role ) )
-                    {
-                        result = true;
-                        break;
-                    }
+                    ld = getAdminConnection( inPerm.getContextId() );
                 }
+                addAuthZAudit( ld, dn, session, inPerm, isAuthZd, isAuthZd ? inPerm.getOpName() : inPerm.getOpName()
+                    + GlobalIds.FAILED_AUTHZ_INDICATOR );
+            }
+            catch ( LdapException e )
+            {
+                String error = "checkPermission caught LdapException=" + e.getMessage();
+                throw new FinderException( GlobalErrIds.PERM_READ_OP_FAILED, error, e );
+            }
+            finally
+            {
+                closeAdminConnection( ld );
             }
         }
-
-        return result;
     }
 
 
@@ -1539,7 +1813,7 @@ class PermDAO extends LdapDataProvider
             filterbuf.append( "=" );
             filterbuf.append( permOpVal );
             filterbuf.append(  "*))" );
-            ld = getAdminConnection();
+            ld = getAdminConnection( permission.getContextId() );
             SearchCursor searchResults = search( ld, permRoot,
                 SearchScope.SUBTREE, filterbuf.toString(), PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -1584,7 +1858,7 @@ class PermDAO extends LdapDataProvider
                 filterbuf.append( "=" );
                 filterbuf.append( permObjVal );
                 filterbuf.append(  "))" );
-                ld = getAdminConnection();
+                ld = getAdminConnection( permObj.getContextId() );
                 SearchCursor searchResults = search( ld, permRoot,
                     SearchScope.SUBTREE, filterbuf.toString(), PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
                 long sequence = 0;
@@ -1651,7 +1925,7 @@ class PermDAO extends LdapDataProvider
                 }
                 
                 filterbuf.append("))");
-                ld = getAdminConnection();
+                ld = getAdminConnection( permission.getContextId() );
                 SearchCursor searchResults = search( ld, permRoot,
                     SearchScope.SUBTREE, filterbuf.toString(), PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
                 long sequence = 0;
@@ -1703,7 +1977,7 @@ class PermDAO extends LdapDataProvider
             filterbuf.append( "=" );
             filterbuf.append( permObjVal );
             filterbuf.append( "*))" );
-            ld = getAdminConnection();
+            ld = getAdminConnection( permObj.getContextId() );
             SearchCursor searchResults = search( ld, permRoot,
                 SearchScope.SUBTREE, filterbuf.toString(), PERMISION_OBJ_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -1765,7 +2039,7 @@ class PermDAO extends LdapDataProvider
                 maxLimit = 0;
             }
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( ou.getContextId() );
             SearchCursor searchResults = search( ld, permRoot,
                 SearchScope.SUBTREE, filterbuf.toString(), PERMISION_OBJ_ATRS, false, maxLimit );
             long sequence = 0;
@@ -1806,10 +2080,7 @@ class PermDAO extends LdapDataProvider
      */
     List<Permission> findPermissions( Role role, boolean noInheritance ) throws FinderException
     {
-        List<Permission> permList = new ArrayList<>();
-        LdapConnection ld = null;
         String permRoot;
-
         boolean isAdmin = false;
         if ( role.getClass().equals( AdminRole.class ) )
         {
@@ -1820,77 +2091,27 @@ class PermDAO extends LdapDataProvider
         {
             permRoot = getRootDn( role.getContextId(), GlobalIds.PERM_ROOT );
         }
-        try
+        Set<String> roles = new LinkedHashSet<>();
+        roles.add( role.getName() );
+        if( !noInheritance )
         {
-            String roleVal = encodeSafeText( role.getName(), GlobalIds.ROLE_LEN );
-            StringBuilder filterbuf = new StringBuilder();
-            filterbuf.append( GlobalIds.FILTER_PREFIX );
-            filterbuf.append( PERM_OP_OBJECT_CLASS_NAME );
-            filterbuf.append( ")(" );
-            Set<String> roles = null;
-            if( !noInheritance )
+            Set<String> ascendants;
+            if ( isAdmin )
             {
-                if ( role.getClass().equals( AdminRole.class ) )
-                {
-                    roles = AdminRoleUtil.getAscendants( role.getName(), role.getContextId() );
-                }
-                else
-                {
-                    roles = RoleUtil.getInstance().getAscendants( role.getName(), role.getContextId() );
-                }
-            }
-            if ( CollectionUtils.isNotEmpty( roles ) )
-            {
-                filterbuf.append( "|(" );
-                filterbuf.append( ROLES );
-                filterbuf.append( "=" );
-                filterbuf.append( roleVal );
-                filterbuf.append( ")" );
-                for ( String uRole : roles )
-                {
-                    filterbuf.append( "(" );
-                    filterbuf.append( ROLES );
-                    filterbuf.append( "=" );
-                    filterbuf.append( uRole );
-                    filterbuf.append( ")" );
-                }
-                filterbuf.append( ")" );
+                ascendants = AdminRoleUtil.getAscendants( role.getName(), role.getContextId() );
             }
             else
             {
-                filterbuf.append( ROLES );
-                filterbuf.append( "=" );
-                filterbuf.append( roleVal );
-                filterbuf.append( ")" );
+                ascendants = RoleUtil.getInstance().getAscendants( role.getName(), role.getContextId() );
             }
-
-            filterbuf.append( ")" );
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, permRoot,
-                SearchScope.SUBTREE, filterbuf.toString(), PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
-            long sequence = 0;
-
-            while ( searchResults.next() )
+            if ( CollectionUtils.isNotEmpty( ascendants ) )
             {
-                permList.add( unloadPopLdapEntry( searchResults.getEntry(), sequence++, isAdmin ) );
+                roles.addAll( ascendants );
             }
         }
-        catch ( LdapException e )
-        {
-            String error = "findPermissions caught LdapException=" + e.getMessage();
-            throw new FinderException( GlobalErrIds.PERM_ROLE_SEARCH_FAILED, error, e );
-        }
-        catch ( CursorException e )
-        {
-            String error = "findPermissions caught CursorException=" + e.getMessage();
-            throw new FinderException( GlobalErrIds.PERM_ROLE_SEARCH_FAILED, error, e );
-        }
-        finally
-        {
-            closeAdminConnection( ld );
-        }
-
-        return permList;
+        return PermSearchPlanner.getInstance().find( role.getContextId(), isAdmin, PERM_OP_OBJECT_CLASS_NAME, ROLES,
+            USERS, roles, null, newSearcher( role.getContextId(), permRoot, isAdmin, GlobalErrIds.PERM_ROLE_SEARCH_FAILED,
+                "findPermissions role [" + role.getName() + "]" ) );
     }
 
 
@@ -1902,63 +2123,11 @@ class PermDAO extends LdapDataProvider
      */
     List<Permission> findPermissions( User user ) throws FinderException
     {
-        List<Permission> permList = new ArrayList<>();
-        LdapConnection ld = null;
         String permRoot = getRootDn( user.getContextId(), GlobalIds.PERM_ROOT );
-
-        try
-        {
-            StringBuilder filterbuf = new StringBuilder();
-            filterbuf.append( GlobalIds.FILTER_PREFIX );
-            filterbuf.append( PERM_OP_OBJECT_CLASS_NAME );
-            filterbuf.append( ")(|" );
-            Set<String> roles = RoleUtil.getInstance().getInheritedRoles( user.getRoles(), user.getContextId() );
-
-            if ( CollectionUtils.isNotEmpty( roles ) )
-            {
-                for ( String uRole : roles )
-                {
-                    filterbuf.append( "(" );
-                    filterbuf.append( ROLES );
-                    filterbuf.append( "=" );
-                    filterbuf.append( encodeSafeText( uRole, GlobalIds.ROLE_LEN ) );
-                    filterbuf.append( ")" );
-                }
-            }
-
-            filterbuf.append( "(" );
-            filterbuf.append( USERS );
-            filterbuf.append( "=" );
-            filterbuf.append( user.getUserId() );
-            filterbuf.append( ")))" );
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, permRoot,
-                SearchScope.SUBTREE, filterbuf.toString(), PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
-            long sequence = 0;
-
-            while ( searchResults.next() )
-            {
-                permList.add( unloadPopLdapEntry( searchResults.getEntry(), sequence++, false ) );
-            }
-        }
-        catch ( LdapException e )
-        {
-            String error = "findPermissions user [" + user.getUserId()
-                + "] caught LdapException in PermDAO.findPermissions=" + e.getMessage();
-            throw new FinderException( GlobalErrIds.PERM_USER_SEARCH_FAILED, error, e );
-        }
-        catch ( CursorException e )
-        {
-            String error = "findPermissions user [" + user.getUserId()
-                + "] caught CursorException in PermDAO.findPermissions=" + e.getMessage();
-            throw new FinderException( GlobalErrIds.PERM_USER_SEARCH_FAILED, error, e );
-        }
-        finally
-        {
-            closeAdminConnection( ld );
-        }
-
-        return permList;
+        Set<String> roles = RoleUtil.getInstance().getInheritedRoles( user.getRoles(), user.getContextId() );
+        return PermSearchPlanner.getInstance().find( user.getContextId(), false, PERM_OP_OBJECT_CLASS_NAME, ROLES,
+            USERS, roles != null ? roles : Collections.<String>emptySet(), user.getUserId(), newSearcher(
+                user.getContextId(), permRoot, false, GlobalErrIds.PERM_USER_SEARCH_FAILED, "findPermissions user [" + user.getUserId() + "]" ) );
     }
 
 
@@ -1984,7 +2153,7 @@ class PermDAO extends LdapDataProvider
             filterbuf.append( "=" );
             filterbuf.append( user.getUserId() );
             filterbuf.append( "))" );
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             SearchCursor searchResults = search( ld, permRoot,
                 SearchScope.SUBTREE, filterbuf.toString(), PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -2023,74 +2192,86 @@ class PermDAO extends LdapDataProvider
      */
     List<Permission> findPermissions( Session session, boolean isAdmin ) throws FinderException
     {
-        List<Permission> permList = new ArrayList<>();
-        LdapConnection ld = null;
         String permRoot = getRootDn( isAdmin, session.getContextId() );
+        Set<String> roles;
+        if ( isAdmin )
+        {
+            roles = AdminRoleUtil.getInheritedRoles( session.getAdminRoles(), session.getContextId() );
+        }
+        else
+        {
+            roles = RoleUtil.getInstance().getInheritedRoles( session.getRoles(), session.getContextId() );
+        }
+        String userId = session.isGroupSession() ? null : session.getUserId();
+        return PermSearchPlanner.getInstance().find( session.getContextId(), isAdmin, PERM_OP_OBJECT_CLASS_NAME,
+            ROLES, USERS, roles != null ? roles : Collections.<String>emptySet(), userId, newSearcher(
+                session.getContextId(), permRoot, isAdmin, GlobalErrIds.PERM_SESS_SEARCH_FAILED, "findPermissions user [" + session.getUserId()
+                + "]" ) );
+    }
 
-        try
+
+    /**
+     * Create the searcher that runs the permission searches planned by {@link PermSearchPlanner}, each on its own
+     * connection so chunks may be searched concurrently.
+     *
+     * @param contextId of the tenant, whose connection limit the searches count against.
+     * @param permRoot  search base.
+     * @param isAdmin   true for admin permissions.
+     * @param errorId   reported if a search fails.
+     * @param operation describes the caller in error messages.
+     * @return the searcher.
+     */
+    private PermSearchPlanner.Searcher newSearcher( final String contextId, final String permRoot,
+        final boolean isAdmin, final int errorId, final String operation )
+    {
+        return new PermSearchPlanner.Searcher()
         {
-            StringBuilder filterbuf = new StringBuilder();
-            filterbuf.append( GlobalIds.FILTER_PREFIX );
-            filterbuf.append( PERM_OP_OBJECT_CLASS_NAME );
-            filterbuf.append( ")(|" );
-            if (!session.isGroupSession())
-            {
-                filterbuf.append("(");
-                filterbuf.append(USERS);
-                filterbuf.append("=");
-                filterbuf.append(session.getUserId());
-                filterbuf.append(")");
-            }
-            Set<String> roles;
-            if ( isAdmin )
-            {
-                roles = AdminRoleUtil.getInheritedRoles( session.getAdminRoles(), session.getContextId() );
-            }
-            else
-            {
-                roles = RoleUtil.getInstance().getInheritedRoles( session.getRoles(), session.getContextId() );
-            }
-            if ( CollectionUtils.isNotEmpty( roles ) )
+            @Override
+            public void check( String name ) throws FinderException
             {
-                for ( String uRole : roles )
+                if ( name.length() > GlobalIds.ROLE_LEN )
                 {
-                    filterbuf.append( "(" );
-                    filterbuf.append( ROLES );
-                    filterbuf.append( "=" );
-                    filterbuf.append( uRole );
-                    filterbuf.append( ")" );
+                    String error = operation + " PermDAO.findPermissions value [" + name + "] invalid length ["
+                        + name.length() + "]";
+                    throw new FinderException( errorId, error );
                 }
             }
 
-            filterbuf.append( "))" );
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, permRoot,
-                SearchScope.SUBTREE, filterbuf.toString(), PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
-            long sequence = 0;
 
-            while ( searchResults.next() )
+            @Override
+            public List<Permission> search( ExprNode filter ) throws FinderException
             {
-                permList.add( unloadPopLdapEntry( searchResults.getEntry(), sequence++, isAdmin ) );
-            }
-        }
-        catch ( LdapException e )
-        {
-            String error = "findPermissions user [" + session.getUserId()
-                + "] caught LdapException in PermDAO.findPermissions=" + e.getMessage();
-            throw new FinderException( GlobalErrIds.PERM_SESS_SEARCH_FAILED, error, e );
-        }
-        catch ( CursorException e )
-        {
-            String error = "findPermissions user [" + session.getUserId()
-                + "] caught CursorException in PermDAO.findPermissions=" + e.getMessage();
-            throw new FinderException( GlobalErrIds.PERM_SESS_SEARCH_FAILED, error, e );
-        }
-        finally
-        {
-            closeAdminConnection( ld );
-        }
+                List<Permission> permList = new ArrayList<>();
+                LdapConnection ld = null;
+                try
+                {
+                    ld = getAdminConnection( contextId );
+                    SearchCursor searchResults = PermDAO.this.search( ld, getBaseDn( permRoot ),
+                        SearchScope.SUBTREE, filter, PERMISSION_OP_ATRS, false, GlobalIds.BATCH_SIZE );
+                    long sequence = 0;
 
-        return permList;
+                    while ( searchResults.next() )
+                    {
+                        permList.add( unloadPopLdapEntry( searchResults.getEntry(), sequence++, isAdmin ) );
+                    }
+                }
+                catch ( LdapException e )
+                {
+                    String error = operation + " caught LdapException in PermDAO.findPermissions=" + e.getMessage();
+                    throw new FinderException( errorId, error, e );
+                }
+                catch ( CursorException e )
+                {
+                    String error = operation + " caught CursorException in PermDAO.findPermissions=" + e.getMessage();
+                    throw new FinderException( errorId, error, e );
+                }
+                finally
+                {
+                    closeAdminConnection( ld );
+                }
+                return permList;
+            }
+        };
     }
 
 
@@ -2116,6 +2297,36 @@ class PermDAO extends LdapDataProvider
     }
 
 
+    /**
+     * Build the dn of a permission operation from the cached dn of the permission container, without parsing the
+     * whole dn from a string.
+     *
+     * @param permission contains the object name, operation name, optional object id, admin flag and tenant.
+     * @return Dn of the operation.
+     * @throws FinderException if the dn is invalid.
+     */
+    private static Dn getOpDn( Permission permission ) throws FinderException
+    {
+        try
+        {
+            Dn objDn = getDn( getBaseDn( permission.getContextId(), permission.isAdmin() ? GlobalIds.ADMIN_PERM_ROOT
+                : GlobalIds.PERM_ROOT ), GlobalIds.POBJ_NAME, permission.getObjName() );
+            String opRdn = GlobalIds.POP_NAME + "=" + Rdn.escapeValue( permission.getOpName() );
+            if ( StringUtils.isNotEmpty( permission.getObjId() ) )
+            {
+                opRdn += "+" + GlobalIds.POBJ_ID + "=" + Rdn.escapeValue( permission.getObjId() );
+            }
+            return objDn.add( new Rdn( opRdn ) );
+        }
+        catch ( LdapInvalidDnException e )
+        {
+            String error = "getOpDn obj name [" + permission.getObjName() + "], op name [" + permission.getOpName()
+                + "] caught LdapInvalidDnException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.PERM_READ_OP_FAILED, error, e );
+        }
+    }
+
+
     protected String getDn( Permission pOp, String contextId )
     {
         return getOpRdn( pOp.getOpName(), pOp.getObjId() ) + "," + GlobalIds.POBJ_NAME + "=" + pOp.getObjName()
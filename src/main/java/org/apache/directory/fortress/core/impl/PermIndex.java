@@ -0,0 +1,617 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Props;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.apache.directory.fortress.core.util.cache.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * In memory inverted index of the RBAC permission grants of each tenant: role name to permissions and userId to
+ * permissions, so sessionPermissions, rolePermissions, userPermissions, permissionRoles and authorizedPermissionRoles are
+ * answered with hash lookups and the cached role hierarchy rather than ldap searches.  Enable with
+ * {@code perm.index.enable=true}.
+ * <p>
+ * A tenant's index is loaded with one paged scan of its permission operations, {@code perm.index.page.size} (default
+ * 1000) entries per page, the first time it is used.  From then on it is kept current by {@link PermDAO} as operations
+ * are created, updated, granted, revoked and deleted.  Changes made by other processes are applied when the
+ * {@link ChangeFeed} reports them, or when they are published on the cache invalidation bus, in which case the changed
+ * operation is read again.  Otherwise they are not seen until {@link #reconcile(String)} compares the index with the
+ * directory and repairs it, or {@link #invalidate(String)} drops it so it is reloaded on next use.  Admin permissions are
+ * not indexed.
+ * <p>
+ * Indexed permissions are never modified, a change replaces the entry with a copy, and readers get copies, so lookups
+ * take no locks.  Changes to one tenant's index are serialized.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class PermIndex
+{
+    private static final String CLS_NM = PermIndex.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String ENABLE = "perm.index.enable";
+    private static final String PAGE_SIZE = "perm.index.page.size";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    // names under which changes are published, keyed by objName:opName:objId and by objName:
+    private static final String OPERATIONS = "fortress.perm.index";
+    private static final String OBJECTS = "fortress.perm.index.objects";
+    private static volatile PermIndex sINSTANCE = null;
+
+    private final boolean isEnabled;
+    private final int pageSize;
+    private final ConcurrentMap<String, Index> indexes = new ConcurrentHashMap<>();
+    private final PermDAO pDao = new PermDAO();
+
+
+    /**
+     * Create or return the permission index for this process.
+     *
+     * @return the permission index.
+     */
+    public static PermIndex getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( PermIndex.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new PermIndex();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private PermIndex()
+    {
+        isEnabled = Config.getInstance().getBoolean( ENABLE, false );
+        pageSize = Math.max( 1, Config.getInstance().getInt( PAGE_SIZE, DEFAULT_PAGE_SIZE ) );
+        LOG.info( "PermIndex enabled [{}] page size [{}]", isEnabled, pageSize );
+        if ( isEnabled )
+        {
+            subscribe();
+        }
+    }
+
+
+    /**
+     * Apply the changes published by other processes.
+     */
+    private void subscribe()
+    {
+        CacheMgr cacheMgr = CacheMgr.getInstance();
+        cacheMgr.subscribe( OPERATIONS, new InvalidationListener()
+        {
+            @Override
+            public void invalidate( String contextId, String key )
+            {
+                int opStart = key != null ? key.indexOf( GlobalIds.PROP_SEP ) : -1;
+                int idStart = opStart >= 0 ? key.indexOf( GlobalIds.PROP_SEP, opStart + 1 ) : -1;
+                if ( idStart < 0 )
+                {
+                    PermIndex.this.invalidate( contextId );
+                    return;
+                }
+                ChangeRouter.getInstance().permChanged( contextId, key.substring( 0, opStart ), key.substring(
+                    opStart + 1, idStart ), StringUtils.defaultIfEmpty( key.substring( idStart + 1 ), null ) );
+            }
+
+
+            @Override
+            public void refresh()
+            {
+                invalidateAll();
+            }
+        } );
+        cacheMgr.subscribe( OBJECTS, new InvalidationListener()
+        {
+            @Override
+            public void invalidate( String contextId, String key )
+            {
+                if ( key == null )
+                {
+                    PermIndex.this.invalidate( contextId );
+                    return;
+                }
+                ChangeRouter.getInstance().permChanged( contextId, key, null, null );
+            }
+
+
+            @Override
+            public void refresh()
+            {
+                // the whole index was dropped with the operations
+            }
+        } );
+    }
+
+
+    /**
+     * @return true if {@code perm.index.enable} is true.
+     */
+    public boolean isEnabled()
+    {
+        return isEnabled;
+    }
+
+
+    /**
+     * Compare the tenant's index with the permissions in the directory and replace it with what was found.
+     *
+     * @param contextId of the tenant.
+     * @return number of permissions that were missing, no longer exist or had different grants in the index.
+     * @throws FinderException if the directory cannot be read.
+     */
+    public int reconcile( String contextId ) throws FinderException
+    {
+        if ( !isEnabled )
+        {
+            return 0;
+        }
+        String key = getContextKey( contextId );
+        Index loaded = load( contextId );
+        Index current = indexes.put( key, loaded );
+        if ( current == null )
+        {
+            return 0;
+        }
+        int differences = 0;
+        for ( Map.Entry<String, Permission> entry : loaded.perms.entrySet() )
+        {
+            Permission indexed = current.perms.get( entry.getKey() );
+            if ( indexed == null || !equalsIgnoreCase( indexed.getRoles(), entry.getValue().getRoles() )
+                || !equalsIgnoreCase( indexed.getUsers(), entry.getValue().getUsers() ) )
+            {
+                differences++;
+            }
+        }
+        for ( String permKey : current.perms.keySet() )
+        {
+            if ( !loaded.perms.containsKey( permKey ) )
+            {
+                differences++;
+            }
+        }
+        if ( differences > 0 )
+        {
+            LOG.warn( "reconcile contextId [{}] repaired [{}] permissions", key, differences );
+        }
+        return differences;
+    }
+
+
+    /**
+     * Drop the tenant's index, it is reloaded on next use.
+     *
+     * @param contextId of the tenant.
+     */
+    public void invalidate( String contextId )
+    {
+        if ( indexes.remove( getContextKey( contextId ) ) != null )
+        {
+            LOG.info( "invalidate contextId [{}]", contextId );
+        }
+    }
+
+
+    /**
+     * Drop the index of every tenant.
+     */
+    void invalidateAll()
+    {
+        indexes.clear();
+        LOG.info( "invalidateAll" );
+    }
+
+
+    /**
+     * Return copies of the permissions granted to any of the roles or directly to the user.
+     *
+     * @param contextId of the tenant.
+     * @param roles     role names.
+     * @param userId    user whose direct grants are included, may be null.
+     * @return matching permissions, each once.
+     * @throws FinderException if the index must be loaded and the directory cannot be read.
+     */
+    List<Permission> find( String contextId, Collection<String> roles, String userId ) throws FinderException
+    {
+        Index index = getIndex( contextId );
+        Map<String, Permission> results = new LinkedHashMap<>();
+        for ( String role : roles )
+        {
+            addAll( results, index, index.byRole.get( role.toLowerCase() ) );
+        }
+        if ( userId != null )
+        {
+            addAll( results, index, index.byUser.get( userId.toLowerCase() ) );
+        }
+        List<Permission> permList = new ArrayList<>( results.size() );
+        long sequence = 0;
+        for ( Permission perm : results.values() )
+        {
+            Permission copy = copy( perm );
+            copy.setSequenceId( sequence++ );
+            permList.add( copy );
+        }
+        return permList;
+    }
+
+
+    /**
+     * Return a copy of the indexed permission.
+     *
+     * @param permission contains the object name, operation name and optional object id.
+     * @return the permission or null if not in the index.
+     * @throws FinderException if the index must be loaded and the directory cannot be read.
+     */
+    Permission get( Permission permission ) throws FinderException
+    {
+        Permission perm = getIndex( permission.getContextId() ).perms.get( getKey( permission ) );
+        return perm != null ? copy( perm ) : null;
+    }
+
+
+    /**
+     * Add or replace a permission after it was created or updated in the directory.
+     *
+     * @param contextId  of the tenant.
+     * @param permission as stored in the directory.
+     */
+    void put( String contextId, Permission permission )
+    {
+        Index index = getLoadedIndex( contextId );
+        if ( index != null && !permission.isAdmin() )
+        {
+            synchronized ( index )
+            {
+                index.remove( getKey( permission ) );
+                index.add( copy( permission ) );
+            }
+        }
+        publish( contextId, permission );
+    }
+
+
+    /**
+     * Remove a permission after it was deleted from the directory.
+     *
+     * @param contextId  of the tenant.
+     * @param permission contains the object name, operation name and optional object id.
+     */
+    void remove( String contextId, Permission permission )
+    {
+        Index index = getLoadedIndex( contextId );
+        if ( index != null && !permission.isAdmin() )
+        {
+            synchronized ( index )
+            {
+                index.remove( getKey( permission ) );
+            }
+        }
+        publish( contextId, permission );
+    }
+
+
+    /**
+     * Remove every operation of a permission object after it was deleted from the directory.
+     *
+     * @param contextId of the tenant.
+     * @param objName   name of the permission object.
+     */
+    void removeObject( String contextId, String objName )
+    {
+        Index index = getLoadedIndex( contextId );
+        if ( index != null )
+        {
+            String prefix = objName.toLowerCase() + GlobalIds.PROP_SEP;
+            synchronized ( index )
+            {
+                for ( String permKey : new ArrayList<>( index.perms.keySet() ) )
+                {
+                    if ( permKey.startsWith( prefix ) )
+                    {
+                        index.remove( permKey );
+                    }
+                }
+            }
+        }
+        if ( isEnabled )
+        {
+            CacheMgr.getInstance().publish( OBJECTS, contextId, objName );
+        }
+    }
+
+
+    /**
+     * Record a grant or revoke after the directory was updated.
+     *
+     * @param contextId  of the tenant.
+     * @param permission that was changed.
+     * @param name       role name or userId.
+     * @param isRole     true if name is a role.
+     * @param isGrant    true for a grant, false for a revoke.
+     */
+    void update( String contextId, Permission permission, String name, boolean isRole, boolean isGrant )
+    {
+        publish( contextId, permission );
+        Index index = getLoadedIndex( contextId );
+        if ( index == null || permission.isAdmin() )
+        {
+            return;
+        }
+        synchronized ( index )
+        {
+            String permKey = getKey( permission );
+            Permission indexed = index.perms.get( permKey );
+            if ( indexed == null )
+            {
+                // created by another process, reload rather than guess its contents:
+                LOG.info( "update contextId [{}] permission [{}] not indexed, dropping index", contextId, permKey );
+                invalidate( contextId );
+                return;
+            }
+            Permission changed = copy( indexed );
+            Set<String> names = isRole ? changed.getRoles() : changed.getUsers();
+            if ( isGrant )
+            {
+                names.add( name );
+            }
+            else
+            {
+                names.remove( name );
+            }
+            index.remove( permKey );
+            index.add( changed );
+        }
+    }
+
+
+    private Index getIndex( String contextId ) throws FinderException
+    {
+        String key = getContextKey( contextId );
+        Index index = indexes.get( key );
+        if ( index == null )
+        {
+            // one scan per tenant, callers arriving during the load wait for it:
+            synchronized ( indexes )
+            {
+                index = indexes.get( key );
+                if ( index == null )
+                {
+                    index = load( contextId );
+                    indexes.put( key, index );
+                }
+            }
+        }
+        return index;
+    }
+
+
+    /**
+     * @return the tenant's index if it has been loaded, changes to tenants not loaded are picked up by their load.
+     */
+    private Index getLoadedIndex( String contextId )
+    {
+        return isEnabled ? indexes.get( getContextKey( contextId ) ) : null;
+    }
+
+
+    private Index load( String contextId ) throws FinderException
+    {
+        long start = System.currentTimeMillis();
+        Index index = new Index();
+        for ( Permission perm : pDao.findAllPermissions( contextId, pageSize ) )
+        {
+            index.add( perm );
+        }
+        LOG.info( "load contextId [{}] permissions [{}] roles [{}] users [{}] in [{}] ms", contextId,
+            index.perms.size(), index.byRole.size(), index.byUser.size(), System.currentTimeMillis() - start );
+        return index;
+    }
+
+
+    private static void addAll( Map<String, Permission> results, Index index, Set<String> permKeys )
+    {
+        if ( permKeys != null )
+        {
+            for ( String permKey : permKeys )
+            {
+                Permission perm = index.perms.get( permKey );
+                if ( perm != null && !results.containsKey( permKey ) )
+                {
+                    results.put( permKey, perm );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Tell the other processes to read the operation again.
+     */
+    private void publish( String contextId, Permission permission )
+    {
+        if ( isEnabled && !permission.isAdmin() )
+        {
+            CacheMgr.getInstance().publish( OPERATIONS, contextId, getKey( permission ) );
+        }
+    }
+
+
+    private static String getContextKey( String contextId )
+    {
+        return StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) ? GlobalIds.HOME
+            : contextId;
+    }
+
+
+    private static String getKey( Permission permission )
+    {
+        return StringUtils.lowerCase( permission.getObjName() ) + GlobalIds.PROP_SEP
+            + StringUtils.lowerCase( permission.getOpName() ) + GlobalIds.PROP_SEP
+            + StringUtils.lowerCase( StringUtils.defaultString( permission.getObjId() ) );
+    }
+
+
+    private static boolean equalsIgnoreCase( Set<String> left, Set<String> right )
+    {
+        Set<String> a = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        Set<String> b = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        if ( left != null )
+        {
+            a.addAll( left );
+        }
+        if ( right != null )
+        {
+            b.addAll( right );
+        }
+        return a.equals( b );
+    }
+
+
+    /**
+     * Detached copy of a shared permission, also used by {@link PermSearchPlanner} for its cached results.
+     */
+    static Permission copy( Permission perm )
+    {
+        Permission copy = new Permission( perm.getObjName(), perm.getOpName(), perm.getObjId() );
+        copy.setAdmin( perm.isAdmin() );
+        copy.setInternalId( perm.getInternalId() );
+        copy.setAbstractName( perm.getAbstractName() );
+        copy.setType( perm.getType() );
+        copy.setDn( perm.getDn() );
+        copy.setDescription( perm.getDescription() );
+        copy.setSequenceId( perm.getSequenceId() );
+        Props props = new Props();
+        if ( perm.getProps() != null )
+        {
+            props.getEntry().addAll( perm.getProps().getEntry() );
+        }
+        copy.setProps( props );
+        Set<String> roles = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        if ( perm.getRoles() != null )
+        {
+            roles.addAll( perm.getRoles() );
+        }
+        copy.setRoles( roles );
+        Set<String> users = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        if ( perm.getUsers() != null )
+        {
+            users.addAll( perm.getUsers() );
+        }
+        copy.setUsers( users );
+        copy.setPaSets( new TreeSet<>( perm.getPaSets() ) );
+        return copy;
+    }
+
+
+    /**
+     * The permissions of one tenant, keyed by object name, operation name and object id, with the grants inverted.
+     * Updates hold the lock on the index.
+     */
+    private static final class Index
+    {
+        private final ConcurrentMap<String, Permission> perms = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Set<String>> byRole = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Set<String>> byUser = new ConcurrentHashMap<>();
+
+
+        void add( Permission perm )
+        {
+            String permKey = getKey( perm );
+            perms.put( permKey, perm );
+            link( byRole, perm.getRoles(), permKey );
+            link( byUser, perm.getUsers(), permKey );
+        }
+
+
+        void remove( String permKey )
+        {
+            Permission perm = perms.remove( permKey );
+            if ( perm != null )
+            {
+                unlink( byRole, perm.getRoles(), permKey );
+                unlink( byUser, perm.getUsers(), permKey );
+            }
+        }
+
+
+        private static void link( ConcurrentMap<String, Set<String>> inverted, Set<String> names, String permKey )
+        {
+            if ( names != null )
+            {
+                for ( String name : names )
+                {
+                    String nameKey = name.toLowerCase();
+                    Set<String> permKeys = inverted.get( nameKey );
+                    if ( permKeys == null )
+                    {
+                        permKeys = ConcurrentHashMap.newKeySet();
+                        inverted.put( nameKey, permKeys );
+                    }
+                    permKeys.add( permKey );
+                }
+            }
+        }
+
+
+        private static void unlink( ConcurrentMap<String, Set<String>> inverted, Set<String> names, String permKey )
+        {
+            if ( names != null )
+            {
+                for ( String name : names )
+                {
+                    Set<String> permKeys = inverted.get( name.toLowerCase() );
+                    if ( permKeys != null )
+                    {
+                        permKeys.remove( permKey );
+                        if ( permKeys.isEmpty() )
+                        {
+                            inverted.remove( name.toLowerCase() );
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
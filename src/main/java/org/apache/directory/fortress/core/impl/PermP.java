@@ -25,6 +25,7 @@ import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.Decision;
 import org.apache.directory.fortress.core.FinderException;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.GlobalIds;
@@ -90,6 +91,35 @@ final class PermP
     }
 
 
+    /**
+     * Same as {@link #checkPermission(Session, Permission)} except a permission that does not exist is returned as
+     * {@link Decision#NOT_FOUND} instead of thrown.
+     *
+     * @param session    This object must be instantiated by calling {@link AccessMgrImpl#createSession} method before passing into the method.
+     * @param permission object contains obj and operation names.
+     * @return decision of the check.
+     * @throws SecurityException in the event of DAO error.
+     */
+    Decision tryCheckPermission( Session session, Permission permission ) throws SecurityException
+    {
+        return pDao.tryCheckPermission( session, permission );
+    }
+
+
+    /**
+     * Audit a check whose outcome was cached by the caller, as {@link #checkPermission} would have.
+     *
+     * @param session    contains the userId.
+     * @param permission contains the obj and operation names, the admin flag and the contextId.
+     * @param isAuthZd   the outcome of the check.
+     * @throws SecurityException in the event of DAO error.
+     */
+    void audit( Session session, Permission permission, boolean isAuthZd ) throws SecurityException
+    {
+        pDao.audit( session, permission, isAuthZd );
+    }
+
+
     /**
      * Takes a Permission entity that contains full or partial object name and/or full or partial operation name for search.
      *
@@ -318,6 +348,28 @@ final class PermP
     }
 
 
+    /**
+     * Return the matching Permission entity with its role and user grants, from the {@link PermIndex} when enabled.  This
+     * method will throw SecurityException if not found.
+     *
+     * @param permission contains the full permission object and operation name.
+     * @return Permission containing fully populated matching object.
+     * @throws SecurityException is thrown if permission not found or runtime error occurs with system.
+     */
+    Permission readGrants( Permission permission ) throws SecurityException
+    {
+        if ( !permission.isAdmin() && PermIndex.getInstance().isEnabled() )
+        {
+            Permission entity = PermIndex.getInstance().get( permission );
+            if ( entity != null )
+            {
+                return entity;
+            }
+        }
+        return read( permission );
+    }
+
+
     /**
      * Return the matching Permission object entity.  This method will throw SecurityException if not found.
      *
@@ -491,7 +543,9 @@ final class PermP
         {
             validate( entity, true );
         }
-        return pDao.updateOperation( entity );
+        Permission updated = pDao.updateOperation( entity );
+        clearAdminDecisions( entity.isAdmin() );
+        return updated;
     }
 
 
@@ -506,6 +560,7 @@ final class PermP
     void delete( PermObj entity ) throws SecurityException
     {
         pDao.deleteObj( entity );
+        clearAdminDecisions( entity.isAdmin() );
     }
 
 
@@ -519,6 +574,7 @@ final class PermP
     void delete( Permission entity ) throws SecurityException
     {
         pDao.deleteOperation( entity );
+        clearAdminDecisions( entity.isAdmin() );
     }
 
     //TODO: add documentation
@@ -542,6 +598,7 @@ final class PermP
     {
         // Now assign it to the perm op:
         pDao.grant( pOp, role );
+        clearAdminDecisions( pOp.isAdmin() );
     }
 
 
@@ -559,6 +616,7 @@ final class PermP
     void revoke( Permission pOp, Role role ) throws SecurityException
     {
         pDao.revoke( pOp, role );
+        clearAdminDecisions( pOp.isAdmin() );
     }
 
 
@@ -573,6 +631,7 @@ final class PermP
     {
         // call dao to grant userId access to the perm op:
         pDao.grant( pOp, user );
+        clearAdminDecisions( pOp.isAdmin() );
     }
 
 
@@ -586,6 +645,21 @@ final class PermP
     void revoke( Permission pOp, User user ) throws SecurityException
     {
         pDao.revoke( pOp, user );
+        clearAdminDecisions( pOp.isAdmin() );
+    }
+
+
+    /**
+     * Drop the cached ARBAC decisions after an administrative permission has been changed.
+     *
+     * @param isAdmin true if the changed permission belongs to the admin permission data set.
+     */
+    private void clearAdminDecisions( boolean isAdmin )
+    {
+        if ( isAdmin )
+        {
+            AdminUtil.clearDecisionCache();
+        }
     }
 
 
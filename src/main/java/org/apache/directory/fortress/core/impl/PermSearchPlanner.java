@@ -0,0 +1,439 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.StringValue;
+import org.apache.directory.api.ldap.model.filter.AndNode;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
+import org.apache.directory.api.ldap.model.filter.OrNode;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.PermSearchMetrics;
+import org.apache.directory.fortress.core.util.PermSearchMetrics.Strategy;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.apache.directory.fortress.core.util.cache.Cache;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Chooses how to find the permissions granted to a set of roles, and optionally a user, instead of always building one
+ * or filter with a clause per inherited role, which grows to hundreds of clauses with deep hierarchies.
+ * <p>
+ * When {@code perm.search.cache} is true the permissions of each role, and of each user's direct grants, are kept in the
+ * {@code fortress.role.perms} cache and merged in memory, so only the roles not cached are searched.  Those are searched
+ * with one or filter if there are no more than {@code perm.search.or.max} (default 32) of them, otherwise they are split
+ * into chunks of {@code perm.search.chunk.size} (default 32) that are searched concurrently on {@code perm.search.threads}
+ * (default 4) threads, each on its own connection.  The results of every search fill the cache for the roles searched.
+ * Any change to permission grants flushes the cache.
+ * <p>
+ * Every search is counted in {@link PermSearchMetrics}, and logged when {@code perm.search.explain} is true.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class PermSearchPlanner
+{
+    private static final String CLS_NM = PermSearchPlanner.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    static final String ROLE_PERMS_CACHE = "fortress.role.perms";
+    private static final String OR_MAX = "perm.search.or.max";
+    private static final String CHUNK_SIZE = "perm.search.chunk.size";
+    private static final String THREADS = "perm.search.threads";
+    private static final String ENABLE_CACHE = "perm.search.cache";
+    private static final String EXPLAIN = "perm.search.explain";
+    private static final int DEFAULT_OR_MAX = 32;
+    private static final int DEFAULT_CHUNK_SIZE = 32;
+    private static final int DEFAULT_THREADS = 4;
+    private static final int QUEUE_SIZE = 1000;
+    private static volatile PermSearchPlanner sINSTANCE = null;
+
+    private final int orMax;
+    private final int chunkSize;
+    private final boolean isCacheEnabled;
+    private final boolean isExplain;
+    private final ExecutorService executor;
+
+
+    /**
+     * Runs one permission search for PermDAO.
+     */
+    interface Searcher
+    {
+        /**
+         * @param name role name or userId.
+         * @throws FinderException if the name is invalid.
+         */
+        void check( String name ) throws FinderException;
+
+
+        /**
+         * @param filter complete ldap search filter.
+         * @return the matching permissions.
+         * @throws FinderException if the search fails.
+         */
+        List<Permission> search( ExprNode filter ) throws FinderException;
+    }
+
+
+    static PermSearchPlanner getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( PermSearchPlanner.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new PermSearchPlanner();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private PermSearchPlanner()
+    {
+        Config cfg = Config.getInstance();
+        orMax = Math.max( 1, cfg.getInt( OR_MAX, DEFAULT_OR_MAX ) );
+        chunkSize = Math.max( 1, cfg.getInt( CHUNK_SIZE, DEFAULT_CHUNK_SIZE ) );
+        isCacheEnabled = cfg.getBoolean( ENABLE_CACHE, false );
+        isExplain = cfg.getBoolean( EXPLAIN, false );
+        int threads = Math.max( 1, cfg.getInt( THREADS, DEFAULT_THREADS ) );
+        // when busy the caller searches the chunk itself rather than wait in the queue:
+        executor = new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>( QUEUE_SIZE ), ThreadUtil.newThreadFactory( "fortress-perm-search-" ),
+            new ThreadPoolExecutor.CallerRunsPolicy() );
+        LOG.info( "PermSearchPlanner or max [{}] chunk size [{}] threads [{}] cache [{}] explain [{}]", orMax, chunkSize,
+            threads, isCacheEnabled, isExplain );
+    }
+
+
+    /**
+     * Find the permissions granted to any of the roles or to the user.
+     *
+     * @param contextId   of the tenant.
+     * @param isAdmin     true for admin permissions.
+     * @param objectClass of the permission entries.
+     * @param rolesAttr   attribute holding the roles granted.
+     * @param usersAttr   attribute holding the users granted.
+     * @param roles       role names, may be empty.
+     * @param userId      user to include, or null.
+     * @param searcher    runs the ldap searches.
+     * @return matching permissions, each once, in no particular order.
+     * @throws FinderException if a search fails.
+     */
+    List<Permission> find( String contextId, boolean isAdmin, String objectClass, String rolesAttr, String usersAttr,
+        Set<String> roles, String userId, Searcher searcher ) throws FinderException
+    {
+        if ( roles.isEmpty() && userId == null )
+        {
+            return new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        if ( !isAdmin && PermIndex.getInstance().isEnabled() )
+        {
+            List<Permission> permList = PermIndex.getInstance().find( contextId, roles, userId );
+            int terms = roles.size() + ( userId != null ? 1 : 0 );
+            long nanos = System.nanoTime() - start;
+            PermSearchMetrics.record( Strategy.INDEXED, terms, 0, 0, permList.size(), nanos );
+            if ( isExplain )
+            {
+                LOG.info( "find contextId [{}] strategy [{}] terms [{}] results [{}] micros [{}]", contextId,
+                    Strategy.INDEXED, terms, permList.size(), TimeUnit.NANOSECONDS.toMicros( nanos ) );
+            }
+            return permList;
+        }
+        // the terms to search for, keyed by their cache key:
+        Map<String, Term> terms = new LinkedHashMap<>();
+        String prefix = contextId + ( isAdmin ? ":A:" : ":R:" );
+        for ( String role : roles )
+        {
+            terms.put( prefix + role.toLowerCase(), new Term( rolesAttr, role, true ) );
+        }
+        if ( userId != null )
+        {
+            terms.put( prefix + "u:" + userId.toLowerCase(), new Term( usersAttr, userId, false ) );
+        }
+        Map<String, Permission> results = new LinkedHashMap<>();
+        Map<String, Term> missing = terms;
+        Cache cache = null;
+        if ( isCacheEnabled )
+        {
+            cache = CacheMgr.getInstance().getCache( ROLE_PERMS_CACHE, contextId );
+            missing = new LinkedHashMap<>();
+            // peek rather than get, a blocking get would hold the lock on every missing term until the search
+            // below succeeds, leaking them when it fails and deadlocking planners that share terms:
+            for ( Map.Entry<String, Term> term : terms.entrySet() )
+            {
+                @SuppressWarnings("unchecked")
+                List<Permission> perms = ( List<Permission> ) cache.peek( term.getKey() );
+                if ( perms != null )
+                {
+                    merge( results, perms );
+                }
+                else
+                {
+                    missing.put( term.getKey(), term.getValue() );
+                }
+            }
+        }
+
+        Strategy strategy;
+        int searches;
+        if ( missing.isEmpty() )
+        {
+            strategy = Strategy.CACHED;
+            searches = 0;
+        }
+        else
+        {
+            List<Term> toSearch = new ArrayList<>( missing.values() );
+            List<Permission> found;
+            if ( toSearch.size() <= orMax )
+            {
+                strategy = Strategy.SINGLE;
+                searches = 1;
+                found = searcher.search( getFilter( objectClass, toSearch, searcher ) );
+            }
+            else
+            {
+                strategy = Strategy.CHUNKED;
+                searches = ( toSearch.size() + chunkSize - 1 ) / chunkSize;
+                found = searchChunks( objectClass, toSearch, searcher );
+            }
+            merge( results, found );
+            if ( cache != null )
+            {
+                fill( cache, missing, found );
+            }
+        }
+
+        // the cached instances are shared, callers get their own copies:
+        List<Permission> permList = new ArrayList<>( results.size() );
+        for ( Permission perm : results.values() )
+        {
+            permList.add( PermIndex.copy( perm ) );
+        }
+        long nanos = System.nanoTime() - start;
+        int cachedTerms = terms.size() - missing.size();
+        PermSearchMetrics.record( strategy, terms.size(), cachedTerms, searches, permList.size(), nanos );
+        if ( isExplain )
+        {
+            LOG.info( "find contextId [{}] admin [{}] strategy [{}] terms [{}] cached [{}] searches [{}] results [{}] "
+                + "micros [{}]", contextId, isAdmin, strategy, terms.size(), cachedTerms, searches, permList.size(),
+                TimeUnit.NANOSECONDS.toMicros( nanos ) );
+        }
+        return permList;
+    }
+
+
+    /**
+     * Remove every cached permission list, called when grants change.
+     */
+    void invalidate()
+    {
+        if ( isCacheEnabled )
+        {
+            CacheMgr.getInstance().flush( ROLE_PERMS_CACHE );
+            CacheMgr.getInstance().publish( ROLE_PERMS_CACHE, null, null );
+        }
+    }
+
+
+    private List<Permission> searchChunks( final String objectClass, List<Term> terms, final Searcher searcher )
+        throws FinderException
+    {
+        List<Future<List<Permission>>> futures = new ArrayList<>();
+        List<Term> last = null;
+        for ( int i = 0; i < terms.size(); i += chunkSize )
+        {
+            final List<Term> chunk = terms.subList( i, Math.min( terms.size(), i + chunkSize ) );
+            if ( i + chunkSize >= terms.size() )
+            {
+                last = chunk;
+                break;
+            }
+            futures.add( executor.submit( new Callable<List<Permission>>()
+            {
+                @Override
+                public List<Permission> call() throws FinderException
+                {
+                    return searcher.search( getFilter( objectClass, chunk, searcher ) );
+                }
+            } ) );
+        }
+        // the caller searches the last chunk itself:
+        List<Permission> permList = new ArrayList<>( searcher.search( getFilter( objectClass, last, searcher ) ) );
+        try
+        {
+            for ( Future<List<Permission>> future : futures )
+            {
+                permList.addAll( future.get() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            String error = "searchChunks interrupted";
+            throw new FinderException( GlobalErrIds.PERM_SESS_SEARCH_FAILED, error, e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof FinderException )
+            {
+                throw ( FinderException ) e.getCause();
+            }
+            String error = "searchChunks caught " + e.getCause();
+            throw new FinderException( GlobalErrIds.PERM_SESS_SEARCH_FAILED, error, e );
+        }
+        finally
+        {
+            for ( Future<List<Permission>> future : futures )
+            {
+                future.cancel( false );
+            }
+        }
+        return permList;
+    }
+
+
+    /**
+     * Build the filter as nodes, the names are sent as is so they are neither escaped nor parsed back from a string.
+     */
+    private static ExprNode getFilter( String objectClass, List<Term> terms, Searcher searcher )
+        throws FinderException
+    {
+        List<ExprNode> clauses = new ArrayList<>( terms.size() );
+        for ( Term term : terms )
+        {
+            searcher.check( term.name );
+            clauses.add( new EqualityNode<String>( term.attribute, new StringValue( term.name ) ) );
+        }
+        ExprNode match = clauses.size() > 1 ? new OrNode( clauses ) : clauses.get( 0 );
+        return new AndNode( new EqualityNode<String>( SchemaConstants.OBJECT_CLASS_AT, new StringValue(
+            objectClass ) ), match );
+    }
+
+
+    /**
+     * Add permissions not already in the results, permissions granted to more than one term are returned once.
+     */
+    private static void merge( Map<String, Permission> results, List<Permission> perms )
+    {
+        for ( Permission perm : perms )
+        {
+            String key = perm.getDn() != null ? perm.getDn().toLowerCase() : perm.getAbstractName();
+            if ( !results.containsKey( key ) )
+            {
+                results.put( key, perm );
+            }
+        }
+    }
+
+
+    /**
+     * Cache the permissions of each term searched, including the terms that have none.
+     */
+    private static void fill( Cache cache, Map<String, Term> searched, List<Permission> found )
+    {
+        // match the terms by lower case name against the values on each permission:
+        Map<String, List<Permission>> byName = new HashMap<>();
+        for ( Term term : searched.values() )
+        {
+            byName.put( term.getMatchKey(), new ArrayList<Permission>() );
+        }
+        for ( Permission perm : found )
+        {
+            addMatches( byName, Term.ROLE, perm.getRoles(), perm );
+            addMatches( byName, Term.USER, perm.getUsers(), perm );
+        }
+        for ( Map.Entry<String, Term> term : searched.entrySet() )
+        {
+            cache.put( term.getKey(), Collections.unmodifiableList( byName.get( term.getValue().getMatchKey() ) ) );
+        }
+    }
+
+
+    private static void addMatches( Map<String, List<Permission>> byName, String prefix, Set<String> names,
+        Permission perm )
+    {
+        if ( names != null )
+        {
+            for ( String name : names )
+            {
+                List<Permission> perms = byName.get( prefix + name.toLowerCase() );
+                if ( perms != null )
+                {
+                    perms.add( perm );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * One role or user searched for.
+     */
+    private static final class Term
+    {
+        private static final String ROLE = "r:";
+        private static final String USER = "u:";
+        private final String attribute;
+        private final String name;
+        private final boolean isRole;
+
+
+        Term( String attribute, String name, boolean isRole )
+        {
+            this.attribute = attribute;
+            this.name = name;
+            this.isRole = isRole;
+        }
+
+
+        String getMatchKey()
+        {
+            return ( isRole ? ROLE : USER ) + name.toLowerCase();
+        }
+    }
+}
@@ -22,8 +22,6 @@ package org.apache.directory.fortress.core.impl;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
@@ -153,7 +151,6 @@ final class PolicyDAO extends LdapDataProvider
             PW_MUST_CHANGE, PW_ALLOW_USER_CHANGE, PW_SAFE_MODIFY
         };
 
-    private static final String[] PASSWORD_POLICY_NAME_ATR = { PW_PWD_ID };
 
     /**
      * @param entity
@@ -255,7 +252,7 @@ final class PolicyDAO extends LdapDataProvider
                 entry.add( PW_SAFE_MODIFY, entity.getSafeModify().toString().toUpperCase() );
             }
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
         }
         catch ( LdapException e )
@@ -398,7 +395,7 @@ final class PolicyDAO extends LdapDataProvider
 
             if ( mods != null && mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
             }
         }
@@ -425,7 +422,7 @@ final class PolicyDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             delete( ld, dn, entity );
         }
         catch ( LdapException e )
@@ -454,7 +451,7 @@ final class PolicyDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( policy.getContextId() );
             Entry findEntry = read( ld, dn, PASSWORD_POLICY_ATRS );
             entity = unloadLdapEntry( findEntry, 0 );
         }
@@ -601,7 +598,7 @@ final class PolicyDAO extends LdapDataProvider
         {
             searchVal = encodeSafeText( policy.getName(), GlobalIds.PWPOLICY_NAME_LEN );
             String szFilter = GlobalIds.FILTER_PREFIX + PW_POLICY_CLASS + ")(" + PW_PWD_ID + "=" + searchVal + "*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( policy.getContextId() );
             SearchCursor searchResults = search( ld, policyRoot,
                 SearchScope.ONELEVEL, szFilter, PASSWORD_POLICY_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -631,27 +628,27 @@ final class PolicyDAO extends LdapDataProvider
 
 
     /**
-     * @return
+     * @return every policy of the tenant, fully populated.
      * @throws FinderException
      */
-    Set<String> getPolicies( String contextId )
+    List<PwPolicy> getPolicies( String contextId )
         throws FinderException
     {
-        Set<String> policySet = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        List<PwPolicy> policies = new ArrayList<>();
         LdapConnection ld = null;
         String policyRoot = getPolicyRoot( contextId );
 
         try
         {
             String szFilter = "(objectclass=" + PW_POLICY_CLASS + ")";
-            ld = getAdminConnection();
+            ld = getAdminConnection( contextId );
             SearchCursor searchResults = search( ld, policyRoot,
-                SearchScope.ONELEVEL, szFilter, PASSWORD_POLICY_NAME_ATR, false, GlobalIds.BATCH_SIZE );
+                SearchScope.ONELEVEL, szFilter, PASSWORD_POLICY_ATRS, false, GlobalIds.BATCH_SIZE );
+            long sequence = 0;
 
             while ( searchResults.next() )
             {
-                Entry entry = searchResults.getEntry();
-                policySet.add( getAttribute( entry, PW_PWD_ID ) );
+                policies.add( unloadLdapEntry( searchResults.getEntry(), sequence++ ) );
             }
         }
         catch ( LdapException e )
@@ -669,7 +666,7 @@ final class PolicyDAO extends LdapDataProvider
             closeAdminConnection( ld );
         }
 
-        return policySet;
+        return policies;
     }
 
     private String getDn( PwPolicy policy )
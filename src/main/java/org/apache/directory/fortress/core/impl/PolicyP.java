@@ -20,17 +20,22 @@
 package org.apache.directory.fortress.core.impl;
 
 
+import java.text.ParseException;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.PasswordException;
 import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.UpdateException;
 import org.apache.directory.fortress.core.ValidationException;
 import org.apache.directory.fortress.core.model.PwPolicy;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.util.time.TUtil;
 import org.apache.directory.fortress.core.util.cache.Cache;
 import org.apache.directory.fortress.core.util.cache.CacheMgr;
 import org.slf4j.Logger;
@@ -51,6 +56,11 @@ import org.slf4j.LoggerFactory;
  * or {@link org.apache.directory.fortress.core.ValidationException} as {@link SecurityException}s with appropriate
  * error id from {@link org.apache.directory.fortress.core.GlobalErrIds}.
  * <p>
+ * Every policy of a tenant is cached, fully populated, in {@link #policyCache}.  The cached policies are used to validate
+ * policy names, to pre-check new passwords against the length rules before the directory is modified, and to evaluate the
+ * lockout and grace login state of users as they are read.  The tenant's entry is dropped whenever one of its policies is
+ * added, updated or deleted, here or, over the cache invalidation bus, by another process.
+ * <p>
  * This class uses one reference to synchronized data set {@link #policyCache} but is thread safe.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
@@ -64,9 +74,7 @@ final class PolicyP
 
     // DAO class for ol pw policy data sets must be initialized before the other statics:
     private PolicyDAO olDao = new PolicyDAO();
-    // this field is used to synchronize access to the above static data set:
-    private static final ReadWriteLock policySetLock = new ReentrantReadWriteLock();
-    // static field holds the list of names for all valid pw policies in effect:
+    // static field holds every valid pw policy in effect, by tenant then case insensitive name:
     private static Cache policyCache;
     private static final int MIN_PW_LEN = 20;
     private static final int MAX_FAILURE = 100;
@@ -99,25 +107,7 @@ final class PolicyP
      */
     boolean isValid( PwPolicy policy )
     {
-        boolean result = false;
-
-        try
-        {
-            policySetLock.readLock().lock();
-
-            Set<String> policySet = getPolicySet( policy.getContextId() );
-
-            if ( policySet != null )
-            {
-                result = policySet.contains( policy.getName() );
-            }
-
-            return result;
-        }
-        finally
-        {
-            policySetLock.readLock().unlock();
-        }
+        return getPolicy( policy.getContextId(), policy.getName() ) != null;
     }
 
 
@@ -131,41 +121,130 @@ final class PolicyP
      */
     PwPolicy read( PwPolicy policy ) throws SecurityException
     {
+        PwPolicy cached = getPolicy( policy.getContextId(), policy.getName() );
+        if ( cached != null )
+        {
+            // the caller may modify it:
+            return new PwPolicy( cached );
+        }
         // Call the finder method for the primary key.
         return olDao.getPolicy( policy );
     }
 
 
     /**
-     * This method will add a new policy entry to the POLICIES data set.  This command is valid
-     * if and only if the policy entry is not already present in the POLICIES data set.
+     * Return the cached policy, which must not be modified.
      *
-     * @param policy Object contains the password policy attributes.
-     * @throws SecurityException In the event of data validation or system error.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @param name      of the policy, case insensitive.
+     * @return the policy, or null if it does not exist or the policies could not be loaded.
      */
-    void add( PwPolicy policy ) throws SecurityException
+    PwPolicy getPolicy( String contextId, String name )
     {
-        validate( policy );
-        olDao.create( policy );
+        Map<String, PwPolicy> policies = getPolicies( contextId );
+        return policies != null && name != null ? policies.get( name ) : null;
+    }
 
-        try
+
+    /**
+     * Reject a new password the user's policy would reject, without modifying the directory.  Only the rules that can be
+     * decided locally are checked: that the user may change their own password, and its minimum length when quality
+     * checking is on.  The directory still enforces every rule.  Nothing is checked for a user whose policy is not known.
+     *
+     * @param user        contains the contextId and name of the user's policy, {@link User#getPwPolicy()}.
+     * @param newPassword the password the user wants.
+     * @throws SecurityException in the event the policy rejects the new password.
+     */
+    void checkPassword( User user, String newPassword ) throws SecurityException
+    {
+        PwPolicy policy = getPolicy( user.getContextId(), user.getPwPolicy() );
+        if ( policy == null )
+        {
+            return;
+        }
+        if ( Boolean.FALSE.equals( policy.getAllowUserChange() ) )
         {
-            policySetLock.writeLock().lock();
+            String warning = "checkPassword user [" + user.getUserId() + "] policy [" + policy.getName()
+                + "] does not allow user to change password";
+            throw new UpdateException( GlobalErrIds.USER_PW_MOD_NOT_ALLOWED, warning );
+        }
+        // the minimum length is only enforced with quality checking:
+        if ( policy.getCheckQuality() != null && policy.getCheckQuality() > 0 && policy.getMinLength() != null
+            && newPassword.length() < policy.getMinLength() )
+        {
+            String warning = "checkPassword user [" + user.getUserId() + "] policy [" + policy.getName()
+                + "] password shorter than [" + policy.getMinLength() + "]";
+            throw new PasswordException( GlobalErrIds.USER_PW_TOO_SHORT, warning );
+        }
+    }
 
-            Set<String> policySet = getPolicySet( policy.getContextId() );
 
-            if ( policySet != null )
-            {
-                policySet.add( policy.getName() );
-            }
+    /**
+     * Set the lockout and grace login state of a user read from the directory, as evaluated against their policy.
+     *
+     * @param contextId   maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @param user        contains the name of the user's policy, {@link User#getPwPolicy()}.
+     * @param lockedTime  value of the user's pwdAccountLockedTime, may be null.
+     * @param graceLogins number of grace logins the user has used since their password expired.
+     */
+    void applyState( String contextId, User user, String lockedTime, int graceLogins )
+    {
+        PwPolicy policy = getPolicy( contextId, user.getPwPolicy() );
+        if ( policy == null )
+        {
+            return;
+        }
+        if ( policy.getGraceLoginLimit() != null && policy.getGraceLoginLimit() > 0 )
+        {
+            user.setGraceLogins( Math.max( 0, policy.getGraceLoginLimit() - graceLogins ) );
         }
-        finally
+        if ( lockedTime != null && !user.isLocked() && Boolean.TRUE.equals( policy.getLockout() ) )
         {
-            policySetLock.writeLock().unlock();
+            user.setLocked( isLocked( lockedTime, policy.getLockoutDuration() ) );
         }
     }
 
 
+    /**
+     * @param lockedTime      generalized time the account was locked by failed binds.
+     * @param lockoutDuration seconds the lockout lasts, 0 or null until an administrator unlocks it.
+     * @return true if the lockout has not expired.
+     */
+    private static boolean isLocked( String lockedTime, Integer lockoutDuration )
+    {
+        if ( lockoutDuration == null || lockoutDuration == 0 )
+        {
+            return true;
+        }
+        try
+        {
+            long lockedUntil = TUtil.decodeGeneralizedTime( lockedTime ).getTime() + lockoutDuration * 1000L;
+            return lockedUntil > System.currentTimeMillis();
+        }
+        catch ( ParseException pe )
+        {
+            LOG.warn( "isLocked invalid locked time [{}]", lockedTime );
+            return true;
+        }
+    }
+
+
+    /**
+     * This method will add a new policy entry to the POLICIES data set.  This command is valid
+     * if and only if the policy entry is not already present in the POLICIES data set.
+     *
+     * @param policy Object contains the password policy attributes.
+     * @throws SecurityException In the event of data validation or system error.
+     */
+    void add( PwPolicy policy ) throws SecurityException
+    {
+        validate( policy );
+        olDao.create( policy );
+        clearCache( policy.getContextId() );
+        publishChange( policy.getContextId() );
+    }
+
+
     /**
      * This method will update an exiting policy entry to the POLICIES data set.  This command is valid
      * if and only if the policy entry is already present in the POLICIES data set.
@@ -178,6 +257,8 @@ final class PolicyP
     {
         validate( policy );
         olDao.update( policy );
+        clearCache( policy.getContextId() );
+        publishChange( policy.getContextId() );
     }
 
 
@@ -192,22 +273,8 @@ final class PolicyP
     void delete( PwPolicy policy ) throws SecurityException
     {
         olDao.remove( policy );
-
-        try
-        {
-            policySetLock.writeLock().lock();
-
-            Set<String> policySet = getPolicySet( policy.getContextId() );
-
-            if ( policySet != null )
-            {
-                policySet.remove( policy.getName() );
-            }
-        }
-        finally
-        {
-            policySetLock.writeLock().unlock();
-        }
+        clearCache( policy.getContextId() );
+        publishChange( policy.getContextId() );
     }
 
 
@@ -367,55 +434,76 @@ final class PolicyP
 
 
     /**
-     * Load the cache with read only list of valid openldap policy names.
+     * Load the cache with read only map of valid openldap policies.
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return Set of unique names.
+     * @return map of policies by case insensitive name.
      */
-    private Set<String> loadPolicySet( String contextId )
+    private Map<String, PwPolicy> loadPolicies( String contextId )
     {
-        Set<String> policySet = null;
+        Map<String, PwPolicy> policies = null;
 
         try
         {
-            policySet = olDao.getPolicies( contextId );
+            Map<String, PwPolicy> loaded = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+            for ( PwPolicy policy : olDao.getPolicies( contextId ) )
+            {
+                policy.setContextId( contextId );
+                loaded.put( policy.getName(), policy );
+            }
+            policies = Collections.unmodifiableMap( loaded );
         }
         catch ( SecurityException se )
         {
-            String warning = "loadPolicySet static initializer caught SecurityException=" + se;
+            String warning = "loadPolicies static initializer caught SecurityException=" + se;
             LOG.info( warning );
         }
 
-        policyCache.put( getKey( contextId ), policySet );
+        policyCache.put( getKey( contextId ), policies );
 
-        return policySet;
+        return policies;
     }
 
 
     /**
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return set containing list of policy names active.
+     * @return map containing the policies active.
      */
-    private Set<String> getPolicySet( String contextId )
+    @SuppressWarnings("unchecked")
+    private Map<String, PwPolicy> getPolicies( String contextId )
     {
-        try
+        Map<String, PwPolicy> policies = ( Map<String, PwPolicy> ) policyCache.get( getKey( contextId ) );
+
+        if ( policies == null )
         {
-            policySetLock.readLock().lock();
+            policies = loadPolicies( contextId );
+        }
 
-            Set<String> policySet = ( Set<String> ) policyCache.get( getKey( contextId ) );
+        return policies;
+    }
 
-            if ( policySet == null )
-            {
-                policySet = loadPolicySet( contextId );
-            }
 
-            return policySet;
-        }
-        finally
-        {
-            policySetLock.readLock().unlock();
-        }
+    /**
+     * Drop a tenant's cached policies so they are reloaded from ldap on next use.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    static void clearCache( String contextId )
+    {
+        policyCache.clear( getKey( contextId ) );
+    }
+
+
+    /**
+     * Tell the other fortress processes to drop their copy of the tenant's policies after one was added, updated or
+     * removed here.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    private static void publishChange( String contextId )
+    {
+        CacheMgr.getInstance().publish( FORTRESS_POLICIES, contextId, getKey( contextId ) );
     }
 
 
@@ -67,7 +67,7 @@ final class PropertyDAO extends LdapDataProvider
             List<Modification> mods = new ArrayList<Modification>();
             loadProperties( properties, mods, GlobalIds.PROPS, false );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, entityDn, mods, entity );            
         }
         catch ( LdapException e )
@@ -135,7 +135,7 @@ final class PropertyDAO extends LdapDataProvider
             List<Modification> mods = new ArrayList<Modification>();
             removeProperties( properties, mods, GlobalIds.PROPS );            
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, entityDn, mods, entity );            
         }
         catch ( LdapException e )
@@ -165,7 +165,7 @@ final class PropertyDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             Entry findEntry = read( ld, entityDn, new String[]{ GlobalIds.PROPS } );
             props = PropUtil.getProperties( getAttributes( findEntry, GlobalIds.PROPS ) );
             
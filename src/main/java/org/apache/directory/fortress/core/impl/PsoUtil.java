@@ -25,15 +25,12 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang.StringUtils;
-import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.ValidationException;
 import org.apache.directory.fortress.core.model.Graphable;
 import org.apache.directory.fortress.core.model.Hier;
 import org.apache.directory.fortress.core.model.OrgUnit;
 import org.apache.directory.fortress.core.model.Relationship;
-import org.apache.directory.fortress.core.util.cache.Cache;
 import org.apache.directory.fortress.core.util.cache.CacheMgr;
 import org.jgrapht.graph.SimpleDirectedGraph;
 import org.slf4j.Logger;
@@ -63,7 +60,8 @@ import org.slf4j.LoggerFactory;
  */
 final class PsoUtil
 {
-    private Cache psoCache;
+    private static final String CACHE_NAME = "fortress.pso";
+    private GraphCache psoCache;
     private OrgUnitP orgUnitP;
     private static final String CLS_NM = PsoUtil.class.getName();
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
@@ -97,7 +95,18 @@ final class PsoUtil
         orgUnitP = new OrgUnitP();
     	
         CacheMgr cacheMgr = CacheMgr.getInstance();
-        psoCache = cacheMgr.getCache( "fortress.pso" );                
+        psoCache = new GraphCache( cacheMgr.getCache( CACHE_NAME ), HierUtil.Type.PSO, new GraphCache.Loader()
+        {
+            @Override
+            public List<Graphable> getAllDescendants( String contextId ) throws SecurityException
+            {
+                OrgUnit orgUnit = new OrgUnit();
+                orgUnit.setType( OrgUnit.Type.PERM );
+                orgUnit.setContextId( contextId );
+                return orgUnitP.getAllDescendants( orgUnit );
+            }
+        } );
+        ChangeRouter.getInstance().subscribe( CACHE_NAME, ChangeRouter.Container.PERM_OU );
     }
 
 
@@ -230,81 +239,56 @@ final class PsoUtil
      */
     void updateHier( String contextId, Relationship relationship, Hier.Op op ) throws SecurityException
     {
-        HierUtil.updateHier( getGraph( contextId ), relationship, op );
+        psoCache.updateHier( contextId, relationship, op );
+        AdminPolicyUtil.clear();
+        CacheMgr.getInstance().publish( CACHE_NAME, contextId, relationship.getChild() );
     }
 
 
     /**
-     * Read this ldap record,{@code cn=Hierarchies, ou=OS-P} into this entity, {@link Hier}, before loading into this collection class,{@code org.jgrapht.graph.SimpleDirectedGraph}
-     * using 3rd party lib, <a href="http://www.jgrapht.org/">JGraphT</a>.
+     * Apply a change to one perm ou, made outside of this process, to the cached hierarchy.
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return handle to simple digraph containing perm ou hierarchies.
+     * @param name      of the perm ou that changed.
+     * @param parents   names of its parents as stored in ldap, null if it was deleted.
+     * @throws SecurityException in the event of a system error.
      */
-    private synchronized SimpleDirectedGraph<String, Relationship> loadGraph( String contextId )
+    void syncParents( String contextId, String name, Set<String> parents ) throws SecurityException
     {
-        Hier inHier = new Hier( Hier.Type.ROLE );
-        inHier.setContextId( contextId );
-        LOG.info( "loadGraph initializing PSO context [{}]", inHier.getContextId() );
-        List<Graphable> descendants = null;
-
-        try
-        {
-            OrgUnit orgUnit = new OrgUnit();
-            orgUnit.setType( OrgUnit.Type.PERM );
-            orgUnit.setContextId( contextId );
-            descendants = orgUnitP.getAllDescendants( orgUnit );
-        }
-        catch ( SecurityException se )
-        {
-            LOG.info( "loadGraph caught SecurityException={}", se );
-        }
-
-        Hier hier = HierUtil.loadHier( contextId, descendants );
-        SimpleDirectedGraph<String, Relationship> graph;
+        psoCache.syncParents( contextId, name, parents );
+        AdminPolicyUtil.clear();
+    }
 
-        graph = HierUtil.buildGraph( hier );
-        psoCache.put( getKey( contextId ), graph );
 
-        return graph;
+    /**
+     * Reload this tenant's cached hierarchy in the background on next use.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    void expire( String contextId )
+    {
+        psoCache.expire( contextId );
     }
 
 
     /**
+     * Load this tenant's perm ou hierarchy now, if not already cached, so the first request does not pay for the ldap read.
+     *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return handle to simple digraph containing perm ou hierarchies.
      */
-    private SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
+    void warmUp( String contextId )
     {
-        String key = getKey( contextId );        
-        LOG.debug("Getting graph for key " + contextId);
-         
-        SimpleDirectedGraph<String, Relationship> graph = ( SimpleDirectedGraph<String, Relationship> ) psoCache
-                 .get( key );
-             
-        if(graph == null){
-            LOG.debug("Graph was null, creating... " + contextId);
-            return loadGraph( contextId );
-        }
-        else{
-            LOG.debug("Graph found in cache, returning...");
-            return graph;
-        }
+        psoCache.warmUp( contextId );
     }
 
 
     /**
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return key to this tenant's cache entry.
+     * @return handle to simple digraph containing perm ou hierarchies.
      */
-    private static String getKey( String contextId )
+    private SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
     {
-        String key = HierUtil.Type.PSO.toString();
-        if ( StringUtils.isNotEmpty( contextId ) && !contextId.equalsIgnoreCase( GlobalIds.NULL ) )
-        {
-            key += ":" + contextId;
-        }
-        return key;
+        return psoCache.getGraph( contextId );
     }
 }
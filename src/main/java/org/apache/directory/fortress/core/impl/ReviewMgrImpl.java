@@ -21,6 +21,7 @@ package org.apache.directory.fortress.core.impl;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +34,7 @@ import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.ReviewMgr;
 import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.UserBatch;
 import org.apache.directory.fortress.core.model.OrgUnit;
 import org.apache.directory.fortress.core.model.PermObj;
 import org.apache.directory.fortress.core.model.Permission;
@@ -42,6 +44,7 @@ import org.apache.directory.fortress.core.model.RoleConstraint;
 import org.apache.directory.fortress.core.model.RoleConstraint.RCType;
 import org.apache.directory.fortress.core.model.SDSet;
 import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserProjection;
 import org.apache.directory.fortress.core.model.UserRole;
 import org.apache.directory.fortress.core.util.Config;
 import org.apache.directory.fortress.core.util.VUtil;
@@ -274,6 +277,39 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         return userP.read( user, true );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public User readUser(User user, UserProjection projection)
+        throws SecurityException
+    {
+        String methodName = "readUser";
+        assertContext( CLS_NM, methodName, user, GlobalErrIds.USER_NULL );
+        VUtil.assertNotNullOrEmpty( user.getUserId(), GlobalErrIds.USER_ID_NULL, CLS_NM + "." + methodName );
+        checkAccess( CLS_NM, methodName );
+        return userP.read( user, projection );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public UserBatch readUsers(Collection<String> userIds, UserProjection projection)
+        throws SecurityException
+    {
+        String methodName = "readUsers";
+        VUtil.assertNotNull( userIds, GlobalErrIds.USER_ID_NULL, CLS_NM + "." + methodName );
+        for ( String userId : userIds )
+        {
+            VUtil.assertNotNullOrEmpty( userId, GlobalErrIds.USER_ID_NULL, CLS_NM + "." + methodName );
+        }
+        checkAccess( CLS_NM, methodName );
+        return userP.read( userIds, this.contextId, projection );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -288,6 +324,20 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         return userP.search( user );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public List<User> findUsers(User user, UserProjection projection)
+        throws SecurityException
+    {
+        String methodName = "findUsers";
+        assertContext( CLS_NM, methodName, user, GlobalErrIds.USER_NULL );
+        checkAccess(CLS_NM, methodName);
+        return userP.search( user, projection );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -341,6 +391,11 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
                 users = users.subList( 0, limit );
             }
         }
+        // or from the in memory index of the users' assignments:
+        else if( Config.getInstance().isRoleOccupantIndex() )
+        {
+            users = RoleOccupantIndex.getInstance().getOccupants( role.getContextId(), role.getName(), limit );
+        }
         // otherwise, search across the people tree for all users assigned to this role:
         else
         {
@@ -370,6 +425,20 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         checkAccess(CLS_NM, methodName);
         return userP.getAssignedUsers(role);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public List<User> assignedUsers(Role role, UserProjection projection)
+        throws SecurityException
+    {
+        String methodName = "assignedUsers";
+        assertContext(CLS_NM, methodName, role, GlobalErrIds.ROLE_NULL);
+        checkAccess(CLS_NM, methodName);
+        return userP.getAssignedUsers(role, projection);
+    }
     
     /**
      * {@inheritDoc}
@@ -444,6 +513,20 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         return userP.getAuthorizedUsers( role );
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @AdminPermissionOperation
+    public List<User> authorizedUsers(Role role, UserProjection projection)
+        throws SecurityException
+    {
+        String methodName = "authorizedUsers";
+        assertContext( CLS_NM, methodName, role, GlobalErrIds.ROLE_NULL );
+        checkAccess( CLS_NM, methodName );
+        return userP.getAuthorizedUsers( role, projection );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -545,7 +628,7 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         String methodName = "permissionRoles";
         assertContext(CLS_NM, methodName, perm, GlobalErrIds.PERM_OBJECT_NULL);
         checkAccess(CLS_NM, methodName);
-        Permission pe = permP.read(perm);
+        Permission pe = permP.readGrants(perm);
         List<String> retVals;
         if(pe != null && CollectionUtils.isNotEmpty( pe.getRoles() ))
         {
@@ -571,7 +654,7 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         assertContext(CLS_NM, methodName, perm, GlobalErrIds.PERM_OPERATION_NULL);
         checkAccess(CLS_NM, methodName);
         // Pull the permission from ldap:
-        Permission pe = permP.read(perm);
+        Permission pe = permP.readGrants(perm);
 
         // Get all roles that this permission is authorized for:
         authorizedRoles = authorizeRoles(pe.getRoles());
@@ -589,7 +672,7 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         String methodName = "permissionUsers";
         assertContext(CLS_NM, methodName, perm, GlobalErrIds.PERM_OPERATION_NULL);
         checkAccess(CLS_NM, methodName);
-        Permission pe = permP.read(perm);
+        Permission pe = permP.readGrants(perm);
         List<String> retVals;
         if(pe != null && CollectionUtils.isNotEmpty( pe.getUsers() ))
         {
@@ -615,7 +698,7 @@ public class ReviewMgrImpl extends Manageable implements ReviewMgr, Serializable
         assertContext(CLS_NM, methodName, perm, GlobalErrIds.PERM_OPERATION_NULL);
         checkAccess(CLS_NM, methodName);
         // Pull the permission from ldap:
-        Permission pe = permP.read(perm);
+        Permission pe = permP.readGrants(perm);
 
         // Get all roles that this permission is authorized for:
         Set<String> authorizedRoles = authorizeRoles(pe.getRoles());
@@ -165,7 +165,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
             // These multi-valued attributes are optional.  The utility function will return quietly if items are not loaded into collection:
             loadAttrs( entity.getParents(), entry, GlobalIds.PARENT_NODES );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
         }
         catch ( LdapException e )
@@ -218,7 +218,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
             }
         }
@@ -263,7 +263,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE,
                 GlobalIds.PARENT_NODES ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, dn, mods, entity );
         }
         catch ( LdapException e )
@@ -296,7 +296,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE, SchemaConstants.ROLE_OCCUPANT_AT,
                 userDn ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, dn, mods, entity );
         }
         catch ( LdapException e )
@@ -330,7 +330,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE,
                 SchemaConstants.ROLE_OCCUPANT_AT, userDn ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             modify( ld, dn, mods, entity );
         }
         catch ( LdapException e )
@@ -360,7 +360,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( role.getContextId() );
             delete( ld, dn, role );
         }
         catch ( LdapException e )
@@ -390,7 +390,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( role.getContextId() );
             Entry findEntry = read( ld, dn, ROLE_ATRS );
             if ( findEntry != null )
             {
@@ -440,7 +440,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
             String searchVal = encodeSafeText( role.getName(), GlobalIds.ROLE_LEN );
             filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")("
                 + ROLE_NM + "=" + searchVal + "*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( role.getContextId() );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, ROLE_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -505,7 +505,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
                 }
                 filterbuf.append( "))" );
 
-                ld = getAdminConnection();
+                ld = getAdminConnection( group.getContextId() );
                 SearchCursor searchResults = search( ld, roleRoot,
                     SearchScope.ONELEVEL, filterbuf.toString(), ROLE_ATRS, false, GlobalIds.BATCH_SIZE );
                 long sequence = 0;
@@ -560,7 +560,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
             String searchVal = encodeSafeText( role.getName(), GlobalIds.ROLE_LEN );
             filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")("
                 + ROLE_NM + "=" + searchVal + "*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( role.getContextId() );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, ROLE_NM_ATR, false, limit );
 
@@ -607,7 +607,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
         {
             String filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")";
             filter += "(" + SchemaConstants.ROLE_OCCUPANT_AT + "=" + userDn + "))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( contextId );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, ROLE_NM_ATR, false, GlobalIds.BATCH_SIZE );
 
@@ -655,7 +655,7 @@ final class RoleDAO extends LdapDataProvider implements PropertyProvider<Role>
         {
             filter = GlobalIds.FILTER_PREFIX + GlobalIds.ROLE_OBJECT_CLASS_NM + ")("
                 + GlobalIds.PARENT_NODES + "=*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( contextId );
             SearchCursor searchResults = search( ld, roleRoot,
                 SearchScope.ONELEVEL, filter, DESC_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -0,0 +1,637 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.cache.CacheMgr;
+import org.apache.directory.fortress.core.util.cache.InvalidationListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * In memory index of the userIds assigned to each RBAC role, kept in place of the roleOccupant attribute of the role
+ * entries.  Enable with {@code role.occupants=index}: assignUser and deassignUser then write the user entry only, so a
+ * role with many occupants is no longer modified, and locked, by every assignment.
+ * <p>
+ * A role's occupants are loaded with one paged search of the users assigned it, {@code role.occupants.page.size}
+ * (default 1000) entries per page, the first time they are asked for.  From then on they are kept current by
+ * {@link UserP} as users are assigned, deassigned and deleted, and by {@link RoleP} when the role is deleted.  Changes
+ * made by other processes are applied when the {@link ChangeFeed} reports them, or when they are published on the cache
+ * invalidation bus, in which case the changed user's assignments are read again.  Every process sharing the directory
+ * must use the same mode.
+ * <p>
+ * Changes neither of those report, such as a direct edit of the directory with neither enabled, would otherwise be
+ * missed for good, so each role is loaded again {@code role.occupants.ttl} seconds (default 300) after it last was.
+ * Expired roles are dropped from memory as other roles are loaded, so only the roles in use are kept.
+ * <p>
+ * Loading a role searches without holding any lock, one search per role however many callers ask for it.  Updates
+ * arriving during the search are applied to its result before it is published.  Lookups take no locks.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class RoleOccupantIndex
+{
+    private static final String CLS_NM = RoleOccupantIndex.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String PAGE_SIZE = "role.occupants.page.size";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final String TTL = "role.occupants.ttl";
+    private static final int DEFAULT_TTL = 300;
+    // name under which changes are published, keyed by userId, or null for the whole tenant:
+    private static final String OCCUPANTS = "fortress.role.occupants";
+    private static volatile RoleOccupantIndex sINSTANCE = null;
+
+    private final boolean isEnabled;
+    private final int pageSize;
+    private final long ttlMillis;
+    private final ConcurrentMap<String, TenantIndex> indexes = new ConcurrentHashMap<>();
+    private final UserDAO uDao = new UserDAO();
+
+
+    static RoleOccupantIndex getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( RoleOccupantIndex.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new RoleOccupantIndex();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    private RoleOccupantIndex()
+    {
+        isEnabled = Config.getInstance().isRoleOccupantIndex();
+        pageSize = Math.max( 1, Config.getInstance().getInt( PAGE_SIZE, DEFAULT_PAGE_SIZE ) );
+        ttlMillis = Math.max( 1, Config.getInstance().getInt( TTL, DEFAULT_TTL ) ) * 1000L;
+        LOG.info( "RoleOccupantIndex enabled [{}] page size [{}] ttl [{}] ms", isEnabled, pageSize, ttlMillis );
+        if ( isEnabled )
+        {
+            // the other processes publish the users whose assignments they changed:
+            CacheMgr.getInstance().subscribe( OCCUPANTS, new InvalidationListener()
+            {
+                @Override
+                public void invalidate( String contextId, String key )
+                {
+                    if ( key == null )
+                    {
+                        RoleOccupantIndex.this.invalidate( contextId );
+                        return;
+                    }
+                    syncUser( contextId, key );
+                }
+
+
+                @Override
+                public void refresh()
+                {
+                    invalidateAll();
+                }
+            } );
+        }
+    }
+
+
+    /**
+     * @return true if {@code role.occupants=index}.
+     */
+    boolean isEnabled()
+    {
+        return isEnabled;
+    }
+
+
+    /**
+     * Return the userIds assigned a role, in userId order.
+     *
+     * @param contextId of the tenant.
+     * @param roleName  name of the role.
+     * @param limit     maximum number of userIds to return, 0 for all.
+     * @return the userIds, empty if the role has none.
+     * @throws FinderException if the role's occupants must be loaded and the directory cannot be read.
+     */
+    List<String> getOccupants( String contextId, String roleName, int limit ) throws FinderException
+    {
+        Set<String> userIds = getUserIds( contextId, roleName );
+        int size = limit > 0 ? Math.min( limit, userIds.size() ) : userIds.size();
+        List<String> occupants = new ArrayList<>( size );
+        for ( String userId : userIds )
+        {
+            if ( occupants.size() == size )
+            {
+                break;
+            }
+            occupants.add( userId );
+        }
+        return occupants;
+    }
+
+
+    /**
+     * Record an assignment after the user entry was updated.
+     *
+     * @param contextId of the tenant.
+     * @param roleName  name of the role.
+     * @param userId    of the user assigned.
+     */
+    void assign( String contextId, String roleName, String userId )
+    {
+        update( contextId, roleName, userId, true );
+        publish( contextId, userId );
+    }
+
+
+    /**
+     * Record a deassignment after the user entry was updated.
+     *
+     * @param contextId of the tenant.
+     * @param roleName  name of the role.
+     * @param userId    of the user deassigned.
+     */
+    void deassign( String contextId, String roleName, String userId )
+    {
+        update( contextId, roleName, userId, false );
+        publish( contextId, userId );
+    }
+
+
+    /**
+     * Remove a user from every role after the user entry was deleted.
+     *
+     * @param contextId of the tenant.
+     * @param userId    of the user deleted.
+     */
+    void removeUser( String contextId, String userId )
+    {
+        apply( contextId, userId, new TreeSet<String>() );
+        publish( contextId, userId );
+    }
+
+
+    /**
+     * Drop a role after it was deleted from the directory.
+     *
+     * @param contextId of the tenant.
+     * @param roleName  name of the role.
+     */
+    void removeRole( String contextId, String roleName )
+    {
+        expireRole( contextId, roleName );
+        if ( isEnabled )
+        {
+            // the role's users were deassigned one at a time, this tells the other processes to drop its entry too:
+            CacheMgr.getInstance().publish( OCCUPANTS, contextId, null );
+        }
+    }
+
+
+    /**
+     * Drop a role in this process only, e.g. for a deletion the directory reported to every process.
+     *
+     * @param contextId of the tenant.
+     * @param roleName  name of the role.
+     */
+    void expireRole( String contextId, String roleName )
+    {
+        TenantIndex index = getLoadedIndex( contextId );
+        if ( index != null )
+        {
+            String roleKey = StringUtils.lowerCase( roleName );
+            synchronized ( index )
+            {
+                index.roles.remove( roleKey );
+                // a search started before the deletion may still return the old occupants:
+                Load load = index.loads.remove( roleKey );
+                if ( load != null )
+                {
+                    load.isDropped = true;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Read a user's assignments again and apply them to the roles loaded for the tenant, e.g. for a change made by
+     * another process.  A user that no longer exists is removed from every role.  If the user can't be read the
+     * tenant's index is dropped instead.
+     *
+     * @param contextId of the tenant.
+     * @param userId    of the user changed.
+     */
+    void syncUser( String contextId, String userId )
+    {
+        if ( getLoadedIndex( contextId ) == null )
+        {
+            return;
+        }
+        // read before locking, the tenant's other updates don't wait on the directory:
+        Set<String> roles = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        try
+        {
+            User user = new User( userId );
+            user.setContextId( contextId );
+            List<String> assigned = uDao.getRoles( user );
+            if ( assigned != null )
+            {
+                roles.addAll( assigned );
+            }
+        }
+        catch ( FinderException fe )
+        {
+            if ( fe.getErrorId() != GlobalErrIds.USER_NOT_FOUND )
+            {
+                LOG.warn( "syncUser contextId [{}] userId [{}] could not be read, dropping index, caught "
+                    + "FinderException={}", contextId, userId, fe );
+                invalidate( contextId );
+                return;
+            }
+        }
+        apply( contextId, userId, roles );
+    }
+
+
+    /**
+     * Drop the tenant's index, each role is loaded again on next use.
+     *
+     * @param contextId of the tenant.
+     */
+    void invalidate( String contextId )
+    {
+        TenantIndex index = indexes.remove( getContextKey( contextId ) );
+        if ( index != null )
+        {
+            drop( index );
+            LOG.info( "invalidate contextId [{}]", contextId );
+        }
+    }
+
+
+    /**
+     * Drop the index of every tenant.
+     */
+    void invalidateAll()
+    {
+        for ( Iterator<TenantIndex> it = indexes.values().iterator(); it.hasNext(); )
+        {
+            TenantIndex index = it.next();
+            it.remove();
+            drop( index );
+        }
+        LOG.info( "invalidateAll" );
+    }
+
+
+    private Set<String> getUserIds( String contextId, String roleName ) throws FinderException
+    {
+        TenantIndex index = getIndex( contextId );
+        String roleKey = StringUtils.lowerCase( roleName );
+        Occupants occupants = index.roles.get( roleKey );
+        if ( occupants != null && !occupants.isExpired() )
+        {
+            return occupants.userIds;
+        }
+        Load load;
+        boolean isLoader = false;
+        synchronized ( index )
+        {
+            occupants = index.roles.get( roleKey );
+            if ( occupants != null && !occupants.isExpired() )
+            {
+                return occupants.userIds;
+            }
+            // one search per role, later callers wait for it:
+            load = index.loads.get( roleKey );
+            if ( load == null )
+            {
+                load = new Load( index, contextId, roleName );
+                index.loads.put( roleKey, load );
+                isLoader = true;
+            }
+        }
+        if ( isLoader )
+        {
+            load.task.run();
+        }
+        return load.get();
+    }
+
+
+    private void update( String contextId, String roleName, String userId, boolean isAssign )
+    {
+        TenantIndex index = getLoadedIndex( contextId );
+        if ( index == null )
+        {
+            return;
+        }
+        String roleKey = StringUtils.lowerCase( roleName );
+        synchronized ( index )
+        {
+            // roles not loaded pick up the change when they are:
+            Occupants occupants = index.roles.get( roleKey );
+            if ( occupants != null )
+            {
+                occupants.set( userId, isAssign );
+            }
+            Load load = index.loads.get( roleKey );
+            if ( load != null )
+            {
+                load.changes.put( userId, isAssign );
+            }
+        }
+    }
+
+
+    /**
+     * Make the user an occupant of the given roles, and of no other loaded role.
+     */
+    private void apply( String contextId, String userId, Set<String> roleKeys )
+    {
+        TenantIndex index = getLoadedIndex( contextId );
+        if ( index == null )
+        {
+            return;
+        }
+        synchronized ( index )
+        {
+            for ( Map.Entry<String, Occupants> entry : index.roles.entrySet() )
+            {
+                entry.getValue().set( userId, roleKeys.contains( entry.getKey() ) );
+            }
+            for ( Map.Entry<String, Load> entry : index.loads.entrySet() )
+            {
+                entry.getValue().changes.put( userId, roleKeys.contains( entry.getKey() ) );
+            }
+        }
+    }
+
+
+    private TenantIndex getIndex( String contextId )
+    {
+        String key = getContextKey( contextId );
+        TenantIndex index = indexes.get( key );
+        if ( index == null )
+        {
+            TenantIndex created = new TenantIndex();
+            index = indexes.putIfAbsent( key, created );
+            if ( index == null )
+            {
+                index = created;
+            }
+        }
+        return index;
+    }
+
+
+    /**
+     * @return the tenant's index if any of its roles have been loaded.
+     */
+    private TenantIndex getLoadedIndex( String contextId )
+    {
+        return isEnabled ? indexes.get( getContextKey( contextId ) ) : null;
+    }
+
+
+    /**
+     * Keep the searches still running for a dropped index from publishing their results.
+     */
+    private static void drop( TenantIndex index )
+    {
+        synchronized ( index )
+        {
+            for ( Load load : index.loads.values() )
+            {
+                load.isDropped = true;
+            }
+            index.loads.clear();
+            index.roles.clear();
+        }
+    }
+
+
+    private Set<String> load( String contextId, String roleName ) throws FinderException
+    {
+        long start = System.currentTimeMillis();
+        Role role = new Role( roleName );
+        role.setContextId( contextId );
+        Set<String> userIds = new ConcurrentSkipListSet<>( String.CASE_INSENSITIVE_ORDER );
+        userIds.addAll( uDao.getAssignedUserIds( role, pageSize ) );
+        LOG.debug( "load contextId [{}] role [{}] occupants [{}] in [{}] ms", contextId, roleName, userIds.size(),
+            System.currentTimeMillis() - start );
+        return userIds;
+    }
+
+
+    /**
+     * Tell the other processes to read the user's assignments again.
+     */
+    private void publish( String contextId, String userId )
+    {
+        if ( isEnabled )
+        {
+            CacheMgr.getInstance().publish( OCCUPANTS, contextId, userId );
+        }
+    }
+
+
+    private static String getContextKey( String contextId )
+    {
+        return StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) ? GlobalIds.HOME
+            : contextId;
+    }
+
+
+    /**
+     * The roles of one tenant, updates and the publishing of loads are serialized on it.
+     */
+    private static final class TenantIndex
+    {
+        // lower case role name to its occupants, read without locking:
+        private final ConcurrentMap<String, Occupants> roles = new ConcurrentHashMap<>();
+        // lower case role name to the search loading it, guarded by this:
+        private final Map<String, Load> loads = new HashMap<>();
+    }
+
+
+    /**
+     * The userIds assigned one role, and when they must be loaded again.
+     */
+    private static final class Occupants
+    {
+        private final Set<String> userIds;
+        private final long expires;
+
+
+        private Occupants( Set<String> userIds, long expires )
+        {
+            this.userIds = userIds;
+            this.expires = expires;
+        }
+
+
+        private boolean isExpired()
+        {
+            return System.currentTimeMillis() >= expires;
+        }
+
+
+        private void set( String userId, boolean isOccupant )
+        {
+            if ( isOccupant )
+            {
+                userIds.add( userId );
+            }
+            else
+            {
+                userIds.remove( userId );
+            }
+        }
+    }
+
+
+    /**
+     * Search for the occupants of one role, run by the first caller to need them while the others wait on its task.
+     */
+    private final class Load implements Callable<Set<String>>
+    {
+        private final TenantIndex index;
+        private final String contextId;
+        private final String roleName;
+        private final FutureTask<Set<String>> task = new FutureTask<>( this );
+        // updates arriving during the search, userId to whether it is an occupant, guarded by the index:
+        private final Map<String, Boolean> changes = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        // set, under the index lock, if the role or the index was dropped during the search:
+        private boolean isDropped;
+
+
+        private Load( TenantIndex index, String contextId, String roleName )
+        {
+            this.index = index;
+            this.contextId = contextId;
+            this.roleName = roleName;
+        }
+
+
+        @Override
+        public Set<String> call() throws FinderException
+        {
+            String roleKey = StringUtils.lowerCase( roleName );
+            Set<String> userIds = null;
+            try
+            {
+                userIds = load( contextId, roleName );
+                return userIds;
+            }
+            finally
+            {
+                synchronized ( index )
+                {
+                    if ( !isDropped )
+                    {
+                        index.loads.remove( roleKey );
+                        if ( userIds != null )
+                        {
+                            Occupants occupants = new Occupants( userIds, System.currentTimeMillis() + ttlMillis );
+                            for ( Map.Entry<String, Boolean> change : changes.entrySet() )
+                            {
+                                occupants.set( change.getKey(), change.getValue() );
+                            }
+                            purge();
+                            index.roles.put( roleKey, occupants );
+                        }
+                    }
+                }
+            }
+        }
+
+
+        private Set<String> get() throws FinderException
+        {
+            try
+            {
+                return task.get();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new FinderException( GlobalErrIds.URLE_SEARCH_FAILED, CLS_NM + ".get role name [" + roleName
+                    + "] interrupted", e );
+            }
+            catch ( ExecutionException e )
+            {
+                if ( e.getCause() instanceof FinderException )
+                {
+                    throw ( FinderException ) e.getCause();
+                }
+                if ( e.getCause() instanceof RuntimeException )
+                {
+                    throw ( RuntimeException ) e.getCause();
+                }
+                throw new FinderException( GlobalErrIds.URLE_SEARCH_FAILED, CLS_NM + ".get role name [" + roleName
+                    + "] failed", e );
+            }
+        }
+
+
+        /**
+         * Drop the tenant's expired roles, called with the index locked.
+         */
+        private void purge()
+        {
+            for ( Iterator<Occupants> it = index.roles.values().iterator(); it.hasNext(); )
+            {
+                if ( it.next().isExpired() )
+                {
+                    it.remove();
+                }
+            }
+        }
+    }
+}
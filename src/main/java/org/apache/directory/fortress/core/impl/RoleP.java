@@ -162,7 +162,10 @@ final class RoleP
     Role update( Role entity ) throws SecurityException
     {
         validate( entity );
-        return rDao.update( entity );
+        Role outRole = rDao.update( entity );
+        // group sessions hold copies of the role constraints:
+        GroupCache.getInstance().invalidate( entity.getContextId() );
+        return outRole;
     }
 
 
@@ -271,6 +274,8 @@ final class RoleP
     void delete( Role entity ) throws SecurityException
     {
         rDao.remove( entity );
+        GroupCache.getInstance().invalidate( entity.getContextId() );
+        RoleOccupantIndex.getInstance().removeRole( entity.getContextId(), entity.getName() );
     }
 
 
@@ -25,8 +25,6 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang.StringUtils;
-import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.ValidationException;
 import org.apache.directory.fortress.core.model.Graphable;
@@ -35,7 +33,6 @@ import org.apache.directory.fortress.core.model.ParentUtil;
 import org.apache.directory.fortress.core.model.Relationship;
 import org.apache.directory.fortress.core.model.Role;
 import org.apache.directory.fortress.core.model.UserRole;
-import org.apache.directory.fortress.core.util.cache.Cache;
 import org.apache.directory.fortress.core.util.cache.CacheMgr;
 import org.jgrapht.graph.SimpleDirectedGraph;
 import org.slf4j.Logger;
@@ -64,7 +61,8 @@ import org.slf4j.LoggerFactory;
  */
 final class RoleUtil implements ParentUtil
 {
-    private Cache roleCache;
+    private static final String CACHE_NAME = "fortress.roles";
+    private GraphCache roleCache;
     private RoleP roleP = new RoleP();
     private static final String CLS_NM = RoleUtil.class.getName();
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
@@ -99,7 +97,15 @@ final class RoleUtil implements ParentUtil
     	roleP = new RoleP();
     	
         CacheMgr cacheMgr = CacheMgr.getInstance();
-        roleCache = cacheMgr.getCache( "fortress.roles" );
+        roleCache = new GraphCache( cacheMgr.getCache( CACHE_NAME ), HierUtil.Type.ROLE, new GraphCache.Loader()
+        {
+            @Override
+            public List<Graphable> getAllDescendants( String contextId ) throws SecurityException
+            {
+                return roleP.getAllDescendants( contextId );
+            }
+        } );
+        ChangeRouter.getInstance().subscribe( CACHE_NAME, ChangeRouter.Container.ROLE );
     }
 
     /**
@@ -342,58 +348,46 @@ final class RoleUtil implements ParentUtil
      */
     void updateHier( String contextId, Relationship relationship, Hier.Op op ) throws SecurityException
     {
-        HierUtil.updateHier( getGraph( contextId ), relationship, op );
+        roleCache.updateHier( contextId, relationship, op );
+        AdminPolicyUtil.clear();
+        CacheMgr.getInstance().publish( CACHE_NAME, contextId, relationship.getChild() );
     }
 
 
     /**
-     * Read this ldap record,{@code cn=Hierarchies, ou=OS-P} into this entity, {@link Hier}, before loading into this collection class,{@code org.jgrapht.graph.SimpleDirectedGraph}
-     * using 3rd party lib, <a href="http://www.jgrapht.org/">JGraphT</a>.
+     * Apply a change to one role, made outside of this process, to the cached hierarchy.
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return handle to simple digraph containing role hierarchies.
+     * @param name      of the role that changed.
+     * @param parents   names of its parents as stored in ldap, null if it was deleted.
+     * @throws SecurityException in the event of a system error.
      */
-    private synchronized SimpleDirectedGraph<String, Relationship> loadGraph( String contextId )
+    void syncParents( String contextId, String name, Set<String> parents ) throws SecurityException
     {
-        Hier inHier = new Hier( Hier.Type.ROLE );
-        inHier.setContextId( contextId );
-        LOG.info( "loadGraph initializing ROLE context [{}]", inHier.getContextId() );
-        List<Graphable> descendants = null;
-
-        try
-        {
-            descendants = roleP.getAllDescendants( inHier.getContextId() );
-        }
-        catch ( SecurityException se )
-        {
-            LOG.info( "loadGraph caught SecurityException={}", se );
-        }
-
-        Hier hier = HierUtil.loadHier( contextId, descendants );
-        SimpleDirectedGraph<String, Relationship> graph;
-
-        graph = HierUtil.buildGraph( hier );
-        roleCache.put( getKey( contextId ), graph );
-
-        return graph;
+        roleCache.syncParents( contextId, name, parents );
+        AdminPolicyUtil.clear();
     }
 
 
     /**
+     * Reload this tenant's cached hierarchy in the background on next use.
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return key to this tenant's cache entry.
      */
-    private String getKey( String contextId )
+    void expire( String contextId )
     {
-        String key = HierUtil.Type.ROLE.toString();
+        roleCache.expire( contextId );
+    }
 
-        if ( StringUtils.isNotEmpty( contextId ) && !contextId.equalsIgnoreCase( GlobalIds.NULL ) )
-        {
-            key += ":" + contextId;
-        }
 
-        return key;
+    /**
+     * Load this tenant's role hierarchy now, if not already cached, so the first request does not pay for the ldap read.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    void warmUp( String contextId )
+    {
+        roleCache.warmUp( contextId );
     }
 
 
@@ -404,19 +398,6 @@ final class RoleUtil implements ParentUtil
      */
     private SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
     {
-        String key = getKey( contextId );        
-        LOG.debug("Getting graph for key " + contextId);
-         
-        SimpleDirectedGraph<String, Relationship> graph = ( SimpleDirectedGraph<String, Relationship> ) roleCache
-                 .get( key );
-             
-        if(graph == null){
-            LOG.debug("Graph was null, creating... " + contextId);
-            return loadGraph( contextId );
-        }
-        else{
-            LOG.debug("Graph found in cache, returning...");
-            return graph;
-        }
+        return roleCache.getGraph( contextId );
     }
 }
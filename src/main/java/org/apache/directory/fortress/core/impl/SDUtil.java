@@ -22,22 +22,18 @@ package org.apache.directory.fortress.core.impl;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-
-import net.sf.ehcache.search.Attribute;
-import net.sf.ehcache.search.Query;
-import net.sf.ehcache.search.Result;
-import net.sf.ehcache.search.Results;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.fortress.core.*;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.model.*;
 import org.apache.directory.fortress.core.util.Config;
 import org.apache.directory.fortress.core.util.cache.Cache;
 import org.apache.directory.fortress.core.util.cache.CacheMgr;
-import org.apache.directory.fortress.core.util.cache.DsdCacheEntry;
+import org.apache.directory.fortress.core.util.cache.InvalidationListener;
 
 /**
  * This utilty provides functionality necessary for SSD and DSD processing and cannot be called by components outside fortress.
@@ -50,15 +46,13 @@ import org.apache.directory.fortress.core.util.cache.DsdCacheEntry;
  */
 final class SDUtil
 {
-    private Cache m_dsdCache;
+    private CacheMgr m_cacheMgr;
     private static final String FORTRESS_DSDS = "fortress.dsd";
-    private Cache m_ssdCache;
     private static final String FORTRESS_SSDS = "fortress.ssd";
     private SdP sp;
     private static final String IS_DSD_CACHE_DISABLED_PARM = "enable.dsd.cache";
-    private static final String DSD_NAME = "name";
-    private static final String EMPTY_ELEMENT = "empty";
-    private static final String CONTEXT_ID = "contextId";
+    // Maps DSD name:contextId to the keys of the role entries in the DSD cache that reference it:
+    private final ConcurrentMap<String, Set<String>> m_dsdMembers = new ConcurrentHashMap<>();
 
     private static volatile SDUtil sINSTANCE = null;
 
@@ -82,11 +76,68 @@ final class SDUtil
         sp = new SdP();
     	
         // Get a reference to the CacheManager Singleton object:
-        CacheMgr cacheMgr = CacheMgr.getInstance();
-        // This cache contains a wrapper entry for DSD and is searchable by both DSD and Role name:
-        m_dsdCache = cacheMgr.getCache(FORTRESS_DSDS);
-        // This cache is not searchable and contains Lists of SSD objects by Role:
-        m_ssdCache = cacheMgr.getCache(FORTRESS_SSDS);
+        m_cacheMgr = CacheMgr.getInstance();
+        // Apply the clears published by other processes, the DSD key is a set or a role name:
+        m_cacheMgr.subscribe(FORTRESS_DSDS, new InvalidationListener()
+        {
+            @Override
+            public void invalidate(String contextId, String key)
+            {
+                if (key == null)
+                {
+                    m_cacheMgr.flush(FORTRESS_DSDS);
+                    return;
+                }
+                clearDsdCacheEntry(key, contextId);
+                clearDsdCacheMember(key, contextId);
+            }
+
+            @Override
+            public void refresh()
+            {
+                m_dsdMembers.clear();
+            }
+        });
+        m_cacheMgr.subscribe(FORTRESS_SSDS, new InvalidationListener()
+        {
+            @Override
+            public void invalidate(String contextId, String key)
+            {
+                if (key == null)
+                {
+                    m_cacheMgr.flush(FORTRESS_SSDS);
+                    return;
+                }
+                clearSsdCacheEntry(key, contextId);
+            }
+
+            @Override
+            public void refresh()
+            {
+            }
+        });
+    }
+
+    /**
+     * This cache contains Sets of DSD objects by Role, an empty Set means the Role is not a DSD member.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return the tenant's partition of the DSD cache.
+     */
+    private Cache getDsdPartition(String contextId)
+    {
+        return m_cacheMgr.getCache(FORTRESS_DSDS, contextId);
+    }
+
+    /**
+     * This cache is not searchable and contains Lists of SSD objects by Role.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return the tenant's partition of the SSD cache.
+     */
+    private Cache getSsdPartition(String contextId)
+    {
+        return m_cacheMgr.getCache(FORTRESS_SSDS, contextId);
     }
 
     /**
@@ -262,7 +313,7 @@ final class SDUtil
     }
 
     /**
-     * Given DSD entry name, clear its corresponding object values from the cache.
+     * Given DSD entry name, clear the cache entries of every Role that references it.
      *
      * @param name contains the name of object to be cleared.
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.     *
@@ -270,17 +321,49 @@ final class SDUtil
      */
     void clearDsdCacheEntry(String name, String contextId)
     {
-        Attribute<String> context = m_dsdCache.getSearchAttribute(CONTEXT_ID);
-        Attribute<String> dsdName = m_dsdCache.getSearchAttribute(DSD_NAME);
-        Query query = m_dsdCache.createQuery();
-        query.includeKeys();
-        query.includeValues();
-        query.addCriteria(dsdName.eq(name).and(context.eq(contextId)));
-        Results results = query.execute();
-        for (Result result : results.all())
+        Set<String> keys = m_dsdMembers.remove(getKey(name, contextId));
+        if (keys != null)
+        {
+            for (String key : keys)
+            {
+                getDsdPartition(contextId).clear(key);
+            }
+        }
+        m_cacheMgr.publish(FORTRESS_DSDS, contextId, name);
+    }
+
+    /**
+     * Given a role name, clear its entry from the DSD cache.  Needed when a Role becomes a member of a DSD, because the
+     * cache entry of a Role not yet referenced by any DSD is not tied to a DSD name.
+     *
+     * @param roleName contains the name of the Role to be cleared.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    void clearDsdCacheMember(String roleName, String contextId)
+    {
+        getDsdPartition(contextId).clear(getKey(roleName, contextId));
+        m_cacheMgr.publish(FORTRESS_DSDS, contextId, roleName);
+    }
+
+    /**
+     * Clear the cache entries affected by a change to an SD set made by another process.  The DSD entries of its previous
+     * and current members are cleared.  The SSD cache isn't indexed by set name, so the tenant's SSD partition is flushed.
+     *
+     * @param name of the SD set that changed.
+     * @param members current members of the set, null if it was deleted.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    void clearSdSet(String name, Set<String> members, String contextId)
+    {
+        clearDsdCacheEntry(name, contextId);
+        if (members != null)
         {
-            m_dsdCache.clear(result.getKey());
+            for (String member : members)
+            {
+                clearDsdCacheMember(member, contextId);
+            }
         }
+        getSsdPartition(getContextId(contextId)).flush();
     }
 
     /**
@@ -295,35 +378,13 @@ final class SDUtil
         throws SecurityException
     {
         contextId = getContextId(contextId);
-        Set<SDSet> finalSet = new HashSet<>();
-        Attribute<String> context = m_dsdCache.getSearchAttribute(CONTEXT_ID);
-        Attribute<String> member = m_dsdCache.getSearchAttribute(SchemaConstants.MEMBER_AT);
-        Query query = m_dsdCache.createQuery();
-        query.includeKeys();
-        query.includeValues();
-        query.addCriteria(member.eq(name).and(context.eq(contextId)));
-        Results results = query.execute();
-        boolean empty = false;
-        for (Result result : results.all())
-        {
-            DsdCacheEntry entry = (DsdCacheEntry) result.getValue();
-            if (!entry.isEmpty())
-            {
-                finalSet.add(entry.getSdSet());
-                finalSet = putDsdCache(name, contextId);
-            }
-            else
-            {
-                empty = true;
-            }
-            finalSet.add(entry.getSdSet());
-        }
-        // If nothing was found in the cache, determine if it needs to be seeded:
-        if (finalSet.size() == 0 && !empty)
+        String key = getKey(name, contextId);
+        Set<SDSet> dsdSets = (Set<SDSet>) getDsdPartition(contextId).get(key);
+        if (dsdSets == null)
         {
-            finalSet = putDsdCache(name, contextId);
+            dsdSets = putDsdCache(name, key, contextId);
         }
-        return finalSet;
+        return dsdSets;
     }
 
     /**
@@ -354,148 +415,64 @@ final class SDUtil
             sdSet.setContextId(contextId);
             dsdRetSets = sp.search(authorizedRoleSet, sdSet);
         }
-        // Search the DSD cache for matching Role members:
+        // Look up each authorized Role in the DSD cache, only the misses go to the directory:
         else
         {
-            // Search on roleName attribute which maps to 'member' attr on the cache record:
-            Attribute<String> member = m_dsdCache.getSearchAttribute(SchemaConstants.MEMBER_AT);
-            Attribute<String> context = m_dsdCache.getSearchAttribute(CONTEXT_ID);
-            Query query = m_dsdCache.createQuery();
-            query.includeKeys();
-            query.includeValues();
-            // Add the passed in authorized Role names to this cache query:
-            Set<String> roles = new HashSet<>(authorizedRoleSet);
-            query.addCriteria(member.in(roles).and(context.eq(contextId)));
-            // Return all DSD cache entries that match roleName to the 'member' attribute in cache entry:
-            Results results = query.execute();
-            for (Result result : results.all())
-            {
-                DsdCacheEntry entry = (DsdCacheEntry) result.getValue();
-                // Do not add dummy DSD sets to the final list:
-                if (!entry.isEmpty())
-                {
-                    dsdRetSets.add(entry.getSdSet());
-                }
-                // Remove role member from authorizedRoleSet to preclude from upcoming DSD search:
-                //authorizedRoleSet.remove(entry.getMember());
-            }
-            // Authorized roles remaining in this set correspond to missed cache hits from above:
-            if (authorizedRoleSet.size() > 0)
+            for (String roleName : authorizedRoleSet)
             {
-                dsdRetSets = putDsdCache(authorizedRoleSet, contextId);
+                dsdRetSets.addAll(getDsdCache(roleName, contextId));
             }
         }
         return dsdRetSets;
     }
 
     /**
-     * Get the matching DSD's from directory and add to the cache (if found).  If matching DSD not found,
-     * add dummy entry to cache to prevent repeated searches.
+     * Get the matching DSD's from directory and add to the cache.  If matching DSD not found, an empty set is
+     * cached to prevent repeated searches.
      *
-     * @param authorizedRoleSet contains set of Roles used to search directory for matching DSD's.
+     * @param roleName of Role is used to search directory for matching DSD's.
+     * @param key of the Role's entry in the DSD cache.
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return List of DSD's who have matching Role members.
+     * @return Set of DSD's who have matching Role member.
      * @throws SecurityException in the event of system or rule violation.
      */
-    private Set<SDSet> putDsdCache(Set<String> authorizedRoleSet, String contextId)
+    private Set<SDSet> putDsdCache(String roleName, String key, String contextId)
         throws SecurityException
     {
-        contextId = getContextId(contextId);
-        Set<SDSet> dsdSets = new HashSet<>();
-        // Search the DSD's iteratively to seed the DSD cache by Role name:
-        for (String roleName : authorizedRoleSet)
+        HashSet<SDSet> dsdSets = null;
+        try
         {
             Role role = new Role(roleName);
             role.setContextId(contextId);
             List<SDSet> dsdList = sp.search(role, SDSet.SDType.DYNAMIC);
-            if (CollectionUtils.isNotEmpty( dsdList ))
+            dsdSets = new HashSet<>();
+            if (dsdList != null)
             {
                 for (SDSet dsd : dsdList)
                 {
                     dsd.setContextId(contextId);
-                    Set<String> members = dsd.getMembers();
-                    if (members != null)
+                    dsdSets.add(dsd);
+                    // Remember which Role entries must be cleared when this DSD changes:
+                    Set<String> keys = m_dsdMembers.get(getKey(dsd.getName(), contextId));
+                    if (keys == null)
                     {
-                        // Seed the cache with DSD objects mapped to role name:
-                        for (String member : members)
+                        Set<String> newKeys = ConcurrentHashMap.newKeySet();
+                        keys = m_dsdMembers.putIfAbsent(getKey(dsd.getName(), contextId), newKeys);
+                        if (keys == null)
                         {
-                            String key = buildKey(dsd.getName(), member);
-                            DsdCacheEntry entry = new DsdCacheEntry(member, dsd, false);
-                            entry.setName(dsd.getName());
-                            m_dsdCache.put(getKey(key, contextId), entry);
+                            keys = newKeys;
                         }
                     }
+                    keys.add(key);
                 }
-                // Maintain the set of DSD's to be returned to the caller:
-                dsdSets.addAll(dsdList);
-            }
-            else
-            {
-                // Seed the cache with dummy entry for a Role that is not referenced by DSD:
-                String key = buildKey(EMPTY_ELEMENT, roleName);
-                SDSet sdSet = new SDSet();
-                sdSet.setType(SDSet.SDType.DYNAMIC);
-                sdSet.setName(key);
-                sdSet.setMember(roleName);
-                sdSet.setContextId(contextId);
-                DsdCacheEntry entry = new DsdCacheEntry(roleName, sdSet, true);
-                entry.setName(key);
-                m_dsdCache.put(getKey(sdSet.getName(), contextId), entry);
             }
         }
-        return dsdSets;
-    }
-
-    /**
-     * Get the matching DSD's from directory and add to the cache (if found).  If matching DSD not found,
-     * add dummy entry to cache to prevent repeated searches.
-     *
-     * @param roleName of Role is used to search directory for matching DSD's.
-     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return Set of DSD's who have matching Role member.
-     * @throws SecurityException in the event of system or rule violation.
-     */
-    private Set<SDSet> putDsdCache(String roleName, String contextId)
-        throws SecurityException
-    {
-        contextId = getContextId(contextId);
-        Role role = new Role(roleName);
-        role.setContextId(contextId);
-        List<SDSet> dsdList = sp.search(role, SDSet.SDType.DYNAMIC);
-        Set<SDSet> finalSet = new HashSet<>(dsdList);
-        if ( CollectionUtils.isNotEmpty( dsdList ))
+        finally
         {
-            for (SDSet dsd : dsdList)
-            {
-                dsd.setContextId(contextId);
-                Set<String> members = dsd.getMembers();
-                if (members != null)
-                {
-                    // Seed the cache with DSD objects mapped to role name:
-                    for (String member : members)
-                    {
-                        String key = buildKey(dsd.getName(), member);
-                        DsdCacheEntry entry = new DsdCacheEntry(member, dsd, false);
-                        entry.setName(dsd.getName());
-                        m_dsdCache.put(getKey(key, contextId), entry);
-                    }
-                }
-            }
+            // Always put after a miss, a null value releases the entry without caching it:
+            getDsdPartition(contextId).put(key, dsdSets);
         }
-        else
-        {
-            // Seed the cache with dummy entry for Role that does not have DSD:
-            String key = buildKey(EMPTY_ELEMENT, roleName);
-            SDSet sdSet = new SDSet();
-            sdSet.setType(SDSet.SDType.DYNAMIC);
-            sdSet.setName(key);
-            sdSet.setMember(roleName);
-            sdSet.setContextId(contextId);
-            DsdCacheEntry entry = new DsdCacheEntry(roleName, sdSet, true);
-            entry.setName(key);
-            m_dsdCache.put(getKey(sdSet.getName(), contextId), entry);
-        }
-        return finalSet;
+        return dsdSets;
     }
 
     /**
@@ -508,7 +485,8 @@ final class SDUtil
     void clearSsdCacheEntry(String name, String contextId)
     {
         contextId = getContextId(contextId);
-        m_ssdCache.clear(getKey(name, contextId));
+        getSsdPartition(contextId).clear(getKey(name, contextId));
+        m_cacheMgr.publish(FORTRESS_SSDS, contextId, name);
     }
 
     /**
@@ -525,7 +503,7 @@ final class SDUtil
         Role role = new Role(name);
         role.setContextId(contextId);
         List<SDSet> ssdSets = sp.search(role, SDSet.SDType.STATIC);
-        m_ssdCache.put(getKey(name, contextId), ssdSets);
+        getSsdPartition(contextId).put(getKey(name, contextId), ssdSets);
         return ssdSets;
     }
 
@@ -540,7 +518,7 @@ final class SDUtil
     private List<SDSet> getSsdCache(String name, String contextId)
         throws SecurityException
     {
-        List<SDSet> ssdSets = (List<SDSet>) m_ssdCache.get(getKey(name, contextId));
+        List<SDSet> ssdSets = (List<SDSet>) getSsdPartition(contextId).get(getKey(name, contextId));
         if (ssdSets == null)
         {
             ssdSets = putSsdCache(name, contextId);
@@ -172,7 +172,7 @@ final class SdDAO extends LdapDataProvider
             loadAttrs( entity.getMembers(), entry, ROLES );
             entry.add( SD_SET_CARDINALITY, "" + entity.getCardinality() );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, entry, entity );
         }
         catch ( LdapException e )
@@ -229,7 +229,7 @@ final class SdDAO extends LdapDataProvider
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, dn, mods, entity );
             }
         }
@@ -269,7 +269,7 @@ final class SdDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             delete( ld, dn, entity );
         }
         catch ( LdapException e )
@@ -310,7 +310,7 @@ final class SdDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( sdSet.getContextId() );
             Entry findEntry = read( ld, dn, SD_SET_ATRS );
             if ( findEntry == null )
             {
@@ -371,7 +371,7 @@ final class SdDAO extends LdapDataProvider
         {
             String searchVal = encodeSafeText( sdset.getName(), GlobalIds.ROLE_LEN );
             String filter = GlobalIds.FILTER_PREFIX + objectClass + ")(" + SD_SET_NM + "=" + searchVal + "*))";
-            ld = getAdminConnection();
+            ld = getAdminConnection( sdset.getContextId() );
             SearchCursor searchResults = search( ld, ssdRoot,
                 SearchScope.SUBTREE, filter, SD_SET_ATRS, false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
@@ -478,7 +478,7 @@ final class SdDAO extends LdapDataProvider
             }
 
             filterbuf.append( ")" );
-            ld = getAdminConnection();
+            ld = getAdminConnection( role.getContextId() );
             SearchCursor searchResults = search( ld, ssdRoot,
                 SearchScope.SUBTREE, filterbuf.toString(), SD_SET_ATRS, false, GlobalIds.BATCH_SIZE );
 
@@ -567,7 +567,7 @@ final class SdDAO extends LdapDataProvider
                     filterbuf.append( ")" );
                 }
                 filterbuf.append( "))" );
-                ld = getAdminConnection();
+                ld = getAdminConnection( sdSet.getContextId() );
                 SearchCursor searchResults = search( ld, ssdRoot,
                     SearchScope.SUBTREE, filterbuf.toString(), SD_SET_ATRS, false, GlobalIds.BATCH_SIZE );
                 long sequence = 0;
@@ -0,0 +1,544 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapEntryAlreadyExistsException;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapNoSuchObjectException;
+import org.apache.directory.api.ldap.model.ldif.LdifEntry;
+import org.apache.directory.api.ldap.model.ldif.LdifReader;
+import org.apache.directory.api.ldap.model.ldif.LdifUtils;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.fortress.core.CreateException;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.ldap.LdapDataProvider;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Data access class for bulk export and import of all fortress entries that belong to a single tenant.
+ * <p>
+ * Export runs one paged subtree search per fortress container (users, roles, perms, ...) in parallel, each on its
+ * own admin connection, and streams every entry into LDIF so the full tenant is never held in memory.  The container
+ * segments are written in a fixed order (parents before children) so the resulting file may be loaded back in a single
+ * pass.  When the target file name ends with <code>.gz</code> the output is gzip compressed.
+ * <p>
+ * Import reads the LDIF back and rebases every dn, along with the dn valued attributes fortress uses for relationships,
+ * from the source tenant onto the target tenant.  Internal ids (ftId) are carried over unchanged so the role and perm ou
+ * hierarchies are rebuilt from the loaded data without further lookups.  Entries that already exist are skipped, and
+ * entries that arrive before their parent are retried once the rest of the file has been processed.
+ * <p>
+ * The configuration node this process runs with (<code>cn=${config.realm},${config.root}</code>) is exported ahead of
+ * the tenant containers.  It lives outside of the tenant, so its dn is not rebased, and as configuration nodes may be
+ * shared by several tenants an existing node on the target is left as is rather than overwritten.
+ * <p>
+ * Limits: import is serial, one LdifReader entry and one add at a time on a single connection, so it is bound by the
+ * directory's add latency rather than the export's parallelism.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class TenantDAO extends LdapDataProvider
+{
+    private static final String CLS_NM = TenantDAO.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+
+    /** First line of every export, records the tenant the data was pulled from. */
+    static final String HEADER = "# fortress.contextId=";
+
+    private static final String GZIP_EXT = ".gz";
+    private static final String PAGE_SIZE_PROP = "tenant.export.page.size";
+    private static final String THREADS_PROP = "tenant.export.threads";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final String DEFAULT_CONFIG_REALM = "DEFAULT";
+    private static final String POLICY_SUBENTRY = "pwdPolicySubentry";
+    private static final String ALL_FILTER = "(" + SchemaConstants.OBJECT_CLASS_AT + "=*)";
+    private static final String[] EXPORT_ATRS =
+        {
+            SchemaConstants.ALL_USER_ATTRIBUTES, POLICY_SUBENTRY
+    };
+
+    /** Attributes containing dns that must be rebased along with the entry dn. */
+    private static final String[] DN_ATRS =
+        {
+            SchemaConstants.ROLE_OCCUPANT_AT, SchemaConstants.MEMBER_AT, POLICY_SUBENTRY
+    };
+
+    /** Containers in load order, after the config node, policies and ous first as users and perms refer to them. */
+    private static final String[] CONTAINERS =
+        {
+            GlobalIds.PPOLICY_ROOT,
+            GlobalIds.OSU_ROOT,
+            GlobalIds.PSU_ROOT,
+            GlobalIds.ROLE_ROOT,
+            GlobalIds.ADMIN_ROLE_ROOT,
+            GlobalIds.USER_ROOT,
+            GlobalIds.PERM_ROOT,
+            GlobalIds.ADMIN_PERM_ROOT,
+            GlobalIds.SD_ROOT,
+            GlobalIds.GROUP_ROOT
+    };
+
+
+    /**
+     * Write every fortress entry belonging to the tenant into the given file.
+     *
+     * @param contextId maps to the tenant being exported.
+     * @param fileName  name of the ldif file to create, gzip compressed if it ends with '.gz'.
+     * @return number of entries written.
+     * @throws FinderException in the event of ldap or io error.
+     */
+    int exportTenant( String contextId, String fileName )
+        throws FinderException
+    {
+        List<String> roots = getContainerDns( contextId );
+        int threads = Config.getInstance().getInt( THREADS_PROP, Runtime.getRuntime().availableProcessors() );
+        ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( threads, roots.size() ) ),
+            ThreadUtil.newThreadFactory( "fortress-export-" ) );
+        List<File> segments = new ArrayList<>();
+        int count = 0;
+        try
+        {
+            List<Future<Integer>> results = new ArrayList<>();
+            for ( String root : roots )
+            {
+                File segment = File.createTempFile( "fortress-export", ".ldif" );
+                segments.add( segment );
+                results.add( executor.submit( new ExportTask( contextId, root, segment ) ) );
+            }
+            for ( Future<Integer> result : results )
+            {
+                count += result.get();
+            }
+            try ( Writer out = openWriter( fileName ) )
+            {
+                out.write( HEADER + contextId + "\n\n" );
+                if ( isTenant( contextId ) )
+                {
+                    out.write( LdifUtils.convertToLdif( getTenantNode( contextId ) ) );
+                    out.write( "\n" );
+                }
+                out.flush();
+            }
+            try ( OutputStream out = openAppend( fileName ) )
+            {
+                for ( File segment : segments )
+                {
+                    Files.copy( segment.toPath(), out );
+                }
+            }
+            LOG.info( "exportTenant contextId [{}] wrote [{}] entries to [{}]", contextId, count, fileName );
+        }
+        catch ( IOException | LdapException e )
+        {
+            String error = "exportTenant contextId [" + contextId + "] file [" + fileName + "] caught "
+                + e.getClass().getSimpleName() + "=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.TENANT_EXPORT_FAILED, error, e );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            String error = "exportTenant contextId [" + contextId + "] interrupted";
+            throw new FinderException( GlobalErrIds.TENANT_EXPORT_FAILED, error, e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            String error = "exportTenant contextId [" + contextId + "] file [" + fileName + "] caught "
+                + cause.getClass().getSimpleName() + "=" + cause.getMessage();
+            throw new FinderException( GlobalErrIds.TENANT_EXPORT_FAILED, error,
+                cause instanceof Exception ? ( Exception ) cause : e );
+        }
+        finally
+        {
+            executor.shutdownNow();
+            for ( File segment : segments )
+            {
+                if ( !segment.delete() )
+                {
+                    segment.deleteOnExit();
+                }
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Load the entries contained in a file created by {@link #exportTenant} into the target tenant.
+     *
+     * @param contextId maps to the tenant being loaded, which may differ from the one the file was exported from.
+     * @param fileName  name of the ldif file to read, gzip compressed if it ends with '.gz'.
+     * @return number of entries added.
+     * @throws CreateException in the event of ldap, io or format error.
+     */
+    int importTenant( String contextId, String fileName )
+        throws CreateException
+    {
+        LdapConnection ld = null;
+        LdifReader reader = null;
+        int count = 0;
+        try ( BufferedReader in = new BufferedReader( new InputStreamReader( openInput( fileName ),
+            StandardCharsets.UTF_8 ) ) )
+        {
+            String header = in.readLine();
+            if ( header == null || !header.startsWith( HEADER ) )
+            {
+                String error = "importTenant file [" + fileName + "] missing header [" + HEADER + "]";
+                throw new CreateException( GlobalErrIds.TENANT_IMPORT_FAILED, error );
+            }
+            String sourceRoot = getRootDn( header.substring( HEADER.length() ).trim() );
+            String targetRoot = getRootDn( contextId );
+            ld = getAdminConnection( contextId );
+            if ( isTenant( contextId ) && !ld.exists( targetRoot ) )
+            {
+                add( ld, getTenantNode( contextId ) );
+                count++;
+            }
+            reader = new LdifReader( in );
+            List<Entry> deferred = new ArrayList<>();
+            for ( LdifEntry ldif : reader )
+            {
+                if ( !ldif.isEntry() )
+                {
+                    continue;
+                }
+                Entry entry = rebase( ldif.getEntry(), sourceRoot, targetRoot );
+                if ( entry.getDn().getName().equalsIgnoreCase( targetRoot ) )
+                {
+                    continue;
+                }
+                count += load( ld, entry, deferred );
+            }
+            // Retry entries whose parent was missing until no more progress is made:
+            int before;
+            do
+            {
+                before = deferred.size();
+                List<Entry> retry = deferred;
+                deferred = new ArrayList<>();
+                for ( Entry entry : retry )
+                {
+                    count += load( ld, entry, deferred );
+                }
+            }
+            while ( !deferred.isEmpty() && deferred.size() < before );
+            if ( !deferred.isEmpty() )
+            {
+                String error = "importTenant contextId [" + contextId + "] file [" + fileName + "] could not place ["
+                    + deferred.size() + "] entries, first dn [" + deferred.get( 0 ).getDn() + "]";
+                throw new CreateException( GlobalErrIds.TENANT_IMPORT_FAILED, error );
+            }
+            LOG.info( "importTenant contextId [{}] added [{}] entries from [{}]", contextId, count, fileName );
+        }
+        catch ( IOException | LdapException e )
+        {
+            String error = "importTenant contextId [" + contextId + "] file [" + fileName + "] caught "
+                + e.getClass().getSimpleName() + "=" + e.getMessage();
+            throw new CreateException( GlobalErrIds.TENANT_IMPORT_FAILED, error, e );
+        }
+        finally
+        {
+            closeAdminConnection( ld );
+            closeQuietly( reader );
+        }
+        return count;
+    }
+
+
+    /**
+     * Add a single entry, skipping it if present and deferring it if its parent has not been loaded yet.
+     *
+     * @return 1 if the entry was added, otherwise 0.
+     */
+    private int load( LdapConnection ld, Entry entry, List<Entry> deferred ) throws LdapException
+    {
+        try
+        {
+            add( ld, entry );
+            return 1;
+        }
+        catch ( LdapEntryAlreadyExistsException e )
+        {
+            LOG.debug( "importTenant skip existing dn [{}]", entry.getDn() );
+        }
+        catch ( LdapNoSuchObjectException e )
+        {
+            deferred.add( entry );
+        }
+        return 0;
+    }
+
+
+    /**
+     * Move the entry, and its dn valued attributes, from the source tenant root to the target tenant root.  Config nodes
+     * are not owned by a tenant and keep their dn.
+     */
+    private Entry rebase( Entry entry, String sourceRoot, String targetRoot ) throws LdapException
+    {
+        String configRoot = Config.getInstance().getProperty( GlobalIds.CONFIG_ROOT_PARAM );
+        if ( sourceRoot.equalsIgnoreCase( targetRoot ) || isBelow( entry.getDn().getName(), configRoot ) )
+        {
+            return entry;
+        }
+        entry.setDn( new Dn( rebase( entry.getDn().getName(), sourceRoot, targetRoot ) ) );
+        for ( String atrName : DN_ATRS )
+        {
+            Attribute attr = entry.get( atrName );
+            if ( attr != null )
+            {
+                Attribute rebased = new DefaultAttribute( attr.getUpId() );
+                for ( Value<?> value : attr )
+                {
+                    rebased.add( rebase( value.getString(), sourceRoot, targetRoot ) );
+                }
+                entry.put( rebased );
+            }
+        }
+        return entry;
+    }
+
+
+    /**
+     * Replace the trailing source root of a dn with the target root, dns outside of the source root are untouched.
+     */
+    static String rebase( String dn, String sourceRoot, String targetRoot )
+    {
+        String lower = dn.toLowerCase();
+        String root = sourceRoot.toLowerCase();
+        if ( lower.equals( root ) )
+        {
+            return targetRoot;
+        }
+        else if ( lower.endsWith( "," + root ) )
+        {
+            return dn.substring( 0, dn.length() - root.length() ) + targetRoot;
+        }
+        return dn;
+    }
+
+
+    /**
+     * @return true if the dn is the root, or one of its descendants.
+     */
+    static boolean isBelow( String dn, String root )
+    {
+        if ( StringUtils.isEmpty( root ) )
+        {
+            return false;
+        }
+        String lower = dn.toLowerCase();
+        String lowerRoot = root.toLowerCase();
+        return lower.equals( lowerRoot ) || lower.endsWith( "," + lowerRoot );
+    }
+
+
+    /**
+     * Stream one container subtree, page by page, into a temporary ldif segment.
+     */
+    private final class ExportTask implements Callable<Integer>
+    {
+        private final String contextId;
+        private final String root;
+        private final File segment;
+
+
+        ExportTask( String contextId, String root, File segment )
+        {
+            this.contextId = contextId;
+            this.root = root;
+            this.segment = segment;
+        }
+
+
+        @Override
+        public Integer call() throws LdapException, CursorException, IOException
+        {
+            int pageSize = Config.getInstance().getInt( PAGE_SIZE_PROP, DEFAULT_PAGE_SIZE );
+            int count = 0;
+            LdapConnection ld = null;
+            try ( Writer out = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( segment ),
+                StandardCharsets.UTF_8 ) ) )
+            {
+                ld = getAdminConnection( contextId );
+                if ( !ld.exists( root ) )
+                {
+                    LOG.debug( "exportTenant container [{}] not found, skipping", root );
+                    return 0;
+                }
+                byte[] cookie = null;
+                do
+                {
+                    try ( SearchCursor searchResults = searchPaged( ld, root, SearchScope.SUBTREE, ALL_FILTER,
+                        EXPORT_ATRS, pageSize, cookie ) )
+                    {
+                        while ( searchResults.next() )
+                        {
+                            out.write( LdifUtils.convertToLdif( searchResults.getEntry() ) );
+                            out.write( "\n" );
+                            count++;
+                        }
+                        cookie = getPagedCookie( searchResults );
+                    }
+                }
+                while ( cookie != null );
+            }
+            finally
+            {
+                closeAdminConnection( ld );
+            }
+            return count;
+        }
+    }
+
+
+    private List<String> getContainerDns( String contextId )
+    {
+        List<String> roots = new ArrayList<>();
+        String configRoot = Config.getInstance().getProperty( GlobalIds.CONFIG_ROOT_PARAM );
+        if ( StringUtils.isNotEmpty( configRoot ) )
+        {
+            String realm = Config.getInstance().getProperty( GlobalIds.CONFIG_REALM, DEFAULT_CONFIG_REALM );
+            roots.add( SchemaConstants.CN_AT + "=" + realm + "," + configRoot );
+        }
+        for ( String container : CONTAINERS )
+        {
+            String key = container;
+            if ( GlobalIds.PPOLICY_ROOT.equals( container ) && Config.getInstance().isApacheds() )
+            {
+                key = GlobalIds.ADS_PPOLICY_ROOT;
+            }
+            String dn = getRootDn( contextId, key );
+            if ( StringUtils.isNotEmpty( dn ) )
+            {
+                roots.add( dn );
+            }
+        }
+        return roots;
+    }
+
+
+    private Entry getTenantNode( String contextId ) throws LdapException
+    {
+        Entry entry = new DefaultEntry( getRootDn( contextId ) );
+        entry.add( SchemaConstants.OBJECT_CLASS_AT, SchemaConstants.ORGANIZATIONAL_UNIT_OC );
+        entry.add( SchemaConstants.OU_AT, contextId );
+        return entry;
+    }
+
+
+    private static boolean isTenant( String contextId )
+    {
+        return StringUtils.isNotEmpty( contextId ) && !contextId.equalsIgnoreCase( GlobalIds.NULL )
+            && !contextId.equals( GlobalIds.HOME );
+    }
+
+
+    private static Writer openWriter( String fileName ) throws IOException
+    {
+        OutputStream out = new FileOutputStream( fileName );
+        if ( fileName.endsWith( GZIP_EXT ) )
+        {
+            // header is written uncompressed into its own gzip member, segments follow as additional members.
+            out = new GZIPOutputStream( out );
+        }
+        return new BufferedWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ) );
+    }
+
+
+    private static OutputStream openAppend( String fileName ) throws IOException
+    {
+        OutputStream out = new FileOutputStream( fileName, true );
+        if ( fileName.endsWith( GZIP_EXT ) )
+        {
+            out = new GZIPOutputStream( out );
+        }
+        return out;
+    }
+
+
+    private static InputStream openInput( String fileName ) throws IOException
+    {
+        InputStream in = new FileInputStream( fileName );
+        if ( fileName.endsWith( GZIP_EXT ) )
+        {
+            // GZIPInputStream reads concatenated members as one stream.
+            in = new GZIPInputStream( in );
+        }
+        return in;
+    }
+
+
+    private static void closeQuietly( LdifReader reader )
+    {
+        if ( reader != null )
+        {
+            try
+            {
+                reader.close();
+            }
+            catch ( IOException e )
+            {
+                LOG.warn( "importTenant close caught IOException={}", e.getMessage() );
+            }
+        }
+    }
+}
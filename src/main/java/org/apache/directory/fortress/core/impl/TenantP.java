@@ -0,0 +1,118 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Process module for moving all of a tenant's fortress data in and out of the directory in bulk.  Used to back up a
+ * tenant, or to copy one tenant's policy into another, e.g. from a staging to a production contextId.  Also warms up
+ * a tenant's hierarchy caches.
+ * <p>
+ * This class performs simple validations and forwards on to its corresponding DAO class {@link TenantDAO}.  Errors are
+ * passed back to caller as {@link org.apache.directory.fortress.core.SecurityException}s with appropriate error id from
+ * {@link GlobalErrIds}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class TenantP
+{
+    private static final String CLS_NM = TenantP.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+
+
+    /**
+     * Write all of the tenant's users, roles, perms, ous, constraints, policies and groups, along with the config node
+     * this process runs with, into an LDIF file.
+     *
+     * @param contextId maps to the tenant being exported, null or 'HOME' for the default tenant.
+     * @param fileName  name of the file to create, gzip compressed if it ends with '.gz'.
+     * @return number of entries written.
+     * @throws SecurityException in event of validation or system error.
+     */
+    public final int exportTenant( String contextId, String fileName )
+        throws SecurityException
+    {
+        validate( fileName );
+        TenantDAO tDao = new TenantDAO();
+        return tDao.exportTenant( contextId, fileName );
+    }
+
+
+    /**
+     * Load a file created by {@link #exportTenant} into a tenant.  The tenant node is created if not already present
+     * and existing entries are left untouched.
+     *
+     * @param contextId maps to the tenant being loaded, may differ from the one the file was exported from.
+     * @param fileName  name of the file to read, gzip compressed if it ends with '.gz'.
+     * @return number of entries added.
+     * @throws SecurityException in event of validation or system error.
+     */
+    public final int importTenant( String contextId, String fileName )
+        throws SecurityException
+    {
+        validate( fileName );
+        TenantDAO tDao = new TenantDAO();
+        return tDao.importTenant( contextId, fileName );
+    }
+
+
+    /**
+     * Load the tenant's role, admin role, user ou and perm ou hierarchies into the graph caches, e.g. at startup, so
+     * the first requests are not held up by the ldap reads.  Graphs already cached are left alone.
+     *
+     * @param contextId maps to the tenant being loaded, null or 'HOME' for the default tenant.
+     */
+    public final void warmUp( String contextId )
+    {
+        LOG.info( "warmUp context [{}]", contextId );
+        RoleUtil.getInstance().warmUp( contextId );
+        AdminRoleUtil.warmUp( contextId );
+        UsoUtil.getInstance().warmUp( contextId );
+        PsoUtil.getInstance().warmUp( contextId );
+    }
+
+
+    /**
+     * Method will perform simple validations on the file name.
+     *
+     * @param fileName contains the file to validate
+     * @throws org.apache.directory.fortress.core.SecurityException thrown in the event the attribute is null.
+     */
+    private void validate( String fileName )
+        throws SecurityException
+    {
+        if ( StringUtils.isEmpty( fileName ) )
+        {
+            String error = "validate file name validation failed, null or empty value";
+            LOG.warn( error );
+            throw new ValidationException( GlobalErrIds.TENANT_FILE_NULL, error );
+        }
+    }
+}
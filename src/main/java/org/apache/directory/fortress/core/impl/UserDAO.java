@@ -20,7 +20,10 @@
 package org.apache.directory.fortress.core.impl;
 
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -41,6 +44,7 @@ import org.apache.directory.api.ldap.model.entry.DefaultModification;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.entry.Modification;
 import org.apache.directory.api.ldap.model.entry.ModificationOperation;
+import org.apache.directory.api.ldap.model.entry.StringValue;
 import org.apache.directory.api.ldap.model.exception.LdapAttributeInUseException;
 import org.apache.directory.api.ldap.model.exception.LdapAuthenticationException;
 import org.apache.directory.api.ldap.model.exception.LdapEntryAlreadyExistsException;
@@ -49,10 +53,16 @@ import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueEx
 import org.apache.directory.api.ldap.model.exception.LdapNoPermissionException;
 import org.apache.directory.api.ldap.model.exception.LdapNoSuchAttributeException;
 import org.apache.directory.api.ldap.model.exception.LdapNoSuchObjectException;
+import org.apache.directory.api.ldap.model.filter.AndNode;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
+import org.apache.directory.api.ldap.model.filter.OrNode;
 import org.apache.directory.api.ldap.model.message.BindResponse;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.fortress.core.CreateException;
+import org.apache.directory.fortress.core.DeferredLoadException;
 import org.apache.directory.fortress.core.FinderException;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.GlobalIds;
@@ -60,6 +70,7 @@ import org.apache.directory.fortress.core.PasswordException;
 import org.apache.directory.fortress.core.RemoveException;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.UpdateException;
+import org.apache.directory.fortress.core.ldap.FilterTemplate;
 import org.apache.directory.fortress.core.ldap.LdapDataProvider;
 import org.apache.directory.fortress.core.model.Address;
 import org.apache.directory.fortress.core.model.AdminRole;
@@ -74,6 +85,7 @@ import org.apache.directory.fortress.core.model.RoleConstraint.RCType;
 import org.apache.directory.fortress.core.model.Session;
 import org.apache.directory.fortress.core.model.User;
 import org.apache.directory.fortress.core.model.UserAdminRole;
+import org.apache.directory.fortress.core.model.UserProjection;
 import org.apache.directory.fortress.core.model.UserRole;
 import org.apache.directory.fortress.core.model.Warning;
 import org.apache.directory.fortress.core.util.Config;
@@ -162,6 +174,8 @@ final class UserDAO extends LdapDataProvider
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
     private static final String USERS_AUX_OBJECT_CLASS_NAME = "ftUserAttrs";
     private static final String USER_OBJECT_CLASS = "user.objectclass";
+    private static final String BATCH_CHUNK_SIZE = "user.batch.chunk.size";
+    private static final int DEFAULT_BATCH_CHUNK_SIZE = 50;
     private static final String USERS_EXTENSIBLE_OBJECT = "extensibleObject";
     private static final String SYSTEM_USER = "ftSystem";
     /**
@@ -188,6 +202,7 @@ final class UserDAO extends LdapDataProvider
     private static final String OPENLDAP_PW_RESET = "pwdReset";
     private static final String OPENLDAP_PW_LOCKED_TIME = "pwdAccountLockedTime";
     private static final String OPENLDAP_ACCOUNT_LOCKED_TIME = "pwdAccountLockedTime";
+    private static final String OPENLDAP_PW_GRACE_USE_TIME = "pwdGraceUseTime";
     private static final String LOCK_VALUE = "000001010000Z";
     private static final String[] USERID = { SchemaConstants.UID_AT };
     private static final String[] ROLES = { GlobalIds.USER_ROLE_ASSIGN };
@@ -195,9 +210,35 @@ final class UserDAO extends LdapDataProvider
     // These will be loaded in static initializer that follows:
     private static String[] authnAtrs = null;
     private static String[] defaultAtrs = null;
+    private static String[] sessionAtrs = null;
+    private static String[] authzAtrs = null;
+    private static String[] listingAtrs = null;
+    private static final String[] CONTACT_ATRS =
+        {
+            SchemaConstants.POSTAL_ADDRESS_AT,
+            SchemaConstants.L_AT,
+            SchemaConstants.POSTALCODE_AT,
+            SchemaConstants.POSTOFFICEBOX_AT,
+            SchemaConstants.ST_AT,
+            SchemaConstants.PHYSICAL_DELIVERY_OFFICE_NAME_AT,
+            DEPARTMENT_NUMBER,
+            ROOM_NUMBER,
+            SchemaConstants.TELEPHONE_NUMBER_AT,
+            MOBILE,
+            SchemaConstants.MAIL_AT };
+    private static final String[] DEFERRED_ATRS = concat( CONTACT_ATRS, JPEGPHOTO );
+    private static final String[] PHOTO_ATR = { JPEGPHOTO };
+    private static final String[] USER_ROLE_ATRS = { SchemaConstants.UID_AT, GlobalIds.USER_ROLE_DATA };
     private static final String[] ROLE_ATR = { GlobalIds.USER_ROLE_DATA };
     private static final String[] AROLE_ATR = { GlobalIds.USER_ADMINROLE_DATA };
     private static final String[] USERID_ATR = { SchemaConstants.UID_AT };
+    private static final FilterTemplate ROLE_ASSIGN_FILTER = FilterTemplate.compile( GlobalIds.FILTER_PREFIX
+        + USERS_AUX_OBJECT_CLASS_NAME + ")(" + GlobalIds.USER_ROLE_ASSIGN + "={0}))" );
+    private static final FilterTemplate ADMIN_ROLE_ASSIGN_FILTER = FilterTemplate.compile( GlobalIds.FILTER_PREFIX
+        + USERS_AUX_OBJECT_CLASS_NAME + ")(" + GlobalIds.USER_ADMINROLE_ASSIGN + "={0}))" );
+
+    // the cached policies the lockout and grace login state of the users read are evaluated against:
+    private final PolicyP policyP = new PolicyP();
 
     /**
      * Default constructor is public
@@ -311,7 +352,7 @@ final class UserDAO extends LdapDataProvider
                 myEntry.add( JPEGPHOTO, entity.getJpegPhoto() );
             }
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( entity.getContextId() );
             add( ld, myEntry, entity );
             entity.setDn( dn );
         }
@@ -436,7 +477,7 @@ final class UserDAO extends LdapDataProvider
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, userDn, mods, entity );
                 entity.setDn( userDn );
             }
@@ -479,7 +520,7 @@ final class UserDAO extends LdapDataProvider
 
             if ( mods.size() > 0 )
             {
-                ld = getAdminConnection();
+                ld = getAdminConnection( entity.getContextId() );
                 modify( ld, userDn, mods, entity );
                 entity.setDn( userDn );
             }
@@ -512,7 +553,7 @@ final class UserDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             delete( ld, userDn, user );
         }
         catch ( LdapException e )
@@ -543,7 +584,7 @@ final class UserDAO extends LdapDataProvider
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.REPLACE_ATTRIBUTE, OPENLDAP_PW_LOCKED_TIME,
                 LOCK_VALUE ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             modify( ld, userDn, mods, user );
         }
         catch ( LdapException e )
@@ -573,7 +614,7 @@ final class UserDAO extends LdapDataProvider
             List<Modification> mods = new ArrayList<Modification>();
 
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, OPENLDAP_PW_LOCKED_TIME ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             modify( ld, userDn, mods, user );
         }
         catch ( LdapNoSuchAttributeException e )
@@ -599,10 +640,6 @@ final class UserDAO extends LdapDataProvider
      */
     User getUser( User user, boolean isRoles ) throws FinderException
     {
-        User entity = null;
-        LdapConnection ld = null;
-        String userDn = getDn( user.getUserId(), user.getContextId() );
-
         String[] uATTRS;
         // Retrieve role attributes?
 
@@ -618,11 +655,35 @@ final class UserDAO extends LdapDataProvider
             uATTRS = authnAtrs;
         }
 
+        return getUser( user, uATTRS, UserProjection.FULL );
+    }
+
+
+    /**
+     * Read the user with the attributes of the projection.  Address, phones, mobiles, emails and photo left out by the
+     * projection are read when first accessed.
+     *
+     * @param user       contains the userId.
+     * @param projection names the attributes to return.
+     * @return the user.
+     * @throws FinderException if the user is not found or cannot be read.
+     */
+    User getUser( User user, UserProjection projection ) throws FinderException
+    {
+        return getUser( user, getAtrs( projection ), projection );
+    }
+
+
+    private User getUser( User user, String[] uATTRS, UserProjection projection ) throws FinderException
+    {
+        User entity = null;
+        LdapConnection ld = null;
+        String userDn = getDn( user.getUserId(), user.getContextId() );
         Entry findEntry = null;
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             findEntry = read( ld, userDn, uATTRS );
         }
         catch ( LdapNoSuchObjectException e )
@@ -644,7 +705,7 @@ final class UserDAO extends LdapDataProvider
         {
             if ( findEntry != null )
             {
-                entity = unloadLdapEntry( findEntry, 0, user.getContextId() );
+                entity = unloadLdapEntry( findEntry, 0, user.getContextId(), projection );
             }
         }
         catch ( LdapInvalidAttributeValueException e )
@@ -676,7 +737,7 @@ final class UserDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             Entry findEntry = read( ld, userDn, AROLE_ATR );
             roles = unloadUserAdminRoles( findEntry, user.getUserId(), user.getContextId() );
         }
@@ -712,7 +773,7 @@ final class UserDAO extends LdapDataProvider
 
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             Entry findEntry = read( ld, userDn, ROLES );
 
             if ( findEntry == null )
@@ -749,6 +810,25 @@ final class UserDAO extends LdapDataProvider
      * @throws org.apache.directory.fortress.core.FinderException,  org.apache.directory.fortress.core.PasswordException
      */
     Session checkPassword( User user ) throws FinderException, PasswordException
+    {
+        Session session = bind( user );
+        if ( !session.isAuthenticated() )
+        {
+            // pw invalid or pw policy violation, routine so skip the stack trace:
+            throw new PasswordException( session.getErrorId(), session.getMsg(), false );
+        }
+        return session;
+    }
+
+
+    /**
+     * Bind as the user and evaluate the password policy response, without throwing for a rejected password.
+     *
+     * @param user contains the userId, contextId and password.
+     * @return session that is authenticated, or else carries the error id and message of the failure.
+     * @throws FinderException in the event of ldap system error.
+     */
+    Session bind( User user ) throws FinderException
     {
         Session session = null;
         LdapConnection ld = null;
@@ -759,7 +839,7 @@ final class UserDAO extends LdapDataProvider
             session = new ObjectFactory().createSession();
             session.setAuthenticated( false );
             session.setUserId( user.getUserId() );
-            ld = getUserConnection();
+            ld = getUserConnection( user.getContextId() );
             BindResponse bindResponse = bind( ld, userDn, user.getPassword() );
             String info;
 
@@ -783,16 +863,12 @@ final class UserDAO extends LdapDataProvider
             {
                 session.setAuthenticated( true );
             }
-            else
-            {
-                // pw invalid or pw policy violation:
-                throw new PasswordException( session.getErrorId(), session.getMsg() );
-            }
         }
         catch ( LdapAuthenticationException e )
         {
             String info = "checkPassword INVALID PASSWORD for userId [" + user.getUserId() + "] exception [" + e + "]";
-            throw new PasswordException( GlobalErrIds.USER_PW_INVLD, info );
+            session.setMsg( info );
+            session.setErrorId( GlobalErrIds.USER_PW_INVLD );
         }
         catch ( LdapException e )
         {
@@ -924,6 +1000,18 @@ final class UserDAO extends LdapDataProvider
      * @throws FinderException
      */
     List<User> findUsers( User user ) throws FinderException
+    {
+        return findUsers( user, UserProjection.FULL );
+    }
+
+
+    /**
+     * @param user       contains all or part of the userId, or the internalId.
+     * @param projection names the attributes to return.
+     * @return matching users.
+     * @throws FinderException if the search fails.
+     */
+    List<User> findUsers( User user, UserProjection projection ) throws FinderException
     {
         List<User> userList = new ArrayList<>();
         LdapConnection ld = null;
@@ -966,14 +1054,14 @@ final class UserDAO extends LdapDataProvider
                 filterbuf.append( ")" );
             }
 
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), defaultAtrs, false,
-                GlobalIds.BATCH_SIZE );
+            ld = getAdminConnection( user.getContextId() );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(),
+                getAtrs( projection ), false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
 
             while ( searchResults.next() )
             {
-                userList.add( unloadLdapEntry( searchResults.getEntry(), sequence++, user.getContextId() ) );
+                userList.add( unloadLdapEntry( searchResults.getEntry(), sequence++, user.getContextId(), projection ) );
             }
         }
         catch ( LdapException e )
@@ -995,6 +1083,69 @@ final class UserDAO extends LdapDataProvider
     }
 
 
+    /**
+     * Read many users with one search per chunk of {@code user.batch.chunk.size} (default 50) userIds, each an or filter
+     * on uid, so a page of users costs one round trip rather than one per user.  All the chunks use one connection.
+     *
+     * @param userIds    contains the userIds to read, matched exactly.
+     * @param contextId  maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @param projection names the attributes to return.
+     * @return the users found, in no particular order.  Userids that weren't found are left out.
+     * @throws FinderException if a search fails.
+     */
+    List<User> getUsers( Collection<String> userIds, String contextId, UserProjection projection )
+        throws FinderException
+    {
+        List<User> userList = new ArrayList<>( userIds.size() );
+        List<String> ids = new ArrayList<>( userIds );
+        int chunkSize = Math.max( 1, Config.getInstance().getInt( BATCH_CHUNK_SIZE, DEFAULT_BATCH_CHUNK_SIZE ) );
+        LdapConnection ld = null;
+        String userRoot = getRootDn( contextId, GlobalIds.USER_ROOT );
+
+        try
+        {
+            Dn baseDn = getBaseDn( userRoot );
+            ExprNode objectClass = new EqualityNode<String>( SchemaConstants.OBJECT_CLASS_AT, new StringValue(
+                Config.getInstance().getProperty( USER_OBJECT_CLASS ) ) );
+            String[] atrs = getAtrs( projection );
+            ld = getAdminConnection( contextId );
+            long sequence = 0;
+
+            for ( int i = 0; i < ids.size(); i += chunkSize )
+            {
+                List<String> chunk = ids.subList( i, Math.min( ids.size(), i + chunkSize ) );
+                List<ExprNode> uids = new ArrayList<>( chunk.size() );
+                for ( String userId : chunk )
+                {
+                    uids.add( new EqualityNode<String>( SchemaConstants.UID_AT, new StringValue( userId ) ) );
+                }
+                SearchCursor searchResults = search( ld, baseDn, SearchScope.ONELEVEL, new AndNode( objectClass,
+                    new OrNode( uids ) ), atrs, false, chunk.size() );
+                while ( searchResults.next() )
+                {
+                    userList.add( unloadLdapEntry( searchResults.getEntry(), sequence++, contextId, projection ) );
+                }
+            }
+        }
+        catch ( LdapException e )
+        {
+            String warning = "getUsers userRoot [" + userRoot + "] caught LDAPException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.USER_SEARCH_FAILED, warning, e );
+        }
+        catch ( CursorException e )
+        {
+            String warning = "getUsers userRoot [" + userRoot + "] caught CursorException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.USER_SEARCH_FAILED, warning, e );
+        }
+        finally
+        {
+            closeAdminConnection( ld );
+        }
+
+        return userList;
+    }
+
+
     /**
      * @param user
      * @param limit
@@ -1019,7 +1170,7 @@ final class UserDAO extends LdapDataProvider
             filterbuf.append( searchVal );
             filterbuf.append( "*))" );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), USERID,
                 false, limit );
 
@@ -1054,6 +1205,18 @@ final class UserDAO extends LdapDataProvider
      * @throws FinderException
      */
     List<User> getAuthorizedUsers( Role role ) throws FinderException
+    {
+        return getAuthorizedUsers( role, UserProjection.FULL );
+    }
+
+
+    /**
+     * @param role       contains the role name.
+     * @param projection names the attributes to return.
+     * @return users assigned the role or one of its descendants.
+     * @throws FinderException if the search fails.
+     */
+    List<User> getAuthorizedUsers( Role role, UserProjection projection ) throws FinderException
     {
         List<User> userList = new ArrayList<>();
         LdapConnection ld = null;
@@ -1097,14 +1260,14 @@ final class UserDAO extends LdapDataProvider
             }
 
             filterbuf.append( ")" );
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), defaultAtrs, false,
-                GlobalIds.BATCH_SIZE );
+            ld = getAdminConnection( role.getContextId() );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(),
+                getAtrs( projection ), false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
 
             while ( searchResults.next() )
             {
-                userList.add( unloadLdapEntry( searchResults.getEntry(), sequence++, role.getContextId() ) );
+                userList.add( unloadLdapEntry( searchResults.getEntry(), sequence++, role.getContextId(), projection ) );
             }
         }
         catch ( LdapException e )
@@ -1135,6 +1298,20 @@ final class UserDAO extends LdapDataProvider
      * @throws FinderException
      */
     List<User> getAssignedUsers( Role role, RoleConstraint roleConstraint ) throws FinderException
+    {
+        return getAssignedUsers( role, roleConstraint, UserProjection.FULL );
+    }
+
+
+    /**
+     * @param role           contains the role name.
+     * @param roleConstraint filter roles that have this role constraint, may be null.
+     * @param projection     names the attributes to return.
+     * @return users assigned the role.
+     * @throws FinderException if the search fails.
+     */
+    List<User> getAssignedUsers( Role role, RoleConstraint roleConstraint, UserProjection projection )
+        throws FinderException
     {
         List<User> userList = new ArrayList<>();
         LdapConnection ld = null;
@@ -1162,14 +1339,14 @@ final class UserDAO extends LdapDataProvider
             
             filterbuf.append( ")" );
             
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), defaultAtrs, false,
-                GlobalIds.BATCH_SIZE );
+            ld = getAdminConnection( role.getContextId() );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(),
+                getAtrs( projection ), false, GlobalIds.BATCH_SIZE );
             long sequence = 0;
 
             while ( searchResults.next() )
             {
-                userList.add( unloadLdapEntry( searchResults.getEntry(), sequence++, role.getContextId() ) );
+                userList.add( unloadLdapEntry( searchResults.getEntry(), sequence++, role.getContextId(), projection ) );
             }
         }
         catch ( LdapException e )
@@ -1218,9 +1395,9 @@ final class UserDAO extends LdapDataProvider
             
             filterbuf.append( ")" );
             
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), defaultAtrs, false,
-                GlobalIds.BATCH_SIZE );
+            ld = getAdminConnection( role.getContextId() );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), USER_ROLE_ATRS,
+                false, GlobalIds.BATCH_SIZE );
 
             while ( searchResults.next() )
             {
@@ -1278,18 +1455,10 @@ final class UserDAO extends LdapDataProvider
 
         try
         {
-            String roleVal = encodeSafeText( role.getName(), GlobalIds.USERID_LEN );
-            StringBuilder filterbuf = new StringBuilder();
-            filterbuf.append( GlobalIds.FILTER_PREFIX );
-            filterbuf.append( USERS_AUX_OBJECT_CLASS_NAME );
-            filterbuf.append( ")(" );
-            filterbuf.append( GlobalIds.USER_ROLE_ASSIGN );
-            filterbuf.append( "=" );
-            filterbuf.append( roleVal );
-            filterbuf.append( "))" );
+            String filter = encodeFilter( ROLE_ASSIGN_FILTER, GlobalIds.USERID_LEN, role.getName() );
 
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), USERID_ATR, false,
+            ld = getAdminConnection( role.getContextId() );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filter, USERID_ATR, false,
                 GlobalIds.BATCH_SIZE );
             long sequence = 0;
 
@@ -1319,6 +1488,68 @@ final class UserDAO extends LdapDataProvider
     }
 
 
+    /**
+     * Same as {@link #getAssignedUserIds(Role)} but reads every user assigned the role, one page of
+     * {@code pageSize} entries at a time, rather than stopping at the search limit.  Used to load the
+     * {@link RoleOccupantIndex}.
+     *
+     * @param role     contains the name of the role and contextId.
+     * @param pageSize number of entries per page.
+     * @return userIds of the users assigned the role.
+     * @throws FinderException if the search fails.
+     */
+    List<String> getAssignedUserIds( Role role, int pageSize ) throws FinderException
+    {
+        List<String> userList = new ArrayList<>();
+        LdapConnection ld = null;
+        String userRoot = getRootDn( role.getContextId(), GlobalIds.USER_ROOT );
+
+        try
+        {
+            String filter = encodeFilter( ROLE_ASSIGN_FILTER, GlobalIds.USERID_LEN, role.getName() );
+            ld = getAdminConnection( role.getContextId() );
+            byte[] cookie = null;
+            do
+            {
+                try ( SearchCursor searchResults = searchPaged( ld, userRoot, SearchScope.ONELEVEL, filter,
+                    USERID_ATR, pageSize, cookie ) )
+                {
+                    while ( searchResults.next() )
+                    {
+                        userList.add( unloadUser( searchResults.getEntry() ) );
+                    }
+                    cookie = getPagedCookie( searchResults );
+                }
+            }
+            while ( cookie != null );
+        }
+        catch ( LdapException e )
+        {
+            String warning = "getAssignedUserIds role name [" + role.getName() + "] caught LDAPException=" + e
+                .getMessage();
+            throw new FinderException( GlobalErrIds.URLE_SEARCH_FAILED, warning, e );
+        }
+        catch ( CursorException e )
+        {
+            String warning = "getAssignedUserIds role name [" + role.getName() + "] caught CursorException=" + e
+                .getMessage();
+            throw new FinderException( GlobalErrIds.URLE_SEARCH_FAILED, warning, e );
+        }
+        catch ( IOException e )
+        {
+            String warning = "getAssignedUserIds role name [" + role.getName() + "] caught IOException=" + e
+                .getMessage();
+            throw new FinderException( GlobalErrIds.URLE_SEARCH_FAILED, warning, e );
+        }
+        finally
+        {
+            closeAdminConnection( ld );
+        }
+
+        return userList;
+    }
+
+
     /**
      * @param roles
      * @return
@@ -1355,7 +1586,7 @@ final class UserDAO extends LdapDataProvider
             }
 
             filterbuf.append( "))" );
-            ld = getAdminConnection();
+            ld = getAdminConnection( contextId );
             SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), USERID_ATRS,
                 false,
                 GlobalIds.BATCH_SIZE );
@@ -1397,18 +1628,10 @@ final class UserDAO extends LdapDataProvider
 
         try
         {
-            String roleVal = encodeSafeText( role.getName(), GlobalIds.USERID_LEN );
-            StringBuilder filterbuf = new StringBuilder();
-            filterbuf.append( GlobalIds.FILTER_PREFIX );
-            filterbuf.append( USERS_AUX_OBJECT_CLASS_NAME );
-            filterbuf.append( ")(" );
-            filterbuf.append( GlobalIds.USER_ADMINROLE_ASSIGN );
-            filterbuf.append( "=" );
-            filterbuf.append( roleVal );
-            filterbuf.append( "))" );
+            String filter = encodeFilter( ADMIN_ROLE_ASSIGN_FILTER, GlobalIds.USERID_LEN, role.getName() );
 
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), defaultAtrs, false,
+            ld = getAdminConnection( role.getContextId() );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filter, defaultAtrs, false,
                 GlobalIds.BATCH_SIZE );
             long sequence = 0;
 
@@ -1452,18 +1675,10 @@ final class UserDAO extends LdapDataProvider
 
         try
         {
-            String roleVal = encodeSafeText( role.getName(), GlobalIds.USERID_LEN );
-            StringBuilder filterbuf = new StringBuilder();
-            filterbuf.append( GlobalIds.FILTER_PREFIX );
-            filterbuf.append( USERS_AUX_OBJECT_CLASS_NAME );
-            filterbuf.append( ")(" );
-            filterbuf.append( GlobalIds.USER_ROLE_ASSIGN );
-            filterbuf.append( "=" );
-            filterbuf.append( roleVal );
-            filterbuf.append( "))" );
+            String filter = encodeFilter( ROLE_ASSIGN_FILTER, GlobalIds.USERID_LEN, role.getName() );
 
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), USERID,
+            ld = getAdminConnection( role.getContextId() );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filter, USERID,
                 false, limit );
 
             while ( searchResults.next() )
@@ -1516,14 +1731,13 @@ final class UserDAO extends LdapDataProvider
             filterbuf.append( searchVal );
             filterbuf.append( "*))" );
 
-            ld = getAdminConnection();
-            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), defaultAtrs, false,
-                GlobalIds.BATCH_SIZE );
-            long sequence = 0;
+            ld = getAdminConnection( contextId );
+            SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), USERID_ATRS,
+                false, GlobalIds.BATCH_SIZE );
 
             while ( searchResults.next() )
             {
-                userList.add( ( unloadLdapEntry( searchResults.getEntry(), sequence++, contextId ) ).getUserId() );
+                userList.add( getAttribute( searchResults.getEntry(), SchemaConstants.UID_AT ) );
             }
         }
         catch ( LdapException e )
@@ -1578,7 +1792,7 @@ final class UserDAO extends LdapDataProvider
                 maxLimit = 0;
             }
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( ou.getContextId() );
             SearchCursor searchResults = search( ld, userRoot, SearchScope.ONELEVEL, filterbuf.toString(), defaultAtrs, false,
                 maxLimit );
             long sequence = 0;
@@ -1625,7 +1839,7 @@ final class UserDAO extends LdapDataProvider
         try
         {
             // Perform this operation as the end user to allow password policy checking:
-            ld = getUserConnection();
+            ld = getUserConnection( entity.getContextId() );
             bind( ld, userDn, entity.getPassword() );
             mods = new ArrayList<Modification>();
 
@@ -1697,7 +1911,7 @@ final class UserDAO extends LdapDataProvider
 
             mods.add( new DefaultModification( ModificationOperation.REPLACE_ATTRIBUTE, OPENLDAP_PW_RESET, "TRUE" ) );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             modify( ld, userDn, mods, user );
         }
         catch ( LdapException e )
@@ -1726,7 +1940,7 @@ final class UserDAO extends LdapDataProvider
         {
             List<Modification> mods = new ArrayList<Modification>();
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, OPENLDAP_PW_RESET ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             modify( ld, userDn, mods, user );
         }
         catch ( LdapNoSuchAttributeException e )
@@ -1769,7 +1983,7 @@ final class UserDAO extends LdapDataProvider
             mods.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE, GlobalIds.USER_ROLE_ASSIGN, uRole
                 .getName() ) );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( uRole.getContextId() );
             modify( ld, userDn, mods, uRole );
         }
         catch ( LdapAttributeInUseException e )
@@ -1816,7 +2030,7 @@ final class UserDAO extends LdapDataProvider
             mods.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE, GlobalIds.USER_ROLE_DATA,
             		szRoleConstraint ) );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( uRole.getContextId() );
             modify( ld, userDn, mods, uRole );
         }
         catch ( LdapException e )
@@ -1852,7 +2066,7 @@ final class UserDAO extends LdapDataProvider
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, GlobalIds.USER_ROLE_DATA,
             		szRoleConstraint ) );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( uRole.getContextId() );
             modify( ld, userDn, mods, uRole );            
         }
         catch ( LdapException e )
@@ -1910,7 +2124,7 @@ final class UserDAO extends LdapDataProvider
                     
                     mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, GlobalIds
                         .USER_ROLE_ASSIGN, fRole.getName() ) );
-                    ld = getAdminConnection();                    
+                    ld = getAdminConnection( uRole.getContextId() );                    
                     
                     modify( ld, userDn, mods, uRole );                                        
                 }
@@ -1960,7 +2174,7 @@ final class UserDAO extends LdapDataProvider
             mods.add( new DefaultModification( ModificationOperation.ADD_ATTRIBUTE, GlobalIds.USER_ADMINROLE_ASSIGN,
                 uRole.getName() ) );
 
-            ld = getAdminConnection();
+            ld = getAdminConnection( uRole.getContextId() );
             modify( ld, userDn, mods, uRole );
         }
         catch ( LdapAttributeInUseException e )
@@ -2024,7 +2238,7 @@ final class UserDAO extends LdapDataProvider
                     mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, GlobalIds
                         .USER_ADMINROLE_ASSIGN, fRole.getName() ) );
 
-                    ld = getAdminConnection();
+                    ld = getAdminConnection( uRole.getContextId() );
                     modify( ld, userDn, mods, uRole );
                 }
             }
@@ -2069,7 +2283,7 @@ final class UserDAO extends LdapDataProvider
             List<Modification> mods = new ArrayList<Modification>();
 
             mods.add( new DefaultModification( ModificationOperation.REMOVE_ATTRIBUTE, OPENLDAP_POLICY_SUBENTRY ) );
-            ld = getAdminConnection();
+            ld = getAdminConnection( user.getContextId() );
             modify( ld, userDn, mods, user );
         }
         catch ( LdapException e )
@@ -2106,6 +2320,19 @@ final class UserDAO extends LdapDataProvider
      */
     private User unloadLdapEntry( Entry entry, long sequence, String contextId )
         throws LdapInvalidAttributeValueException
+    {
+        return unloadLdapEntry( entry, sequence, contextId, UserProjection.FULL );
+    }
+
+
+    /**
+     * @param entry      contains the attributes of the projection.
+     * @param projection the entry was read with, attributes it defers are read when first accessed.
+     * @return the user.
+     * @throws LdapInvalidAttributeValueException
+     */
+    private User unloadLdapEntry( Entry entry, long sequence, String contextId, UserProjection projection )
+        throws LdapInvalidAttributeValueException
     {
         User entity = new ObjectFactory().createUser();
         entity.setSequenceId( sequence );
@@ -2122,10 +2349,13 @@ final class UserDAO extends LdapDataProvider
         unloadTemporal( entry, entity );
         entity.setRoles( unloadUserRoles( entry, entity.getUserId(), contextId, null ) );
         entity.setAdminRoles( unloadUserAdminRoles( entry, entity.getUserId(), contextId ) );
-        entity.setAddress( unloadAddress( entry ) );
-        entity.setPhones( getAttributes( entry, SchemaConstants.TELEPHONE_NUMBER_AT ) );
-        entity.setMobiles( getAttributes( entry, MOBILE ) );
-        entity.setEmails( getAttributes( entry, SchemaConstants.MAIL_AT ) );
+        if ( projection.isContact() )
+        {
+            entity.setAddress( unloadAddress( entry ) );
+            entity.setPhones( getAttributes( entry, SchemaConstants.TELEPHONE_NUMBER_AT ) );
+            entity.setMobiles( getAttributes( entry, MOBILE ) );
+            entity.setEmails( getAttributes( entry, SchemaConstants.MAIL_AT ) );
+        }
         String szBoolean = getAttribute( entry, SYSTEM_USER );
         if ( szBoolean != null )
         {
@@ -2162,14 +2392,83 @@ final class UserDAO extends LdapDataProvider
             {
                 entity.setLocked( true );
             }
+
+            // lockouts by failed binds and the grace logins left depend on the user's policy:
+            List<String> graceUseTimes = getAttributes( entry, OPENLDAP_PW_GRACE_USE_TIME );
+            policyP.applyState( contextId, entity, szBoolean, graceUseTimes != null ? graceUseTimes.size() : 0 );
         }
 
-        entity.setJpegPhoto( getPhoto( entry, JPEGPHOTO ) );
+        if ( projection == UserProjection.FULL )
+        {
+            entity.setJpegPhoto( getPhoto( entry, JPEGPHOTO ) );
+        }
+        else
+        {
+            entity.setDeferredLoader( new DeferredAttributes( entity.getDn(), contextId, !projection.isContact() ) );
+        }
 
         return entity;
     }
 
 
+    /**
+     * Reads the attributes a {@link UserProjection} left out of a user the first time they are accessed.
+     */
+    private final class DeferredAttributes implements User.DeferredLoader
+    {
+        private final String dn;
+        private final String contextId;
+        private final boolean isContact;
+
+
+        /**
+         * @param dn        of the user.
+         * @param contextId of the tenant.
+         * @param isContact true to read the address, phones, mobiles and emails along with the photo.
+         */
+        DeferredAttributes( String dn, String contextId, boolean isContact )
+        {
+            this.dn = dn;
+            this.contextId = contextId;
+            this.isContact = isContact;
+        }
+
+
+        @Override
+        public User load()
+        {
+            LdapConnection ld = null;
+            try
+            {
+                ld = getAdminConnection( contextId );
+                Entry entry = read( ld, dn, isContact ? DEFERRED_ATRS : PHOTO_ATR );
+                User entity = new ObjectFactory().createUser();
+                if ( entry != null )
+                {
+                    if ( isContact )
+                    {
+                        entity.setAddress( unloadAddress( entry ) );
+                        entity.setPhones( getAttributes( entry, SchemaConstants.TELEPHONE_NUMBER_AT ) );
+                        entity.setMobiles( getAttributes( entry, MOBILE ) );
+                        entity.setEmails( getAttributes( entry, SchemaConstants.MAIL_AT ) );
+                    }
+                    entity.setJpegPhoto( getPhoto( entry, JPEGPHOTO ) );
+                }
+                return entity;
+            }
+            catch ( LdapException e )
+            {
+                String error = "load deferred attributes dn [" + dn + "] caught LdapException=" + e.getMessage();
+                throw new DeferredLoadException( GlobalErrIds.USER_READ_FAILED, error, e );
+            }
+            finally
+            {
+                closeAdminConnection( ld );
+            }
+        }
+    }
+
+
     /**
      * @param userId
      * @return
@@ -2182,7 +2481,7 @@ final class UserDAO extends LdapDataProvider
         String userDn = getDn( userId, contextId );
         try
         {
-            ld = getAdminConnection();
+            ld = getAdminConnection( contextId );
             Entry findEntry = read( ld, userDn, ROLE_ATR );
             roles = unloadUserRoles( findEntry, userId, contextId, null );
         }
@@ -2630,6 +2929,7 @@ final class UserDAO extends LdapDataProvider
                     GlobalIds.USER_ROLE_ASSIGN,
                     OPENLDAP_PW_RESET,
                     OPENLDAP_PW_LOCKED_TIME,
+                    OPENLDAP_PW_GRACE_USE_TIME,
                     OPENLDAP_POLICY_SUBENTRY,
                     GlobalIds.PROPS,
                     GlobalIds.USER_ADMINROLE_ASSIGN,
@@ -2721,5 +3021,54 @@ final class UserDAO extends LdapDataProvider
                     GlobalIds.CONSTRAINT,
                     GlobalIds.PROPS };
         }
+
+        List<String> atrs = new ArrayList<>( Arrays.asList( GlobalIds.FT_IID, SchemaConstants.UID_AT,
+            SchemaConstants.OU_AT, GlobalIds.CONSTRAINT, GlobalIds.USER_ROLE_DATA, GlobalIds.USER_ROLE_ASSIGN,
+            GlobalIds.USER_ADMINROLE_ASSIGN, GlobalIds.USER_ADMINROLE_DATA ) );
+        if ( Config.getInstance().isOpenldap() || Config.getInstance().isApacheds() )
+        {
+            atrs.addAll( Arrays.asList( OPENLDAP_PW_RESET, OPENLDAP_PW_LOCKED_TIME, OPENLDAP_PW_GRACE_USE_TIME,
+                OPENLDAP_POLICY_SUBENTRY ) );
+        }
+        authzAtrs = atrs.toArray( new String[atrs.size()] );
+        atrs.addAll( Arrays.asList( SchemaConstants.DESCRIPTION_AT, SchemaConstants.CN_AT, SchemaConstants.SN_AT,
+            SchemaConstants.TITLE_AT, EMPLOYEE_TYPE, SYSTEM_USER ) );
+        List<String> listing = new ArrayList<>( atrs );
+        atrs.add( GlobalIds.PROPS );
+        sessionAtrs = atrs.toArray( new String[atrs.size()] );
+        listing.removeAll( Arrays.asList( GlobalIds.USER_ROLE_DATA, GlobalIds.USER_ROLE_ASSIGN,
+            GlobalIds.USER_ADMINROLE_ASSIGN, GlobalIds.USER_ADMINROLE_DATA ) );
+        listing.addAll( Arrays.asList( CONTACT_ATRS ) );
+        listingAtrs = listing.toArray( new String[listing.size()] );
+    }
+
+
+    /**
+     * @return the attributes to request for the projection.
+     */
+    private static String[] getAtrs( UserProjection projection )
+    {
+        switch ( projection )
+        {
+            case SESSION:
+                return sessionAtrs;
+
+            case AUTHZ:
+                return authzAtrs;
+
+            case LISTING:
+                return listingAtrs;
+
+            default:
+                return defaultAtrs;
+        }
+    }
+
+
+    private static String[] concat( String[] atrs, String atr )
+    {
+        String[] all = Arrays.copyOf( atrs, atrs.length + 1 );
+        all[atrs.length] = atr;
+        return all;
     }
 }
@@ -21,15 +21,21 @@ package org.apache.directory.fortress.core.impl;
 
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.AuthResult;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.PasswordException;
 import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.UserBatch;
 import org.apache.directory.fortress.core.ValidationException;
 import org.apache.directory.fortress.core.model.AdminRole;
 import org.apache.directory.fortress.core.model.Administrator;
@@ -43,7 +49,9 @@ import org.apache.directory.fortress.core.model.RoleConstraint.RCType;
 import org.apache.directory.fortress.core.model.Session;
 import org.apache.directory.fortress.core.model.User;
 import org.apache.directory.fortress.core.model.UserAdminRole;
+import org.apache.directory.fortress.core.model.UserProjection;
 import org.apache.directory.fortress.core.model.UserRole;
+import org.apache.directory.fortress.core.util.Config;
 import org.apache.directory.fortress.core.util.VUtil;
 
 import org.slf4j.Logger;
@@ -71,6 +79,8 @@ final class UserP
 {
     private static final String CLS_NM = UserP.class.getName();
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String SESSION_PROJECTION_PROP = "user.session.projection";
+    private static final UserProjection SESSION_PROJECTION = getSessionProjection();
     private UserDAO uDao = new UserDAO();
     private PolicyP policyP = new PolicyP();
     private AdminRoleP admRoleP = new AdminRoleP();
@@ -89,6 +99,20 @@ final class UserP
     }
 
 
+    /**
+     * Takes a User entity that contains full or partial userId OR a full internal userId for search.
+     *
+     * @param user       contains all or partial userId or full internal userId.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return List of type User containing the attributes of the projection.  If no records found this will be empty.
+     * @throws SecurityException in the event of DAO search error.
+     */
+    List<User> search( User user, UserProjection projection ) throws SecurityException
+    {
+        return uDao.findUsers( user, getProjection( projection ) );
+    }
+
+
     List<User> search( OrgUnit ou, boolean limitSize ) throws SecurityException
     {
         return uDao.findUsers( ou, limitSize );
@@ -123,6 +147,20 @@ final class UserP
     }
 
 
+    /**
+     * Return a list of Users that are authorized the given Role.
+     *
+     * @param role       contains the role name targeted for search.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return List of type User containing the attributes of the projection. If no records found this will be empty.
+     * @throws SecurityException in the event of DAO search error.
+     */
+    List<User> getAuthorizedUsers( Role role, UserProjection projection ) throws SecurityException
+    {
+        return uDao.getAuthorizedUsers( role, getProjection( projection ) );
+    }
+
+
     /**
      * Return a list of Users that are authorized the given Role.
      *
@@ -166,6 +204,21 @@ final class UserP
         return uDao.getAssignedUsers( role, null );
     }
 
+
+    /**
+     * Return a list of Users assigned the given RBAC role.
+     * "Assigned" implies the hierarchical role relation graph will NOT be considered in result set.
+     *
+     * @param role       contains name of RBAC role used for search.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return List of User entities with the attributes of the projection. If no records found this will be empty.
+     * @throws SecurityException in the event of DAO search error.
+     */
+    List<User> getAssignedUsers( Role role, UserProjection projection ) throws SecurityException
+    {
+        return uDao.getAssignedUsers( role, null, getProjection( projection ) );
+    }
+
     /**
      * Return a list of Users assigned the given RBAC role.
      * "Assigned" implies the hierarchical role relation graph will NOT be considered in result set.
@@ -204,6 +257,11 @@ final class UserP
      */
     List<String> getAssignedUserIds( Role role ) throws SecurityException
     {
+        RoleOccupantIndex index = RoleOccupantIndex.getInstance();
+        if ( index.isEnabled() )
+        {
+            return index.getOccupants( role.getContextId(), role.getName(), 0 );
+        }
         return uDao.getAssignedUserIds( role );
     }
 
@@ -250,6 +308,64 @@ final class UserP
     }
 
 
+    /**
+     * Return the User entity for a given userId with the attributes of the projection.  If the User entry is not found
+     * a SecurityException will be thrown.
+     *
+     * @param user       contains full userId value.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return User entity containing the attributes of the projection.
+     * @throws SecurityException in the event of User not found or DAO search error.
+     */
+    User read( User user, UserProjection projection ) throws SecurityException
+    {
+        return uDao.getUser( user, getProjection( projection ) );
+    }
+
+
+    /**
+     * Return the Users for the given userIds with the attributes of the projection, in the order requested.  Userids
+     * not found are reported in the result rather than thrown, and a userId requested more than once is reported once.
+     *
+     * @param userIds    contains full userId values.
+     * @param contextId  maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @param projection names the attributes to return, null for {@link UserProjection#FULL}.
+     * @return the users found and the userIds missing.
+     * @throws SecurityException in the event of DAO search error.
+     */
+    UserBatch read( Collection<String> userIds, String contextId, UserProjection projection ) throws SecurityException
+    {
+        // userids are matched case insensitive, like the directory does:
+        Map<String, User> found = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+        for ( User user : uDao.getUsers( userIds, contextId, getProjection( projection ) ) )
+        {
+            found.put( user.getUserId(), user );
+        }
+
+        List<User> users = new ArrayList<>( found.size() );
+        List<String> missing = new ArrayList<>();
+        Set<String> seen = new TreeSet<>( String.CASE_INSENSITIVE_ORDER );
+        for ( String userId : userIds )
+        {
+            if ( !seen.add( userId ) )
+            {
+                continue;
+            }
+            User user = found.get( userId );
+            if ( user == null )
+            {
+                missing.add( userId );
+            }
+            else
+            {
+                users.add( user );
+            }
+        }
+
+        return new UserBatch( users, missing );
+    }
+
+
     /**
      * Adds a new User entity to directory.  The User entity input object will be validated to ensure that:
      * userId is present, orgUnitId is valid, roles (optiona) are valid, reasonability checks on all of the
@@ -386,7 +502,9 @@ final class UserP
                 + "] can't be removed due to policy violation, rc=" + GlobalErrIds.USER_PLCY_VIOLATION;
             throw new SecurityException( GlobalErrIds.USER_PLCY_VIOLATION, warning );
         }
-        return uDao.remove( user );
+        String dn = uDao.remove( user );
+        RoleOccupantIndex.getInstance().removeUser( user.getContextId(), user.getUserId() );
+        return dn;
     }
 
 
@@ -494,6 +612,73 @@ final class UserP
             VUtil.assertNotNullOrEmpty( user.getPassword(), GlobalErrIds.USER_PW_NULL, CLS_NM + ".createSession" );
             session = createSession( user );
         }
+        activateRoles( session, user );
+        return session;
+    }
+
+
+    /**
+     * Result returning variant of {@link #createSession(User, boolean)}.  Rejected credentials, a locked user or a failed
+     * user temporal constraint are returned as a failed {@link AuthResult} rather than thrown, so the routine logon
+     * failure does not pay for an exception.
+     *
+     * @param user    Contains userId, password (optional if "trusted"), optional roles to be activated.
+     * @param trusted if true password is not required.
+     * @return result containing the session, or the error id and message of the failure.
+     * @throws SecurityException in the event of data validation failure or DAO error.
+     */
+    AuthResult tryCreateSession( User user, boolean trusted ) throws SecurityException
+    {
+        Session session;
+        if ( trusted )
+        {
+            User entity = readSessionUser( user );
+            entity.setContextId( user.getContextId() );
+            if ( entity.isLocked() )
+            {
+                return AuthResult.failure( GlobalErrIds.USER_LOCKED_BY_CONST, "tryCreateSession failed for userId ["
+                    + user.getUserId() + "] reason user is locked" );
+            }
+            session = new ObjectFactory().createSession();
+            session.setUserId( user.getUserId() );
+            // Set this flag to false because user's password was not authenticated.
+            session.setAuthenticated( false );
+            session.setUser( entity );
+        }
+        else
+        {
+            VUtil.assertNotNullOrEmpty( user.getPassword(), GlobalErrIds.USER_PW_NULL, CLS_NM + ".tryCreateSession" );
+            // bind first, an unknown user fails here without the cost of a read:
+            session = uDao.bind( user );
+            if ( !session.isAuthenticated() )
+            {
+                return AuthResult.failure( session.getErrorId(), session.getMsg() );
+            }
+            User entity = readSessionUser( user );
+            entity.setContextId( user.getContextId() );
+            session.setUser( entity );
+        }
+        int rc = VUtil.getInstance().checkUserConstraints( session );
+        if ( rc > 0 )
+        {
+            return AuthResult.failure( rc, "tryCreateSession user [" + user.getUserId()
+                + "] was deactivated reason code [" + rc + "]" );
+        }
+        activateRoles( session, user );
+        return AuthResult.success( session );
+    }
+
+
+    /**
+     * Activate the roles requested by the caller, or all assigned if none were, that pass their temporal and dynamic
+     * separation of duty constraints.
+     *
+     * @param session contains the user's assigned roles.
+     * @param user    contains the optional list of roles targeted for activation.
+     * @throws SecurityException in the event of system error.
+     */
+    private void activateRoles( Session session, User user ) throws SecurityException
+    {
         // Did the caller pass in a set of roles for selective activation?
         if ( CollectionUtils.isNotEmpty( user.getRoles() ) )
         {
@@ -514,7 +699,6 @@ final class UserP
         }
         // Check role temporal constraints + activate roles:
         VUtil.getInstance().validateConstraints( session, VUtil.ConstraintType.ROLE, true );
-        return session;
     }
 
 
@@ -530,7 +714,7 @@ final class UserP
         throws SecurityException
     {
         // read user entity:
-        User user = read( inUser, true );
+        User user = readSessionUser( inUser );
         user.setContextId( inUser.getContextId() );
 
         // authenticate password, check pw policies and validate user temporal constraints:
@@ -552,7 +736,7 @@ final class UserP
     private Session createSessionTrusted( User inUser )
         throws SecurityException
     {
-        User user = read( inUser, true );
+        User user = readSessionUser( inUser );
         user.setContextId( inUser.getContextId() );
 
         if ( user.isLocked() )
@@ -606,6 +790,8 @@ final class UserP
     void changePassword( User entity, String newPassword ) throws SecurityException
     {
         String userId = entity.getUserId();
+        // reject what the user's policy would reject before binding and modifying the directory:
+        policyP.checkPassword( entity, newPassword );
         boolean result = uDao.changePassword( entity, newPassword );
         if ( !result )
         {
@@ -665,7 +851,9 @@ final class UserP
     {
         validate( uRole );
         // "assign" custom Fortress role data, i.e. temporal constraints, onto the user node:
-        return uDao.assign( uRole );
+        String dn = uDao.assign( uRole );
+        RoleOccupantIndex.getInstance().assign( uRole.getContextId(), uRole.getName(), uRole.getUserId() );
+        return dn;
     }
     
     //TODO: add documentation
@@ -703,7 +891,9 @@ final class UserP
     {
         validate( uRole );
         // "deassign" custom Fortress role data from the user's node:
-        return uDao.deassign( uRole );
+        String dn = uDao.deassign( uRole );
+        RoleOccupantIndex.getInstance().deassign( uRole.getContextId(), uRole.getName(), uRole.getUserId() );
+        return dn;
     }
 
 
@@ -986,4 +1176,41 @@ final class UserP
         
         return matchingConstraints;
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Read the user held by a session with {@code user.session.projection}.  The deferred attributes are detached, not
+     * loaded: a session outlives the read and is passed around and serialized, so it keeps what the projection returns.
+     */
+    private User readSessionUser( User user ) throws SecurityException
+    {
+        User entity = read( user, SESSION_PROJECTION );
+        entity.setDeferredLoader( null );
+        return entity;
+    }
+
+
+    private static UserProjection getProjection( UserProjection projection )
+    {
+        return projection != null ? projection : UserProjection.FULL;
+    }
+
+
+    /**
+     * @return the projection named by {@code user.session.projection}, {@link UserProjection#FULL} by default.
+     */
+    private static UserProjection getSessionProjection()
+    {
+        String name = Config.getInstance().getProperty( SESSION_PROJECTION_PROP, UserProjection.FULL.name() );
+        try
+        {
+            return UserProjection.valueOf( name.trim().toUpperCase() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            LOG.warn( "getSessionProjection invalid {} [{}], using {}", SESSION_PROJECTION_PROP, name,
+                UserProjection.FULL );
+            return UserProjection.FULL;
+        }
+    }
+}
@@ -25,15 +25,12 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang.StringUtils;
-import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.ValidationException;
 import org.apache.directory.fortress.core.model.Graphable;
 import org.apache.directory.fortress.core.model.Hier;
 import org.apache.directory.fortress.core.model.OrgUnit;
 import org.apache.directory.fortress.core.model.Relationship;
-import org.apache.directory.fortress.core.util.cache.Cache;
 import org.apache.directory.fortress.core.util.cache.CacheMgr;
 import org.jgrapht.graph.SimpleDirectedGraph;
 import org.slf4j.Logger;
@@ -62,7 +59,8 @@ import org.slf4j.LoggerFactory;
  */
 final class UsoUtil
 {
-    private Cache usoCache;
+    private static final String CACHE_NAME = "fortress.uso";
+    private GraphCache usoCache;
     private OrgUnitP orgUnitP;
     private static final String CLS_NM = UsoUtil.class.getName();
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
@@ -94,7 +92,18 @@ final class UsoUtil
         orgUnitP = new OrgUnitP();
     	
         CacheMgr cacheMgr = CacheMgr.getInstance();
-        usoCache = cacheMgr.getCache( "fortress.uso" );
+        usoCache = new GraphCache( cacheMgr.getCache( CACHE_NAME ), HierUtil.Type.USO, new GraphCache.Loader()
+        {
+            @Override
+            public List<Graphable> getAllDescendants( String contextId ) throws SecurityException
+            {
+                OrgUnit orgUnit = new OrgUnit();
+                orgUnit.setType( OrgUnit.Type.USER );
+                orgUnit.setContextId( contextId );
+                return orgUnitP.getAllDescendants( orgUnit );
+            }
+        } );
+        ChangeRouter.getInstance().subscribe( CACHE_NAME, ChangeRouter.Container.USER_OU );
     }
 
     /**
@@ -231,76 +240,56 @@ final class UsoUtil
      */
     void updateHier( String contextId, Relationship relationship, Hier.Op op ) throws SecurityException
     {
-        HierUtil.updateHier( getGraph( contextId ), relationship, op );
+        usoCache.updateHier( contextId, relationship, op );
+        AdminPolicyUtil.clear();
+        CacheMgr.getInstance().publish( CACHE_NAME, contextId, relationship.getChild() );
     }
 
 
     /**
-     * Read this ldap record,{@code cn=Hierarchies, ou=OS-P} into this entity, {@link Hier}, before loading into this collection class,{@code org.jgrapht.graph.SimpleDirectedGraph}
-     * using 3rd party lib, <a href="http://www.jgrapht.org/">JGraphT</a>.
+     * Apply a change to one user ou, made outside of this process, to the cached hierarchy.
      *
      * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
-     * @return handle to simple digraph containing user ou hierarchies.
+     * @param name      of the user ou that changed.
+     * @param parents   names of its parents as stored in ldap, null if it was deleted.
+     * @throws SecurityException in the event of a system error.
      */
-    private synchronized SimpleDirectedGraph<String, Relationship> loadGraph( String contextId )
+    void syncParents( String contextId, String name, Set<String> parents ) throws SecurityException
     {
-        Hier inHier = new Hier( Hier.Type.ROLE );
-        inHier.setContextId( contextId );
-        LOG.info( "loadGraph initializing USO context [{}]", inHier.getContextId() );
-        
-        List<Graphable> descendants = null;
-        try
-        {
-            OrgUnit orgUnit = new OrgUnit();
-            orgUnit.setType( OrgUnit.Type.USER );
-            orgUnit.setContextId( contextId );
-            descendants = orgUnitP.getAllDescendants( orgUnit );
-        }
-        catch ( SecurityException se )
-        {
-            LOG.info( "loadGraph caught SecurityException={}", se );
-        }
-        
-        Hier hier = HierUtil.loadHier( contextId, descendants );
-        SimpleDirectedGraph<String, Relationship> graph;
-        
-        graph = HierUtil.buildGraph( hier );
-        usoCache.put( getKey( contextId ), graph );
-        
-        return graph;
+        usoCache.syncParents( contextId, name, parents );
+        AdminPolicyUtil.clear();
     }
 
 
     /**
+     * Reload this tenant's cached hierarchy in the background on next use.
      *
-     * @return handle to simple digraph containing user ou hierarchies.
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
      */
-    private SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
+    void expire( String contextId )
     {
-        String key = getKey( contextId );        
-        LOG.debug("Getting graph for key " + contextId);
-         
-        SimpleDirectedGraph<String, Relationship> graph = ( SimpleDirectedGraph<String, Relationship> ) usoCache
-                 .get( key );
-             
-        if(graph == null){
-            LOG.debug("Graph was null, creating... " + contextId);
-            return loadGraph( contextId );
-        }
-        else{
-            LOG.debug("Graph found in cache, returning...");
-            return graph;
-        }
+        usoCache.expire( contextId );
     }
 
 
-    private String getKey( String contextId )
+    /**
+     * Load this tenant's user ou hierarchy now, if not already cached, so the first request does not pay for the ldap read.
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     */
+    void warmUp( String contextId )
     {
-        String key = HierUtil.Type.USO.toString();
-        if ( StringUtils.isNotEmpty( contextId ) && !contextId.equalsIgnoreCase( GlobalIds.NULL ) )
-        {
-            key += ":" + contextId;
-        }
-        return key;
+        usoCache.warmUp( contextId );
+    }
+
+
+    /**
+     *
+     * @param contextId maps to sub-tree in DIT, e.g. ou=contextId, dc=example, dc=com.
+     * @return handle to simple digraph containing user ou hierarchies.
+     */
+    private SimpleDirectedGraph<String, Relationship> getGraph( String contextId )
+    {
+        return usoCache.getGraph( contextId );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.ldap;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.fortress.core.util.LdapUtil;
+
+
+/**
+ * An ldap search filter compiled once from a pattern with numbered parameters, e.g.
+ * {@code (&(objectClass=ftUserAttrs)(ftRA={0}))}, so each use only appends the literal parts and the escaped values
+ * instead of rebuilding the whole filter.
+ * <p>
+ * Values are escaped with {@link LdapUtil#escapeFilterValue(String)} when the ldap filter properties are configured,
+ * the same as {@link LdapDataProvider#encodeSafeText(String, int)}.  A parameter may be used more than once.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class FilterTemplate
+{
+    private final String pattern;
+    // literal parts, parts[i] precedes the parameter params[i], the last part follows the last parameter:
+    private final String[] parts;
+    private final int[] params;
+    private final int literalLength;
+    private final int paramCount;
+
+
+    private FilterTemplate( String pattern, String[] parts, int[] params )
+    {
+        this.pattern = pattern;
+        this.parts = parts;
+        this.params = params;
+        int length = 0;
+        int count = 0;
+        for ( String part : parts )
+        {
+            length += part.length();
+        }
+        for ( int param : params )
+        {
+            count = Math.max( count, param + 1 );
+        }
+        this.literalLength = length;
+        this.paramCount = count;
+    }
+
+
+    /**
+     * Compile the pattern.
+     *
+     * @param pattern contains the filter with its parameters numbered from 0 in braces.
+     * @return the compiled template.
+     * @throws IllegalArgumentException if a brace is not closed or does not contain a parameter number.
+     */
+    public static FilterTemplate compile( String pattern )
+    {
+        List<String> parts = new ArrayList<>();
+        List<Integer> params = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ( ( open = pattern.indexOf( '{', start ) ) >= 0 )
+        {
+            int close = pattern.indexOf( '}', open );
+            if ( close < 0 )
+            {
+                throw new IllegalArgumentException( "FilterTemplate unclosed parameter in [" + pattern + "]" );
+            }
+            try
+            {
+                params.add( Integer.parseInt( pattern.substring( open + 1, close ) ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new IllegalArgumentException( "FilterTemplate invalid parameter in [" + pattern + "]", e );
+            }
+            parts.add( pattern.substring( start, open ) );
+            start = close + 1;
+        }
+        parts.add( pattern.substring( start ) );
+        int[] paramArray = new int[params.size()];
+        for ( int i = 0; i < paramArray.length; i++ )
+        {
+            paramArray[i] = params.get( i );
+        }
+        return new FilterTemplate( pattern, parts.toArray( new String[parts.size()] ), paramArray );
+    }
+
+
+    /**
+     * Build the filter.
+     *
+     * @param values of the parameters, in order of their numbers.
+     * @return the filter with the escaped values in place of the parameters.
+     * @throws IllegalArgumentException if fewer values are passed than the pattern has parameters.
+     */
+    public String format( String... values )
+    {
+        if ( values.length < paramCount )
+        {
+            throw new IllegalArgumentException( "FilterTemplate [" + pattern + "] requires [" + paramCount
+                + "] values, received [" + values.length + "]" );
+        }
+        LdapUtil ldapUtil = LdapUtil.getInstance();
+        boolean isEscaped = ldapUtil.isLdapfilterSizeFound();
+        String[] encoded = new String[values.length];
+        int length = literalLength;
+        for ( int i = 0; i < values.length; i++ )
+        {
+            // a null value is written as "null", as appending it to the filter would:
+            String value = String.valueOf( values[i] );
+            encoded[i] = isEscaped ? ldapUtil.escapeFilterValue( value ) : value;
+        }
+        for ( int param : params )
+        {
+            length += encoded[param].length();
+        }
+        StringBuilder filter = new StringBuilder( length );
+        for ( int i = 0; i < params.length; i++ )
+        {
+            filter.append( parts[i] ).append( encoded[params[i]] );
+        }
+        filter.append( parts[params.length] );
+        return filter.toString();
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return pattern;
+    }
+}
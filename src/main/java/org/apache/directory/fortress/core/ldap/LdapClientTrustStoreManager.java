@@ -31,16 +31,24 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -53,9 +61,17 @@ import java.util.Date;
  *     <li>trust.store : contains the name of the truststore (must be fully qualified iff trust.store.onclasspath=false</li>
  *     <li>trust.store.password : contains the pw for the specified truststore</li>
  *     <li>trust.onclasspath : if false name must be fully qualified, otherwise file must be on classpath as named</li>
+ *     <li>trust.store.reload.interval : seconds between checks of the truststore for changes, default 60, 0 disables</li>
  * </ul>
  *
+ * The truststore is parsed once and its trust managers are shared by all handshakes without locking.  Every reload interval
+ * one handshake checks the truststore for changes, by modification time and size on the filepath or by checksum on the
+ * classpath, and swaps in new trust managers if its contents changed.  If the changed truststore cannot be loaded the
+ * previous trust managers stay in use.
+ * <p>
  * Note: This class allows self-signed certificates to pass the validation checks.
+ * <p>
+ * This class is thread safe.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -66,6 +82,10 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
     // Logging
     private static final String CLS_NM = LdapClientTrustStoreManager.class.getName();
     private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final int DEFAULT_RELOAD_INTERVAL = 60;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final AtomicLongFieldUpdater<LdapClientTrustStoreManager> NEXT_CHECK = AtomicLongFieldUpdater
+        .newUpdater( LdapClientTrustStoreManager.class, "nextCheck" );
 
     // Config variables
     private final boolean isExamineValidityDates;
@@ -73,6 +93,19 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
     // This is found on the classpath if trust.store.onclasspath = true (default), otherwise must include exact location on filepath:
     private final String trustStoreFile;
     private final String trustStoreFormat;
+    private final boolean isOnFilepath;
+    private final long reloadIntervalMillis;
+
+    // The trust managers currently in use, loaded on first handshake:
+    private transient volatile TrustMaterial material;
+    // Time, in millis, after which the next handshake checks the truststore for changes:
+    private transient volatile long nextCheck;
+    private final AtomicLong validations = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalValidationNanos = new AtomicLong();
+    private final AtomicLong maxValidationNanos = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final ReentrantLock loadLock = new ReentrantLock();
 
 
     /**
@@ -106,6 +139,13 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
         {
             this.trustStoreFormat = trustStoreFormat;
         }
+        // If false or null, read the truststore from a fully qualified filename.
+        String szTrustStoreOnClasspath = Config.getInstance().getProperty( GlobalIds.TRUST_STORE_ON_CLASSPATH );
+        this.isOnFilepath = szTrustStoreOnClasspath != null && szTrustStoreOnClasspath.equalsIgnoreCase( "false" );
+        this.reloadIntervalMillis = TimeUnit.SECONDS.toMillis( Config.getInstance().getInt( GlobalIds
+            .TRUST_STORE_RELOAD_INTERVAL, DEFAULT_RELOAD_INTERVAL ) );
+        LOG.info( "{} trust store [{}] on {}, reload interval [{}] ms", CLS_NM, trustStoreFile,
+            isOnFilepath ? "filepath" : "classpath", reloadIntervalMillis );
     }
 
 
@@ -116,13 +156,23 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
      * @param authNType
      * @throws CertificateException
      */
-    public synchronized void checkClientTrusted( final X509Certificate[] x509Chain,
+    public void checkClientTrusted( final X509Certificate[] x509Chain,
         final String authNType ) throws CertificateException
     {
-        // For each certificate in the chain, check validity:
-        for ( final X509TrustManager trustMgr : getTrustManagers( x509Chain ) )
+        long start = System.nanoTime();
+        boolean success = false;
+        try
+        {
+            // For each certificate in the chain, check validity:
+            for ( final X509TrustManager trustMgr : getTrustManagers( x509Chain ) )
+            {
+                trustMgr.checkClientTrusted( x509Chain, authNType );
+            }
+            success = true;
+        }
+        finally
         {
-            trustMgr.checkClientTrusted( x509Chain, authNType );
+            recordValidation( start, success );
         }
     }
 
@@ -134,12 +184,22 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
      * @param authNType
      * @throws CertificateException
      */
-    public synchronized void checkServerTrusted( final X509Certificate[] x509Chain, final String authNType ) throws
+    public void checkServerTrusted( final X509Certificate[] x509Chain, final String authNType ) throws
         CertificateException
     {
-        for ( final X509TrustManager trustManager : getTrustManagers( x509Chain ) )
+        long start = System.nanoTime();
+        boolean success = false;
+        try
         {
-            trustManager.checkServerTrusted( x509Chain, authNType );
+            for ( final X509TrustManager trustManager : getTrustManagers( x509Chain ) )
+            {
+                trustManager.checkServerTrusted( x509Chain, authNType );
+            }
+            success = true;
+        }
+        finally
+        {
+            recordValidation( start, success );
         }
     }
 
@@ -149,35 +209,76 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
      *
      * @return array of accepted issuers
      */
-    public synchronized X509Certificate[] getAcceptedIssuers()
+    public X509Certificate[] getAcceptedIssuers()
     {
         return new X509Certificate[0];
     }
 
 
     /**
-     * Return array of trust managers to caller.  Will verify that current date is within certs validity period.
-     *
-     * @param x509Chain contains input X.509 certificate chain.
-     * @return array of X.509 trust managers.
-     * @throws CertificateException if trustStoreFile instance variable is null.
+     * @return number of certificate chains validated, successfully or not.
      */
-    private synchronized X509TrustManager[] getTrustManagers( final X509Certificate[] x509Chain ) throws
-        CertificateException
+    public long getValidationCount()
     {
-        String szTrustStoreOnClasspath = Config.getInstance().getProperty( GlobalIds.TRUST_STORE_ON_CLASSPATH );
+        return validations.get();
+    }
 
-        // If false or null, read the truststore from a fully qualified filename.
-        if( szTrustStoreOnClasspath != null && szTrustStoreOnClasspath.equalsIgnoreCase( "false" ))
+
+    /**
+     * @return number of certificate chains that failed validation.
+     */
+    public long getFailureCount()
+    {
+        return failures.get();
+    }
+
+
+    /**
+     * @return average time taken to validate a certificate chain, in microseconds.
+     */
+    public long getAverageValidationMicros()
+    {
+        long count = validations.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros( totalValidationNanos.get() / count );
+    }
+
+
+    /**
+     * @return longest time taken to validate a certificate chain, in microseconds.
+     */
+    public long getMaxValidationMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros( maxValidationNanos.get() );
+    }
+
+
+    /**
+     * @return number of times the truststore has been loaded, including the initial load.
+     */
+    public long getReloadCount()
+    {
+        return reloads.get();
+    }
+
+
+    private void recordValidation( long start, boolean success )
+    {
+        long elapsed = System.nanoTime() - start;
+        validations.incrementAndGet();
+        totalValidationNanos.addAndGet( elapsed );
+        long max = maxValidationNanos.get();
+        while ( elapsed > max && !maxValidationNanos.compareAndSet( max, elapsed ) )
         {
-            LOG.info( CLS_NM + ".getTrustManagers on filepath" );
-            return getTrustManagersOnFilepath( x509Chain );
+            max = maxValidationNanos.get();
         }
-        // Get it off the classpath
-        else
+        if ( !success )
+        {
+            failures.incrementAndGet();
+        }
+        if ( LOG.isDebugEnabled() )
         {
-            LOG.info( CLS_NM + ".getTrustManagers on classpath" );
-            return getTrustManagersOnClasspath( x509Chain );
+            LOG.debug( "{} validation success [{}] took [{}] us", CLS_NM, success, TimeUnit.NANOSECONDS.toMicros(
+                elapsed ) );
         }
     }
 
@@ -189,7 +290,7 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
      * @return array of X.509 trust managers.
      * @throws CertificateException if trustStoreFile instance variable is null.
      */
-    private synchronized X509TrustManager[] getTrustManagersOnClasspath( final X509Certificate[] x509Chain ) throws
+    private X509TrustManager[] getTrustManagers( final X509Certificate[] x509Chain ) throws
         CertificateException
     {
         // If true, verify the current date is within each certificates validity period.
@@ -201,51 +302,119 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
                 x509Cert.checkValidity( currentDate );
             }
         }
-        InputStream trustStoreInputStream = getTrustStoreInputStream();
-        if (trustStoreInputStream == null)
+        TrustMaterial current = material;
+        if ( current == null )
         {
-            throw new CertificateException("LdapClientTrustStoreManager.getTrustManagers : file not found");
+            current = loadInitial();
         }
+        else
+        {
+            long check = nextCheck;
+            if ( reloadIntervalMillis > 0 && System.currentTimeMillis() >= check && NEXT_CHECK.compareAndSet( this,
+                check, System.currentTimeMillis() + reloadIntervalMillis ) )
+            {
+                // Only this thread checks for changes, the others carry on with the current trust managers:
+                current = reloadIfChanged( current );
+            }
+        }
+        return current.trustManagers;
+    }
+
+
+    /**
+     * Load the truststore on first use.
+     *
+     * @return the trust managers now in use.
+     * @throws CertificateException if the truststore cannot be loaded.
+     */
+    private TrustMaterial loadInitial() throws CertificateException
+    {
+        // A lock rather than a monitor, the truststore is read from disk while it is held:
+        loadLock.lock();
         try
         {
-            trustStoreInputStream.close();
+            TrustMaterial current = material;
+            if ( current == null )
+            {
+                current = loadTrustMaterial( null );
+                nextCheck = System.currentTimeMillis() + reloadIntervalMillis;
+                material = current;
+            }
+            return current;
         }
-        catch (IOException e)
+        finally
         {
-            // Eat this ioexception because it shouldn't be a problem, but log just in case:
-            LOG.warn("LdapClientTrustStoreManager.getTrustManagers on input stream close " +
-                    "operation caught IOException={}", e.getMessage());
+            loadLock.unlock();
         }
-        return loadTrustManagers( getTrustStore() );
     }
 
 
     /**
-     * Return array of trust managers to caller.  Will verify that current date is within certs validity period.
+     * Check the truststore for changes and swap in new trust managers if it has changed.
      *
-     * @param x509Chain contains input X.509 certificate chain.
-     * @return array of X.509 trust managers.
-     * @throws CertificateException if trustStoreFile instance variable is null.
+     * @param current the trust managers in use.
+     * @return the trust managers now in use.
      */
-    private synchronized X509TrustManager[] getTrustManagersOnFilepath( final X509Certificate[] x509Chain ) throws
-        CertificateException
+    private TrustMaterial reloadIfChanged( TrustMaterial current )
     {
-        // If true, verify the current date is within each certificates validity period.
-        if ( isExamineValidityDates )
+        try
         {
-            final Date currentDate = new Date();
-            for ( final X509Certificate x509Cert : x509Chain )
+            if ( isOnFilepath )
             {
-                x509Cert.checkValidity( currentDate );
+                File file = new File( this.trustStoreFile );
+                if ( file.lastModified() == current.lastModified && file.length() == current.length )
+                {
+                    return current;
+                }
+            }
+            TrustMaterial loaded = loadTrustMaterial( current.digest );
+            if ( loaded != null )
+            {
+                LOG.info( "{}.reloadIfChanged trust store [{}] changed, trust managers reloaded", CLS_NM, trustStoreFile );
+                material = loaded;
+                return loaded;
+            }
+        }
+        catch ( CertificateException e )
+        {
+            LOG.warn( "{}.reloadIfChanged trust store [{}] keeping previous trust managers, caught " +
+                "CertificateException={}", CLS_NM, trustStoreFile, e.getMessage() );
+        }
+        return current;
+    }
+
+
+    /**
+     * Read the truststore and build its trust managers.
+     *
+     * @param previousDigest checksum of the truststore in use, or null if none.
+     * @return the new trust material, or null if the truststore contents match the previous digest.
+     * @throws CertificateException if the truststore cannot be read or parsed.
+     */
+    private TrustMaterial loadTrustMaterial( byte[] previousDigest ) throws CertificateException
+    {
+        long lastModified = 0;
+        long length = 0;
+        if ( isOnFilepath )
+        {
+            // The trustStoreFile should contain the fully-qualified name of a Java TrustStore on local file system.
+            final File trustStoreFile = new File( this.trustStoreFile );
+            if ( !trustStoreFile.exists() )
+            {
+                throw new CertificateException( "FortressTrustStoreManager.getTrustManagers : file not found" );
             }
+            lastModified = trustStoreFile.lastModified();
+            length = trustStoreFile.length();
         }
-        // The trustStoreFile should contain the fully-qualified name of a Java TrustStore on local file system.
-        final File trustStoreFile = new File( this.trustStoreFile );
-        if ( !trustStoreFile.exists() )
+        byte[] contents = readTrustStore();
+        byte[] digest = getDigest( contents );
+        if ( previousDigest != null && Arrays.equals( previousDigest, digest ) )
         {
-            throw new CertificateException( "FortressTrustStoreManager.getTrustManagers : file not found" );
+            return null;
         }
-        return loadTrustManagers( getTrustStore() );
+        X509TrustManager[] trustManagers = loadTrustManagers( getTrustStore( contents ) );
+        reloads.incrementAndGet();
+        return new TrustMaterial( trustManagers, digest, lastModified, length );
     }
 
 
@@ -285,12 +454,13 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
 
 
     /**
-     * Load the TrustStore file into JSSE KeyStore instance.
+     * Load the TrustStore contents into JSSE KeyStore instance.
      *
+     * @param contents of the LDAP Client's TrustStore file.
      * @return instance of JSSE KeyStore containing the LDAP Client's TrustStore file info.     *
      * @throws CertificateException if cannot process file load.
      */
-    private KeyStore getTrustStore() throws CertificateException
+    private KeyStore getTrustStore( byte[] contents ) throws CertificateException
     {
         final KeyStore trustStore;
         try
@@ -301,11 +471,9 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
         {
             throw new CertificateException( "LdapClientTrustStoreManager.getTrustManagers caught KeyStoreException", e );
         }
-        InputStream trustStoreInputStream = null;
         try
         {
-            trustStoreInputStream = getTrustStoreInputStream();
-            trustStore.load( trustStoreInputStream, trustStorePw );
+            trustStore.load( new ByteArrayInputStream( contents ), trustStorePw );
         }
         catch ( NoSuchAlgorithmException e )
         {
@@ -316,24 +484,61 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
         {
             throw new CertificateException( "LdapClientTrustStoreManager.getTrustManagers caught KeyStoreException", e );
         }
+        return trustStore;
+    }
+
+
+    /**
+     * Read the whole trust store into memory.
+     *
+     * @return contents of the trust store.
+     * @throws CertificateException if the trust store cannot be read.
+     */
+    private byte[] readTrustStore() throws CertificateException
+    {
+        InputStream trustStoreInputStream = getTrustStoreInputStream();
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = trustStoreInputStream.read( buffer ) ) != -1 )
+            {
+                out.write( buffer, 0, read );
+            }
+            return out.toByteArray();
+        }
+        catch ( IOException e )
+        {
+            throw new CertificateException( "LdapClientTrustStoreManager.readTrustStore caught IOException", e );
+        }
         finally
         {
             // Close the input stream.
-            if ( trustStoreInputStream != null )
+            try
             {
-                try
-                {
-                    trustStoreInputStream.close();
-                }
-                catch ( IOException e )
-                {
-                    // Eat this ioexception because it shouldn't be a problem, but log just in case:
-                    LOG.warn( "LdapClientTrustStoreManager.getTrustStore finally block on input stream close " +
-                        "operation caught IOException={}", e.getMessage() );
-                }
+                trustStoreInputStream.close();
+            }
+            catch ( IOException e )
+            {
+                // Eat this ioexception because it shouldn't be a problem, but log just in case:
+                LOG.warn( "LdapClientTrustStoreManager.readTrustStore finally block on input stream close " +
+                    "operation caught IOException={}", e.getMessage() );
             }
         }
-        return trustStore;
+    }
+
+
+    private static byte[] getDigest( byte[] contents ) throws CertificateException
+    {
+        try
+        {
+            return MessageDigest.getInstance( DIGEST_ALGORITHM ).digest( contents );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new CertificateException( "LdapClientTrustStoreManager.getDigest caught NoSuchAlgorithmException", e );
+        }
     }
 
 
@@ -352,4 +557,25 @@ public final class LdapClientTrustStoreManager implements X509TrustManager, Seri
         }
         return result;
     }
+
+
+    /**
+     * Trust managers built from one version of the truststore.
+     */
+    private static final class TrustMaterial
+    {
+        private final X509TrustManager[] trustManagers;
+        private final byte[] digest;
+        private final long lastModified;
+        private final long length;
+
+
+        TrustMaterial( X509TrustManager[] trustManagers, byte[] digest, long lastModified, long length )
+        {
+            this.trustManagers = trustManagers;
+            this.digest = digest;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
 }
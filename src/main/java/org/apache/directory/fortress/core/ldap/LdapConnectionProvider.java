@@ -19,8 +19,15 @@
  */
 package org.apache.directory.fortress.core.ldap;
 
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.net.ssl.TrustManager;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.pool.PoolableObjectFactory;
@@ -37,6 +44,7 @@ import org.apache.directory.fortress.core.util.EncryptUtil;
 import org.apache.directory.ldap.client.api.LdapConnection;
 import org.apache.directory.ldap.client.api.LdapConnectionConfig;
 import org.apache.directory.ldap.client.api.LdapConnectionPool;
+import org.apache.directory.ldap.client.api.LdapNetworkConnection;
 import org.apache.directory.ldap.client.api.ValidatingPoolableLdapConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +59,16 @@ import org.slf4j.LoggerFactory;
  *
  * Each connection pool is initialized on first invocation of getInstance() which stores a reference to self used by subsequent callers.
  * <p>
+ * When LDAPS or StartTLS is enabled and {@code enable.ldap.ssl.shared.context} is true, all pools share one SSLContext,
+ * trusting the same certificates as the per-connection contexts, so reconnects resume cached TLS sessions.  This
+ * registers a JCA security provider for the JVM, so it is off by default.  Setting {@code enable.pool.prewarm} opens each pool's minimum idle
+ * connections during initialization, and {@code ldap.connect.rate} limits how many new connections per second each pool
+ * may open.  Setting {@code ldap.tenant.max.conn} caps the admin and user connections each tenant may hold when borrowed
+ * with {@link #getAdminConnection(String)} or {@link #getUserConnection(String)}.
+ * <p>
+ * Long running searches, such as the directory change feed, use their own connection from {@link #openStreamConnection()}
+ * so they never hold a pooled connection.
+ * <p>
  * This class is not thread safe.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
@@ -67,6 +85,13 @@ public class LdapConnectionProvider
     private static final String LDAP_LOG_POOL_MAX = "max.log.conn";
 
     private static final String ENABLE_LDAP_STARTTLS = "enable.ldap.starttls";
+    private static final String ENABLE_SSL_SHARED_CONTEXT = "enable.ldap.ssl.shared.context";
+    private static final String SSL_PROTOCOL = "ldap.ssl.protocol";
+    private static final String SSL_SESSION_CACHE_SIZE = "ldap.ssl.session.cache.size";
+    private static final String SSL_SESSION_TIMEOUT = "ldap.ssl.session.timeout";
+    private static final String ENABLE_POOL_PREWARM = "enable.pool.prewarm";
+    private static final String CONNECT_RATE = "ldap.connect.rate";
+    private static final String CONNECT_BURST = "ldap.connect.burst";
     private boolean IS_SSL;
 
     /**
@@ -84,8 +109,23 @@ public class LdapConnectionProvider
      */
     private static LdapConnectionPool userPool;
 
+    /**
+     * Caps the admin and user connections held by each tenant, null if tenants are not limited.
+     */
+    private static TenantConnectionLimiter tenantLimiter;
+
+    /**
+     * Settings of the admin pool, with no response timeout, used by {@link #openStreamConnection()}.
+     */
+    private static LdapConnectionConfig streamConfig;
+
     private static volatile LdapConnectionProvider sINSTANCE = null;
 
+    /**
+     * Guards creation of the pools, a lock rather than a monitor because pre-warming opens connections while it is held.
+     */
+    private static final ReentrantLock INIT_LOCK = new ReentrantLock();
+
     /**
      * Synchronized getter guards access to reference to self which is a singleton and only be created the first time invoked.
      *
@@ -95,13 +135,18 @@ public class LdapConnectionProvider
     {
         if ( sINSTANCE == null )
         {
-            synchronized ( LdapConnectionProvider.class )
+            INIT_LOCK.lock();
+            try
             {
                 if ( sINSTANCE == null )
                 {
                     sINSTANCE = new LdapConnectionProvider();
                 }
             }
+            finally
+            {
+                INIT_LOCK.unlock();
+            }
         }
         return sINSTANCE;
     }
@@ -141,7 +186,8 @@ public class LdapConnectionProvider
         config.setUseSsl( IS_SSL );
         //config.setTrustManagers( new NoVerificationTrustManager() );
 
-        if ( Config.getInstance().getBoolean( ENABLE_LDAP_STARTTLS, false ) )
+        boolean isStartTls = Config.getInstance().getBoolean( ENABLE_LDAP_STARTTLS, false );
+        if ( isStartTls )
         {
             config.setUseTls( true );
         }
@@ -155,6 +201,15 @@ public class LdapConnectionProvider
                 true ) );
         }
 
+        // One SSLContext for all pooled connections lets reconnects resume their TLS session:
+        boolean isSharedContext = ( IS_SSL || isStartTls ) && Config.getInstance().getBoolean(
+            ENABLE_SSL_SHARED_CONTEXT, false );
+        if ( isSharedContext )
+        {
+            initSharedSslContext( config.getTrustManagers() );
+            config.setSslProtocol( SharedSslContext.PROTOCOL );
+        }
+
         String adminPw;
         if ( EncryptUtil.isEnabled() )
         {
@@ -190,7 +245,9 @@ public class LdapConnectionProvider
             throw new CfgRuntimeException( GlobalErrIds.FT_APACHE_LDAP_POOL_INIT_FAILED, error, ex );
         }
 
-        PoolableObjectFactory<LdapConnection> poolFactory = new ValidatingPoolableLdapConnectionFactory( config );
+        streamConfig = newStreamConfig( config );
+        PoolableObjectFactory<LdapConnection> poolFactory = rateLimit( new ValidatingPoolableLdapConnectionFactory(
+            config ) );
 
         // Create the Admin pool
         adminPool = new LdapConnectionPool( poolFactory );
@@ -222,6 +279,10 @@ public class LdapConnectionProvider
             logConfig.setName( Config.getInstance().getProperty( GlobalIds.LDAP_ADMIN_POOL_UID, "" ) );
 
             logConfig.setUseSsl( IS_SSL );
+            if ( isSharedContext )
+            {
+                logConfig.setSslProtocol( SharedSslContext.PROTOCOL );
+            }
 
             if ( IS_SSL && StringUtils.isNotEmpty( Config.getInstance().getProperty( GlobalIds.TRUST_STORE ) ) &&
                 StringUtils.isNotEmpty( Config.getInstance().getProperty( GlobalIds.TRUST_STORE_PW, true ) ) )
@@ -243,13 +304,123 @@ public class LdapConnectionProvider
                 logPw = Config.getInstance().getProperty( LDAP_LOG_POOL_PW, true );
             }
             logConfig.setCredentials( logPw );
-            poolFactory = new ValidatingPoolableLdapConnectionFactory( logConfig );
+            poolFactory = rateLimit( new ValidatingPoolableLdapConnectionFactory( logConfig ) );
             logPool = new LdapConnectionPool( poolFactory );
             logPool.setTestOnBorrow( true );
             logPool.setWhenExhaustedAction( GenericObjectPool.WHEN_EXHAUSTED_GROW );
             logPool.setMaxActive( logmax );
             logPool.setMinIdle( logmin );
         }
+
+        tenantLimiter = TenantConnectionLimiter.create();
+
+        if ( Config.getInstance().getBoolean( ENABLE_POOL_PREWARM, false ) )
+        {
+            preWarm( "admin", adminPool, min );
+            preWarm( "user", userPool, min );
+            if ( logPool != null )
+            {
+                preWarm( "log", logPool, logmin );
+            }
+        }
+    }
+
+
+    /**
+     * Copy the connection settings for streamed searches.  The server only answers those when the directory changes, so
+     * the client must wait for responses indefinitely.
+     *
+     * @param config of the admin pool.
+     * @return settings for connections returned by {@link #openStreamConnection()}.
+     */
+    private static LdapConnectionConfig newStreamConfig( LdapConnectionConfig config )
+    {
+        LdapConnectionConfig copy = new LdapConnectionConfig();
+        copy.setLdapHost( config.getLdapHost() );
+        copy.setLdapPort( config.getLdapPort() );
+        copy.setUseSsl( config.isUseSsl() );
+        copy.setUseTls( config.isUseTls() );
+        copy.setSslProtocol( config.getSslProtocol() );
+        copy.setTrustManagers( config.getTrustManagers() );
+        copy.setName( config.getName() );
+        copy.setCredentials( config.getCredentials() );
+        copy.setLdapApiService( config.getLdapApiService() );
+        copy.setTimeout( Long.MAX_VALUE );
+        return copy;
+    }
+
+
+    /**
+     * Create the SSLContext shared by the pooled connections.  Its client session cache is sized by
+     * {@code ldap.ssl.session.cache.size} and {@code ldap.ssl.session.timeout} (seconds), both defaulting to the JSSE
+     * settings.
+     *
+     * @param trustManagers validate the server certificates, those of the admin pool's connection config.
+     */
+    private void initSharedSslContext( TrustManager[] trustManagers )
+    {
+        String protocol = Config.getInstance().getProperty( SSL_PROTOCOL, "TLS" );
+        int cacheSize = Config.getInstance().getInt( SSL_SESSION_CACHE_SIZE, -1 );
+        int timeout = Config.getInstance().getInt( SSL_SESSION_TIMEOUT, -1 );
+        try
+        {
+            SharedSslContext.init( protocol, trustManagers, cacheSize, timeout );
+        }
+        catch ( GeneralSecurityException e )
+        {
+            String error = "initSharedSslContext caught GeneralSecurityException=" + e;
+            throw new CfgRuntimeException( GlobalErrIds.FT_APACHE_LDAP_POOL_INIT_FAILED, error, e );
+        }
+    }
+
+
+    /**
+     * Limit the rate at which the factory opens connections when {@code ldap.connect.rate} (connections per second) is
+     * set.  Up to {@code ldap.connect.burst} connections, default 10, may be opened at once.
+     *
+     * @param factory creates the pool's connections.
+     * @return the factory to use for the pool.
+     */
+    private PoolableObjectFactory<LdapConnection> rateLimit( PoolableObjectFactory<LdapConnection> factory )
+    {
+        int rate = Config.getInstance().getInt( CONNECT_RATE, 0 );
+        if ( rate <= 0 )
+        {
+            return factory;
+        }
+        int burst = Config.getInstance().getInt( CONNECT_BURST, 10 );
+        LOG.info( "LDAP POOL: connect rate=[{}] per second, burst=[{}]", rate, burst );
+        return new RateLimitedConnectionFactory( factory, rate, burst );
+    }
+
+
+    /**
+     * Open connections until the pool holds its minimum number of idle connections, so the first requests do not pay for
+     * the connects and handshakes.  Failures are logged and leave the pool to grow on demand.
+     *
+     * @param name    of the pool, for logging.
+     * @param pool    to fill.
+     * @param minIdle number of connections to open.
+     */
+    private void preWarm( String name, LdapConnectionPool pool, int minIdle )
+    {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        try
+        {
+            while ( pool.getNumIdle() < minIdle )
+            {
+                pool.addObject();
+                count++;
+            }
+        }
+        catch ( Exception e )
+        {
+            LOG.warn( "preWarm {} pool stopped after [{}] connections, caught Exception={}", name, count,
+                e.getMessage() );
+        }
+        LOG.info( "preWarm {} pool opened [{}] connections in [{}] ms", name, count, System.currentTimeMillis()
+            - start );
     }
 
 
@@ -262,6 +433,10 @@ public class LdapConnectionProvider
     {
         try
         {
+            if ( tenantLimiter != null )
+            {
+                tenantLimiter.release( connection );
+            }
             adminPool.releaseConnection( connection );
         }
         catch ( Exception e )
@@ -298,6 +473,10 @@ public class LdapConnectionProvider
     {
         try
         {
+            if ( tenantLimiter != null )
+            {
+                tenantLimiter.release( connection );
+            }
             userPool.releaseConnection( connection );
         }
         catch ( Exception e )
@@ -363,6 +542,109 @@ public class LdapConnectionProvider
         }
     }
 
+    /**
+     * Calls the PoolMgr to get an Admin connection to the LDAP server on behalf of a tenant.  If {@code ldap.tenant.max.conn}
+     * is set the caller first waits for one of the tenant's permits, which is returned by {@link #closeAdminConnection}.
+     *
+     * @param contextId of the tenant, null or empty for the default tenant.
+     * @return ldap connection.
+     * @throws LdapException If we had an issue getting an LDAP connection or the tenant is at its limit
+     */
+    public LdapConnection getAdminConnection( String contextId ) throws LdapException
+    {
+        if ( tenantLimiter == null )
+        {
+            return getAdminConnection();
+        }
+        Semaphore permit = tenantLimiter.acquire( contextId );
+        try
+        {
+            LdapConnection connection = getAdminConnection();
+            tenantLimiter.track( connection, permit );
+            return connection;
+        }
+        catch ( LdapException e )
+        {
+            permit.release();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Calls the PoolMgr to get a User connection to the LDAP server on behalf of a tenant.  If {@code ldap.tenant.max.conn}
+     * is set the caller first waits for one of the tenant's permits, which is returned by {@link #closeUserConnection}.
+     *
+     * @param contextId of the tenant, null or empty for the default tenant.
+     * @return ldap connection.
+     * @throws LdapException If we had an issue getting an LDAP connection or the tenant is at its limit
+     */
+    public LdapConnection getUserConnection( String contextId ) throws LdapException
+    {
+        if ( tenantLimiter == null )
+        {
+            return getUserConnection();
+        }
+        Semaphore permit = tenantLimiter.acquire( contextId );
+        try
+        {
+            LdapConnection connection = getUserConnection();
+            tenantLimiter.track( connection, permit );
+            return connection;
+        }
+        catch ( LdapException e )
+        {
+            permit.release();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Open and bind a new connection, outside of the pools, with the admin credentials and no response timeout.  It is
+     * meant for searches that stay open for the life of the process, and the caller must close it.
+     *
+     * @return bound ldap connection.
+     * @throws LdapException If we had an issue opening or binding the connection
+     */
+    public LdapConnection openStreamConnection() throws LdapException
+    {
+        LdapNetworkConnection connection = new LdapNetworkConnection( streamConfig );
+        try
+        {
+            connection.bind();
+        }
+        catch ( LdapException e )
+        {
+            try
+            {
+                connection.close();
+            }
+            catch ( Exception ce )
+            {
+                LOG.debug( "openStreamConnection close failed: {}", ce.getMessage() );
+            }
+            throw e;
+        }
+        return connection;
+    }
+
+
+    /**
+     * Return the number of admin and user connections each tenant holds, empty if tenants are not limited.
+     *
+     * @return connections in use by contextId.
+     */
+    public Map<String, Integer> getTenantConnectionsInUse()
+    {
+        if ( tenantLimiter == null )
+        {
+            return Collections.emptyMap();
+        }
+        return tenantLimiter.getInUse();
+    }
+
+
     /**
      * Closes all the ldap connection pools.
      */
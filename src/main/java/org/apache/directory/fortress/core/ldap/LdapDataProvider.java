@@ -28,6 +28,8 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.directory.api.ldap.extras.controls.ppolicy.PasswordPolicy;
@@ -47,6 +49,7 @@ import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidAttributeValueException;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.exception.LdapOperationErrorException;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
 import org.apache.directory.api.ldap.model.message.BindRequest;
 import org.apache.directory.api.ldap.model.message.BindRequestImpl;
 import org.apache.directory.api.ldap.model.message.BindResponse;
@@ -58,10 +61,14 @@ import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
 import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
 import org.apache.directory.api.ldap.model.message.controls.ProxiedAuthz;
 import org.apache.directory.api.ldap.model.message.controls.ProxiedAuthzImpl;
 import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
 import org.apache.directory.fortress.core.GlobalIds;
 import org.apache.directory.fortress.core.model.Constraint;
 import org.apache.directory.fortress.core.model.ConstraintUtil;
@@ -90,6 +97,9 @@ public abstract class LdapDataProvider
     private static final int MAX_DEPTH = 100;
     private static final LdapCounters COUNTERS = new LdapCounters();
     private static final PasswordPolicy PP_REQ_CTRL = new PasswordPolicyImpl();
+    // parsed container dns keyed by their string form, bounded as tenants come and go:
+    private static final int MAX_BASE_DNS = 1000;
+    private static final ConcurrentMap<String, Dn> BASE_DNS = new ConcurrentHashMap<>();
     
     /**
      * Given a contextId and a fortress param name return the LDAP dn.
@@ -128,6 +138,59 @@ public abstract class LdapDataProvider
         }
     }
 
+    /**
+     * Given a contextId and a fortress param name return the parsed LDAP dn.  The dn is parsed once and reused by
+     * later calls, so DAOs can build the dns of entries below it with {@link #getDn(Dn, String, String)} instead of
+     * concatenating strings that are parsed again on every request.
+     *
+     * @param contextId is to determine what sub-tree to use.
+     * @param root      contains the fortress parameter name that corresponds with a particular LDAP container.
+     * @return Dn of the container.
+     * @throws LdapInvalidDnException if the configured dn is invalid.
+     */
+    protected static Dn getBaseDn( String contextId, String root ) throws LdapInvalidDnException
+    {
+        return getBaseDn( getRootDn( contextId, root ) );
+    }
+
+
+    /**
+     * Return the parsed dn of a container, parsing it only the first time.
+     *
+     * @param szDn contains the dn of a container, e.g. from {@link #getRootDn(String, String)}.
+     * @return Dn of the container.
+     * @throws LdapInvalidDnException if the dn is invalid.
+     */
+    protected static Dn getBaseDn( String szDn ) throws LdapInvalidDnException
+    {
+        Dn baseDn = BASE_DNS.get( szDn );
+        if ( baseDn == null )
+        {
+            baseDn = new Dn( szDn );
+            if ( BASE_DNS.size() < MAX_BASE_DNS )
+            {
+                BASE_DNS.putIfAbsent( szDn, baseDn );
+            }
+        }
+        return baseDn;
+    }
+
+
+    /**
+     * Return the dn of the child entry named by one attribute value, without parsing the parent again.
+     *
+     * @param parent dn of the parent entry.
+     * @param type   attribute type of the child's rdn.
+     * @param value  unescaped attribute value of the child's rdn.
+     * @return Dn of the child.
+     * @throws LdapInvalidDnException if the rdn is invalid.
+     */
+    protected static Dn getDn( Dn parent, String type, String value ) throws LdapInvalidDnException
+    {
+        return parent.add( new Rdn( type + "=" + Rdn.escapeValue( value ) ) );
+    }
+
+
     /**
      * Given a contextId return the LDAP dn that includes the suffix.
      *
@@ -580,6 +643,97 @@ public abstract class LdapDataProvider
     }
 
 
+    /**
+     * Perform normal ldap search with a base dn and filter built by the caller, so neither is parsed from a string.
+     *
+     * @param connection is LdapConnection object used for all communication with host.
+     * @param baseDn     contains address of distinguished name to begin ldap search
+     * @param scope      indicates depth of search starting at basedn.  0 (base dn),
+     *                   1 (one level down) or 2 (infinite) are valid values.
+     * @param filter     contains the search criteria, its values are sent as is and need no escaping.
+     * @param attrs      is the requested list of attritubutes to return from directory search.
+     * @param attrsOnly  if true pull back attribute names only.
+     * @param maxEntries specifies the maximum number of entries to return in this search query.
+     * @return result set containing ldap entries returned from directory.
+     * @throws LdapException thrown in the event of error in ldap client or server code.
+     */
+    protected SearchCursor search( LdapConnection connection, Dn baseDn, SearchScope scope, ExprNode filter,
+        String[] attrs, boolean attrsOnly, int maxEntries ) throws LdapException
+    {
+        COUNTERS.incrementSearch();
+
+        SearchRequest searchRequest = new SearchRequestImpl();
+
+        searchRequest.setBase( baseDn );
+        searchRequest.setFilter( filter );
+        searchRequest.setScope( scope );
+        searchRequest.setSizeLimit( maxEntries );
+        searchRequest.setTypesOnly( attrsOnly );
+        searchRequest.addAttributes( attrs );
+
+        return connection.search( searchRequest );
+    }
+
+
+    /**
+     * Perform one page of a simple paged results search (RFC 2696).  The caller drains the returned cursor, then passes
+     * the cursor to {@link #getPagedCookie(SearchCursor)} to obtain the cookie for the next page.  A null or empty cookie
+     * means the search is complete.
+     *
+     * @param connection is LdapConnection object used for all communication with host.
+     * @param baseDn     contains address of distinguished name to begin ldap search
+     * @param scope      indicates depth of search starting at basedn.  0 (base dn),
+     *                   1 (one level down) or 2 (infinite) are valid values.
+     * @param filter     contains the search criteria
+     * @param attrs      is the requested list of attritubutes to return from directory search.
+     * @param pageSize   maximum number of entries the server will return in this page.
+     * @param cookie     contains the server's cookie from previous page, null on first page.
+     * @return result set containing one page of ldap entries returned from directory.
+     * @throws LdapException thrown in the event of error in ldap client or server code.
+     */
+    protected SearchCursor searchPaged( LdapConnection connection, String baseDn, SearchScope scope, String filter,
+        String[] attrs, int pageSize, byte[] cookie ) throws LdapException
+    {
+        COUNTERS.incrementSearch();
+
+        PagedResults pagedControl = new PagedResultsImpl();
+        pagedControl.setSize( pageSize );
+        pagedControl.setCookie( cookie );
+
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( baseDn ) );
+        searchRequest.setFilter( filter );
+        searchRequest.setScope( scope );
+        searchRequest.setTypesOnly( false );
+        searchRequest.addAttributes( attrs );
+        searchRequest.addControl( pagedControl );
+
+        return connection.search( searchRequest );
+    }
+
+
+    /**
+     * Return the paged results cookie sent back by the server on a fully drained {@link #searchPaged} cursor.
+     *
+     * @param cursor contains the drained search results.
+     * @return cookie to pass into next call to {@link #searchPaged}, or null if there are no more pages.
+     */
+    protected byte[] getPagedCookie( SearchCursor cursor )
+    {
+        byte[] cookie = null;
+        SearchResultDone done = cursor.getSearchResultDone();
+        if ( done != null )
+        {
+            Control control = done.getControl( PagedResults.OID );
+            if ( control instanceof PagedResults )
+            {
+                cookie = ( ( PagedResults ) control ).getCookie();
+            }
+        }
+        return ( cookie != null && cookie.length > 0 ) ? cookie : null;
+    }
+
+
     /**
      * This method will search the directory and return at most one record.  If more than one record is found
      * an ldap exception will be thrown.
@@ -681,11 +835,29 @@ public abstract class LdapDataProvider
      */
     protected boolean compareNode( LdapConnection connection, String dn, String userDn,
         Attribute attribute ) throws LdapException, UnsupportedEncodingException
+    {
+        return compareNode( connection, new Dn( dn ), userDn, attribute );
+    }
+
+
+    /**
+     * Perform an ldap compare operation on the entry with the dn already parsed.
+     *
+     * @param connection handle to ldap connection.
+     * @param dn         contains the dn of the entry to compare.
+     * @param userDn     identity of user on who's behalf the request was initiated.
+     * @param attribute  contains the attribute name and value to compare.
+     * @return true if the compare succeeded.
+     * @throws LdapException                in the event system error occurs.
+     * @throws UnsupportedEncodingException for search control errors.
+     */
+    protected boolean compareNode( LdapConnection connection, Dn dn, String userDn,
+        Attribute attribute ) throws LdapException, UnsupportedEncodingException
     {
         COUNTERS.incrementCompare();
 
         CompareRequest compareRequest = new CompareRequestImpl();
-        compareRequest.setName( new Dn( dn ) );
+        compareRequest.setName( dn );
         compareRequest.setAttributeId( attribute.getId() );
         compareRequest.setAssertionValue( attribute.getString() );
 
@@ -1227,7 +1399,9 @@ public abstract class LdapDataProvider
 
 
     /**
-     * Calls the PoolMgr to get an Admin connection to the LDAP server.
+     * Calls the PoolMgr to get an Admin connection to the LDAP server outside of any tenant's connection limit.  Only
+     * for entries that belong to no tenant, such as the configuration and suffix, use
+     * {@link #getAdminConnection(String)} otherwise.
      *
      * @return ldap connection.
      * @throws LdapException If we had an issue getting an LDAP connection
@@ -1251,7 +1425,8 @@ public abstract class LdapDataProvider
 
 
     /**
-     * Calls the PoolMgr to get an User connection to the LDAP server.
+     * Calls the PoolMgr to get an User connection to the LDAP server outside of any tenant's connection limit, use
+     * {@link #getUserConnection(String)} on behalf of a tenant.
      *
      * @return ldap connection.
      * @throws LdapException If we had an issue getting an LDAP connection
@@ -1262,6 +1437,46 @@ public abstract class LdapDataProvider
     }
 
 
+    /**
+     * Open a connection, outside of the pools, for a search that stays open.  The caller must close it.
+     *
+     * @return bound ldap connection with no response timeout.
+     * @throws LdapException If we had an issue getting an LDAP connection
+     */
+    protected LdapConnection openStreamConnection() throws LdapException
+    {
+        return LdapConnectionProvider.getInstance().openStreamConnection();
+    }
+
+
+    /**
+     * Calls the PoolMgr to get an Admin connection to the LDAP server on behalf of a tenant, subject to the tenant's
+     * connection limit.
+     *
+     * @param contextId of the tenant, null or empty for the default tenant.
+     * @return ldap connection.
+     * @throws LdapException If we had an issue getting an LDAP connection
+     */
+    protected LdapConnection getAdminConnection( String contextId ) throws LdapException
+    {
+        return LdapConnectionProvider.getInstance().getAdminConnection( contextId );
+    }
+
+
+    /**
+     * Calls the PoolMgr to get an User connection to the LDAP server on behalf of a tenant, subject to the tenant's
+     * connection limit.
+     *
+     * @param contextId of the tenant, null or empty for the default tenant.
+     * @return ldap connection.
+     * @throws LdapException If we had an issue getting an LDAP connection
+     */
+    protected LdapConnection getUserConnection( String contextId ) throws LdapException
+    {
+        return LdapConnectionProvider.getInstance().getUserConnection( contextId );
+    }
+
+
     /**
      * Return to call reference to dao counter object with running totals for ldap operations add, mod, delete, search, etc.
      *
@@ -1285,37 +1500,30 @@ public abstract class LdapDataProvider
      */
     protected String escapeLDAPSearchFilter( String filter )
     {
-        StringBuilder sb = new StringBuilder();
-        int filterLen = filter.length();
+        return LdapUtil.getInstance().escapeFilterValue( filter );
+    }
 
-        for ( int i = 0; i < filterLen; i++ )
-        {
-            boolean found = false;
-            char curChar = filter.charAt( i );
-            int j = 0;
 
-            for ( ; j < GlobalIds.LDAP_FILTER_SIZE; j++ )
-            {
-                if ( LdapUtil.getInstance().getLdapMetaChars()[j] > curChar )
-                {
-                    break;
-                }
-                else if ( curChar == LdapUtil.getInstance().getLdapMetaChars()[j] )
-                {
-                    sb.append( "\\" );
-                    sb.append( LdapUtil.getInstance().getLdapReplVals()[j] );
-                    found = true;
-                    break;
-                }
-            }
-
-            if ( !found )
+    /**
+     * Build a search filter from a template after checking the length of its values.
+     *
+     * @param template compiled filter.
+     * @param validLen the maximum accepted length of each value.
+     * @param values   of the template's parameters, escaped by the template.
+     * @return the search filter.
+     * @throws LdapException If a value is longer than the maximum value
+     */
+    protected String encodeFilter( FilterTemplate template, int validLen, String... values ) throws LdapException
+    {
+        for ( String value : values )
+        {
+            if ( value != null && value.length() > validLen )
             {
-                sb.append( curChar );
+                String error = "encodeFilter value [" + value + "] invalid length [" + value.length() + "]";
+                throw new LdapException( error );
             }
         }
-
-        return sb.toString();
+        return template.format( values );
     }
 
     /**
@@ -0,0 +1,128 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.ldap;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.pool.PoolableObjectFactory;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Connection factory that limits how fast a pool may open new ldap connections, so a burst of requests against an exhausted
+ * pool does not become a burst of connects and TLS handshakes against the directory server.
+ * <p>
+ * Up to {@code burst} connections may be opened at once, after which callers wait so no more than {@code rate} connections
+ * per second are opened.  All other calls are passed straight through to the wrapped factory.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class RateLimitedConnectionFactory implements PoolableObjectFactory<LdapConnection>
+{
+    private static final String CLS_NM = RateLimitedConnectionFactory.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+
+    private final PoolableObjectFactory<LdapConnection> factory;
+    private final long intervalNanos;
+    private final long burstNanos;
+    // guarded by this, time at which the next connection may be opened:
+    private long nextFree;
+
+
+    /**
+     * @param factory creates the connections.
+     * @param rate    maximum number of connections opened per second, must be greater than 0.
+     * @param burst   number of connections that may be opened without waiting.
+     */
+    RateLimitedConnectionFactory( PoolableObjectFactory<LdapConnection> factory, int rate, int burst )
+    {
+        this.factory = factory;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos( 1 ) / rate;
+        this.burstNanos = intervalNanos * Math.max( 0, burst - 1 );
+        this.nextFree = System.nanoTime() - burstNanos;
+    }
+
+
+    /**
+     * Wait for a permit then open the connection.
+     *
+     * @return new ldap connection.
+     * @throws Exception if the connection cannot be opened.
+     */
+    @Override
+    public LdapConnection makeObject() throws Exception
+    {
+        long waitNanos = reserve();
+        if ( waitNanos > 0 )
+        {
+            LOG.debug( "makeObject waiting [{}] ms for connect permit", TimeUnit.NANOSECONDS.toMillis( waitNanos ) );
+            TimeUnit.NANOSECONDS.sleep( waitNanos );
+        }
+        return factory.makeObject();
+    }
+
+
+    /**
+     * Take the next permit.
+     *
+     * @return nanos the caller must wait before using it.
+     */
+    private synchronized long reserve()
+    {
+        long now = System.nanoTime();
+        // unused permits accumulate up to the burst size:
+        long next = Math.max( nextFree, now - burstNanos );
+        nextFree = next + intervalNanos;
+        return next - now;
+    }
+
+
+    @Override
+    public void destroyObject( LdapConnection connection ) throws Exception
+    {
+        factory.destroyObject( connection );
+    }
+
+
+    @Override
+    public boolean validateObject( LdapConnection connection )
+    {
+        return factory.validateObject( connection );
+    }
+
+
+    @Override
+    public void activateObject( LdapConnection connection ) throws Exception
+    {
+        factory.activateObject( connection );
+    }
+
+
+    @Override
+    public void passivateObject( LdapConnection connection ) throws Exception
+    {
+        factory.passivateObject( connection );
+    }
+}
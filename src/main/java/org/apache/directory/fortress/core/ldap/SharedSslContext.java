@@ -0,0 +1,190 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.ldap;
+
+
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Makes one {@link SSLContext} available to every pooled ldap connection, so reconnects to a server resume the TLS session
+ * cached by an earlier connection instead of doing a full handshake.
+ * <p>
+ * The ldap client creates and initializes a new SSLContext, by protocol name, for each connection it opens.  This class
+ * registers a security provider for the protocol {@link #PROTOCOL} that hands out the shared context instead, and ignores
+ * the per-connection initialization, so it must be created with the trust managers the connections would use.
+ * Connections opt in by setting that name as their ssl protocol.  The provider is registered with the JVM, at the lowest
+ * priority, on the first call to {@link #init} only, so nothing changes for applications that never enable it.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class SharedSslContext
+{
+    private static final String CLS_NM = SharedSslContext.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+
+    /** The protocol name ldap connections use to get the shared context. */
+    static final String PROTOCOL = "FortressSharedTLS";
+    private static final String PROVIDER_NAME = "FortressSharedSsl";
+    private static volatile SSLContext sharedContext;
+
+
+    /**
+     * Private constructor
+     */
+    private SharedSslContext()
+    {
+    }
+
+
+    /**
+     * Create the shared context and register the provider that serves it.  Calling again replaces the shared context used
+     * by connections opened from then on.
+     *
+     * @param protocol      of the underlying context, e.g. {@code TLS}.
+     * @param trustManagers used to validate server certificates, must match those of the connection config.
+     * @param cacheSize     maximum number of cached client sessions, 0 for no limit, negative for the JSSE default.
+     * @param timeout       seconds a cached client session may be resumed, negative for the JSSE default.
+     * @throws NoSuchAlgorithmException if the protocol is not supported.
+     * @throws KeyManagementException if the context cannot be initialized.
+     */
+    static synchronized void init( String protocol, TrustManager[] trustManagers, int cacheSize, int timeout )
+        throws NoSuchAlgorithmException, KeyManagementException
+    {
+        SSLContext context = SSLContext.getInstance( protocol );
+        context.init( null, trustManagers, null );
+        SSLSessionContext sessions = context.getClientSessionContext();
+        if ( cacheSize >= 0 )
+        {
+            sessions.setSessionCacheSize( cacheSize );
+        }
+        if ( timeout >= 0 )
+        {
+            sessions.setSessionTimeout( timeout );
+        }
+        sharedContext = context;
+        if ( Security.getProvider( PROVIDER_NAME ) == null )
+        {
+            Security.addProvider( new SharedProvider() );
+        }
+        LOG.info( "init shared {} context, session cache size [{}] timeout [{}]", protocol,
+            sessions.getSessionCacheSize(), sessions.getSessionTimeout() );
+    }
+
+
+    /**
+     * Security provider whose only service is the shared SSLContext.
+     */
+    private static final class SharedProvider extends Provider
+    {
+        private static final long serialVersionUID = 1L;
+
+
+        SharedProvider()
+        {
+            super( PROVIDER_NAME, 1.0, "Fortress shared SSLContext for pooled ldap connections" );
+            putService( new Service( this, "SSLContext", PROTOCOL, SharedContextSpi.class.getName(), null, null )
+            {
+                @Override
+                public Object newInstance( Object constructorParameter )
+                {
+                    return new SharedContextSpi();
+                }
+            } );
+        }
+    }
+
+
+    /**
+     * Delegates to the shared context, which is already initialized.
+     */
+    private static final class SharedContextSpi extends SSLContextSpi
+    {
+        private final SSLContext delegate = sharedContext;
+
+
+        @Override
+        protected void engineInit( KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom random )
+        {
+            // The shared context was initialized by init, the per connection settings are not used.
+        }
+
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory()
+        {
+            return delegate.getSocketFactory();
+        }
+
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory()
+        {
+            return delegate.getServerSocketFactory();
+        }
+
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine()
+        {
+            return delegate.createSSLEngine();
+        }
+
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine( String host, int port )
+        {
+            // The peer host and port are the key for session resumption:
+            return delegate.createSSLEngine( host, port );
+        }
+
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext()
+        {
+            return delegate.getServerSessionContext();
+        }
+
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext()
+        {
+            return delegate.getClientSessionContext();
+        }
+    }
+}
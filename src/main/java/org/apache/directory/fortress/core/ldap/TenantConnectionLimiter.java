@@ -0,0 +1,210 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.ldap;
+
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Caps the number of pooled ldap connections a single tenant (contextId) may hold at once, so one busy tenant cannot
+ * drain the admin and user pools that every tenant shares.
+ * <p>
+ * Each tenant gets a fair semaphore of {@code ldap.tenant.max.conn} permits, which may be overridden per tenant with
+ * {@code ldap.tenant.max.conn.<contextId>}.  A caller over its tenant's limit waits up to {@code ldap.tenant.max.wait}
+ * milliseconds, default 10000, in arrival order before the borrow fails.  The permit is returned when the connection is
+ * released to its pool.
+ * <p>
+ * Every DAO borrows on behalf of the tenant of the entity it reads or writes.  Only the configuration and suffix entries,
+ * which belong to no tenant, are read outside the limits, as are the log and stream connections, which have pools of
+ * their own.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class TenantConnectionLimiter
+{
+    private static final String CLS_NM = TenantConnectionLimiter.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String TENANT_MAX_CONN = "ldap.tenant.max.conn";
+    private static final String TENANT_MAX_WAIT = "ldap.tenant.max.wait";
+
+    private final int defaultMax;
+    private final long maxWaitMillis;
+    private final ConcurrentMap<String, Permits> tenants = new ConcurrentHashMap<>();
+    // permit held by each borrowed connection:
+    private final ConcurrentMap<LdapConnection, Semaphore> borrowed = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param defaultMax    number of connections each tenant may hold, unless overridden.
+     * @param maxWaitMillis how long a caller waits for its tenant's permit.
+     */
+    private TenantConnectionLimiter( int defaultMax, long maxWaitMillis )
+    {
+        this.defaultMax = defaultMax;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+
+    /**
+     * Create the limiter if {@code ldap.tenant.max.conn} is set.
+     *
+     * @return the limiter or null if tenants are not limited.
+     */
+    static TenantConnectionLimiter create()
+    {
+        int max = Config.getInstance().getInt( TENANT_MAX_CONN, 0 );
+        if ( max <= 0 )
+        {
+            return null;
+        }
+        long wait = Config.getInstance().getInt( TENANT_MAX_WAIT, 10000 );
+        LOG.info( "LDAP POOL: tenant max connections=[{}], max wait=[{}] ms", max, wait );
+        return new TenantConnectionLimiter( max, wait );
+    }
+
+
+    /**
+     * Wait for a permit for the tenant.
+     *
+     * @param contextId of the tenant, null or empty for the default tenant.
+     * @return the permit, to be passed to {@link #track} or released by the caller if no connection is borrowed.
+     * @throws LdapException if the tenant remains at its limit for the maximum wait or the thread is interrupted.
+     */
+    Semaphore acquire( String contextId ) throws LdapException
+    {
+        Permits permits = getPermits( contextId );
+        try
+        {
+            if ( !permits.tryAcquire( maxWaitMillis, TimeUnit.MILLISECONDS ) )
+            {
+                String error = "acquire tenant [" + contextId + "] timed out after [" + maxWaitMillis
+                    + "] ms holding [" + permits.max + "] connections";
+                LOG.warn( error );
+                throw new LdapException( error );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new LdapException( "acquire tenant [" + contextId + "] interrupted", e );
+        }
+        return permits;
+    }
+
+
+    /**
+     * Record that the connection holds the permit, so it is returned when the connection is released.
+     *
+     * @param connection borrowed from a pool.
+     * @param permit     returned by {@link #acquire}.
+     */
+    void track( LdapConnection connection, Semaphore permit )
+    {
+        borrowed.put( connection, permit );
+    }
+
+
+    /**
+     * Return the permit held by the connection, if any.  Connections borrowed without a tenant hold none.
+     *
+     * @param connection being released to its pool, may be null.
+     */
+    void release( LdapConnection connection )
+    {
+        if ( connection != null )
+        {
+            Semaphore permit = borrowed.remove( connection );
+            if ( permit != null )
+            {
+                permit.release();
+            }
+        }
+    }
+
+
+    /**
+     * Return the number of connections each tenant is holding.
+     *
+     * @return connections in use by contextId.
+     */
+    Map<String, Integer> getInUse()
+    {
+        Map<String, Integer> inUse = new TreeMap<>();
+        for ( Map.Entry<String, Permits> entry : tenants.entrySet() )
+        {
+            inUse.put( entry.getKey(), entry.getValue().max - entry.getValue().availablePermits() );
+        }
+        return inUse;
+    }
+
+
+    private Permits getPermits( String contextId )
+    {
+        if ( StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) )
+        {
+            contextId = GlobalIds.HOME;
+        }
+        Permits permits = tenants.get( contextId );
+        if ( permits == null )
+        {
+            Permits newPermits = new Permits( Config.getInstance().getInt( TENANT_MAX_CONN + "." + contextId,
+                defaultMax ) );
+            permits = tenants.putIfAbsent( contextId, newPermits );
+            if ( permits == null )
+            {
+                permits = newPermits;
+            }
+        }
+        return permits;
+    }
+
+
+    /**
+     * Fair semaphore that remembers its number of permits.
+     */
+    private static final class Permits extends Semaphore
+    {
+        private static final long serialVersionUID = 1L;
+        private final int max;
+
+
+        Permits( int max )
+        {
+            super( max, true );
+            this.max = max;
+        }
+    }
+}
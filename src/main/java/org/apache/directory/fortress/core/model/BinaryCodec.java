@@ -0,0 +1,1217 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.model;
+
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Compact binary encoding of the model entities exchanged with the Fortress Rest server, used in place of JAXB xml when
+ * both sides support the {@link #CONTENT_TYPE} media type.
+ * <p>
+ * The encoding covers {@link Session}, {@link User}, {@link Group}, {@link UserRole}, {@link UserAdminRole},
+ * {@link Permission}, {@link RoleConstraint} and {@link Props}, and the {@link FortRequest} and {@link FortResponse}
+ * envelopes that carry them.  It holds the same fields as the xml mapping, so a message decodes to what JAXB would have
+ * produced.  Strings are UTF-8 with a varint length, numbers are zigzag varints and collections carry their size, so
+ * typical sessions and permissions encode to a fraction of their xml size and decode without a parser.  Use
+ * {@link #canEncode(FortRequest)} or {@link #canEncode(FortResponse)} first and fall back to xml for the other entity types.
+ * <p>
+ * Every message starts with a marker byte and a format version.  Decoding a message with an unknown version fails so
+ * the caller can fall back to xml.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class BinaryCodec
+{
+    /** Media type of the binary encoding. */
+    public static final String CONTENT_TYPE = "application/x-fortress-binary";
+
+    // not a valid first byte of a UTF-8 xml document:
+    private static final int MARKER = 0xFB;
+    private static final int VERSION = 2;
+
+    private static final int KIND_REQUEST = 1;
+    private static final int KIND_RESPONSE = 2;
+    private static final int KIND_ENTITY = 3;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_SESSION = 1;
+    private static final int TAG_USER = 2;
+    private static final int TAG_GROUP = 3;
+    private static final int TAG_USER_ROLE = 4;
+    private static final int TAG_USER_ADMIN_ROLE = 5;
+    private static final int TAG_PERMISSION = 6;
+    private static final int TAG_ROLE_CONSTRAINT = 7;
+    private static final int TAG_PROPS = 8;
+
+
+    /**
+     * Private constructor
+     */
+    private BinaryCodec()
+    {
+    }
+
+
+    /**
+     * Return true if the data starts with the marker of this encoding.
+     *
+     * @param data to check, may be null.
+     * @return true if the data was written by this class.
+     */
+    public static boolean isEncoded( byte[] data )
+    {
+        return data != null && data.length > 1 && ( data[0] & 0xFF ) == MARKER;
+    }
+
+
+    /**
+     * Return true if every entity carried by the request has a binary encoding.
+     *
+     * @param request to check.
+     * @return true if {@link #encode(FortRequest)} may be used.
+     */
+    public static boolean canEncode( FortRequest request )
+    {
+        return isSupported( request.getEntity() ) && isSupported( request.getEntity2() )
+            && isSupported( request.getSession() );
+    }
+
+
+    /**
+     * Return true if every entity carried by the response has a binary encoding.
+     *
+     * @param response to check.
+     * @return true if {@link #encode(FortResponse)} may be used.
+     */
+    public static boolean canEncode( FortResponse response )
+    {
+        if ( !isSupported( response.getEntity() ) || !isSupported( response.getSession() ) )
+        {
+            return false;
+        }
+        List<FortEntity> entities = response.getEntities();
+        if ( entities != null )
+        {
+            for ( FortEntity entity : entities )
+            {
+                if ( !isSupported( entity ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Return true if the entity has a binary encoding.  Subclasses of the supported entities are not supported because
+     * their extra fields would be lost.
+     *
+     * @param entity to check, may be null.
+     * @return true if {@link #encode(FortEntity)} may be used.
+     */
+    public static boolean isSupported( FortEntity entity )
+    {
+        if ( entity == null )
+        {
+            return true;
+        }
+        int tag = getTag( entity );
+        if ( tag == TAG_SESSION )
+        {
+            Session session = ( Session ) entity;
+            return ( session.getUser() == null || session.getUser().getClass() == User.class )
+                && ( session.getGroup() == null || session.getGroup().getClass() == Group.class );
+        }
+        return tag != TAG_NULL;
+    }
+
+
+    /**
+     * Encode a request.
+     *
+     * @param request to encode, must pass {@link #canEncode(FortRequest)}.
+     * @return the encoded request.
+     * @throws IllegalArgumentException if the request carries an entity that has no binary encoding.
+     */
+    public static byte[] encode( FortRequest request )
+    {
+        Output out = newOutput( KIND_REQUEST );
+        writeEntity( out, request.getEntity() );
+        writeEntity( out, request.getEntity2() );
+        writeEntity( out, request.getSession() );
+        out.writeString( request.getValue() );
+        out.writeInteger( request.getLimit() );
+        out.writeString( request.getContextId() );
+        out.writeBooleanObject( request.getIsFlag() );
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Encode a response.
+     *
+     * @param response to encode, must pass {@link #canEncode(FortResponse)}.
+     * @return the encoded response.
+     * @throws IllegalArgumentException if the response carries an entity that has no binary encoding.
+     */
+    public static byte[] encode( FortResponse response )
+    {
+        Output out = newOutput( KIND_RESPONSE );
+        out.writeInt( response.getErrorCode() );
+        out.writeBooleanObject( response.getAuthorized() );
+        out.writeString( response.getErrorMessage() );
+        writeEntity( out, response.getEntity() );
+        List<FortEntity> entities = response.getEntities();
+        out.writeSize( entities );
+        if ( entities != null )
+        {
+            for ( FortEntity entity : entities )
+            {
+                writeEntity( out, entity );
+            }
+        }
+        out.writeStrings( response.getValues() );
+        out.writeStrings( response.getValueSet() );
+        writeEntity( out, response.getSession() );
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Encode a single entity, e.g. for storage outside of the heap.
+     *
+     * @param entity to encode, must pass {@link #isSupported(FortEntity)}.
+     * @return the encoded entity.
+     * @throws IllegalArgumentException if the entity has no binary encoding.
+     */
+    public static byte[] encode( FortEntity entity )
+    {
+        Output out = newOutput( KIND_ENTITY );
+        writeEntity( out, entity );
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Decode a request written by {@link #encode(FortRequest)}.
+     *
+     * @param data contains the encoded request.
+     * @return the request.
+     * @throws IllegalArgumentException if the data is not a valid encoded request.
+     */
+    public static FortRequest decodeRequest( byte[] data )
+    {
+        Input in = newInput( data, KIND_REQUEST );
+        FortRequest request = new FortRequest();
+        request.setEntity( readEntity( in ) );
+        request.setEntity2( readEntity( in ) );
+        request.setSession( ( Session ) readEntity( in ) );
+        request.setValue( in.readString() );
+        request.setLimit( in.readInteger() );
+        request.setContextId( in.readString() );
+        request.setIsFlag( in.readBooleanObject() );
+        return request;
+    }
+
+
+    /**
+     * Decode a response written by {@link #encode(FortResponse)}.
+     *
+     * @param data contains the encoded response.
+     * @return the response.
+     * @throws IllegalArgumentException if the data is not a valid encoded response.
+     */
+    public static FortResponse decodeResponse( byte[] data )
+    {
+        Input in = newInput( data, KIND_RESPONSE );
+        FortResponse response = new FortResponse();
+        response.setErrorCode( in.readInt() );
+        response.setAuthorized( in.readBooleanObject() );
+        response.setErrorMessage( in.readString() );
+        response.setEntity( readEntity( in ) );
+        int size = in.readSize();
+        if ( size >= 0 )
+        {
+            List<FortEntity> entities = new ArrayList<>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                entities.add( readEntity( in ) );
+            }
+            response.setEntities( entities );
+        }
+        response.setValues( in.readStringList() );
+        response.setValueSet( in.readStringSet( new HashSet<String>() ) );
+        response.setSession( ( Session ) readEntity( in ) );
+        return response;
+    }
+
+
+    /**
+     * Decode an entity written by {@link #encode(FortEntity)}.
+     *
+     * @param data contains the encoded entity.
+     * @return the entity.
+     * @throws IllegalArgumentException if the data is not a valid encoded entity.
+     */
+    public static FortEntity decodeEntity( byte[] data )
+    {
+        return readEntity( newInput( data, KIND_ENTITY ) );
+    }
+
+
+    private static Output newOutput( int kind )
+    {
+        Output out = new Output();
+        out.writeByte( MARKER );
+        out.writeByte( VERSION );
+        out.writeByte( kind );
+        return out;
+    }
+
+
+    private static Input newInput( byte[] data, int kind )
+    {
+        if ( !isEncoded( data ) )
+        {
+            throw new IllegalArgumentException( "data is not binary encoded" );
+        }
+        Input in = new Input( data );
+        in.readByte();
+        int version = in.readByte();
+        if ( version != VERSION )
+        {
+            throw new IllegalArgumentException( "unsupported binary version [" + version + "]" );
+        }
+        int found = in.readByte();
+        if ( found != kind )
+        {
+            throw new IllegalArgumentException( "unexpected binary message kind [" + found + "]" );
+        }
+        return in;
+    }
+
+
+    private static int getTag( FortEntity entity )
+    {
+        Class<?> type = entity.getClass();
+        if ( type == Session.class )
+        {
+            return TAG_SESSION;
+        }
+        else if ( type == User.class )
+        {
+            return TAG_USER;
+        }
+        else if ( type == Permission.class )
+        {
+            return TAG_PERMISSION;
+        }
+        else if ( type == UserRole.class )
+        {
+            return TAG_USER_ROLE;
+        }
+        else if ( type == UserAdminRole.class )
+        {
+            return TAG_USER_ADMIN_ROLE;
+        }
+        else if ( type == Group.class )
+        {
+            return TAG_GROUP;
+        }
+        else if ( type == RoleConstraint.class )
+        {
+            return TAG_ROLE_CONSTRAINT;
+        }
+        else if ( type == Props.class )
+        {
+            return TAG_PROPS;
+        }
+        return TAG_NULL;
+    }
+
+
+    private static void writeEntity( Output out, FortEntity entity )
+    {
+        if ( entity == null )
+        {
+            out.writeByte( TAG_NULL );
+            return;
+        }
+        int tag = getTag( entity );
+        if ( tag == TAG_NULL )
+        {
+            throw new IllegalArgumentException( "no binary encoding for " + entity.getClass().getName() );
+        }
+        out.writeByte( tag );
+        writeBase( out, entity );
+        switch ( tag )
+        {
+            case TAG_SESSION:
+                writeSession( out, ( Session ) entity );
+                break;
+
+            case TAG_USER:
+                writeUser( out, ( User ) entity );
+                break;
+
+            case TAG_GROUP:
+                writeGroup( out, ( Group ) entity );
+                break;
+
+            case TAG_USER_ROLE:
+                writeUserRole( out, ( UserRole ) entity );
+                break;
+
+            case TAG_USER_ADMIN_ROLE:
+                writeUserAdminRole( out, ( UserAdminRole ) entity );
+                break;
+
+            case TAG_PERMISSION:
+                writePermission( out, ( Permission ) entity );
+                break;
+
+            case TAG_ROLE_CONSTRAINT:
+                writeRoleConstraint( out, ( RoleConstraint ) entity );
+                break;
+
+            default:
+                writePropsEntries( out, ( Props ) entity );
+                break;
+        }
+    }
+
+
+    private static FortEntity readEntity( Input in )
+    {
+        int tag = in.readByte();
+        FortEntity entity;
+        switch ( tag )
+        {
+            case TAG_NULL:
+                return null;
+
+            case TAG_SESSION:
+                // read the base fields first, the session id is not known until the session fields are read:
+                String modCode = in.readString();
+                String modId = in.readString();
+                long sequenceId = in.readLong();
+                entity = readSession( in );
+                entity.modCode = modCode;
+                entity.modId = modId;
+                entity.sequenceId = sequenceId;
+                return entity;
+
+            case TAG_USER:
+                entity = new User();
+                readBase( in, entity );
+                readUser( in, ( User ) entity );
+                return entity;
+
+            case TAG_GROUP:
+                entity = new Group();
+                readBase( in, entity );
+                readGroup( in, ( Group ) entity );
+                return entity;
+
+            case TAG_USER_ROLE:
+                entity = new UserRole();
+                readBase( in, entity );
+                readUserRole( in, ( UserRole ) entity );
+                return entity;
+
+            case TAG_USER_ADMIN_ROLE:
+                entity = new UserAdminRole();
+                readBase( in, entity );
+                readUserAdminRole( in, ( UserAdminRole ) entity );
+                return entity;
+
+            case TAG_PERMISSION:
+                entity = new Permission();
+                readBase( in, entity );
+                readPermission( in, ( Permission ) entity );
+                return entity;
+
+            case TAG_ROLE_CONSTRAINT:
+                String rcModCode = in.readString();
+                String rcModId = in.readString();
+                long rcSequenceId = in.readLong();
+                entity = readRoleConstraint( in );
+                entity.modCode = rcModCode;
+                entity.modId = rcModId;
+                entity.sequenceId = rcSequenceId;
+                return entity;
+
+            case TAG_PROPS:
+                entity = new Props();
+                readBase( in, entity );
+                readPropsEntries( in, ( Props ) entity );
+                return entity;
+
+            default:
+                throw new IllegalArgumentException( "unknown binary entity tag [" + tag + "]" );
+        }
+    }
+
+
+    private static void writeBase( Output out, FortEntity entity )
+    {
+        out.writeString( entity.modCode );
+        out.writeString( entity.modId );
+        out.writeLong( entity.sequenceId );
+    }
+
+
+    private static void readBase( Input in, FortEntity entity )
+    {
+        entity.modCode = in.readString();
+        entity.modId = in.readString();
+        entity.sequenceId = in.readLong();
+    }
+
+
+    private static void writeSession( Output out, Session session )
+    {
+        User user = session.getUser();
+        out.writeBoolean( user != null );
+        if ( user != null )
+        {
+            writeBase( out, user );
+            writeUser( out, user );
+        }
+        Group group = session.getGroup();
+        out.writeBoolean( group != null );
+        if ( group != null )
+        {
+            writeBase( out, group );
+            writeGroup( out, group );
+        }
+        out.writeBoolean( session.isAuthenticated() );
+        out.writeBoolean( session.isGroupSession() );
+        out.writeString( session.getSessionId() );
+        out.writeLong( session.getLastAccess() );
+        out.writeInt( session.getTimeout() );
+        out.writeInt( session.getErrorId() );
+        out.writeInt( session.getExpirationSeconds() );
+        out.writeInt( session.getGraceLogins() );
+        out.writeString( session.getMsg() );
+        List<Warning> warnings = session.getWarnings();
+        out.writeSize( warnings );
+        if ( warnings != null )
+        {
+            for ( Warning warning : warnings )
+            {
+                out.writeInt( warning.getId() );
+                out.writeString( warning.getMsg() );
+                out.writeString( warning.getName() );
+                out.writeString( warning.getType() == null ? null : warning.getType().name() );
+            }
+        }
+    }
+
+
+    private static Session readSession( Input in )
+    {
+        User user = null;
+        if ( in.readBoolean() )
+        {
+            user = new User();
+            readBase( in, user );
+            readUser( in, user );
+        }
+        Group group = null;
+        if ( in.readBoolean() )
+        {
+            group = new Group();
+            readBase( in, group );
+            readGroup( in, group );
+        }
+        boolean authenticated = in.readBoolean();
+        boolean groupSession = in.readBoolean();
+        // this constructor does not generate a new session id:
+        Session session = new Session( user, in.readString() );
+        session.setGroup( group );
+        session.setAuthenticated( authenticated );
+        session.setGroupSession( groupSession );
+        session.setLastAccess( in.readLong() );
+        session.setTimeout( in.readInt() );
+        session.setErrorId( in.readInt() );
+        session.setExpirationSeconds( in.readInt() );
+        session.setGraceLogins( in.readInt() );
+        session.setMsg( in.readString() );
+        int size = in.readSize();
+        if ( size >= 0 )
+        {
+            List<Warning> warnings = new ArrayList<>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                Warning warning = new Warning();
+                warning.setId( in.readInt() );
+                warning.setMsg( in.readString() );
+                warning.setName( in.readString() );
+                String type = in.readString();
+                warning.setType( type == null ? null : Warning.Type.valueOf( type ) );
+                warnings.add( warning );
+            }
+            session.setWarnings( warnings );
+        }
+        return session;
+    }
+
+
+    private static void writeUser( Output out, User user )
+    {
+        out.writeString( user.getUserId() );
+        out.writeString( user.getPassword() );
+        out.writeString( user.getNewPassword() );
+        out.writeString( user.getInternalId() );
+        List<UserRole> roles = user.getRoles();
+        out.writeSize( roles );
+        for ( UserRole role : roles )
+        {
+            writeBase( out, role );
+            writeUserRole( out, role );
+        }
+        List<UserAdminRole> adminRoles = user.getAdminRoles();
+        out.writeSize( adminRoles );
+        for ( UserAdminRole adminRole : adminRoles )
+        {
+            writeBase( out, adminRole );
+            writeUserAdminRole( out, adminRole );
+        }
+        out.writeString( user.getPwPolicy() );
+        out.writeString( user.getCn() );
+        out.writeString( user.getSn() );
+        out.writeString( user.getDn() );
+        out.writeString( user.getOu() );
+        out.writeString( user.getDisplayName() );
+        out.writeString( user.getDescription() );
+        out.writeString( user.getBeginTime() );
+        out.writeString( user.getEndTime() );
+        out.writeString( user.getBeginDate() );
+        out.writeString( user.getEndDate() );
+        out.writeString( user.getBeginLockDate() );
+        out.writeString( user.getEndLockDate() );
+        out.writeString( user.getDayMask() );
+        out.writeString( user.getName() );
+        out.writeString( user.getEmployeeType() );
+        out.writeString( user.getTitle() );
+        out.writeInteger( user.getTimeout() );
+        out.writeBoolean( user.isReset() );
+        out.writeBoolean( user.isLocked() );
+        out.writeInteger( user.getGraceLogins() );
+        out.writeBooleanObject( user.isSystem() );
+        writeProps( out, user.getProps() );
+        Address address = user.getAddress();
+        out.writeStrings( address.getAddresses() );
+        out.writeString( address.getCity() );
+        out.writeString( address.getState() );
+        out.writeString( address.getCountry() );
+        out.writeString( address.getPostalCode() );
+        out.writeString( address.getPostOfficeBox() );
+        out.writeString( address.getBuilding() );
+        out.writeString( address.getDepartmentNumber() );
+        out.writeString( address.getRoomNumber() );
+        out.writeStrings( user.getPhones() );
+        out.writeStrings( user.getMobiles() );
+        out.writeStrings( user.getEmails() );
+        out.writeString( user.getUidNumber() );
+        out.writeString( user.getGidNumber() );
+        out.writeString( user.getHomeDirectory() );
+        out.writeString( user.getLoginShell() );
+        out.writeString( user.getGecos() );
+    }
+
+
+    private static void readUser( Input in, User user )
+    {
+        user.setUserId( in.readString() );
+        user.setPassword( in.readString() );
+        user.setNewPassword( in.readString() );
+        user.setInternalId( in.readString() );
+        int size = in.readSize();
+        List<UserRole> roles = new ArrayList<>( Math.max( size, 0 ) );
+        for ( int i = 0; i < size; i++ )
+        {
+            UserRole role = new UserRole();
+            readBase( in, role );
+            readUserRole( in, role );
+            roles.add( role );
+        }
+        user.setRoles( roles );
+        size = in.readSize();
+        List<UserAdminRole> adminRoles = new ArrayList<>( Math.max( size, 0 ) );
+        for ( int i = 0; i < size; i++ )
+        {
+            UserAdminRole adminRole = new UserAdminRole();
+            readBase( in, adminRole );
+            readUserAdminRole( in, adminRole );
+            adminRoles.add( adminRole );
+        }
+        user.setAdminRoles( adminRoles );
+        user.setPwPolicy( in.readString() );
+        user.setCn( in.readString() );
+        user.setSn( in.readString() );
+        user.setDn( in.readString() );
+        user.setOu( in.readString() );
+        user.setDisplayName( in.readString() );
+        user.setDescription( in.readString() );
+        user.setBeginTime( in.readString() );
+        user.setEndTime( in.readString() );
+        user.setBeginDate( in.readString() );
+        user.setEndDate( in.readString() );
+        user.setBeginLockDate( in.readString() );
+        user.setEndLockDate( in.readString() );
+        user.setDayMask( in.readString() );
+        user.setName( in.readString() );
+        user.setEmployeeType( in.readString() );
+        user.setTitle( in.readString() );
+        user.setTimeout( in.readInteger() );
+        user.setReset( in.readBoolean() );
+        user.setLocked( in.readBoolean() );
+        user.setGraceLogins( in.readInteger() );
+        user.setSystem( in.readBooleanObject() );
+        user.setProps( readProps( in ) );
+        Address address = new Address();
+        address.setAddresses( in.readStringList() );
+        address.setCity( in.readString() );
+        address.setState( in.readString() );
+        address.setCountry( in.readString() );
+        address.setPostalCode( in.readString() );
+        address.setPostOfficeBox( in.readString() );
+        address.setBuilding( in.readString() );
+        address.setDepartmentNumber( in.readString() );
+        address.setRoomNumber( in.readString() );
+        user.setAddress( address );
+        user.setPhones( in.readStringList() );
+        user.setMobiles( in.readStringList() );
+        user.setEmails( in.readStringList() );
+        user.setUidNumber( in.readString() );
+        user.setGidNumber( in.readString() );
+        user.setHomeDirectory( in.readString() );
+        user.setLoginShell( in.readString() );
+        user.setGecos( in.readString() );
+    }
+
+
+    private static void writeGroup( Output out, Group group )
+    {
+        out.writeString( group.getName() );
+        out.writeString( group.getDescription() );
+        out.writeString( group.getProtocol() );
+        out.writeStrings( group.getMembers() );
+        writeProps( out, group.getProps() );
+        out.writeBoolean( group.isMemberDn() );
+        out.writeString( group.getType() == null ? null : group.getType().name() );
+        List<UserRole> roles = group.getRoles();
+        out.writeSize( roles );
+        if ( roles != null )
+        {
+            for ( UserRole role : roles )
+            {
+                writeBase( out, role );
+                writeUserRole( out, role );
+            }
+        }
+    }
+
+
+    private static void readGroup( Input in, Group group )
+    {
+        group.setName( in.readString() );
+        group.setDescription( in.readString() );
+        group.setProtocol( in.readString() );
+        group.setMembers( in.readStringList() );
+        group.setProps( readProps( in ) );
+        group.setMemberDn( in.readBoolean() );
+        String type = in.readString();
+        group.setType( type == null ? null : Group.Type.valueOf( type ) );
+        int size = in.readSize();
+        if ( size >= 0 )
+        {
+            List<UserRole> roles = new ArrayList<>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                UserRole role = new UserRole();
+                readBase( in, role );
+                readUserRole( in, role );
+                roles.add( role );
+            }
+            group.setRoles( roles );
+        }
+    }
+
+
+    private static void writeUserRole( Output out, UserRole role )
+    {
+        out.writeString( role.userId );
+        out.writeString( role.name );
+        out.writeBoolean( role.isGroupRole );
+        out.writeInteger( role.getTimeout() );
+        out.writeString( role.getBeginTime() );
+        out.writeString( role.getEndTime() );
+        out.writeString( role.getBeginDate() );
+        out.writeString( role.getEndDate() );
+        out.writeString( role.getBeginLockDate() );
+        out.writeString( role.getEndLockDate() );
+        out.writeString( role.getDayMask() );
+        out.writeStrings( role.getParents() );
+        List<RoleConstraint> constraints = role.getRoleConstraints();
+        out.writeSize( constraints );
+        for ( RoleConstraint constraint : constraints )
+        {
+            writeBase( out, constraint );
+            writeRoleConstraint( out, constraint );
+        }
+    }
+
+
+    private static void readUserRole( Input in, UserRole role )
+    {
+        role.userId = in.readString();
+        role.name = in.readString();
+        role.isGroupRole = in.readBoolean();
+        role.setTimeout( in.readInteger() );
+        role.setBeginTime( in.readString() );
+        role.setEndTime( in.readString() );
+        role.setBeginDate( in.readString() );
+        role.setEndDate( in.readString() );
+        role.setBeginLockDate( in.readString() );
+        role.setEndLockDate( in.readString() );
+        role.setDayMask( in.readString() );
+        role.setParents( in.readStringSet( new HashSet<String>() ) );
+        int size = in.readSize();
+        if ( size > 0 )
+        {
+            List<RoleConstraint> constraints = new ArrayList<>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                String modCode = in.readString();
+                String modId = in.readString();
+                long sequenceId = in.readLong();
+                RoleConstraint constraint = readRoleConstraint( in );
+                constraint.modCode = modCode;
+                constraint.modId = modId;
+                constraint.sequenceId = sequenceId;
+                constraints.add( constraint );
+            }
+            role.setRoleConstraints( constraints );
+        }
+    }
+
+
+    private static void writeUserAdminRole( Output out, UserAdminRole role )
+    {
+        writeUserRole( out, role );
+        out.writeStrings( role.getOsPSet() );
+        out.writeStrings( role.getOsUSet() );
+        out.writeString( role.getBeginRange() );
+        out.writeString( role.getEndRange() );
+        out.writeBoolean( role.isBeginInclusive() );
+        out.writeBoolean( role.isEndInclusive() );
+    }
+
+
+    private static void readUserAdminRole( Input in, UserAdminRole role )
+    {
+        readUserRole( in, role );
+        role.setOsPSet( in.readStringSet( new TreeSet<String>( String.CASE_INSENSITIVE_ORDER ) ) );
+        role.setOsUSet( in.readStringSet( new TreeSet<String>( String.CASE_INSENSITIVE_ORDER ) ) );
+        role.setBeginRange( in.readString() );
+        role.setEndRange( in.readString() );
+        role.setBeginInclusive( in.readBoolean() );
+        role.setEndInclusive( in.readBoolean() );
+    }
+
+
+    private static void writePermission( Output out, Permission perm )
+    {
+        out.writeBoolean( perm.isAdmin() );
+        out.writeString( perm.getInternalId() );
+        out.writeString( perm.getOpName() );
+        out.writeString( perm.getObjName() );
+        out.writeString( perm.getObjId() );
+        out.writeString( perm.getAbstractName() );
+        out.writeString( perm.getType() );
+        out.writeString( perm.getDn() );
+        out.writeString( perm.getDescription() );
+        writeProps( out, perm.getProps() );
+        out.writeStrings( perm.getRoles() );
+        out.writeStrings( perm.getUsers() );
+        out.writeStrings( perm.getPaSets() );
+    }
+
+
+    private static void readPermission( Input in, Permission perm )
+    {
+        perm.setAdmin( in.readBoolean() );
+        perm.setInternalId( in.readString() );
+        perm.setOpName( in.readString() );
+        perm.setObjName( in.readString() );
+        perm.setObjId( in.readString() );
+        perm.setAbstractName( in.readString() );
+        perm.setType( in.readString() );
+        perm.setDn( in.readString() );
+        perm.setDescription( in.readString() );
+        perm.setProps( readProps( in ) );
+        perm.setRoles( in.readStringSet( new TreeSet<String>( String.CASE_INSENSITIVE_ORDER ) ) );
+        perm.setUsers( in.readStringSet( new TreeSet<String>( String.CASE_INSENSITIVE_ORDER ) ) );
+        perm.setPaSets( in.readStringSet( new HashSet<String>() ) );
+    }
+
+
+    private static void writeRoleConstraint( Output out, RoleConstraint constraint )
+    {
+        out.writeString( constraint.getId() );
+        out.writeString( constraint.getType() == null ? null : constraint.getType().name() );
+        out.writeString( constraint.getValue() );
+        out.writeString( constraint.getPaSetName() );
+    }
+
+
+    private static RoleConstraint readRoleConstraint( Input in )
+    {
+        String id = in.readString();
+        String type = in.readString();
+        String value = in.readString();
+        String paSetName = in.readString();
+        return new RoleConstraint( id, value, type == null ? null : RoleConstraint.RCType.valueOf( type ),
+            paSetName );
+    }
+
+
+    private static void writeProps( Output out, Props props )
+    {
+        out.writeBoolean( props != null );
+        if ( props != null )
+        {
+            writePropsEntries( out, props );
+        }
+    }
+
+
+    private static Props readProps( Input in )
+    {
+        if ( !in.readBoolean() )
+        {
+            return null;
+        }
+        Props props = new Props();
+        readPropsEntries( in, props );
+        return props;
+    }
+
+
+    private static void writePropsEntries( Output out, Props props )
+    {
+        List<Props.Entry> entries = props.getEntry();
+        out.writeSize( entries );
+        for ( Props.Entry entry : entries )
+        {
+            out.writeString( entry.getKey() );
+            out.writeString( entry.getValue() );
+        }
+    }
+
+
+    private static void readPropsEntries( Input in, Props props )
+    {
+        int size = in.readSize();
+        List<Props.Entry> entries = props.getEntry();
+        for ( int i = 0; i < size; i++ )
+        {
+            Props.Entry entry = new Props.Entry();
+            entry.setKey( in.readString() );
+            entry.setValue( in.readString() );
+            entries.add( entry );
+        }
+    }
+
+
+    /**
+     * Growable buffer the message is written to.
+     */
+    private static final class Output
+    {
+        private byte[] buf = new byte[256];
+        private int pos;
+
+
+        private void ensure( int length )
+        {
+            if ( pos + length > buf.length )
+            {
+                byte[] larger = new byte[Math.max( buf.length << 1, pos + length )];
+                System.arraycopy( buf, 0, larger, 0, pos );
+                buf = larger;
+            }
+        }
+
+
+        void writeByte( int value )
+        {
+            ensure( 1 );
+            buf[pos++] = ( byte ) value;
+        }
+
+
+        void writeBoolean( boolean value )
+        {
+            writeByte( value ? 1 : 0 );
+        }
+
+
+        void writeBooleanObject( Boolean value )
+        {
+            writeByte( value == null ? 0 : ( value ? 2 : 1 ) );
+        }
+
+
+        void writeVarLong( long value )
+        {
+            ensure( 10 );
+            while ( ( value & ~0x7FL ) != 0 )
+            {
+                buf[pos++] = ( byte ) ( ( value & 0x7F ) | 0x80 );
+                value >>>= 7;
+            }
+            buf[pos++] = ( byte ) value;
+        }
+
+
+        void writeInt( int value )
+        {
+            writeVarLong( ( ( value << 1 ) ^ ( value >> 31 ) ) & 0xFFFFFFFFL );
+        }
+
+
+        void writeLong( long value )
+        {
+            writeVarLong( ( value << 1 ) ^ ( value >> 63 ) );
+        }
+
+
+        void writeInteger( Integer value )
+        {
+            writeBoolean( value != null );
+            if ( value != null )
+            {
+                writeInt( value );
+            }
+        }
+
+
+        /**
+         * Size of a collection, 0 for null so it can be told apart from an empty one.
+         */
+        void writeSize( Collection<?> values )
+        {
+            writeVarLong( values == null ? 0 : values.size() + 1L );
+        }
+
+
+        void writeString( String value )
+        {
+            if ( value == null )
+            {
+                writeVarLong( 0 );
+                return;
+            }
+            byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+            writeVarLong( bytes.length + 1L );
+            ensure( bytes.length );
+            System.arraycopy( bytes, 0, buf, pos, bytes.length );
+            pos += bytes.length;
+        }
+
+
+        void writeStrings( Collection<String> values )
+        {
+            writeSize( values );
+            if ( values != null )
+            {
+                for ( String value : values )
+                {
+                    writeString( value );
+                }
+            }
+        }
+
+
+        byte[] toByteArray()
+        {
+            byte[] result = new byte[pos];
+            System.arraycopy( buf, 0, result, 0, pos );
+            return result;
+        }
+    }
+
+
+    /**
+     * Reads the message back, failing on truncated or corrupt data.
+     */
+    private static final class Input
+    {
+        private final byte[] buf;
+        private int pos;
+
+
+        Input( byte[] buf )
+        {
+            this.buf = buf;
+        }
+
+
+        private void require( int length )
+        {
+            if ( length < 0 || pos + length > buf.length )
+            {
+                throw new IllegalArgumentException( "binary data truncated at [" + pos + "]" );
+            }
+        }
+
+
+        int readByte()
+        {
+            require( 1 );
+            return buf[pos++] & 0xFF;
+        }
+
+
+        boolean readBoolean()
+        {
+            return readByte() != 0;
+        }
+
+
+        Boolean readBooleanObject()
+        {
+            int value = readByte();
+            return value == 0 ? null : value == 2;
+        }
+
+
+        long readVarLong()
+        {
+            long value = 0;
+            for ( int shift = 0; shift < 64; shift += 7 )
+            {
+                int b = readByte();
+                value |= ( long ) ( b & 0x7F ) << shift;
+                if ( ( b & 0x80 ) == 0 )
+                {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException( "binary varint too long at [" + pos + "]" );
+        }
+
+
+        int readInt()
+        {
+            int value = ( int ) readVarLong();
+            return ( value >>> 1 ) ^ -( value & 1 );
+        }
+
+
+        long readLong()
+        {
+            long value = readVarLong();
+            return ( value >>> 1 ) ^ -( value & 1 );
+        }
+
+
+        Integer readInteger()
+        {
+            return readBoolean() ? readInt() : null;
+        }
+
+
+        /**
+         * @return size of the collection, -1 if it was null.
+         */
+        int readSize()
+        {
+            long size = readVarLong() - 1;
+            // every element takes at least one byte:
+            if ( size > buf.length - pos )
+            {
+                throw new IllegalArgumentException( "binary collection size [" + size + "] exceeds data" );
+            }
+            return ( int ) size;
+        }
+
+
+        String readString()
+        {
+            int length = readSize();
+            if ( length < 0 )
+            {
+                return null;
+            }
+            require( length );
+            String value = new String( buf, pos, length, StandardCharsets.UTF_8 );
+            pos += length;
+            return value;
+        }
+
+
+        List<String> readStringList()
+        {
+            int size = readSize();
+            if ( size < 0 )
+            {
+                return null;
+            }
+            List<String> values = new ArrayList<>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                values.add( readString() );
+            }
+            return values;
+        }
+
+
+        Set<String> readStringSet( Set<String> values )
+        {
+            int size = readSize();
+            if ( size < 0 )
+            {
+                return null;
+            }
+            for ( int i = 0; i < size; i++ )
+            {
+                values.add( readString() );
+            }
+            return values;
+        }
+    }
+}
@@ -331,6 +331,37 @@ public class PwPolicy extends FortEntity implements Serializable
     }
 
 
+    /**
+     * Create a copy of another policy, including its pwdAttribute and the fields inherited from {@link FortEntity}.
+     *
+     * @param policy contains the values to copy.
+     */
+    public PwPolicy(PwPolicy policy)
+    {
+        this.modCode = policy.modCode;
+        this.modId = policy.modId;
+        this.adminSession = policy.adminSession;
+        this.sequenceId = policy.sequenceId;
+        this.contextId = policy.contextId;
+        this.name = policy.name;
+        this.attribute = policy.attribute;
+        this.minAge = policy.minAge;
+        this.maxAge = policy.maxAge;
+        this.inHistory = policy.inHistory;
+        this.checkQuality = policy.checkQuality;
+        this.minLength = policy.minLength;
+        this.expireWarning = policy.expireWarning;
+        this.graceLoginLimit = policy.graceLoginLimit;
+        this.lockout = policy.lockout;
+        this.lockoutDuration = policy.lockoutDuration;
+        this.maxFailure = policy.maxFailure;
+        this.failureCountInterval = policy.failureCountInterval;
+        this.mustChange = policy.mustChange;
+        this.allowUserChange = policy.allowUserChange;
+        this.safeModify = policy.safeModify;
+    }
+
+
     /**
      * Get the policy name associated with this instance.
      * @return attribute stored as 'cn' in 'pwdPolicy' object class.
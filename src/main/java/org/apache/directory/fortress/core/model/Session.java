@@ -515,7 +515,7 @@ public class Session  extends FortEntity implements PwMessage, Serializable
      *
      * @return int maps to 'ftCstr' attribute in 'ftUserAttrs' object class.
      */
-    private int getTimeout()
+    int getTimeout()
     {
         return timeout;
     }
@@ -716,7 +716,7 @@ public class Session  extends FortEntity implements PwMessage, Serializable
      *
      * @param timeout maps to 'ftCstr' attribute in 'ftUserAttrs' object class.
      */
-    private void setTimeout(int timeout)
+    void setTimeout(int timeout)
     {
         this.timeout = timeout;
     }
@@ -731,6 +731,17 @@ public class Session  extends FortEntity implements PwMessage, Serializable
     {
         lastAccess = System.currentTimeMillis();
     }
+
+
+    /**
+     * Set the last access time in milliseconds, used when the Session is rebuilt by {@link BinaryCodec}.
+     *
+     * @param lastAccess the difference, measured in milliseconds, between the last access time and midnight, January 1, 1970 UTC.
+     */
+    void setLastAccess( long lastAccess )
+    {
+        this.lastAccess = lastAccess;
+    }
     
 
     /**
@@ -20,6 +20,8 @@
 package org.apache.directory.fortress.core.model;
 
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -27,6 +29,7 @@ import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
 
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -243,6 +246,7 @@ import javax.xml.bind.annotation.XmlType;
         "emails",
         "props",
         "locked",
+        "graceLogins",
         "reset",
         "system",
         "beginTime",
@@ -297,6 +301,7 @@ public class User extends FortEntity implements Constraint, Serializable
     private int timeout;
     private boolean reset;
     private boolean locked;
+    private Integer graceLogins;
     private Boolean system;
     private Props props = new Props();
     private Address address;
@@ -305,6 +310,14 @@ public class User extends FortEntity implements Constraint, Serializable
     private List<String> emails;
     @XmlTransient
     private byte[] jpegPhoto;
+    @XmlTransient
+    private transient DeferredLoader deferred;
+    // the lists replaced, rather than added to, while the load was deferred:
+    @XmlTransient
+    private transient int replaced;
+    private static final int PHONES = 1;
+    private static final int MOBILES = 2;
+    private static final int EMAILS = 4;
 
     // RFC2307bis:
     /*
@@ -497,6 +510,7 @@ public class User extends FortEntity implements Constraint, Serializable
             ", timeout=" + timeout +
             ", reset=" + reset +
             ", locked=" + locked +
+            ", graceLogins=" + graceLogins +
             ", system=" + system +
             ", props=" + props +
             ", address=" + address +
@@ -1277,6 +1291,30 @@ public class User extends FortEntity implements Constraint, Serializable
     }
 
 
+    /**
+     * Number of grace logins the User has left after their password expired, evaluated against the password policy
+     * when the User was read.  This attribute will be ignored if set by external callers.
+     *
+     * @return remaining grace logins, null if the policy allows none or is not known.
+     */
+    public Integer getGraceLogins()
+    {
+        return graceLogins;
+    }
+
+
+    /**
+     * Number of grace logins the User has left after their password expired.
+     * This attribute will be ignored if set by external callers.
+     *
+     * @param graceLogins derived from 'pwdGraceUseTime' and the 'pwdGraceAuthNLimit' of the User's pwpolicy.
+     */
+    public void setGraceLogins( Integer graceLogins )
+    {
+        this.graceLogins = graceLogins;
+    }
+
+
     /**
      * Gets the value of the Props property.  This method is used by Fortress Core and Rest and should not be called by external programs.
      *
@@ -1407,6 +1445,7 @@ public class User extends FortEntity implements Constraint, Serializable
      */
     public Address getAddress()
     {
+        loadDeferred();
         if ( address == null )
         {
             address = new Address();
@@ -1443,6 +1482,7 @@ public class User extends FortEntity implements Constraint, Serializable
      */
     public List<String> getPhones()
     {
+        loadDeferred();
         if ( phones == null )
         {
             phones = new ArrayList<>();
@@ -1460,6 +1500,7 @@ public class User extends FortEntity implements Constraint, Serializable
     public void setPhones( List<String> phones )
     {
         this.phones = phones;
+        replaced |= PHONES;
     }
 
 
@@ -1486,6 +1527,7 @@ public class User extends FortEntity implements Constraint, Serializable
      */
     public List<String> getMobiles()
     {
+        loadDeferred();
         if ( mobiles == null )
         {
             mobiles = new ArrayList<>();
@@ -1503,6 +1545,7 @@ public class User extends FortEntity implements Constraint, Serializable
     public void setMobiles( List<String> mobiles )
     {
         this.mobiles = mobiles;
+        replaced |= MOBILES;
     }
 
 
@@ -1529,6 +1572,7 @@ public class User extends FortEntity implements Constraint, Serializable
      */
     public List<String> getEmails()
     {
+        loadDeferred();
         if ( emails == null )
         {
             emails = new ArrayList<>();
@@ -1546,6 +1590,7 @@ public class User extends FortEntity implements Constraint, Serializable
     public void setEmails( List<String> emails )
     {
         this.emails = emails;
+        replaced |= EMAILS;
     }
 
 
@@ -1594,6 +1639,7 @@ public class User extends FortEntity implements Constraint, Serializable
      */
     public byte[] getJpegPhoto()
     {
+        loadDeferred();
         return jpegPhoto;
     }
 
@@ -1616,6 +1662,97 @@ public class User extends FortEntity implements Constraint, Serializable
     }
 
 
+    /**
+     * Set the loader that fetches the address, phones, mobiles, emails and jpegPhoto the first time one of their
+     * getters is called, used when the user was read with a {@link UserProjection} that leaves them out.  Setters never
+     * fetch: values replaced before the load are kept, and values added by {@link #setPhone}, {@link #setMobile} and
+     * {@link #setEmail} are appended to those loaded.  Serializing or marshalling the user fetches them first.
+     *
+     * @param deferred fetches the deferred attributes, null to load nothing.
+     */
+    public void setDeferredLoader( DeferredLoader deferred )
+    {
+        this.deferred = deferred;
+        this.replaced = 0;
+    }
+
+
+    /**
+     * Fetch the deferred attributes, once, merging them with those set on this entity.  If the read fails the loader is
+     * kept, so the next access tries again.
+     *
+     * @throws org.apache.directory.fortress.core.DeferredLoadException if the deferred attributes cannot be read.
+     */
+    private void loadDeferred()
+    {
+        DeferredLoader loader = deferred;
+        if ( loader != null )
+        {
+            User loaded = loader.load();
+            deferred = null;
+            if ( address == null )
+            {
+                address = loaded.address;
+            }
+            phones = merge( loaded.phones, phones, ( replaced & PHONES ) != 0 );
+            mobiles = merge( loaded.mobiles, mobiles, ( replaced & MOBILES ) != 0 );
+            emails = merge( loaded.emails, emails, ( replaced & EMAILS ) != 0 );
+            if ( jpegPhoto == null )
+            {
+                jpegPhoto = loaded.jpegPhoto;
+            }
+        }
+    }
+
+
+    private static List<String> merge( List<String> loaded, List<String> local, boolean isReplaced )
+    {
+        if ( isReplaced || loaded == null )
+        {
+            return local;
+        }
+        if ( local == null )
+        {
+            return loaded;
+        }
+        List<String> merged = new ArrayList<>( loaded );
+        merged.addAll( local );
+        return merged;
+    }
+
+
+    /**
+     * Fetch the deferred attributes before writing, the loader does not survive serialization.
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException
+    {
+        loadDeferred();
+        out.defaultWriteObject();
+    }
+
+
+    /**
+     * Fetch the deferred attributes before marshalling, JAXB reads the fields and bypasses the getters.
+     */
+    private void beforeMarshal( Marshaller marshaller )
+    {
+        loadDeferred();
+    }
+
+
+    /**
+     * Fetches the attributes of a {@link User} that were deferred by its {@link UserProjection}.
+     */
+    public interface DeferredLoader
+    {
+        /**
+         * @return User containing the deferred attributes, never null.
+         * @throws org.apache.directory.fortress.core.DeferredLoadException if they cannot be read.
+         */
+        User load();
+    }
+
+
     /**
      * Override hashcode so User compare operations work in case insensitive manner in collection classes.
      *
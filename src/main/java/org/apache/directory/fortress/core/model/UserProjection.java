@@ -0,0 +1,88 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.model;
+
+
+/**
+ * Named sets of {@link User} attributes that may be requested when users are read or searched, so callers that only
+ * need part of the entity do not pay for transferring and unloading the rest.
+ * <p>
+ * Attributes left out of a projection are empty on the returned User, with one exception: the address, phones, mobiles,
+ * emails and jpegPhoto are fetched from the directory, in one read, the first time any of their getters is called, or
+ * when the User is serialized or marshalled to XML.  A failed read throws
+ * {@link org.apache.directory.fortress.core.DeferredLoadException} from the getter.  The User held by a {@link Session}
+ * is read with {@code user.session.projection}, {@link #FULL} by default, and defers nothing: set it to
+ * {@link #SESSION} to leave out the contact attributes and jpegPhoto, which then stay empty.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public enum UserProjection
+{
+    /**
+     * Attributes needed to create a session: identity, description, title, employee type, properties, temporal
+     * constraints, password policy state and RBAC and administrative role assignments.
+     */
+    SESSION( true, false ),
+
+    /**
+     * Attributes needed for access decisions only: identity, temporal constraints, password policy state and RBAC and
+     * administrative role assignments.
+     */
+    AUTHZ( true, false ),
+
+    /**
+     * Attributes shown in directory listings: identity, description, title, employee type, temporal constraints,
+     * password policy state, address, phones, mobiles and emails.  Role assignments are not returned.
+     */
+    LISTING( false, true ),
+
+    /**
+     * Every attribute, including role assignments, properties and the jpegPhoto.
+     */
+    FULL( true, true );
+
+    private final boolean isRoles;
+    private final boolean isContact;
+
+
+    UserProjection( boolean isRoles, boolean isContact )
+    {
+        this.isRoles = isRoles;
+        this.isContact = isContact;
+    }
+
+
+    /**
+     * @return true if the RBAC and administrative role assignments are returned.
+     */
+    public boolean isRoles()
+    {
+        return isRoles;
+    }
+
+
+    /**
+     * @return true if the address, phones, mobiles and emails are returned rather than deferred.
+     */
+    public boolean isContact()
+    {
+        return isContact;
+    }
+}
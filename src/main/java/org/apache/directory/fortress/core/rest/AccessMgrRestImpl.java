@@ -24,6 +24,8 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.directory.fortress.core.AccessMgr;
+import org.apache.directory.fortress.core.AuthResult;
+import org.apache.directory.fortress.core.Decision;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.SecurityException;
 import org.apache.directory.fortress.core.impl.Manageable;
@@ -133,6 +135,39 @@ public class AccessMgrRestImpl extends Manageable implements AccessMgr
         return retSession;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AuthResult tryCreateSession(User user, boolean isTrusted)
+        throws SecurityException
+    {
+        VUtil.assertNotNull(user, GlobalErrIds.USER_NULL, CLS_NM + ".tryCreateSession");
+        FortRequest request = RestUtils.getRequest( this.contextId );
+        request.setEntity(user);
+        String szRequest = RestUtils.marshal(request);
+        String szResponse;
+        if(isTrusted)
+        {
+            szResponse = RestUtils.getInstance().post(szRequest, HttpIds.RBAC_CREATE_TRUSTED);
+        }
+        else
+        {
+            szResponse = RestUtils.getInstance().post(szRequest, HttpIds.RBAC_CREATE);
+        }
+        FortResponse response = RestUtils.unmarshall(szResponse);
+        if (response.getErrorCode() == 0)
+        {
+            return AuthResult.success(response.getSession());
+        }
+        // the server reports failed logons as error codes, only those are returned, the rest are thrown:
+        else if (AuthResult.isAuthFailure(response.getErrorCode()))
+        {
+            return AuthResult.failure(response.getErrorCode(), response.getErrorMessage());
+        }
+        throw new SecurityException(response.getErrorCode(), response.getErrorMessage());
+    }
+
     @Override
     public Session createSession( Group group ) throws SecurityException
     {
@@ -183,6 +218,39 @@ public class AccessMgrRestImpl extends Manageable implements AccessMgr
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Decision tryCheckAccess(Session session, Permission perm)
+        throws SecurityException
+    {
+        VUtil.assertNotNull(perm, GlobalErrIds.PERM_NULL, CLS_NM + ".tryCheckAccess");
+        VUtil.assertNotNull(session, GlobalErrIds.USER_SESS_NULL, CLS_NM + ".tryCheckAccess");
+        FortRequest request = RestUtils.getRequest( this.contextId );
+        request.setSession(session);
+        request.setEntity(perm);
+        String szRequest = RestUtils.marshal(request);
+        String szResponse = RestUtils.getInstance().post(szRequest, HttpIds.RBAC_AUTHZ);
+        FortResponse response = RestUtils.unmarshall(szResponse);
+        int errorCode = response.getErrorCode();
+        if (errorCode == 0)
+        {
+            Session outSession = response.getSession();
+            session.copy(outSession);
+            return Decision.valueOf(response.getAuthorized());
+        }
+        else if (errorCode == GlobalErrIds.PERM_NOT_EXIST)
+        {
+            return Decision.NOT_FOUND;
+        }
+        else if (AuthResult.isAuthFailure(errorCode))
+        {
+            return Decision.denied(errorCode);
+        }
+        throw new SecurityException(errorCode, response.getErrorMessage());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -21,7 +21,9 @@ package org.apache.directory.fortress.core.rest;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.directory.fortress.core.AuditHandler;
 import org.apache.directory.fortress.core.AuditMgr;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.SecurityException;
@@ -323,4 +325,59 @@ public class AuditMgrRestImpl extends Manageable implements AuditMgr
         }
         return outRecords;
     }
+
+
+    /**
+     * Not supported by the Fortress Rest server.
+     */
+    @Override
+    public void searchAuthZs(UserAudit uAudit, AuditHandler<AuthZ> handler)
+        throws SecurityException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+
+    /**
+     * Not supported by the Fortress Rest server.
+     */
+    @Override
+    public void searchBinds(UserAudit uAudit, AuditHandler<Bind> handler)
+        throws SecurityException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+
+    /**
+     * Not supported by the Fortress Rest server.
+     */
+    @Override
+    public void searchAdminMods(UserAudit uAudit, AuditHandler<Mod> handler)
+        throws SecurityException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+
+    /**
+     * Not supported by the Fortress Rest server.
+     */
+    @Override
+    public Map<String, Long> countAuthZs(UserAudit uAudit, CountBy countBy)
+        throws SecurityException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+
+    /**
+     * Not supported by the Fortress Rest server.
+     */
+    @Override
+    public Map<String, Long> countBinds(UserAudit uAudit, CountBy countBy)
+        throws SecurityException
+    {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -23,9 +23,13 @@ package org.apache.directory.fortress.core.rest;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
@@ -38,12 +42,14 @@ import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.RestException;
+import org.apache.directory.fortress.core.model.BinaryCodec;
 import org.apache.directory.fortress.core.model.FortRequest;
 import org.apache.directory.fortress.core.model.FortResponse;
 import org.apache.directory.fortress.core.model.ObjectFactory;
 import org.apache.directory.fortress.core.model.Props;
 import org.apache.directory.fortress.core.util.Config;
 import org.apache.directory.fortress.core.util.EncryptUtil;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -54,6 +60,7 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
@@ -76,11 +83,23 @@ public final class RestUtils
     private static final int HTTP_401_UNAUTHORIZED = 401;
     private static final int HTTP_403_FORBIDDEN = 403;
     private static final int HTTP_404_NOT_FOUND = 404;
+    private static final int HTTP_415_UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final String BINARY_ACCEPT = BinaryCodec.CONTENT_TYPE + ", application/xml;q=0.9";
+    private static final ContentType BINARY_CONTENT_TYPE = ContentType.create( BinaryCodec.CONTENT_TYPE );
     private static CachedJaxbContext cachedJaxbContext = new CachedJaxbContext();
 
     // static member contains this
     private static volatile RestUtils sINSTANCE = null;
 
+    // Set by enable.rest.binary, ask the server for binary responses:
+    private static volatile boolean binaryEnabled;
+    // Set once the server has answered in binary, after which requests are sent in binary too:
+    private static volatile boolean binaryAccepted;
+    // The binary messages handed out as Strings, tagged when encoded or received with the binary Content-Type, so the
+    // format is never guessed from the content.  Held weakly, an entry goes when its caller drops the String:
+    private static final Map<String, Boolean> binaryStrings = Collections.synchronizedMap(
+        new WeakHashMap<String, Boolean>() );
+
     /**
      * Used to manage trust store properties.  If enabled, create SSL connection.
      *
@@ -128,6 +147,7 @@ public final class RestUtils
         httpProtocol = Config.getInstance().getProperty( "http.protocol", "http" );
         trustStore = Config.getInstance().getProperty( "trust.store" );
         trustStorePw = Config.getInstance().getProperty( "trust.store.password" );
+        binaryEnabled = Config.getInstance().getBoolean( "enable.rest.binary", true );
         fortressRestVersion = System.getProperty( "version" );
         serviceName = "fortress-rest-" + fortressRestVersion;
         uri = httpProtocol + "://" + httpHost + ":" + httpPort + "/" + serviceName + "/";
@@ -142,14 +162,19 @@ public final class RestUtils
     }
 
     /**
-     * Marshall the request into an XML String.
+     * Marshall the request into an XML String.  Once the server has shown it supports the {@link BinaryCodec} encoding,
+     * requests whose entities have a binary encoding are encoded that way instead, carried one byte per char.
      *
      * @param request
-     * @return String containing xml request
+     * @return String containing xml or binary request
      * @throws RestException
      */
     public static String marshal( FortRequest request ) throws RestException
     {
+        if ( binaryAccepted && BinaryCodec.canEncode( request ) )
+        {
+            return toBinaryString( BinaryCodec.encode( request ) );
+        }
         String szRetValue;
         try
         {
@@ -176,7 +201,7 @@ public final class RestUtils
 
 
     /**
-     * Unmarshall the XML response into its associated Java objects.
+     * Unmarshall the XML, or binary, response into its associated Java objects.
      *
      * @param szResponse
      * @return FortResponse
@@ -184,6 +209,18 @@ public final class RestUtils
      */
     public static FortResponse unmarshall( String szResponse ) throws RestException
     {
+        if ( isBinary( szResponse ) )
+        {
+            try
+            {
+                return BinaryCodec.decodeResponse( szResponse.getBytes( StandardCharsets.ISO_8859_1 ) );
+            }
+            catch ( IllegalArgumentException iae )
+            {
+                String error = "unmarshall caught IllegalArgumentException=" + iae;
+                throw new RestException( GlobalErrIds.REST_UNMARSHALL_ERR, error, iae );
+            }
+        }
         FortResponse response;
         try
         {
@@ -265,12 +302,14 @@ public final class RestUtils
     {
         LOG.debug( "post uri=[{}], function=[{}], request=[{}]", uri, function, szInput );
         String szResponse = null;
+        String szRetry = null;
+        boolean binary = isBinary( szInput );
         HttpPost post = new HttpPost( uri + function);
-        post.addHeader( "Accept", "text/xml" );
-        setMethodHeaders( post );
+        setMethodHeaders( post, binary );
         try
         {
-            HttpEntity entity = new StringEntity( szInput, ContentType.TEXT_XML );
+            HttpEntity entity = binary ? new ByteArrayEntity( szInput.getBytes( StandardCharsets.ISO_8859_1 ),
+                BINARY_CONTENT_TYPE ) : new StringEntity( szInput, ContentType.TEXT_XML );
             post.setEntity( entity );
             org.apache.http.client.HttpClient httpclient = HttpClientBuilder.create()
                 .setDefaultCredentialsProvider(getCredentialProvider(userId, password)).build();
@@ -280,9 +319,35 @@ public final class RestUtils
             switch ( response.getStatusLine().getStatusCode() )
             {
                 case HTTP_OK :
-                    szResponse = IOUtils.toString( response.getEntity().getContent(), "UTF-8" );
-                    LOG.debug( "post uri=[{}], function=[{}], response=[{}]", uri, function, szResponse );
+                    HttpEntity body = response.getEntity();
+                    if ( isBinary( body.getContentType() ) )
+                    {
+                        szResponse = toBinaryString( IOUtils.toByteArray( body.getContent() ) );
+                        binaryAccepted = true;
+                        LOG.debug( "post uri=[{}], function=[{}], binary response length=[{}]", uri, function,
+                            szResponse.length() );
+                    }
+                    else
+                    {
+                        szResponse = IOUtils.toString( body.getContent(), "UTF-8" );
+                        LOG.debug( "post uri=[{}], function=[{}], response=[{}]", uri, function, szResponse );
+                    }
                     break;
+                case HTTP_415_UNSUPPORTED_MEDIA_TYPE :
+                    if ( binary )
+                    {
+                        // the server no longer takes binary requests, resend this one as xml:
+                        LOG.info( "post uri=[{}], function=[{}], binary request not supported, using xml", uri,
+                            function );
+                        binaryAccepted = false;
+                        szRetry = marshal( BinaryCodec.decodeRequest( szInput.getBytes(
+                            StandardCharsets.ISO_8859_1 ) ) );
+                        break;
+                    }
+                    error = "post uri=[" + uri + "], function=[" + function
+                        + "], 415 unsupported media type from host";
+                    LOG.error( error );
+                    throw new RestException( GlobalErrIds.REST_UNKNOWN_ERR, error );
                 case HTTP_401_UNAUTHORIZED :
                     error = "post uri=[" + uri + "], function=[" + function
                         + "], 401 function unauthorized on host";
@@ -330,6 +395,10 @@ public final class RestUtils
             // Release current connection to the connection pool.
             post.releaseConnection();
         }
+        if ( szRetry != null )
+        {
+            return post( userId, password, szRetry, function );
+        }
         return szResponse;
     }
 
@@ -360,15 +429,57 @@ public final class RestUtils
      * @param httpRequest
      */
     private static void setMethodHeaders( HttpRequest httpRequest )
+    {
+        setMethodHeaders( httpRequest, false );
+    }
+
+
+    /**
+     * Set these params into their associated HTTP header vars.  If enabled, binary responses are preferred over xml.
+     *
+     * @param httpRequest
+     * @param binary true if the request body is binary
+     */
+    private static void setMethodHeaders( HttpRequest httpRequest, boolean binary )
     {
         if ( httpRequest instanceof HttpPost || httpRequest instanceof HttpPut)
         {
-            httpRequest.addHeader( "Content-Type", "application/xml" );
-            httpRequest.addHeader( "Accept", "application/xml" );
+            httpRequest.addHeader( "Content-Type", binary ? BinaryCodec.CONTENT_TYPE : "application/xml" );
+            httpRequest.addHeader( "Accept", binaryEnabled ? BINARY_ACCEPT : "application/xml" );
         }
     }
 
 
+    /**
+     * Binary messages are carried in the String based methods of this class one byte per char, and tagged as binary.
+     *
+     * @param data binary message
+     * @return String containing binary message
+     */
+    private static String toBinaryString( byte[] data )
+    {
+        String value = new String( data, StandardCharsets.ISO_8859_1 );
+        binaryStrings.put( value, Boolean.TRUE );
+        return value;
+    }
+
+
+    /**
+     * @param value request or response
+     * @return true if the value was tagged by {@link #toBinaryString}, i.e. it was encoded or received as binary.
+     */
+    private static boolean isBinary( String value )
+    {
+        return value != null && binaryStrings.containsKey( value );
+    }
+
+
+    private static boolean isBinary( Header contentType )
+    {
+        return contentType != null && contentType.getValue().startsWith( BinaryCodec.CONTENT_TYPE );
+    }
+
+
     /**
      * Convert from non-Base64 to Base64 encoded.
      *
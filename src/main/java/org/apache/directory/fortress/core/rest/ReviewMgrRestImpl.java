@@ -20,6 +20,7 @@
 package org.apache.directory.fortress.core.rest;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -27,6 +28,7 @@ import java.util.TreeSet;
 import org.apache.directory.fortress.core.GlobalErrIds;
 import org.apache.directory.fortress.core.ReviewMgr;
 import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.UserBatch;
 import org.apache.directory.fortress.core.impl.Manageable;
 import org.apache.directory.fortress.core.model.FortRequest;
 import org.apache.directory.fortress.core.model.FortResponse;
@@ -39,6 +41,7 @@ import org.apache.directory.fortress.core.model.RoleConstraint;
 import org.apache.directory.fortress.core.model.RoleConstraint.RCType;
 import org.apache.directory.fortress.core.model.SDSet;
 import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserProjection;
 import org.apache.directory.fortress.core.model.UserRole;
 import org.apache.directory.fortress.core.util.VUtil;
 
@@ -395,6 +398,94 @@ public class ReviewMgrRestImpl extends Manageable implements ReviewMgr
     }
 
 
+    /**
+     * The rest protocol has no projection, the server returns the full user.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public User readUser(User user, UserProjection projection)
+        throws SecurityException
+    {
+        return readUser(user);
+    }
+
+
+    /**
+     * The rest protocol has no batch read, the users are read one at a time.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public UserBatch readUsers(Collection<String> userIds, UserProjection projection)
+        throws SecurityException
+    {
+        VUtil.assertNotNull(userIds, GlobalErrIds.USER_ID_NULL, CLS_NM + ".readUsers");
+        List<User> users = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        Set<String> seen = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (String userId : userIds)
+        {
+            if (!seen.add(userId))
+            {
+                continue;
+            }
+            try
+            {
+                users.add(readUser(new User(userId)));
+            }
+            catch (SecurityException se)
+            {
+                if (se.getErrorId() != GlobalErrIds.USER_NOT_FOUND)
+                {
+                    throw se;
+                }
+                missing.add(userId);
+            }
+        }
+        return new UserBatch(users, missing);
+    }
+
+
+    /**
+     * The rest protocol has no projection, the server returns full users.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public List<User> findUsers(User user, UserProjection projection)
+        throws SecurityException
+    {
+        return findUsers(user);
+    }
+
+
+    /**
+     * The rest protocol has no projection, the server returns full users.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public List<User> assignedUsers(Role role, UserProjection projection)
+        throws SecurityException
+    {
+        return assignedUsers(role);
+    }
+
+
+    /**
+     * The rest protocol has no projection, the server returns full users.
+     * <p>
+     * {@inheritDoc}
+     */
+    @Override
+    public List<User> authorizedUsers(Role role, UserProjection projection)
+        throws SecurityException
+    {
+        return authorizedUsers(role);
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -403,9 +403,23 @@ public final class Config
         boolean result = true;
         if(( ( getProperty( ROLE_OCCUPANTS ) != null ) && ( getProperty( ROLE_OCCUPANTS ).equalsIgnoreCase( "false" ) ) ))
             result = false;
+        // the index mode keeps occupants in memory rather than on the role entry:
+        if( isRoleOccupantIndex() )
+            result = false;
         return result;
     }
 
+    /**
+     * Return true if {@code role.occupants=index}, in which case the role entries carry no roleOccupant values and the
+     * userIds assigned to a role are kept in memory, loaded from the users' role assignments.
+     *
+     * @return true if role occupants are indexed in memory.
+     */
+    public boolean isRoleOccupantIndex()
+    {
+        return "index".equalsIgnoreCase( getProperty( "role.occupants" ) );
+    }
+
     private boolean isRemoteConfigLoaded()
     {
         return remoteConfigLoaded;
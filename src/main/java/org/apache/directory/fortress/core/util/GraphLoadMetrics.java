@@ -0,0 +1,209 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters for the loads of the role, admin role, user ou and perm ou hierarchy graphs, both first loads and the
+ * background refreshes, showing how often each hierarchy was read from ldap and how long it took.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class GraphLoadMetrics
+{
+    private static final ConcurrentMap<String, Recorder> recorders = new ConcurrentSkipListMap<>();
+
+
+    /**
+     * Private constructor
+     *
+     */
+    private GraphLoadMetrics()
+    {
+    }
+
+
+    /**
+     * Record one graph load.
+     *
+     * @param hierarchy name of the hierarchy that was loaded, e.g. ROLE.
+     * @param success   false if the load failed.
+     * @param nanos     elapsed time of the load.
+     */
+    public static void record( String hierarchy, boolean success, long nanos )
+    {
+        Recorder recorder = recorders.get( hierarchy );
+        if ( recorder == null )
+        {
+            recorder = new Recorder();
+            Recorder existing = recorders.putIfAbsent( hierarchy, recorder );
+            if ( existing != null )
+            {
+                recorder = existing;
+            }
+        }
+        recorder.record( success, nanos );
+    }
+
+
+    /**
+     * Return a snapshot of the counters of every hierarchy that has been loaded.
+     *
+     * @return list of counters.
+     */
+    public static List<Stats> getStats()
+    {
+        List<Stats> stats = new ArrayList<>();
+        for ( Map.Entry<String, Recorder> entry : recorders.entrySet() )
+        {
+            Recorder recorder = entry.getValue();
+            long count = recorder.count.sum();
+            if ( count > 0 )
+            {
+                stats.add( new Stats( entry.getKey(), count, recorder.failures.sum(), recorder.totalMillis.sum()
+                    / count, recorder.maxMillis.get(), recorder.lastMillis ) );
+            }
+        }
+        return stats;
+    }
+
+
+    /**
+     * Discard all counters.
+     */
+    public static void reset()
+    {
+        recorders.clear();
+    }
+
+
+    /**
+     * Counters of one hierarchy.
+     */
+    private static final class Recorder
+    {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private volatile long lastMillis;
+
+
+        void record( boolean success, long nanos )
+        {
+            long millis = TimeUnit.NANOSECONDS.toMillis( Math.max( 0, nanos ) );
+            count.increment();
+            if ( !success )
+            {
+                failures.increment();
+            }
+            totalMillis.add( millis );
+            lastMillis = millis;
+            long max = maxMillis.get();
+            while ( millis > max && !maxMillis.compareAndSet( max, millis ) )
+            {
+                max = maxMillis.get();
+            }
+        }
+    }
+
+
+    /**
+     * Point in time snapshot of the counters of one hierarchy.
+     * <p>
+     * This class is immutable and thread safe.
+     */
+    public static final class Stats
+    {
+        private final String hierarchy;
+        private final long count;
+        private final long failureCount;
+        private final long averageMillis;
+        private final long maxMillis;
+        private final long lastMillis;
+
+
+        Stats( String hierarchy, long count, long failureCount, long averageMillis, long maxMillis, long lastMillis )
+        {
+            this.hierarchy = hierarchy;
+            this.count = count;
+            this.failureCount = failureCount;
+            this.averageMillis = averageMillis;
+            this.maxMillis = maxMillis;
+            this.lastMillis = lastMillis;
+        }
+
+
+        public String getHierarchy()
+        {
+            return hierarchy;
+        }
+
+
+        public long getCount()
+        {
+            return count;
+        }
+
+
+        public long getFailureCount()
+        {
+            return failureCount;
+        }
+
+
+        public long getAverageMillis()
+        {
+            return averageMillis;
+        }
+
+
+        public long getMaxMillis()
+        {
+            return maxMillis;
+        }
+
+
+        public long getLastMillis()
+        {
+            return lastMillis;
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return "GraphLoadMetrics.Stats[hierarchy=" + hierarchy + ", count=" + count + ", failures=" + failureCount
+                + ", avg=" + averageMillis + "ms, max=" + maxMillis + "ms, last=" + lastMillis + "ms]";
+        }
+    }
+}
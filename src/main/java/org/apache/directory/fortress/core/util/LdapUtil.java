@@ -35,6 +35,8 @@ public class LdapUtil
     private int ldapFilterSize = 25;
     private char[] ldapMetaChars;
     private String[] ldapReplVals;
+    // the escaped form of each meta char, indexed by char, built from the two arrays above:
+    private volatile String[] escapeTable = new String[0];
 
     private static volatile LdapUtil sINSTANCE = null;
 
@@ -116,6 +118,7 @@ public class LdapUtil
     public void setLdapMetaChars(char[] ldapMetaChars)
     {
         this.ldapMetaChars = ldapMetaChars.clone();
+        buildEscapeTable();
     }
 
     /**
@@ -136,5 +139,71 @@ public class LdapUtil
     public void setLdapReplVals(String[] ldapReplVals)
     {
         this.ldapReplVals = ldapReplVals.clone();
+        buildEscapeTable();
+    }
+
+    /**
+     * Escape the unsafe characters of a value bound for an ldap search filter with their replacement values.  Each
+     * character is looked up in a table indexed by its value, and the value itself is returned if it contains none.
+     *
+     * @param value contains the data to escape.
+     * @return the value with every unsafe char replaced by a backslash and its replacement value.
+     */
+    public String escapeFilterValue(String value)
+    {
+        String[] table = escapeTable;
+        int length = value.length();
+        int i = 0;
+        while ( i < length && !isEscaped( table, value.charAt( i ) ) )
+        {
+            i++;
+        }
+        if ( i == length )
+        {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder( length + 16 );
+        sb.append( value, 0, i );
+        for ( ; i < length; i++ )
+        {
+            char curChar = value.charAt( i );
+            if ( isEscaped( table, curChar ) )
+            {
+                sb.append( '\\' ).append( table[curChar] );
+            }
+            else
+            {
+                sb.append( curChar );
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isEscaped(String[] table, char c)
+    {
+        return c < table.length && table[c] != null;
+    }
+
+    private void buildEscapeTable()
+    {
+        if ( ldapMetaChars == null || ldapReplVals == null )
+        {
+            return;
+        }
+        int count = Math.min( ldapMetaChars.length, ldapReplVals.length );
+        int max = -1;
+        for ( int i = 0; i < count; i++ )
+        {
+            max = Math.max( max, ldapMetaChars[i] );
+        }
+        String[] table = new String[max + 1];
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( table[ldapMetaChars[i]] == null )
+            {
+                table[ldapMetaChars[i]] = ldapReplVals[i];
+            }
+        }
+        escapeTable = table;
     }
 }
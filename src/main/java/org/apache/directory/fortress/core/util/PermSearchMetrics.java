@@ -0,0 +1,255 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters for the permission searches behind sessionPermissions, rolePermissions and userPermissions, showing how
+ * often each search strategy was chosen and what it cost.
+ * <p>
+ * A search looks for the permissions granted to a set of terms, i.e. the inherited roles plus, optionally, the user.
+ * The terms are answered from the per role cache where possible, and the rest are searched in one ldap search with an
+ * or filter, or split into chunks that are searched concurrently when there are too many for one filter.  Set
+ * {@code perm.search.explain} to true to also log every plan.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class PermSearchMetrics
+{
+    private static final Recorder[] recorders = new Recorder[Strategy.values().length];
+
+    static
+    {
+        for ( int i = 0; i < recorders.length; i++ )
+        {
+            recorders[i] = new Recorder();
+        }
+    }
+
+
+    /**
+     * How a permission search was answered.
+     */
+    public enum Strategy
+    {
+        /** Every term was found in the per role cache, no ldap search. */
+        CACHED,
+
+        /** The terms not cached were searched with one or filter. */
+        SINGLE,
+
+        /** The terms not cached were split into chunks searched concurrently. */
+        CHUNKED,
+
+        /** Answered from the in memory permission index, no ldap search. */
+        INDEXED
+    }
+
+
+    /**
+     * Private constructor
+     *
+     */
+    private PermSearchMetrics()
+    {
+    }
+
+
+    /**
+     * Record one permission search.
+     *
+     * @param strategy    that was used.
+     * @param terms       number of roles and users searched for.
+     * @param cachedTerms number of those answered from the cache.
+     * @param searches    number of ldap searches run.
+     * @param results     number of permissions returned.
+     * @param nanos       elapsed time of the search.
+     */
+    public static void record( Strategy strategy, int terms, int cachedTerms, int searches, int results, long nanos )
+    {
+        recorders[strategy.ordinal()].record( terms, cachedTerms, searches, results, nanos );
+    }
+
+
+    /**
+     * Return a snapshot of the counters of every strategy that has been used.
+     *
+     * @return list of counters.
+     */
+    public static List<Stats> getStats()
+    {
+        List<Stats> stats = new ArrayList<>();
+        for ( Strategy strategy : Strategy.values() )
+        {
+            Recorder recorder = recorders[strategy.ordinal()];
+            long count = recorder.count.sum();
+            if ( count > 0 )
+            {
+                stats.add( new Stats( strategy, count, recorder.terms.sum() / count,
+                    recorder.cachedTerms.sum() / count, recorder.searches.sum() / count,
+                    recorder.results.sum() / count, recorder.totalMicros.sum() / count, recorder.maxMicros.get() ) );
+            }
+        }
+        return stats;
+    }
+
+
+    /**
+     * Discard all counters.
+     */
+    public static void reset()
+    {
+        for ( int i = 0; i < recorders.length; i++ )
+        {
+            recorders[i] = new Recorder();
+        }
+    }
+
+
+    /**
+     * Counters of one strategy.
+     */
+    private static final class Recorder
+    {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder terms = new LongAdder();
+        private final LongAdder cachedTerms = new LongAdder();
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder results = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+
+        void record( int termCount, int cachedCount, int searchCount, int resultCount, long nanos )
+        {
+            long micros = TimeUnit.NANOSECONDS.toMicros( Math.max( 0, nanos ) );
+            count.increment();
+            terms.add( termCount );
+            cachedTerms.add( cachedCount );
+            searches.add( searchCount );
+            results.add( resultCount );
+            totalMicros.add( micros );
+            long max = maxMicros.get();
+            while ( micros > max && !maxMicros.compareAndSet( max, micros ) )
+            {
+                max = maxMicros.get();
+            }
+        }
+    }
+
+
+    /**
+     * Point in time snapshot of the counters of one strategy.  Except for the count and maximum, values are averages per
+     * search.
+     * <p>
+     * This class is immutable and thread safe.
+     */
+    public static final class Stats
+    {
+        private final Strategy strategy;
+        private final long count;
+        private final long averageTerms;
+        private final long averageCachedTerms;
+        private final long averageSearches;
+        private final long averageResults;
+        private final long averageMicros;
+        private final long maxMicros;
+
+
+        Stats( Strategy strategy, long count, long averageTerms, long averageCachedTerms, long averageSearches,
+            long averageResults, long averageMicros, long maxMicros )
+        {
+            this.strategy = strategy;
+            this.count = count;
+            this.averageTerms = averageTerms;
+            this.averageCachedTerms = averageCachedTerms;
+            this.averageSearches = averageSearches;
+            this.averageResults = averageResults;
+            this.averageMicros = averageMicros;
+            this.maxMicros = maxMicros;
+        }
+
+
+        public Strategy getStrategy()
+        {
+            return strategy;
+        }
+
+
+        public long getCount()
+        {
+            return count;
+        }
+
+
+        public long getAverageTerms()
+        {
+            return averageTerms;
+        }
+
+
+        public long getAverageCachedTerms()
+        {
+            return averageCachedTerms;
+        }
+
+
+        public long getAverageSearches()
+        {
+            return averageSearches;
+        }
+
+
+        public long getAverageResults()
+        {
+            return averageResults;
+        }
+
+
+        public long getAverageMicros()
+        {
+            return averageMicros;
+        }
+
+
+        public long getMaxMicros()
+        {
+            return maxMicros;
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return "PermSearchMetrics.Stats[strategy=" + strategy + ", count=" + count + ", terms=" + averageTerms
+                + ", cached=" + averageCachedTerms + ", searches=" + averageSearches + ", results=" + averageResults
+                + ", avg=" + averageMicros + "us, max=" + maxMicros + "us]";
+        }
+    }
+}
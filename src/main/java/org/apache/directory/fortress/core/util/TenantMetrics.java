@@ -0,0 +1,316 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.GlobalIds;
+
+
+/**
+ * Per tenant (contextId) latency counters for the runtime access checks, so an operator can see which tenant is slow
+ * or busy in a multitenant deployment.
+ * <p>
+ * Each call is counted and its latency recorded in a histogram with power of two microsecond buckets, from which the
+ * median and 99th percentile are estimated within a factor of two.  Recording is lock free.  Set
+ * {@code enable.tenant.metrics} to false to turn it off.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class TenantMetrics
+{
+    private static final String ENABLE_TENANT_METRICS = "enable.tenant.metrics";
+    private static final int BUCKETS = 40;
+    private static final boolean IS_ENABLED = Config.getInstance().getBoolean( ENABLE_TENANT_METRICS, true );
+    private static final ConcurrentMap<String, Recorder[]> tenants = new ConcurrentHashMap<>();
+
+
+    /**
+     * The operations measured.
+     */
+    public enum Operation
+    {
+        CHECK_ACCESS,
+        CREATE_SESSION
+    }
+
+
+    /**
+     * Private constructor
+     *
+     */
+    private TenantMetrics()
+    {
+    }
+
+
+    /**
+     * Return true if the counters are being recorded.
+     *
+     * @return true unless {@code enable.tenant.metrics} is false.
+     */
+    public static boolean isEnabled()
+    {
+        return IS_ENABLED;
+    }
+
+
+    /**
+     * Record one call.
+     *
+     * @param contextId of the tenant, null or empty for the default tenant.
+     * @param operation that was called.
+     * @param nanos     elapsed time of the call.
+     * @param success   false if the call threw an exception.
+     */
+    public static void record( String contextId, Operation operation, long nanos, boolean success )
+    {
+        if ( IS_ENABLED )
+        {
+            getRecorders( contextId )[operation.ordinal()].record( nanos, success );
+        }
+    }
+
+
+    /**
+     * Return a snapshot of the counters of every tenant and operation that has been called, ordered by contextId.
+     *
+     * @return list of counters.
+     */
+    public static List<Stats> getStats()
+    {
+        List<Stats> stats = new ArrayList<>();
+        Map<String, Recorder[]> sorted = new TreeMap<>( tenants );
+        for ( Map.Entry<String, Recorder[]> entry : sorted.entrySet() )
+        {
+            for ( Operation operation : Operation.values() )
+            {
+                Recorder recorder = entry.getValue()[operation.ordinal()];
+                if ( recorder.count.sum() > 0 )
+                {
+                    stats.add( recorder.snapshot( entry.getKey(), operation ) );
+                }
+            }
+        }
+        return stats;
+    }
+
+
+    /**
+     * Discard all counters.
+     */
+    public static void reset()
+    {
+        tenants.clear();
+    }
+
+
+    private static Recorder[] getRecorders( String contextId )
+    {
+        if ( StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) )
+        {
+            contextId = GlobalIds.HOME;
+        }
+        Recorder[] recorders = tenants.get( contextId );
+        if ( recorders == null )
+        {
+            Recorder[] newRecorders = new Recorder[Operation.values().length];
+            for ( int i = 0; i < newRecorders.length; i++ )
+            {
+                newRecorders[i] = new Recorder();
+            }
+            recorders = tenants.putIfAbsent( contextId, newRecorders );
+            if ( recorders == null )
+            {
+                recorders = newRecorders;
+            }
+        }
+        return recorders;
+    }
+
+
+    /**
+     * Counters of one operation for one tenant.
+     */
+    private static final class Recorder
+    {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final AtomicLong maxMicros = new AtomicLong();
+        // bucket i counts calls that took less than 2^i microseconds and at least 2^(i-1):
+        private final AtomicLongArray histogram = new AtomicLongArray( BUCKETS );
+
+
+        void record( long nanos, boolean success )
+        {
+            long micros = TimeUnit.NANOSECONDS.toMicros( Math.max( 0, nanos ) );
+            count.increment();
+            if ( !success )
+            {
+                errors.increment();
+            }
+            totalMicros.add( micros );
+            histogram.incrementAndGet( Math.min( BUCKETS - 1, 64 - Long.numberOfLeadingZeros( micros ) ) );
+            long max = maxMicros.get();
+            while ( micros > max && !maxMicros.compareAndSet( max, micros ) )
+            {
+                max = maxMicros.get();
+            }
+        }
+
+
+        Stats snapshot( String contextId, Operation operation )
+        {
+            long[] buckets = new long[BUCKETS];
+            long total = 0;
+            for ( int i = 0; i < BUCKETS; i++ )
+            {
+                buckets[i] = histogram.get( i );
+                total += buckets[i];
+            }
+            long calls = count.sum();
+            long max = maxMicros.get();
+            return new Stats( contextId, operation, calls, errors.sum(), calls > 0 ? totalMicros.sum() / calls : 0,
+                max, percentile( buckets, total, 0.5, max ), percentile( buckets, total, 0.99, max ) );
+        }
+
+
+        /**
+         * @return the upper bound of the bucket holding the percentile, capped at the maximum seen.
+         */
+        private static long percentile( long[] buckets, long total, double fraction, long max )
+        {
+            long rank = ( long ) Math.ceil( total * fraction );
+            long seen = 0;
+            for ( int i = 0; i < BUCKETS; i++ )
+            {
+                seen += buckets[i];
+                if ( seen >= rank && seen > 0 )
+                {
+                    return Math.min( max, ( 1L << i ) - 1 );
+                }
+            }
+            return max;
+        }
+    }
+
+
+    /**
+     * Point in time snapshot of the counters of one operation for one tenant.
+     * <p>
+     * This class is immutable and thread safe.
+     */
+    public static final class Stats
+    {
+        private final String contextId;
+        private final Operation operation;
+        private final long count;
+        private final long errorCount;
+        private final long averageMicros;
+        private final long maxMicros;
+        private final long p50Micros;
+        private final long p99Micros;
+
+
+        Stats( String contextId, Operation operation, long count, long errorCount, long averageMicros, long maxMicros,
+            long p50Micros, long p99Micros )
+        {
+            this.contextId = contextId;
+            this.operation = operation;
+            this.count = count;
+            this.errorCount = errorCount;
+            this.averageMicros = averageMicros;
+            this.maxMicros = maxMicros;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+        }
+
+
+        public String getContextId()
+        {
+            return contextId;
+        }
+
+
+        public Operation getOperation()
+        {
+            return operation;
+        }
+
+
+        public long getCount()
+        {
+            return count;
+        }
+
+
+        public long getErrorCount()
+        {
+            return errorCount;
+        }
+
+
+        public long getAverageMicros()
+        {
+            return averageMicros;
+        }
+
+
+        public long getMaxMicros()
+        {
+            return maxMicros;
+        }
+
+
+        public long getP50Micros()
+        {
+            return p50Micros;
+        }
+
+
+        public long getP99Micros()
+        {
+            return p99Micros;
+        }
+
+
+        @Override
+        public String toString()
+        {
+            return "TenantMetrics.Stats[contextId=" + contextId + ", operation=" + operation + ", count=" + count
+                + ", errors=" + errorCount + ", avg=" + averageMicros + "us, p50=" + p50Micros + "us, p99="
+                + p99Micros + "us, max=" + maxMicros + "us]";
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util;
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Creates the threads fortress uses for its own background and bulk work: graph refreshes, the directory change feed,
+ * audit queries, tenant exports and asynchronous requests.
+ * <p>
+ * By default these are daemon platform threads.  When {@code enable.virtual.threads} is true and the runtime supports
+ * them (Java 21 or later) they are virtual threads instead, so work that mostly waits on ldap round trips does not tie
+ * up a platform thread each.  The virtual thread api is called by reflection so fortress still builds and runs on
+ * Java 8.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class ThreadUtil
+{
+    private static final String CLS_NM = ThreadUtil.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String ENABLE_VIRTUAL_THREADS = "enable.virtual.threads";
+    private static final boolean IS_VIRTUAL = isVirtualSupported();
+
+
+    /**
+     * Private constructor
+     *
+     */
+    private ThreadUtil()
+    {
+    }
+
+
+    /**
+     * Return true if fortress work runs on virtual threads.
+     *
+     * @return true if virtual threads are enabled and supported.
+     */
+    public static boolean isVirtual()
+    {
+        return IS_VIRTUAL;
+    }
+
+
+    /**
+     * Return a factory for the threads of one fortress executor.
+     *
+     * @param prefix of the thread names, which are numbered from 1.
+     * @return factory of virtual threads, or of daemon platform threads if virtual threads are not in use.
+     */
+    public static ThreadFactory newThreadFactory( String prefix )
+    {
+        if ( IS_VIRTUAL )
+        {
+            ThreadFactory factory = newVirtualFactory( prefix );
+            if ( factory != null )
+            {
+                return factory;
+            }
+        }
+        return new DaemonThreadFactory( prefix );
+    }
+
+
+    private static boolean isVirtualSupported()
+    {
+        if ( !Config.getInstance().getBoolean( ENABLE_VIRTUAL_THREADS, false ) )
+        {
+            return false;
+        }
+        try
+        {
+            Thread.class.getMethod( "ofVirtual" );
+            LOG.info( "ThreadUtil using virtual threads" );
+            return true;
+        }
+        catch ( NoSuchMethodException e )
+        {
+            LOG.warn( "ThreadUtil virtual threads not supported by this runtime, using platform threads" );
+            return false;
+        }
+    }
+
+
+    private static ThreadFactory newVirtualFactory( String prefix )
+    {
+        try
+        {
+            // Call through the public interface, the builder's implementation class is not accessible:
+            Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+            Method name = builderClass.getMethod( "name", String.class, long.class );
+            Method factory = builderClass.getMethod( "factory" );
+            Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            return ( ThreadFactory ) factory.invoke( name.invoke( builder, prefix, 1L ) );
+        }
+        catch ( ReflectiveOperationException | RuntimeException e )
+        {
+            LOG.warn( "newVirtualFactory [{}] caught {}={}, using platform threads", prefix,
+                e.getClass().getSimpleName(), e.getMessage() );
+            return null;
+        }
+    }
+
+
+    /**
+     * Creates named daemon platform threads.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+
+        DaemonThreadFactory( String prefix )
+        {
+            this.prefix = prefix;
+        }
+
+
+        @Override
+        public Thread newThread( Runnable runnable )
+        {
+            Thread thread = new Thread( runnable, prefix + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
@@ -594,7 +594,8 @@ public final class VUtil implements ConstraintValidator
                 {
                     String info = location + " user [" + entityId + "] was deactivated reason code [" + rc
                         + "]";
-                    throw new ValidationException( rc, info );
+                    // routine logon denial, skip the stack trace:
+                    throw new ValidationException( rc, info, false );
                 }
             }
             // Check the constraints for each activated role:
@@ -663,6 +664,34 @@ public final class VUtil implements ConstraintValidator
     }
 
 
+    /**
+     * Check the {@link org.apache.directory.fortress.core.model.User} constraints contained within the session, without
+     * throwing on failure.  Used by the result returning variants of createSession and checkAccess.
+     *
+     * @param session contains the {@link org.apache.directory.fortress.core.model.User} to be checked.
+     * @return 0 if the user passes every validator, else the reason code of the first one that failed.
+     * @throws org.apache.directory.fortress.core.SecurityException in the event of system error.
+     */
+    public int checkUserConstraints( Session session ) throws SecurityException
+    {
+        if ( validators != null && !session.isGroupSession() )
+        {
+            Time currTime = TUtil.getCurrentTime();
+            for ( Validator val : validators )
+            {
+                int rc = val.validate( session, session.getUser(), currTime, ConstraintType.USER );
+                if ( rc > 0 )
+                {
+                    return rc;
+                }
+            }
+        }
+        // reset the user's last access timestamp:
+        session.setLastAccess();
+        return 0;
+    }
+
+
     /**
      * Utility is used internally by this class to retrieve a list of all Validator class names, instantiate and return.
      *
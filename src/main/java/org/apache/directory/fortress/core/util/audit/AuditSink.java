@@ -0,0 +1,69 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.audit;
+
+
+import org.apache.directory.fortress.core.AuditHandler;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.UserAudit;
+
+
+/**
+ * Service provider interface for recording authorization decisions somewhere other than the directory's access log.
+ * The sink in effect is selected with the {@code audit.sink} config property, see {@link AuditSinkMgr}.  Custom sinks
+ * must supply a public no-argument constructor.
+ * <p>
+ * Implementations must be thread safe, {@link #recordAuthZ(AuthZRecord)} is called on every permission check.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface AuditSink
+{
+    /**
+     * Record one authorization decision.
+     *
+     * @param record contains the decision.
+     * @throws SecurityException if the decision could not be recorded.
+     */
+    void recordAuthZ( AuthZRecord record ) throws SecurityException;
+
+
+    /**
+     * Pass the recorded decisions that match the search criteria to the handler, in the order they were recorded.
+     * Criteria left empty are not used:
+     * <ul>
+     *   <li>{@link UserAudit#userId} - userId of the subject</li>
+     *   <li>{@link UserAudit#objName}, {@link UserAudit#opName}, {@link UserAudit#objId} - the permission checked</li>
+     *   <li>{@link UserAudit#beginDate}, {@link UserAudit#endDate} - inclusive time range</li>
+     *   <li>{@link UserAudit#failedOnly} - if 'true', only denied decisions</li>
+     * </ul>
+     *
+     * @param audit   contains the search criteria.
+     * @param handler receives each matching decision, returns false to end the search.
+     * @throws SecurityException if the sink cannot be read or is thrown by the handler.
+     */
+    void searchAuthZs( UserAudit audit, AuditHandler<AuthZRecord> handler ) throws SecurityException;
+
+
+    /**
+     * Flush and release the resources held by the sink.
+     */
+    void close();
+}
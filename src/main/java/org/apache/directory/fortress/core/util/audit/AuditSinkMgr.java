@@ -0,0 +1,126 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.audit;
+
+
+import org.apache.directory.fortress.core.CfgRuntimeException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.util.ClassUtil;
+import org.apache.directory.fortress.core.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Selects where authorization decisions are recorded, with the {@code audit.sink} config property:
+ * <ul>
+ * <li>{@code ldap} (default) - no sink, decisions are recorded by OpenLDAP's accesslog overlay as compare operations.</li>
+ * <li>{@code local} - {@link LocalAuditSink}, an append-only log on the local file system that works with any
+ * directory server and costs no directory operation per decision.</li>
+ * <li>otherwise the fully qualified class name of an {@link AuditSink} implementation.</li>
+ * </ul>
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class AuditSinkMgr
+{
+    private static final Logger LOG = LoggerFactory.getLogger( AuditSinkMgr.class.getName() );
+    private static final String AUDIT_SINK = "audit.sink";
+    private static final String LDAP = "ldap";
+    private static final String LOCAL = "local";
+    private static volatile AuditSinkMgr sINSTANCE = null;
+    private final AuditSink sink;
+
+
+    /**
+     * Create or return the audit sink manager reference.
+     *
+     * @return handle to the audit sink manager in effect for process.
+     */
+    public static AuditSinkMgr getInstance()
+    {
+        if ( sINSTANCE == null )
+        {
+            synchronized ( AuditSinkMgr.class )
+            {
+                if ( sINSTANCE == null )
+                {
+                    sINSTANCE = new AuditSinkMgr();
+                }
+            }
+        }
+        return sINSTANCE;
+    }
+
+
+    /**
+     * Private constructor.
+     */
+    private AuditSinkMgr()
+    {
+        String sinkName = Config.getInstance().getProperty( AUDIT_SINK, LDAP );
+        try
+        {
+            if ( LDAP.equalsIgnoreCase( sinkName ) )
+            {
+                sink = null;
+            }
+            else if ( LOCAL.equalsIgnoreCase( sinkName ) )
+            {
+                sink = new LocalAuditSink();
+            }
+            else
+            {
+                sink = ( AuditSink ) ClassUtil.createInstance( sinkName );
+            }
+        }
+        catch ( CfgRuntimeException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            String error = "AuditSinkMgr sink [" + sinkName + "] caught Exception=" + e.getMessage();
+            LOG.error( error );
+            throw new CfgRuntimeException( GlobalErrIds.AUDT_SINK_NOT_CONFIGURED, error, e );
+        }
+        LOG.info( "AuditSinkMgr using audit sink [{}]", sink != null ? sink.getClass().getName() : LDAP );
+    }
+
+
+    /**
+     * @return true if decisions are recorded by an {@link AuditSink} instead of the directory's access log.
+     */
+    public boolean isEnabled()
+    {
+        return sink != null;
+    }
+
+
+    /**
+     * @return the sink in effect, null if decisions are recorded by the directory's access log.
+     */
+    public AuditSink getSink()
+    {
+        return sink;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.audit;
+
+
+import java.util.Collection;
+
+
+/**
+ * One authorization decision as recorded by an {@link AuditSink}.
+ * <p>
+ * This class is immutable and thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class AuthZRecord
+{
+    private final long timestamp;
+    private final String userId;
+    private final String objName;
+    private final String opName;
+    private final String objId;
+    private final boolean granted;
+    private final boolean admin;
+    private final int rolesHash;
+
+
+    /**
+     * @param timestamp time of the decision in milliseconds since the epoch.
+     * @param userId    userId of the subject.
+     * @param objName   object name of the permission checked.
+     * @param opName    operation name of the permission checked.
+     * @param objId     object id of the permission checked, may be null.
+     * @param granted   true if access was granted.
+     * @param admin     true if the permission is an administrative permission.
+     * @param rolesHash fingerprint of the roles active in the session, see {@link #hashRoles(Collection)}.
+     */
+    public AuthZRecord( long timestamp, String userId, String objName, String opName, String objId, boolean granted,
+        boolean admin, int rolesHash )
+    {
+        this.timestamp = timestamp;
+        this.userId = userId;
+        this.objName = objName;
+        this.opName = opName;
+        this.objId = objId;
+        this.granted = granted;
+        this.admin = admin;
+        this.rolesHash = rolesHash;
+    }
+
+
+    /**
+     * Compute a fingerprint of a set of role names that does not depend on their order or case, so decisions made with the
+     * same active roles can be grouped.
+     *
+     * @param roleNames names of the active roles.
+     * @return fingerprint, 0 for no roles.
+     */
+    public static int hashRoles( Collection<String> roleNames )
+    {
+        int hash = 0;
+        if ( roleNames != null )
+        {
+            for ( String roleName : roleNames )
+            {
+                // spread each name's hash before summing so the order of the roles does not matter:
+                int h = roleName.toLowerCase().hashCode() * 0x9E3779B9;
+                hash += h ^ ( h >>> 16 );
+            }
+        }
+        return hash;
+    }
+
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+
+    public String getUserId()
+    {
+        return userId;
+    }
+
+
+    public String getObjName()
+    {
+        return objName;
+    }
+
+
+    public String getOpName()
+    {
+        return opName;
+    }
+
+
+    public String getObjId()
+    {
+        return objId;
+    }
+
+
+    public boolean isGranted()
+    {
+        return granted;
+    }
+
+
+    public boolean isAdmin()
+    {
+        return admin;
+    }
+
+
+    public int getRolesHash()
+    {
+        return rolesHash;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "AuthZRecord{timestamp=" + timestamp + ", userId='" + userId + "', objName='" + objName + "', opName='"
+            + opName + "', objId='" + objId + "', granted=" + granted + ", admin=" + admin + ", rolesHash=" + rolesHash
+            + "}";
+    }
+}
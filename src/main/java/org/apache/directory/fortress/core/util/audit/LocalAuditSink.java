@@ -0,0 +1,560 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.audit;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.AuditHandler;
+import org.apache.directory.fortress.core.CfgRuntimeException;
+import org.apache.directory.fortress.core.FinderException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.UserAudit;
+import org.apache.directory.fortress.core.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * {@link AuditSink} that appends authorization decisions to a binary log on the local file system.  Enable with
+ * {@code audit.sink=local}.
+ * <p>
+ * The log is a directory ({@code audit.local.dir}, default {@code fortress-audit} under {@code java.io.tmpdir}) of
+ * fixed size segment files ({@code audit.local.segment.mb}, default 64) that are memory mapped, so recording a decision
+ * is a copy into the page cache with no system call or directory operation.  When a segment fills a new one is started
+ * and the oldest are deleted so no more than {@code audit.local.max.segments} (default 16) are kept.  Segments are forced
+ * to disk when they are rotated and when the sink is closed; decisions written to a segment survive a crash of the
+ * process but not of the operating system.
+ * <p>
+ * The directory belongs to one process, which holds a lock on its {@code .lock} file until the sink is closed.  A second
+ * process configured with the same directory, e.g. two instances on one host using the default, fails to create its
+ * sink rather than overwrite the first one's segments, and must be given its own {@code audit.local.dir}.
+ * <p>
+ * Each segment starts with a 16 byte header: magic, version and creation time.  Each record is its length followed by
+ * timestamp, flags, roles hash and the userId, objName, opName and objId strings, each as an unsigned short length and
+ * UTF-8 bytes.  A zero length ends the segment.
+ * <p>
+ * This class is thread safe.  Records are encoded before the append lock is taken, so the lock is held only for the copy.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LocalAuditSink implements AuditSink
+{
+    private static final String CLS_NM = LocalAuditSink.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String DIR = "audit.local.dir";
+    private static final String SEGMENT_MB = "audit.local.segment.mb";
+    private static final String MAX_SEGMENTS = "audit.local.max.segments";
+    private static final int DEFAULT_SEGMENT_MB = 64;
+    private static final int DEFAULT_MAX_SEGMENTS = 16;
+    private static final String PREFIX = "authz-";
+    private static final String SUFFIX = ".log";
+    private static final String LOCK_FILE = ".lock";
+    private static final int MAGIC = 0x46544155;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int CREATED_OFFSET = 8;
+    private static final byte GRANTED = 1;
+    private static final byte ADMIN = 2;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int MAX_STRING = 0xFFFE;
+    // records are timestamped before they are appended, so a segment may hold records slightly older than its creation:
+    private static final long CREATED_SLACK = TimeUnit.MINUTES.toMillis( 1 );
+
+    private final File dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final FileLock dirLock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ThreadLocal<ByteBuffer> scratch = new ThreadLocal<ByteBuffer>()
+    {
+        @Override
+        protected ByteBuffer initialValue()
+        {
+            return ByteBuffer.allocate( 256 );
+        }
+    };
+    // guarded by lock:
+    private MappedByteBuffer active;
+    private long activeSeq;
+    private boolean closed;
+
+
+    /**
+     * Create the sink using the {@code audit.local.*} config properties.  Writing starts in a new segment.
+     */
+    public LocalAuditSink()
+    {
+        Config cfg = Config.getInstance();
+        dir = new File( cfg.getProperty( DIR, new File( System.getProperty( "java.io.tmpdir" ), "fortress-audit" )
+            .getPath() ) );
+        segmentSize = ( int ) Math.min( Integer.MAX_VALUE, Math.max( 1, cfg.getInt( SEGMENT_MB, DEFAULT_SEGMENT_MB ) )
+            * 1024L * 1024L );
+        maxSegments = Math.max( 1, cfg.getInt( MAX_SEGMENTS, DEFAULT_MAX_SEGMENTS ) );
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            String error = CLS_NM + " cannot create directory [" + dir + "]";
+            throw new CfgRuntimeException( GlobalErrIds.AUDT_SINK_NOT_CONFIGURED, error );
+        }
+        dirLock = lockDir( dir );
+        List<Long> segments = listSegments();
+        activeSeq = segments.isEmpty() ? 0 : segments.get( segments.size() - 1 );
+        LOG.info( "LocalAuditSink dir [{}] segment size [{}] max segments [{}]", dir, segmentSize, maxSegments );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordAuthZ( AuthZRecord record ) throws SecurityException
+    {
+        ByteBuffer buf = encode( record );
+        lock.lock();
+        try
+        {
+            if ( closed )
+            {
+                throw new FinderException( GlobalErrIds.AUDT_SINK_WRITE_FAILED, CLS_NM + ".recordAuthZ sink is closed" );
+            }
+            if ( active == null || active.remaining() < buf.remaining() )
+            {
+                rotate();
+            }
+            active.put( buf );
+        }
+        catch ( IOException e )
+        {
+            String error = CLS_NM + ".recordAuthZ caught IOException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.AUDT_SINK_WRITE_FAILED, error, e );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void searchAuthZs( UserAudit audit, AuditHandler<AuthZRecord> handler ) throws SecurityException
+    {
+        long lastSeq;
+        int lastLimit;
+        lock.lock();
+        try
+        {
+            // records appended after this point are not returned:
+            lastSeq = active != null ? activeSeq : Long.MAX_VALUE;
+            lastLimit = active != null ? active.position() : Integer.MAX_VALUE;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        long begin = audit.getBeginDate() != null ? audit.getBeginDate().getTime() : Long.MIN_VALUE;
+        long end = audit.getEndDate() != null ? audit.getEndDate().getTime() : Long.MAX_VALUE;
+        List<Long> segments = listSegments();
+        for ( int i = 0; i < segments.size() && segments.get( i ) <= lastSeq; i++ )
+        {
+            long seq = segments.get( i );
+            // every record in this segment was written before the next segment was created:
+            if ( i + 1 < segments.size() && getCreated( segments.get( i + 1 ) ) < begin )
+            {
+                continue;
+            }
+            ByteBuffer buf = map( seq, seq == lastSeq ? lastLimit : Integer.MAX_VALUE );
+            if ( buf == null )
+            {
+                continue;
+            }
+            if ( buf.getLong( CREATED_OFFSET ) - CREATED_SLACK > end )
+            {
+                break;
+            }
+            if ( !scan( buf, audit, begin, end, handler ) )
+            {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            if ( active != null )
+            {
+                active.force();
+                active = null;
+            }
+            if ( !closed )
+            {
+                // closing the channel releases the lock:
+                dirLock.channel().close();
+            }
+            closed = true;
+        }
+        catch ( IOException e )
+        {
+            LOG.warn( "close could not release the lock on [{}], IOException={}", dir, e.getMessage() );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Take the lock that gives this process the directory.
+     *
+     * @throws CfgRuntimeException if the lock is held by another process or sink, or cannot be taken.
+     */
+    private static FileLock lockDir( File dir )
+    {
+        File file = new File( dir, LOCK_FILE );
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+            FileLock dirLock = channel.tryLock();
+            if ( dirLock != null )
+            {
+                return dirLock;
+            }
+        }
+        catch ( OverlappingFileLockException e )
+        {
+            // held by another sink in this process
+        }
+        catch ( IOException e )
+        {
+            closeQuietly( channel );
+            String error = CLS_NM + " cannot lock [" + file + "] caught IOException=" + e.getMessage();
+            throw new CfgRuntimeException( GlobalErrIds.AUDT_SINK_NOT_CONFIGURED, error, e );
+        }
+        closeQuietly( channel );
+        String error = CLS_NM + " directory [" + dir + "] is in use by another process, set " + DIR
+            + " to a directory of its own";
+        throw new CfgRuntimeException( GlobalErrIds.AUDT_SINK_NOT_CONFIGURED, error );
+    }
+
+
+    private static void closeQuietly( FileChannel channel )
+    {
+        if ( channel != null )
+        {
+            try
+            {
+                channel.close();
+            }
+            catch ( IOException e )
+            {
+                LOG.debug( "closeQuietly caught IOException={}", e.getMessage() );
+            }
+        }
+    }
+
+
+    /**
+     * Start a new segment.  Caller must hold the lock.
+     */
+    private void rotate() throws IOException
+    {
+        if ( active != null )
+        {
+            active.force();
+        }
+        long seq = activeSeq + 1;
+        File file = getFile( seq );
+        try ( RandomAccessFile raf = new RandomAccessFile( file, "rw" ) )
+        {
+            raf.setLength( segmentSize );
+            // the mapping remains valid after the file is closed:
+            active = raf.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, segmentSize );
+        }
+        activeSeq = seq;
+        active.putInt( MAGIC );
+        active.putInt( VERSION );
+        active.putLong( System.currentTimeMillis() );
+        LOG.debug( "rotate started segment [{}]", file );
+        purge();
+    }
+
+
+    /**
+     * Delete the oldest segments beyond the retention limit.  Caller must hold the lock.
+     */
+    private void purge()
+    {
+        List<Long> segments = listSegments();
+        for ( int i = 0; i < segments.size() - maxSegments; i++ )
+        {
+            File file = getFile( segments.get( i ) );
+            if ( !file.delete() )
+            {
+                LOG.warn( "purge could not delete segment [{}]", file );
+            }
+        }
+    }
+
+
+    private ByteBuffer encode( AuthZRecord record )
+    {
+        byte[] userId = toBytes( record.getUserId() );
+        byte[] objName = toBytes( record.getObjName() );
+        byte[] opName = toBytes( record.getOpName() );
+        byte[] objId = toBytes( record.getObjId() );
+        int size = 4 + 8 + 1 + 4 + 4 * 2 + length( userId ) + length( objName ) + length( opName ) + length( objId );
+        ByteBuffer buf = scratch.get();
+        if ( buf.capacity() < size )
+        {
+            buf = ByteBuffer.allocate( size );
+            scratch.set( buf );
+        }
+        buf.clear();
+        buf.putInt( size - 4 );
+        buf.putLong( record.getTimestamp() );
+        buf.put( ( byte ) ( ( record.isGranted() ? GRANTED : 0 ) | ( record.isAdmin() ? ADMIN : 0 ) ) );
+        buf.putInt( record.getRolesHash() );
+        putString( buf, userId );
+        putString( buf, objName );
+        putString( buf, opName );
+        putString( buf, objId );
+        buf.flip();
+        return buf;
+    }
+
+
+    private static byte[] toBytes( String value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        if ( bytes.length > MAX_STRING )
+        {
+            byte[] truncated = new byte[MAX_STRING];
+            System.arraycopy( bytes, 0, truncated, 0, MAX_STRING );
+            return truncated;
+        }
+        return bytes;
+    }
+
+
+    private static int length( byte[] bytes )
+    {
+        return bytes != null ? bytes.length : 0;
+    }
+
+
+    private static void putString( ByteBuffer buf, byte[] bytes )
+    {
+        if ( bytes == null )
+        {
+            buf.putShort( ( short ) NULL_STRING );
+        }
+        else
+        {
+            buf.putShort( ( short ) bytes.length );
+            buf.put( bytes );
+        }
+    }
+
+
+    private static String getString( ByteBuffer buf )
+    {
+        int length = buf.getShort() & 0xFFFF;
+        if ( length == NULL_STRING )
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+
+    /**
+     * Pass the matching records of one segment to the handler.
+     *
+     * @return false if the handler ended the search.
+     */
+    private static boolean scan( ByteBuffer buf, UserAudit audit, long begin, long end,
+        AuditHandler<AuthZRecord> handler ) throws SecurityException
+    {
+        buf.position( HEADER_SIZE );
+        while ( buf.remaining() >= 4 )
+        {
+            int length = buf.getInt();
+            if ( length <= 0 || length > buf.remaining() )
+            {
+                break;
+            }
+            int next = buf.position() + length;
+            long timestamp = buf.getLong();
+            byte flags = buf.get();
+            boolean granted = ( flags & GRANTED ) != 0;
+            // check the fixed fields before decoding the strings:
+            if ( timestamp >= begin && timestamp <= end && !( audit.isFailedOnly() && granted ) )
+            {
+                int rolesHash = buf.getInt();
+                AuthZRecord record = new AuthZRecord( timestamp, getString( buf ), getString( buf ), getString( buf ),
+                    getString( buf ), granted, ( flags & ADMIN ) != 0, rolesHash );
+                if ( matches( audit, record ) && !handler.handle( record ) )
+                {
+                    return false;
+                }
+            }
+            buf.position( next );
+        }
+        return true;
+    }
+
+
+    private static boolean matches( UserAudit audit, AuthZRecord record )
+    {
+        return matches( audit.getUserId(), record.getUserId() ) && matches( audit.getObjName(), record.getObjName() )
+            && matches( audit.getOpName(), record.getOpName() ) && matches( audit.getObjId(), record.getObjId() );
+    }
+
+
+    private static boolean matches( String criteria, String value )
+    {
+        return StringUtils.isEmpty( criteria ) || criteria.equalsIgnoreCase( value );
+    }
+
+
+    /**
+     * Map a segment read only.
+     *
+     * @param seq   sequence number of the segment.
+     * @param limit number of bytes written to the segment, if it is the one being appended to.
+     * @return the segment contents or null if it was purged or is not a valid segment.
+     */
+    private ByteBuffer map( long seq, int limit ) throws FinderException
+    {
+        File file = getFile( seq );
+        try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) )
+        {
+            long size = Math.min( channel.size(), limit );
+            if ( size < HEADER_SIZE )
+            {
+                return null;
+            }
+            ByteBuffer buf = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+            if ( buf.getInt( 0 ) != MAGIC || buf.getInt( 4 ) != VERSION )
+            {
+                LOG.warn( "map skipping invalid segment [{}]", file );
+                return null;
+            }
+            return buf;
+        }
+        catch ( NoSuchFileException e )
+        {
+            return null;
+        }
+        catch ( IOException e )
+        {
+            String error = CLS_NM + ".map segment [" + file + "] caught IOException=" + e.getMessage();
+            throw new FinderException( GlobalErrIds.AUDT_SINK_READ_FAILED, error, e );
+        }
+    }
+
+
+    /**
+     * @return creation time of a segment, or the maximum value if it cannot be read so the previous segment is not skipped.
+     */
+    private long getCreated( long seq )
+    {
+        try ( RandomAccessFile raf = new RandomAccessFile( getFile( seq ), "r" ) )
+        {
+            raf.seek( CREATED_OFFSET );
+            return raf.readLong();
+        }
+        catch ( IOException e )
+        {
+            return Long.MAX_VALUE;
+        }
+    }
+
+
+    private File getFile( long seq )
+    {
+        return new File( dir, PREFIX + String.format( "%012d", seq ) + SUFFIX );
+    }
+
+
+    /**
+     * @return sequence numbers of the segments on disk, oldest first.
+     */
+    private List<Long> listSegments()
+    {
+        List<Long> segments = new ArrayList<>();
+        String[] names = dir.list();
+        if ( names != null )
+        {
+            for ( String name : names )
+            {
+                if ( name.startsWith( PREFIX ) && name.endsWith( SUFFIX ) )
+                {
+                    try
+                    {
+                        segments.add( Long.parseLong( name.substring( PREFIX.length(),
+                            name.length() - SUFFIX.length() ) ) );
+                    }
+                    catch ( NumberFormatException e )
+                    {
+                        LOG.debug( "listSegments ignoring file [{}]", name );
+                    }
+                }
+            }
+        }
+        Collections.sort( segments );
+        return segments;
+    }
+}
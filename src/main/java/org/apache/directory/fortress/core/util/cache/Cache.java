@@ -20,12 +20,14 @@
 package org.apache.directory.fortress.core.util.cache;
 
 
-import net.sf.ehcache.search.Attribute;
-import net.sf.ehcache.search.Query;
-
-
 /**
  * This Interface is implemented by cacheable Fortress objects and is used to wrap the caching implementation to provide isolation.
+ * Instances are obtained from the {@link CacheProvider} configured in {@link CacheMgr}.
+ * <p>
+ * Implementations must be thread safe.  Storing a null value is equivalent to calling {@link #clear(Object)}.  A caller that
+ * misses on {@link #get(Object)} should always follow with {@link #put(Object, Object)}, using null if nothing was loaded,
+ * as the Ehcache provider holds a lock on the missed key until then.  Callers that only look at an entry, without loading
+ * it on a miss, use {@link #peek(Object)}, which takes no lock.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -41,6 +43,17 @@ public interface Cache
     Object get( Object key ) throws CacheException;
 
 
+    /**
+     * Return the value for a key if it is cached, without waiting for or locking the key, and without counting a hit or
+     * miss.  Nothing needs to be put after a miss.
+     *
+     * @param key is the name used to store the entry.
+     * @return entry stored in the cache, or null.
+     * @throws CacheException will wraps the implementation's exception.
+     */
+    Object peek( Object key ) throws CacheException;
+
+
     /**
      * Add a new entry to the cache.
      *
@@ -70,20 +83,9 @@ public interface Cache
 
 
     /**
-     * Retrieve the Cache attribute
-     *
-     * @param attributeName the name of search attribute
-     * @param <T> the type of search attribute
-     * @return the search attribute
-     * @throws CacheException will wraps the implementation's exception.
-     */
-    <T> Attribute<T> getSearchAttribute( String attributeName ) throws CacheException;
-
-
-    /**
-     * Create a search query for the cache.
+     * Return the usage counters for this cache.
      *
-     * @return a new Query builder
+     * @return snapshot of the cache's statistics.
      */
-    Query createQuery();
+    CacheStats getStats();
 }
\ No newline at end of file
@@ -19,15 +19,21 @@
  */
 package org.apache.directory.fortress.core.util.cache;
 
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.Ehcache;
-import net.sf.ehcache.constructs.blocking.BlockingCache;
+import java.security.Key;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.directory.fortress.core.CfgException;
+import org.apache.commons.lang.StringUtils;
 import org.apache.directory.fortress.core.CfgRuntimeException;
 import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.impl.ChangeFeed;
 import org.apache.directory.fortress.core.util.ClassUtil;
 import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.EncryptUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,14 +41,54 @@ import org.slf4j.LoggerFactory;
 /**
  * This class is a facade and shields internal Fortress objects from specifics of the actual
  * cache implementation that is in use.
+ * <p>
+ * The implementation is chosen with the {@code cache.provider} config property:
+ * <ul>
+ * <li>{@code ehcache} (default) - {@link EhCacheProvider}, configured by {@code ehcache.xml}.</li>
+ * <li>{@code local} - {@link LocalCacheProvider}, in-process W-TinyLFU caches.</li>
+ * <li>otherwise the fully qualified class name of a {@link CacheProvider} implementation.</li>
+ * </ul>
+ * <p>
+ * When {@code cache.tenant.partition} is true, caches obtained with {@link #getCache(String, String)} are split into one
+ * partition per tenant (contextId), named {@code <cacheName>@<contextId>}, so a busy tenant can only evict its own
+ * entries.  The size of each partition is {@code cache.<cacheName>.tenant.max}, defaulting to the size of the cache.
+ * <p>
+ * When {@code cache.bus.enable} is true, changes published with {@link #publish} are sent to the other fortress
+ * processes over an {@link InvalidationBus}, so they drop their copies.  The transport is chosen with
+ * {@code cache.bus.transport}: {@code multicast} (default) - {@link MulticastTransport}, {@code loopback} -
+ * {@link LoopbackTransport}, otherwise the class name of an {@link InvalidationTransport}.  Received changes are applied
+ * by the {@link InvalidationListener}s subscribed to the cache, or else by clearing the key in this process.  Every
+ * process must share the same {@code cache.bus.secret}, encrypted when {@link EncryptUtil} is enabled, which is used
+ * to sign the messages.  Without one the messages are not authenticated and the bus must only be used on a trusted
+ * network.
+ * <p>
+ * When {@code changefeed.enable} is true, the directory {@link ChangeFeed} is started along with the cache manager.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 public final class CacheMgr
 {
     private static final Logger LOG = LoggerFactory.getLogger( CacheMgr.class.getName() );
-    private static final String EHCACHE_CONFIG_FILE = "ehcache.config.file";
-    private CacheManager mEhCacheImpl;
+    private static final String CACHE_PROVIDER = "cache.provider";
+    private static final String EHCACHE = "ehcache";
+    private static final String LOCAL = "local";
+    private static final String TENANT_PARTITION = "cache.tenant.partition";
+    private static final String BUS_ENABLE = "cache.bus.enable";
+    private static final String BUS_TRANSPORT = "cache.bus.transport";
+    private static final String BUS_HEARTBEAT = "cache.bus.heartbeat.interval";
+    private static final String BUS_SECRET = "cache.bus.secret";
+    private static final String MULTICAST = "multicast";
+    private static final String LOOPBACK = "loopback";
+    private static final int DEFAULT_HEARTBEAT = 5;
+    /** Separates the cache name from the contextId in the name of a tenant partition. */
+    public static final String TENANT_SEPARATOR = "@";
+    private CacheProvider provider;
+    private boolean isPartitioned;
+    // tenant partitions handed out so far, by cache name then contextId:
+    private final ConcurrentMap<String, ConcurrentMap<String, Cache>> partitions = new ConcurrentHashMap<>();
+    // names of the caches handed out so far:
+    private final Set<String> cacheNames = ConcurrentHashMap.newKeySet();
+    private InvalidationBus bus;
     
     private static volatile CacheMgr sINSTANCE = null;
     
@@ -60,10 +106,16 @@ public final class CacheMgr
                 {
                     if( sINSTANCE == null){
                         sINSTANCE = new CacheMgr();
+                        // the feed updates the caches, start it once they can be reached:
+                        ChangeFeed.getInstance().start();
                     }
                 }
             }
         }
+        catch (CfgRuntimeException e)
+        {
+            throw e;
+        }
         catch (Exception e)
         {
             String error = "CacheMgr.getInstance caught Exception=" + e.getMessage();
@@ -75,27 +127,86 @@ public final class CacheMgr
     
     private void init()
     {
-        // Use default name of 'ehcache.xml':
-        String cacheConfig = Config.getInstance().getProperty( EHCACHE_CONFIG_FILE, "ehcache.xml" );
+        String providerName = Config.getInstance().getProperty( CACHE_PROVIDER, EHCACHE );
         try
         {
-            // 1. Construct an instance of Ehcache's CacheManager object.
-            // 2. Requires location of ehcache's config file as parameter.
-            // 3. The CacheManager reference then gets stored as member variable of this class instance.
-            mEhCacheImpl = new CacheManager( ClassUtil.resourceAsStream( cacheConfig ) );
+            if ( EHCACHE.equalsIgnoreCase( providerName ) )
+            {
+                provider = new EhCacheProvider();
+            }
+            else if ( LOCAL.equalsIgnoreCase( providerName ) )
+            {
+                provider = new LocalCacheProvider();
+            }
+            else
+            {
+                provider = ( CacheProvider ) ClassUtil.createInstance( providerName );
+            }
+            isPartitioned = Config.getInstance().getBoolean( TENANT_PARTITION, false );
+            LOG.info( "CacheMgr.init using cache provider [{}] tenant partition [{}]", provider.getClass().getName(),
+                isPartitioned );
         }
-        catch(CfgException ce)
+        catch(CfgRuntimeException ce)
         {
-            // The ehcache file cannot be located on this program's classpath.  Ehcache is required, throw runtime exception.
-            LOG.error( "CfgException caught  initializing cacher=" + ce.getMessage());
-            throw new CfgRuntimeException( GlobalErrIds.FT_CACHE_NOT_CONFIGURED, cacheConfig, ce );
+            throw ce;
         }
         catch(Exception e)
         {
-            String error = "CacheMgr.init caught Exception=" + e.getMessage();
+            String error = "CacheMgr.init provider [" + providerName + "] caught Exception=" + e.getMessage();
             LOG.error( error );
             throw new CfgRuntimeException( GlobalErrIds.FT_CACHE_NOT_CONFIGURED, error, e );
         }
+        if ( Config.getInstance().getBoolean( BUS_ENABLE, false ) )
+        {
+            initBus();
+        }
+    }
+
+    private void initBus()
+    {
+        String transportName = Config.getInstance().getProperty( BUS_TRANSPORT, MULTICAST );
+        try
+        {
+            InvalidationTransport transport;
+            if ( MULTICAST.equalsIgnoreCase( transportName ) )
+            {
+                transport = new MulticastTransport();
+            }
+            else if ( LOOPBACK.equalsIgnoreCase( transportName ) )
+            {
+                transport = new LoopbackTransport();
+            }
+            else
+            {
+                transport = ( InvalidationTransport ) ClassUtil.createInstance( transportName );
+            }
+            long heartbeat = TimeUnit.SECONDS.toMillis( Math.max( 1, Config.getInstance().getInt( BUS_HEARTBEAT,
+                DEFAULT_HEARTBEAT ) ) );
+            String secret = Config.getInstance().getProperty( BUS_SECRET );
+            Key signingKey = null;
+            if ( StringUtils.isNotEmpty( secret ) )
+            {
+                signingKey = InvalidationEvent.newKey( EncryptUtil.isEnabled() ? EncryptUtil.getInstance().decrypt(
+                    secret ) : secret );
+            }
+            else
+            {
+                LOG.warn( "CacheMgr.initBus {} not set, invalidation messages are not authenticated", BUS_SECRET );
+            }
+            InvalidationBus newBus = new InvalidationBus( transport, this, heartbeat, signingKey );
+            newBus.open();
+            bus = newBus;
+        }
+        catch(CfgRuntimeException ce)
+        {
+            throw ce;
+        }
+        catch(Exception e)
+        {
+            String error = "CacheMgr.initBus transport [" + transportName + "] caught Exception=" + e.getMessage();
+            LOG.error( error );
+            throw new CfgRuntimeException( GlobalErrIds.FT_CACHE_BUS_FAILED, error, e );
+        }
     }
 
     /**
@@ -108,30 +219,196 @@ public final class CacheMgr
     }
 
     /**
-     * Create a new reference to the ehcache cache implementation.
+     * Use the given provider, without tenant partitions or invalidation bus.  Used by the unit tests.
+     *
+     * @param provider of the caches.
+     */
+    CacheMgr( CacheProvider provider )
+    {
+        this.provider = provider;
+    }
+
+    /**
+     * Return a reference to the named cache from the configured provider.
      *
      * @param cacheName contains the name of the cache to retrieve
      * @return reference to cache for specified object.
      */
     public Cache getCache( String cacheName )
     {    	
-        Ehcache cache = mEhCacheImpl.getEhcache( cacheName );
-        if(cache != null)
+        cacheNames.add( cacheName );
+        return provider.getCache( cacheName );
+    }
+
+    /**
+     * Return the tenant's partition of the named cache, or the whole cache if partitioning is not enabled.
+     *
+     * @param cacheName contains the name of the cache to retrieve
+     * @param contextId contains the tenant id, null or empty for the default tenant.
+     * @return reference to cache for specified object and tenant.
+     */
+    public Cache getCache( String cacheName, String contextId )
+    {
+        cacheNames.add( cacheName );
+        if ( !isPartitioned )
+        {
+            return provider.getCache( cacheName );
+        }
+        contextId = getPartitionId( contextId );
+        ConcurrentMap<String, Cache> tenants = partitions.get( cacheName );
+        if ( tenants == null )
+        {
+            tenants = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Cache> existing = partitions.putIfAbsent( cacheName, tenants );
+            if ( existing != null )
+            {
+                tenants = existing;
+            }
+        }
+        Cache cache = tenants.get( contextId );
+        if ( cache == null )
+        {
+            cache = provider.getCache( cacheName + TENANT_SEPARATOR + contextId );
+            tenants.put( contextId, cache );
+        }
+        return cache;
+    }
+
+    private static String getPartitionId( String contextId )
+    {
+        if ( StringUtils.isEmpty( contextId ) || contextId.equalsIgnoreCase( GlobalIds.NULL ) )
+        {
+            return GlobalIds.HOME;
+        }
+        return contextId;
+    }
+
+    /**
+     * Remove all entries from the named cache, including every tenant partition of it.
+     *
+     * @param cacheName contains the name of the cache to clear
+     */
+    public void flush( String cacheName )
+    {
+        provider.getCache( cacheName ).flush();
+        ConcurrentMap<String, Cache> tenants = partitions.get( cacheName );
+        if ( tenants != null )
+        {
+            for ( Cache cache : tenants.values() )
+            {
+                cache.flush();
+            }
+        }
+    }
+
+    /**
+     * Tell the other fortress processes that an entry they may have cached was changed by this one.  Does nothing if the
+     * invalidation bus isn't enabled, or if called while applying a change received from it.
+     *
+     * @param cacheName contains the name of the cache, or of other data subscribed to with {@link #subscribe}.
+     * @param contextId contains the tenant id, may be null.
+     * @param key       contains the key of the changed entry, null if everything in the cache changed.
+     */
+    public void publish( String cacheName, String contextId, String key )
+    {
+        if ( bus != null )
+        {
+            bus.publish( cacheName, contextId, key );
+        }
+    }
+
+    /**
+     * Apply the changes to the named cache received from the other fortress processes with the listener, instead of
+     * clearing the key.
+     *
+     * @param cacheName contains the name of the cache, or of other data published with {@link #publish}.
+     * @param listener  applies the changes.
+     */
+    public void subscribe( String cacheName, InvalidationListener listener )
+    {
+        if ( bus != null )
+        {
+            bus.subscribe( cacheName, listener );
+        }
+    }
+
+    /**
+     * Run a change the other fortress processes learn about by themselves, e.g. from the directory, without publishing
+     * it.
+     *
+     * @param change contains the updates to the caches.
+     */
+    public void applyLocally( Runnable change )
+    {
+        if ( bus != null )
         {
-    	    return new EhCacheImpl( cacheName, new BlockingCache(cache) );
+            bus.applyLocally( change );
         }
         else
         {
-    	    return CacheFactory.createInstance( cacheName, mEhCacheImpl );
+            change.run();
         }
     }
 
+    /**
+     * Apply a change received from another process to a cache no listener subscribed to.  Caches never used here
+     * hold nothing to drop.
+     *
+     * @param cacheName contains the name of the cache.
+     * @param contextId contains the tenant id, may be null.
+     * @param key       contains the key of the changed entry, null for all.
+     */
+    void invalidate( String cacheName, String contextId, String key )
+    {
+        if ( !cacheNames.contains( cacheName ) )
+        {
+            return;
+        }
+        if ( key == null )
+        {
+            flush( cacheName );
+            return;
+        }
+        provider.getCache( cacheName ).clear( key );
+        ConcurrentMap<String, Cache> tenants = partitions.get( cacheName );
+        if ( tenants != null )
+        {
+            Cache cache = tenants.get( getPartitionId( contextId ) );
+            if ( cache != null )
+            {
+                cache.clear( key );
+            }
+        }
+    }
+
+    /**
+     * Return the name of the cache a tenant partition belongs to.
+     *
+     * @param cacheName contains the name of a cache or tenant partition.
+     * @return the cache name without the tenant suffix.
+     */
+    static String getBaseName( String cacheName )
+    {
+        int index = cacheName.indexOf( TENANT_SEPARATOR );
+        return index > 0 ? cacheName.substring( 0, index ) : cacheName;
+    }
+
     /**
      * Used to clear all elements from all cache objects.
      *
      */
     public void clearAll()
     {
-        mEhCacheImpl.clearAll();
+        provider.clearAll();
+    }
+
+    /**
+     * Return the usage counters of every cache in use.
+     *
+     * @return list of statistics, one per cache.
+     */
+    public List<CacheStats> getStats()
+    {
+        return provider.getStats();
     }
 }
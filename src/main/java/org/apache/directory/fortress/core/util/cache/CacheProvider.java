@@ -0,0 +1,56 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.util.List;
+
+
+/**
+ * Service provider interface for the caching implementation used by Fortress.  The provider in effect is selected with the
+ * {@code cache.provider} config property, see {@link CacheMgr}.  Custom providers must supply a public no-argument
+ * constructor.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface CacheProvider
+{
+    /**
+     * Return the cache with the given name, creating it on first use.  Repeated calls with the same name must return
+     * handles to the same underlying data.
+     *
+     * @param cacheName contains the name of the cache, e.g. {@code fortress.roles}.
+     * @return handle to the cache.
+     * @throws CacheException if the cache cannot be created.
+     */
+    Cache getCache( String cacheName ) throws CacheException;
+
+
+    /**
+     * Remove all entries from every cache managed by this provider.
+     */
+    void clearAll();
+
+
+    /**
+     * @return statistics for every cache created by this provider.
+     */
+    List<CacheStats> getStats();
+}
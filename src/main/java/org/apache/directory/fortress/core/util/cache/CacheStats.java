@@ -0,0 +1,111 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+/**
+ * Point in time snapshot of the usage counters of a single {@link Cache}.
+ * <p>
+ * This class is immutable and thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class CacheStats
+{
+    private final String name;
+    private final long hitCount;
+    private final long missCount;
+    private final long putCount;
+    private final long evictionCount;
+    private final long size;
+
+
+    /**
+     * @param name          name of the cache.
+     * @param hitCount      number of get calls that returned a value.
+     * @param missCount     number of get calls that returned null.
+     * @param putCount      number of entries added or replaced.
+     * @param evictionCount number of entries removed due to size or expiration.
+     * @param size          number of entries currently held.
+     */
+    public CacheStats( String name, long hitCount, long missCount, long putCount, long evictionCount, long size )
+    {
+        this.name = name;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+
+    public String getName()
+    {
+        return name;
+    }
+
+
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+
+    public long getMissCount()
+    {
+        return missCount;
+    }
+
+
+    public long getPutCount()
+    {
+        return putCount;
+    }
+
+
+    public long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+
+    public long getSize()
+    {
+        return size;
+    }
+
+
+    /**
+     * @return ratio of hits to total gets, 0 if the cache has not been read.
+     */
+    public double getHitRatio()
+    {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : ( double ) hitCount / total;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return "CacheStats{name=" + name + ", hits=" + hitCount + ", misses=" + missCount + ", puts=" + putCount
+            + ", evictions=" + evictionCount + ", size=" + size + "}";
+    }
+}
@@ -20,11 +20,11 @@
 package org.apache.directory.fortress.core.util.cache;
 
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import net.sf.ehcache.Element;
 import net.sf.ehcache.constructs.blocking.BlockingCache;
 import net.sf.ehcache.constructs.blocking.LockTimeoutException;
-import net.sf.ehcache.search.Attribute;
-import net.sf.ehcache.search.Query;
 
 import org.apache.directory.fortress.core.CfgRuntimeException;
 import org.apache.directory.fortress.core.GlobalErrIds;
@@ -44,6 +44,9 @@ public class EhCacheImpl implements Cache
 	
     private BlockingCache cache;
     private final String name;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
 
 
     /**
@@ -82,12 +85,14 @@ public class EhCacheImpl implements Cache
         try
         {
             Element element = cache.get( key );
-            if ( element != null )
+            if ( element != null && element.getObjectValue() != null )
             {
+                hits.incrementAndGet();
                 return element.getObjectValue();
             }
             else
             {
+                misses.incrementAndGet();
                 return null;
             }
         }
@@ -104,6 +109,35 @@ public class EhCacheImpl implements Cache
     }
 
 
+    /**
+     * Return the value for a key from the cache underneath the blocking cache, which neither waits for nor locks the key.
+     *
+     * @param key is the name used to store the entry.
+     * @return entry stored in the cache, or null.
+     * @throws CacheException in the event ehcache throws an exception it will be wrapped.
+     */
+    @Override
+    public Object peek( Object key ) throws CacheException
+    {
+        if ( cache == null )
+        {
+            String error = "peek detected null cache name [" + name + "]";
+            throw new CacheException( GlobalErrIds.FT_NULL_CACHE, error );
+        }
+        try
+        {
+            Element element = cache.getQuiet( key );
+            return element != null ? element.getObjectValue() : null;
+        }
+        catch ( net.sf.ehcache.CacheException ce )
+        {
+            String error = "peek cache name [" + name + "] key [" + key + "] caught CacheException="
+                + ce.getMessage();
+            throw new CacheException( GlobalErrIds.FT_CACHE_GET_ERR, error, ce );
+        }
+    }
+
+
     /**
      * Add a new entry to the cache.
      *
@@ -122,6 +156,7 @@ public class EhCacheImpl implements Cache
         try
         {
             cache.put( new Element( key, value ) );
+            puts.incrementAndGet();
         }
         catch ( net.sf.ehcache.CacheException ce )
         {
@@ -189,39 +224,19 @@ public class EhCacheImpl implements Cache
 
 
     /**
-     * Retrieve the Cache attribute
-     *
-     * @param attributeName the name of search attribute
-     * @param <T> the type of search attribute
-     * @return the search attribute
-     * @throws CacheException in the event ehcache throws an exception it will be wrapped.
+     * {@inheritDoc}
      */
     @Override
-    public <T> Attribute<T> getSearchAttribute( String attributeName ) throws CacheException
+    public CacheStats getStats()
     {
-        if ( cache == null )
+        long evictions = 0;
+        long size = 0;
+        if ( cache != null )
         {
-            String error = "getSearchAttribute detected null cache name [" + name + "]";
-            throw new CacheException( GlobalErrIds.FT_NULL_CACHE, error );
-        }
-        return this.cache.getSearchAttribute( attributeName );
-    }
-
-
-    /**
-     * Create a search query builder for the cache.
-     *
-     * @return a new Query builder
-     */
-    @Override
-    public Query createQuery()
-    {
-        if ( cache == null )
-        {
-            String error = "createQuery detected null cache name [" + name + "]";
-            throw new CacheException( GlobalErrIds.FT_NULL_CACHE, error );
+            evictions = cache.getStatistics().getEvictionCount();
+            size = cache.getSize();
         }
-        return this.cache.createQuery();
+        return new CacheStats( name, hits.get(), misses.get(), puts.get(), evictions, size );
     }
 
 
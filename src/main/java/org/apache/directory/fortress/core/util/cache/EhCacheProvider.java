@@ -0,0 +1,167 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.constructs.blocking.BlockingCache;
+
+import org.apache.directory.fortress.core.CfgException;
+import org.apache.directory.fortress.core.CfgRuntimeException;
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.util.ClassUtil;
+import org.apache.directory.fortress.core.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The default {@link CacheProvider}, backed by <a href="http://ehcache.org//">Ehcache</a>.  Caches are declared in the
+ * file named by the {@code ehcache.config.file} config property, {@code ehcache.xml} by default, and each one is
+ * wrapped in a {@code BlockingCache} so concurrent misses on the same key wait for the first loader.  Tenant partitions,
+ * see {@link CacheMgr#getCache(String, String)}, are added at runtime as copies of the cache they belong to.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class EhCacheProvider implements CacheProvider
+{
+    private static final Logger LOG = LoggerFactory.getLogger( EhCacheProvider.class.getName() );
+    private static final String EHCACHE_CONFIG_FILE = "ehcache.config.file";
+    private static final String CACHE_PREFIX = "cache.";
+    private static final String TENANT_MAX = ".tenant.max";
+    private final CacheManager mEhCacheImpl;
+    private final ConcurrentMap<String, EhCacheImpl> caches = new ConcurrentHashMap<>();
+
+
+    /**
+     * Construct an instance of Ehcache's CacheManager using the configured ehcache file.
+     */
+    public EhCacheProvider()
+    {
+        // Use default name of 'ehcache.xml':
+        String cacheConfig = Config.getInstance().getProperty( EHCACHE_CONFIG_FILE, "ehcache.xml" );
+        try
+        {
+            // 1. Construct an instance of Ehcache's CacheManager object.
+            // 2. Requires location of ehcache's config file as parameter.
+            // 3. The CacheManager reference then gets stored as member variable of this class instance.
+            mEhCacheImpl = new CacheManager( ClassUtil.resourceAsStream( cacheConfig ) );
+        }
+        catch(CfgException ce)
+        {
+            // The ehcache file cannot be located on this program's classpath.  Ehcache is required, throw runtime exception.
+            LOG.error( "CfgException caught  initializing cacher=" + ce.getMessage());
+            throw new CfgRuntimeException( GlobalErrIds.FT_CACHE_NOT_CONFIGURED, cacheConfig, ce );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cache getCache( String cacheName )
+    {
+        EhCacheImpl cache = caches.get( cacheName );
+        if ( cache == null )
+        {
+            Ehcache ehcache = mEhCacheImpl.getEhcache( cacheName );
+            if ( ehcache == null && !CacheMgr.getBaseName( cacheName ).equals( cacheName ) )
+            {
+                ehcache = addTenantCache( cacheName );
+            }
+            if ( ehcache == null )
+            {
+                String error = "getCache cache: " + cacheName + " is null";
+                throw new CfgRuntimeException( GlobalErrIds.FT_CACHE_NOT_CONFIGURED, error );
+            }
+            BlockingCache blockingCache = new BlockingCache( ehcache );
+            blockingCache.setTimeoutMillis( 60000 );
+            cache = new EhCacheImpl( cacheName, blockingCache );
+            EhCacheImpl existing = caches.putIfAbsent( cacheName, cache );
+            if ( existing != null )
+            {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
+
+    /**
+     * Declare a tenant partition with the configuration of the cache it belongs to, sized by
+     * {@code cache.<cacheName>.tenant.max} if set.
+     *
+     * @param cacheName name of the partition, {@code <cacheName>@<contextId>}.
+     * @return the new cache or null if the cache it belongs to is not declared.
+     */
+    private Ehcache addTenantCache( String cacheName )
+    {
+        String baseName = CacheMgr.getBaseName( cacheName );
+        Ehcache base = mEhCacheImpl.getEhcache( baseName );
+        if ( base == null )
+        {
+            return null;
+        }
+        CacheConfiguration config = base.getCacheConfiguration().clone();
+        config.setName( cacheName );
+        int max = Config.getInstance().getInt( CACHE_PREFIX + baseName + TENANT_MAX, 0 );
+        if ( max > 0 )
+        {
+            config.setMaxEntriesLocalHeap( max );
+        }
+        LOG.info( "addTenantCache [{}] max [{}]", cacheName, config.getMaxEntriesLocalHeap() );
+        return mEhCacheImpl.addCacheIfAbsent( new net.sf.ehcache.Cache( config ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearAll()
+    {
+        mEhCacheImpl.clearAll();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CacheStats> getStats()
+    {
+        List<CacheStats> stats = new ArrayList<>();
+        for ( EhCacheImpl cache : caches.values() )
+        {
+            stats.add( cache.getStats() );
+        }
+        return stats;
+    }
+}
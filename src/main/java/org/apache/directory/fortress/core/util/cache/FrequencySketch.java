@@ -0,0 +1,123 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+/**
+ * Count-min sketch used by {@link LocalCacheImpl} to estimate how often a key has been accessed recently.  Four
+ * counters, each capped at 15, are kept per key and all counters are halved once the number of recorded accesses
+ * reaches ten times the cache capacity, so the estimate favors recent popularity.
+ * <p>
+ * This class is NOT thread safe, callers must hold the cache's eviction lock.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class FrequencySketch
+{
+    private static final int[] SEEDS =
+        {
+            0x97cb3127, 0xb5f9ac5d, 0x6a09e667, 0x3c6ef372
+    };
+    private static final int MAX_COUNT = 15;
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+
+    /**
+     * @param capacity maximum number of entries held by the owning cache.
+     */
+    FrequencySketch( int capacity )
+    {
+        int width = Integer.highestOneBit( Math.max( 16, capacity * 4 ) - 1 ) << 1;
+        this.table = new byte[width];
+        this.mask = width - 1;
+        this.sampleSize = Math.max( 10, capacity * 10 );
+    }
+
+
+    /**
+     * Record one access of the key.
+     *
+     * @param key that was accessed.
+     */
+    void increment( Object key )
+    {
+        int hash = spread( key.hashCode() );
+        boolean added = false;
+        for ( int seed : SEEDS )
+        {
+            int index = indexOf( hash, seed );
+            if ( table[index] < MAX_COUNT )
+            {
+                table[index]++;
+                added = true;
+            }
+        }
+        if ( added && ++additions >= sampleSize )
+        {
+            reset();
+        }
+    }
+
+
+    /**
+     * Return the estimated number of recent accesses of the key.
+     *
+     * @param key to look up.
+     * @return estimate between 0 and 15.
+     */
+    int frequency( Object key )
+    {
+        int hash = spread( key.hashCode() );
+        int frequency = MAX_COUNT;
+        for ( int seed : SEEDS )
+        {
+            frequency = Math.min( frequency, table[indexOf( hash, seed )] );
+        }
+        return frequency;
+    }
+
+
+    private void reset()
+    {
+        for ( int i = 0; i < table.length; i++ )
+        {
+            table[i] = ( byte ) ( table[i] >>> 1 );
+        }
+        additions = additions >>> 1;
+    }
+
+
+    private int indexOf( int hash, int seed )
+    {
+        int h = ( hash ^ seed ) * 0x9e3779b9;
+        return ( h ^ ( h >>> 16 ) ) & mask;
+    }
+
+
+    private static int spread( int hash )
+    {
+        hash = ( ( hash >>> 16 ) ^ hash ) * 0x45d9f3b;
+        return ( hash >>> 16 ) ^ hash;
+    }
+}
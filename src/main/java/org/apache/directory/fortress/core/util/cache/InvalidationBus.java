@@ -0,0 +1,370 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.io.IOException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Keeps the caches of the fortress processes sharing a directory consistent with each other.  Each change a process makes
+ * to cached data is published as a small {@link InvalidationEvent} naming the cache, tenant and key, and every other
+ * process drops or reloads that entry when it receives it.
+ * <p>
+ * A process is identified by a random node id, and numbers its invalidations from 1.  Each also sends a heartbeat with
+ * its last number every {@code cache.bus.heartbeat.interval} seconds, so a receiver notices a lost invalidation either
+ * from the next one or within one interval.  A receiver that lost a message clears all of its caches, see
+ * {@link InvalidationListener#refresh()}.  Peers not heard from for ten intervals are forgotten.
+ * <p>
+ * Invalidations are applied with publishing turned off on the applying thread so they aren't sent on again.  Changes
+ * every process learns about by itself, such as those of the directory change feed, are applied the same way with
+ * {@link #applyLocally(Runnable)}.
+ * <p>
+ * Messages are signed with a key derived from {@code cache.bus.secret}, and unsigned or forged ones are dropped.
+ * Without a secret any host that can reach the transport can drop cached entries, or announce a sequence number ahead
+ * of a real node so that node's invalidations are ignored and stale authorization data stays cached.  The bus must
+ * then only be used on a trusted network.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class InvalidationBus implements InvalidationTransport.Receiver
+{
+    private static final String CLS_NM = InvalidationBus.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final int PEER_TIMEOUT_INTERVALS = 10;
+
+    private final long nodeId = new SecureRandom().nextLong();
+    private final InvalidationTransport transport;
+    private final CacheMgr cacheMgr;
+    private final long heartbeatMillis;
+    private final Key signingKey;
+    private final ConcurrentMap<String, List<InvalidationListener>> listeners = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Peer> peers = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> isApplying = new ThreadLocal<>();
+    private ScheduledExecutorService heartbeats;
+    // guarded by this, number of the last invalidation sent:
+    private long sequence;
+
+
+    /**
+     * @param transport       carries the messages.
+     * @param cacheMgr        whose caches are invalidated when no listener is subscribed.
+     * @param heartbeatMillis interval between heartbeats.
+     * @param signingKey      to sign and verify the messages with, null to send and accept unsigned messages.
+     */
+    InvalidationBus( InvalidationTransport transport, CacheMgr cacheMgr, long heartbeatMillis, Key signingKey )
+    {
+        this.transport = transport;
+        this.cacheMgr = cacheMgr;
+        this.heartbeatMillis = heartbeatMillis;
+        this.signingKey = signingKey;
+    }
+
+
+    /**
+     * Join the bus and start the heartbeats.
+     *
+     * @throws IOException if the transport can't be opened.
+     */
+    synchronized void open() throws IOException
+    {
+        transport.open( this );
+        heartbeats = Executors.newSingleThreadScheduledExecutor( ThreadUtil.newThreadFactory( "fortress-cache-bus-" ) );
+        heartbeats.scheduleWithFixedDelay( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                heartbeat();
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS );
+        LOG.info( "open node [{}] transport [{}] heartbeat [{}] ms signed [{}]", Long.toHexString( nodeId ),
+            transport.getClass().getName(), heartbeatMillis, signingKey != null );
+    }
+
+
+    /**
+     * Leave the bus.
+     */
+    synchronized void close()
+    {
+        if ( heartbeats != null )
+        {
+            heartbeats.shutdownNow();
+            heartbeats = null;
+        }
+        transport.close();
+    }
+
+
+    /**
+     * @param cacheName whose invalidations the listener applies instead of the cache manager.
+     * @param listener  to add.
+     */
+    void subscribe( String cacheName, InvalidationListener listener )
+    {
+        List<InvalidationListener> subscribed = listeners.get( cacheName );
+        if ( subscribed == null )
+        {
+            subscribed = new CopyOnWriteArrayList<>();
+            List<InvalidationListener> existing = listeners.putIfAbsent( cacheName, subscribed );
+            if ( existing != null )
+            {
+                subscribed = existing;
+            }
+        }
+        subscribed.add( listener );
+    }
+
+
+    /**
+     * Tell the other processes about a change, unless called while applying one.
+     *
+     * @param cacheName of the cache changed.
+     * @param contextId of the tenant, may be null.
+     * @param key       of the entry changed, null for the whole cache.
+     */
+    void publish( String cacheName, String contextId, String key )
+    {
+        if ( Boolean.TRUE.equals( isApplying.get() ) )
+        {
+            return;
+        }
+        synchronized ( this )
+        {
+            // a message that can't be sent still takes its number, so the receivers know to refresh:
+            sequence++;
+            send( InvalidationEvent.invalidate( nodeId, sequence, cacheName, contextId, key ) );
+        }
+    }
+
+
+    /**
+     * Run a change to the caches without publishing it.
+     *
+     * @param change to run.
+     */
+    void applyLocally( Runnable change )
+    {
+        if ( Boolean.TRUE.equals( isApplying.get() ) )
+        {
+            change.run();
+            return;
+        }
+        isApplying.set( Boolean.TRUE );
+        try
+        {
+            change.run();
+        }
+        finally
+        {
+            isApplying.remove();
+        }
+    }
+
+
+    /**
+     * Caller must hold the lock of this bus, so messages leave in the order they are numbered.
+     */
+    private void send( InvalidationEvent event )
+    {
+        try
+        {
+            transport.send( event.encode( signingKey ) );
+        }
+        catch ( IOException e )
+        {
+            LOG.warn( "send sequence [{}] caught IOException={}", event.getSequence(), e.getMessage() );
+        }
+    }
+
+
+    private void heartbeat()
+    {
+        synchronized ( this )
+        {
+            send( InvalidationEvent.heartbeat( nodeId, sequence ) );
+        }
+        long oldest = System.currentTimeMillis() - PEER_TIMEOUT_INTERVALS * heartbeatMillis;
+        for ( Iterator<Map.Entry<Long, Peer>> it = peers.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry<Long, Peer> entry = it.next();
+            if ( entry.getValue().lastHeard < oldest )
+            {
+                LOG.info( "heartbeat node [{}] no longer heard", Long.toHexString( entry.getKey() ) );
+                it.remove();
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void received( byte[] message, int length )
+    {
+        InvalidationEvent event;
+        try
+        {
+            event = InvalidationEvent.decode( message, length, signingKey );
+        }
+        catch ( IOException e )
+        {
+            LOG.warn( "received malformed message of [{}] bytes: {}", length, e.getMessage() );
+            return;
+        }
+        if ( event == null || event.getNodeId() == nodeId )
+        {
+            return;
+        }
+        Peer peer = peers.get( event.getNodeId() );
+        boolean isMissed = false;
+        boolean isNew = false;
+        if ( peer == null )
+        {
+            // nothing it sent before now can be in our caches, apart from what a refresh drops anyway:
+            peer = new Peer( event.getSequence() - ( event.isHeartbeat() ? 0 : 1 ) );
+            Peer existing = peers.putIfAbsent( event.getNodeId(), peer );
+            if ( existing != null )
+            {
+                peer = existing;
+            }
+            else
+            {
+                LOG.info( "received first message of node [{}]", Long.toHexString( event.getNodeId() ) );
+            }
+        }
+        synchronized ( peer )
+        {
+            peer.lastHeard = System.currentTimeMillis();
+            if ( event.isHeartbeat() )
+            {
+                isMissed = event.getSequence() > peer.sequence;
+            }
+            else if ( event.getSequence() > peer.sequence )
+            {
+                isMissed = event.getSequence() > peer.sequence + 1;
+                isNew = true;
+            }
+            peer.sequence = Math.max( peer.sequence, event.getSequence() );
+        }
+        if ( isMissed )
+        {
+            LOG.warn( "received node [{}] sequence [{}], messages were lost", Long.toHexString( event.getNodeId() ),
+                event.getSequence() );
+            refresh();
+        }
+        else if ( isNew )
+        {
+            try
+            {
+                apply( event );
+            }
+            catch ( RuntimeException e )
+            {
+                LOG.warn( "received cache [{}] key [{}] could not be applied, caught {}={}", event.getCacheName(),
+                    event.getKey(), e.getClass().getSimpleName(), e.getMessage() );
+                refresh();
+            }
+        }
+    }
+
+
+    private void apply( final InvalidationEvent event )
+    {
+        LOG.debug( "apply cache [{}] contextId [{}] key [{}]", event.getCacheName(), event.getContextId(),
+            event.getKey() );
+        applyLocally( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                List<InvalidationListener> subscribed = listeners.get( event.getCacheName() );
+                if ( subscribed == null || subscribed.isEmpty() )
+                {
+                    cacheMgr.invalidate( event.getCacheName(), event.getContextId(), event.getKey() );
+                    return;
+                }
+                for ( InvalidationListener listener : subscribed )
+                {
+                    listener.invalidate( event.getContextId(), event.getKey() );
+                }
+            }
+        } );
+    }
+
+
+    /**
+     * Drop everything cached.
+     */
+    private void refresh()
+    {
+        applyLocally( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                cacheMgr.clearAll();
+                for ( List<InvalidationListener> subscribed : listeners.values() )
+                {
+                    for ( InvalidationListener listener : subscribed )
+                    {
+                        listener.refresh();
+                    }
+                }
+            }
+        } );
+    }
+
+
+    /**
+     * What was received from another process.
+     */
+    private static final class Peer
+    {
+        // guarded by this:
+        private long sequence;
+        private volatile long lastHeard = System.currentTimeMillis();
+
+
+        Peer( long sequence )
+        {
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+
+/**
+ * One message of the {@link InvalidationBus}, in its compact binary form:
+ * <pre>
+ * magic (1 byte) | version (1) | type (1) | nodeId (8) | sequence (8) | cacheName | contextId | key
+ * </pre>
+ * The names are written as modified UTF-8 preceded by a presence flag, and are absent from heartbeats.  The sequence
+ * of an invalidation is one more than the previous invalidation sent by the node, a heartbeat repeats the last one.
+ * <p>
+ * When the bus has a signing key the message is followed by its HMAC-SHA256, and messages without a valid one are
+ * rejected.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class InvalidationEvent
+{
+    private static final byte MAGIC = 0x46;
+    private static final byte VERSION = 1;
+    private static final byte INVALIDATE = 0;
+    private static final byte HEARTBEAT = 1;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_LENGTH = 32;
+
+    private final long nodeId;
+    private final long sequence;
+    private final boolean isHeartbeat;
+    private final String cacheName;
+    private final String contextId;
+    private final String key;
+
+
+    private InvalidationEvent( long nodeId, long sequence, boolean isHeartbeat, String cacheName, String contextId,
+        String key )
+    {
+        this.nodeId = nodeId;
+        this.sequence = sequence;
+        this.isHeartbeat = isHeartbeat;
+        this.cacheName = cacheName;
+        this.contextId = contextId;
+        this.key = key;
+    }
+
+
+    /**
+     * @param nodeId    of the sender.
+     * @param sequence  of this invalidation.
+     * @param cacheName of the cache changed.
+     * @param contextId of the tenant, may be null.
+     * @param key       of the entry changed, null for the whole cache.
+     * @return new invalidation.
+     */
+    static InvalidationEvent invalidate( long nodeId, long sequence, String cacheName, String contextId, String key )
+    {
+        return new InvalidationEvent( nodeId, sequence, false, cacheName, contextId, key );
+    }
+
+
+    /**
+     * @param nodeId   of the sender.
+     * @param sequence of the last invalidation sent.
+     * @return new heartbeat.
+     */
+    static InvalidationEvent heartbeat( long nodeId, long sequence )
+    {
+        return new InvalidationEvent( nodeId, sequence, true, null, null, null );
+    }
+
+
+    /**
+     * @param signingKey to sign the message with, null to leave it unsigned.
+     * @return the encoded message.
+     * @throws IOException if it can't be encoded.
+     */
+    byte[] encode( Key signingKey ) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 );
+        DataOutputStream out = new DataOutputStream( bytes );
+        out.writeByte( MAGIC );
+        out.writeByte( VERSION );
+        out.writeByte( isHeartbeat ? HEARTBEAT : INVALIDATE );
+        out.writeLong( nodeId );
+        out.writeLong( sequence );
+        if ( !isHeartbeat )
+        {
+            out.writeUTF( cacheName );
+            writeString( out, contextId );
+            writeString( out, key );
+        }
+        if ( signingKey != null )
+        {
+            out.write( newMac( signingKey ).doFinal( bytes.toByteArray() ) );
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+
+    /**
+     * @param message    received.
+     * @param length     of the message.
+     * @param signingKey the message must be signed with, null to accept unsigned messages.
+     * @return the decoded message, null if it isn't one of ours.
+     * @throws IOException if the message is truncated or its signature is not valid.
+     */
+    static InvalidationEvent decode( byte[] message, int length, Key signingKey ) throws IOException
+    {
+        if ( signingKey != null )
+        {
+            length -= MAC_LENGTH;
+            if ( length < 0 )
+            {
+                throw new IOException( "message is not signed" );
+            }
+            Mac mac = newMac( signingKey );
+            mac.update( message, 0, length );
+            byte[] expected = mac.doFinal();
+            byte[] actual = new byte[MAC_LENGTH];
+            System.arraycopy( message, length, actual, 0, MAC_LENGTH );
+            if ( !MessageDigest.isEqual( expected, actual ) )
+            {
+                throw new IOException( "message signature is not valid" );
+            }
+        }
+        DataInputStream in = new DataInputStream( new ByteArrayInputStream( message, 0, length ) );
+        if ( length < 3 || in.readByte() != MAGIC || in.readByte() != VERSION )
+        {
+            return null;
+        }
+        byte type = in.readByte();
+        long nodeId = in.readLong();
+        long sequence = in.readLong();
+        if ( type == HEARTBEAT )
+        {
+            return heartbeat( nodeId, sequence );
+        }
+        else if ( type != INVALIDATE )
+        {
+            return null;
+        }
+        String cacheName = in.readUTF();
+        String contextId = readString( in );
+        return invalidate( nodeId, sequence, cacheName, contextId, readString( in ) );
+    }
+
+
+    private static Mac newMac( Key key ) throws IOException
+    {
+        try
+        {
+            Mac mac = Mac.getInstance( MAC_ALGORITHM );
+            mac.init( key );
+            return mac;
+        }
+        catch ( GeneralSecurityException e )
+        {
+            throw new IOException( MAC_ALGORITHM + " not available", e );
+        }
+    }
+
+
+    /**
+     * @param secret shared by the processes on the bus.
+     * @return key to sign and verify the messages with.
+     */
+    static Key newKey( String secret )
+    {
+        return new SecretKeySpec( secret.getBytes( StandardCharsets.UTF_8 ), MAC_ALGORITHM );
+    }
+
+
+    private static void writeString( DataOutputStream out, String value ) throws IOException
+    {
+        out.writeBoolean( value != null );
+        if ( value != null )
+        {
+            out.writeUTF( value );
+        }
+    }
+
+
+    private static String readString( DataInputStream in ) throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+
+    long getNodeId()
+    {
+        return nodeId;
+    }
+
+
+    long getSequence()
+    {
+        return sequence;
+    }
+
+
+    boolean isHeartbeat()
+    {
+        return isHeartbeat;
+    }
+
+
+    String getCacheName()
+    {
+        return cacheName;
+    }
+
+
+    String getContextId()
+    {
+        return contextId;
+    }
+
+
+    String getKey()
+    {
+        return key;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+/**
+ * Told about invalidations published by other fortress processes for one cache, see {@link CacheMgr#subscribe}.
+ * Implementations must apply the change to their local state only, never publish it again.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface InvalidationListener
+{
+    /**
+     * Another process changed an entry of the cache.
+     *
+     * @param contextId of the tenant, may be null for HOME.
+     * @param key       of the changed entry, null if the whole cache was dropped.
+     */
+    void invalidate( String contextId, String key );
+
+
+    /**
+     * Invalidations may have been lost, everything held outside of {@link CacheMgr} must be reloaded.  Called after all
+     * caches were cleared.
+     */
+    void refresh();
+}
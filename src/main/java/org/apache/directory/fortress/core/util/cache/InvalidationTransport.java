@@ -0,0 +1,71 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.io.IOException;
+
+
+/**
+ * Carries the messages of the {@link InvalidationBus} between fortress processes.  Delivery may be unreliable and
+ * unordered, the bus detects lost messages.  Implementations are selected with {@code cache.bus.transport} and must have
+ * a public no argument constructor.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface InvalidationTransport
+{
+    /**
+     * Handles the messages received by a transport.
+     */
+    interface Receiver
+    {
+        /**
+         * @param message received, the array is not retained by the transport.
+         * @param length  of the message.
+         */
+        void received( byte[] message, int length );
+    }
+
+
+    /**
+     * Join the bus and start delivering the messages of the other processes.  Messages sent by this process may be
+     * delivered too.
+     *
+     * @param receiver of the messages.
+     * @throws IOException if the bus can't be joined.
+     */
+    void open( Receiver receiver ) throws IOException;
+
+
+    /**
+     * Send a message to every process on the bus.
+     *
+     * @param message to send.
+     * @throws IOException if the message can't be sent.
+     */
+    void send( byte[] message ) throws IOException;
+
+
+    /**
+     * Leave the bus and stop delivering messages.
+     */
+    void close();
+}
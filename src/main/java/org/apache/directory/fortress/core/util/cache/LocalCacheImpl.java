@@ -0,0 +1,469 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.directory.fortress.core.GlobalErrIds;
+
+
+/**
+ * In-process {@link Cache} with W-TinyLFU eviction and time to live expiration.
+ * <p>
+ * Reads never block: the entry is looked up in a {@link ConcurrentHashMap} and the access is recorded in a small bounded
+ * buffer which is replayed against the eviction policy by whichever thread next holds the eviction lock.  If the buffer
+ * is full the access is simply dropped, which only affects the precision of the policy.
+ * <p>
+ * The policy admits new entries into a small LRU window (1% of capacity).  Entries leaving the window compete with the
+ * least recently used entry of the main segmented LRU, and the one with the lower access frequency, as estimated by a
+ * {@link FrequencySketch}, is evicted.  Entries hit while on probation are promoted to the protected segment (80% of the
+ * main space).
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class LocalCacheImpl implements Cache
+{
+    private static final int NONE = 0;
+    private static final int WINDOW = 1;
+    private static final int PROBATION = 2;
+    private static final int PROTECTED = 3;
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int DRAIN_THRESHOLD = 32;
+
+    private final String name;
+    private final int maximumSize;
+    private final int windowMax;
+    private final int protectedMax;
+    private final long ttlNanos;
+    private final ConcurrentMap<Object, Node> data = new ConcurrentHashMap<>();
+    private final Queue<Node> readBuffer = new ArrayBlockingQueue<>( READ_BUFFER_SIZE );
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedSpace = new AccessOrderDeque();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+
+    /**
+     * @param name        name of the cache.
+     * @param maximumSize maximum number of entries to hold.
+     * @param ttlSeconds  number of seconds an entry lives after being put, 0 for no expiration.
+     */
+    LocalCacheImpl( String name, int maximumSize, long ttlSeconds )
+    {
+        if ( maximumSize < 1 )
+        {
+            String error = "LocalCacheImpl cache [" + name + "] invalid maximum size [" + maximumSize + "]";
+            throw new CacheException( GlobalErrIds.FT_CACHE_NOT_CONFIGURED, error );
+        }
+        this.name = name;
+        this.maximumSize = maximumSize;
+        this.windowMax = Math.max( 1, maximumSize / 100 );
+        this.protectedMax = Math.max( 1, ( maximumSize - windowMax ) * 8 / 10 );
+        this.ttlNanos = ttlSeconds > 0 ? TimeUnit.SECONDS.toNanos( ttlSeconds ) : 0;
+        this.sketch = new FrequencySketch( maximumSize );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get( Object key ) throws CacheException
+    {
+        Node node = data.get( key );
+        if ( node == null )
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        if ( isExpired( node ) )
+        {
+            misses.incrementAndGet();
+            if ( data.remove( key, node ) )
+            {
+                evictions.incrementAndGet();
+                evictionLock.lock();
+                try
+                {
+                    unlink( node );
+                }
+                finally
+                {
+                    evictionLock.unlock();
+                }
+            }
+            return null;
+        }
+        hits.incrementAndGet();
+        if ( !readBuffer.offer( node ) || readBuffer.size() >= DRAIN_THRESHOLD )
+        {
+            tryDrain();
+        }
+        return node.value;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object peek( Object key ) throws CacheException
+    {
+        Node node = data.get( key );
+        return node != null && !isExpired( node ) ? node.value : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put( Object key, Object value ) throws CacheException
+    {
+        if ( value == null )
+        {
+            clear( key );
+            return;
+        }
+        Node node = new Node( key, value, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0 );
+        Node old = data.put( key, node );
+        puts.incrementAndGet();
+        evictionLock.lock();
+        try
+        {
+            drainReadBuffer();
+            if ( old != null )
+            {
+                unlink( old );
+            }
+            // a later put of the same key may already have replaced this node:
+            if ( data.get( key ) == node )
+            {
+                window.addLast( node, WINDOW );
+                sketch.increment( key );
+                evict();
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean clear( Object key ) throws CacheException
+    {
+        Node node = data.remove( key );
+        if ( node == null )
+        {
+            return false;
+        }
+        evictionLock.lock();
+        try
+        {
+            unlink( node );
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws CacheException
+    {
+        evictionLock.lock();
+        try
+        {
+            data.clear();
+            readBuffer.clear();
+            window.clear();
+            probation.clear();
+            protectedSpace.clear();
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CacheStats getStats()
+    {
+        return new CacheStats( name, hits.get(), misses.get(), puts.get(), evictions.get(), data.size() );
+    }
+
+
+    private boolean isExpired( Node node )
+    {
+        return node.expiresAt != 0 && node.expiresAt - System.nanoTime() <= 0;
+    }
+
+
+    private void tryDrain()
+    {
+        if ( evictionLock.tryLock() )
+        {
+            try
+            {
+                drainReadBuffer();
+            }
+            finally
+            {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Replay the recorded reads against the policy.  Caller must hold the eviction lock.
+     */
+    private void drainReadBuffer()
+    {
+        Node node;
+        while ( ( node = readBuffer.poll() ) != null )
+        {
+            if ( node.region == NONE )
+            {
+                continue;
+            }
+            sketch.increment( node.key );
+            switch ( node.region )
+            {
+                case WINDOW:
+                    window.moveToLast( node );
+                    break;
+
+                case PROBATION:
+                    probation.remove( node );
+                    protectedSpace.addLast( node, PROTECTED );
+                    if ( protectedSpace.size > protectedMax )
+                    {
+                        Node demoted = protectedSpace.first;
+                        protectedSpace.remove( demoted );
+                        probation.addLast( demoted, PROBATION );
+                    }
+                    break;
+
+                default:
+                    protectedSpace.moveToLast( node );
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * Move overflow from the window into probation and evict until within capacity.  Caller must hold the eviction lock.
+     */
+    private void evict()
+    {
+        while ( window.size > windowMax )
+        {
+            Node candidate = window.first;
+            window.remove( candidate );
+            probation.addLast( candidate, PROBATION );
+        }
+        while ( window.size + probation.size + protectedSpace.size > maximumSize )
+        {
+            Node victim = probation.first;
+            Node candidate = probation.last;
+            if ( victim == null )
+            {
+                victim = protectedSpace.first != null ? protectedSpace.first : window.first;
+                candidate = null;
+            }
+            if ( candidate == null || candidate == victim )
+            {
+                evictNode( victim );
+            }
+            else if ( sketch.frequency( candidate.key ) > sketch.frequency( victim.key ) )
+            {
+                evictNode( victim );
+            }
+            else
+            {
+                evictNode( candidate );
+            }
+        }
+    }
+
+
+    private void evictNode( Node node )
+    {
+        unlink( node );
+        if ( data.remove( node.key, node ) )
+        {
+            evictions.incrementAndGet();
+        }
+    }
+
+
+    private void unlink( Node node )
+    {
+        switch ( node.region )
+        {
+            case WINDOW:
+                window.remove( node );
+                break;
+
+            case PROBATION:
+                probation.remove( node );
+                break;
+
+            case PROTECTED:
+                protectedSpace.remove( node );
+                break;
+
+            default:
+                break;
+        }
+    }
+
+
+    private static final class Node
+    {
+        private final Object key;
+        private final Object value;
+        private final long expiresAt;
+        // guarded by evictionLock:
+        private int region = NONE;
+        private Node prev;
+        private Node next;
+
+
+        Node( Object key, Object value, long expiresAt )
+        {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+
+    /**
+     * Doubly linked list of nodes, least recently used first.  Guarded by the eviction lock.
+     */
+    private static final class AccessOrderDeque
+    {
+        private Node first;
+        private Node last;
+        private int size;
+
+
+        void addLast( Node node, int region )
+        {
+            node.region = region;
+            node.prev = last;
+            node.next = null;
+            if ( last == null )
+            {
+                first = node;
+            }
+            else
+            {
+                last.next = node;
+            }
+            last = node;
+            size++;
+        }
+
+
+        void remove( Node node )
+        {
+            if ( node.prev == null )
+            {
+                first = node.next;
+            }
+            else
+            {
+                node.prev.next = node.next;
+            }
+            if ( node.next == null )
+            {
+                last = node.prev;
+            }
+            else
+            {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.region = NONE;
+            size--;
+        }
+
+
+        void moveToLast( Node node )
+        {
+            if ( node != last )
+            {
+                int region = node.region;
+                remove( node );
+                addLast( node, region );
+            }
+        }
+
+
+        void clear()
+        {
+            Node node = first;
+            while ( node != null )
+            {
+                Node next = node.next;
+                node.prev = null;
+                node.next = null;
+                node.region = NONE;
+                node = next;
+            }
+            first = null;
+            last = null;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.directory.fortress.core.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * {@link CacheProvider} that keeps every cache in process using {@link LocalCacheImpl}, with no dependency on Ehcache.
+ * Enable with {@code cache.provider=local}.
+ * <p>
+ * Each cache is sized from the config properties {@code cache.<cacheName>.max} and {@code cache.<cacheName>.ttl} (seconds),
+ * falling back to {@code cache.default.max} (1000) and {@code cache.default.ttl} (600).  The ARBAC decision cache
+ * defaults to a 60 second time to live to match its Ehcache declaration, and the hierarchy graph caches never expire
+ * because their entries are refreshed in the background.  Tenant partitions use the settings of their cache, except
+ * that {@code cache.<cacheName>.tenant.max} sets their size.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LocalCacheProvider implements CacheProvider
+{
+    private static final Logger LOG = LoggerFactory.getLogger( LocalCacheProvider.class.getName() );
+    private static final String PREFIX = "cache.";
+    private static final String MAX = ".max";
+    private static final String TTL = ".ttl";
+    private static final String TENANT_MAX = ".tenant.max";
+    private static final String DEFAULT = "default";
+    private static final int DEFAULT_MAX = 1000;
+    private static final int DEFAULT_TTL = 600;
+    private static final String ARBAC_CACHE = "fortress.arbac";
+    private static final int ARBAC_TTL = 60;
+    private static final Set<String> GRAPH_CACHES = new HashSet<>( Arrays.asList( "fortress.roles",
+        "fortress.admin.roles", "fortress.uso", "fortress.pso" ) );
+    private final ConcurrentMap<String, LocalCacheImpl> caches = new ConcurrentHashMap<>();
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Cache getCache( String cacheName )
+    {
+        LocalCacheImpl cache = caches.get( cacheName );
+        if ( cache == null )
+        {
+            Config cfg = Config.getInstance();
+            // tenant partitions are sized from the cache they belong to:
+            String baseName = CacheMgr.getBaseName( cacheName );
+            int defaultMax = cfg.getInt( PREFIX + DEFAULT + MAX, DEFAULT_MAX );
+            int defaultTtl = cfg.getInt( PREFIX + DEFAULT + TTL, DEFAULT_TTL );
+            int max = cfg.getInt( PREFIX + baseName + MAX, defaultMax );
+            if ( !baseName.equals( cacheName ) )
+            {
+                max = cfg.getInt( PREFIX + baseName + TENANT_MAX, max );
+            }
+            int ttl = cfg.getInt( PREFIX + baseName + TTL, getDefaultTtl( baseName, defaultTtl ) );
+            LOG.info( "getCache create local cache [{}] max [{}] ttl [{}]", cacheName, max, ttl );
+            cache = new LocalCacheImpl( cacheName, max, ttl );
+            LocalCacheImpl existing = caches.putIfAbsent( cacheName, cache );
+            if ( existing != null )
+            {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
+
+    private static int getDefaultTtl( String cacheName, int defaultTtl )
+    {
+        if ( ARBAC_CACHE.equals( cacheName ) )
+        {
+            return ARBAC_TTL;
+        }
+        // hierarchy graphs are refreshed in the background and must not expire:
+        else if ( GRAPH_CACHES.contains( cacheName ) )
+        {
+            return 0;
+        }
+        return defaultTtl;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearAll()
+    {
+        for ( LocalCacheImpl cache : caches.values() )
+        {
+            cache.flush();
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CacheStats> getStats()
+    {
+        List<CacheStats> stats = new ArrayList<>();
+        for ( LocalCacheImpl cache : caches.values() )
+        {
+            stats.add( cache.getStats() );
+        }
+        return stats;
+    }
+}
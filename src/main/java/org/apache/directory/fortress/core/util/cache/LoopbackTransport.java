@@ -0,0 +1,125 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.directory.fortress.core.util.Config;
+
+
+/**
+ * {@link InvalidationTransport} between buses of the same JVM, for tests and for hosts running several fortress
+ * instances in separate class loaders of one process.  Messages are delivered synchronously, on the sending thread, to
+ * every other transport opened on the same channel, {@code cache.bus.loopback.channel} (default {@code fortress}).
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LoopbackTransport implements InvalidationTransport
+{
+    private static final String CHANNEL = "cache.bus.loopback.channel";
+    private static final String DEFAULT_CHANNEL = "fortress";
+    private static final ConcurrentMap<String, List<LoopbackTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Receiver receiver;
+
+
+    /**
+     * Use the configured channel.
+     */
+    public LoopbackTransport()
+    {
+        this( Config.getInstance().getProperty( CHANNEL, DEFAULT_CHANNEL ) );
+    }
+
+
+    /**
+     * @param channel shared with the transports to reach.
+     */
+    public LoopbackTransport( String channel )
+    {
+        this.channel = channel;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void open( Receiver receiver )
+    {
+        this.receiver = receiver;
+        List<LoopbackTransport> members = CHANNELS.get( channel );
+        if ( members == null )
+        {
+            members = new CopyOnWriteArrayList<>();
+            List<LoopbackTransport> existing = CHANNELS.putIfAbsent( channel, members );
+            if ( existing != null )
+            {
+                members = existing;
+            }
+        }
+        members.add( this );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send( byte[] message )
+    {
+        List<LoopbackTransport> members = CHANNELS.get( channel );
+        if ( members == null )
+        {
+            return;
+        }
+        for ( LoopbackTransport member : members )
+        {
+            Receiver target = member.receiver;
+            if ( member != this && target != null )
+            {
+                // each receiver gets its own copy, as from the network:
+                target.received( message.clone(), message.length );
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close()
+    {
+        receiver = null;
+        List<LoopbackTransport> members = CHANNELS.get( channel );
+        if ( members != null )
+        {
+            members.remove( this );
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.util.Config;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * {@link InvalidationTransport} that sends each message as one UDP multicast datagram, the default transport of the
+ * {@link InvalidationBus}.  Configured by:
+ * <ul>
+ *   <li>{@code cache.bus.multicast.group} - group address, default {@code 239.255.27.1}.</li>
+ *   <li>{@code cache.bus.multicast.port} - port, default 45566.</li>
+ *   <li>{@code cache.bus.multicast.ttl} - hops the datagrams may take, default 1 (the local network).</li>
+ *   <li>{@code cache.bus.multicast.interface} - name of the network interface to use, default chosen by the os.</li>
+ * </ul>
+ * Every process of a cluster must use the same group and port, and clusters sharing a network must use different ones.
+ * Any host that can reach the group can send to it, so set {@code cache.bus.secret} unless the network is trusted, see
+ * {@link InvalidationBus}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class MulticastTransport implements InvalidationTransport
+{
+    private static final String CLS_NM = MulticastTransport.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String GROUP = "cache.bus.multicast.group";
+    private static final String PORT = "cache.bus.multicast.port";
+    private static final String TTL = "cache.bus.multicast.ttl";
+    private static final String INTERFACE = "cache.bus.multicast.interface";
+    private static final String DEFAULT_GROUP = "239.255.27.1";
+    private static final int DEFAULT_PORT = 45566;
+    private static final int MAX_DATAGRAM = 65507;
+
+    private volatile MulticastSocket socket;
+    private InetSocketAddress group;
+    private NetworkInterface networkInterface;
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void open( final Receiver receiver ) throws IOException
+    {
+        Config cfg = Config.getInstance();
+        group = new InetSocketAddress( InetAddress.getByName( cfg.getProperty( GROUP, DEFAULT_GROUP ) ), cfg.getInt(
+            PORT, DEFAULT_PORT ) );
+        String interfaceName = cfg.getProperty( INTERFACE );
+        final MulticastSocket newSocket = new MulticastSocket( group.getPort() );
+        try
+        {
+            newSocket.setTimeToLive( cfg.getInt( TTL, 1 ) );
+            if ( StringUtils.isNotEmpty( interfaceName ) )
+            {
+                networkInterface = NetworkInterface.getByName( interfaceName );
+                if ( networkInterface == null )
+                {
+                    throw new SocketException( "network interface [" + interfaceName + "] not found" );
+                }
+                newSocket.setNetworkInterface( networkInterface );
+            }
+            newSocket.joinGroup( group, networkInterface );
+        }
+        catch ( IOException e )
+        {
+            newSocket.close();
+            throw e;
+        }
+        socket = newSocket;
+        ThreadUtil.newThreadFactory( "fortress-cache-bus-receiver-" ).newThread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                receive( newSocket, receiver );
+            }
+        } ).start();
+        LOG.info( "open joined multicast group [{}] interface [{}]", group, interfaceName );
+    }
+
+
+    private void receive( MulticastSocket from, Receiver receiver )
+    {
+        byte[] buffer = new byte[MAX_DATAGRAM];
+        DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+        while ( !from.isClosed() )
+        {
+            try
+            {
+                packet.setLength( buffer.length );
+                from.receive( packet );
+                receiver.received( packet.getData(), packet.getLength() );
+            }
+            catch ( IOException e )
+            {
+                if ( !from.isClosed() )
+                {
+                    LOG.warn( "receive caught IOException={}", e.getMessage() );
+                }
+            }
+            catch ( RuntimeException e )
+            {
+                LOG.warn( "receive message could not be applied, caught {}={}", e.getClass().getSimpleName(),
+                    e.getMessage() );
+            }
+        }
+        LOG.info( "receive left multicast group [{}]", group );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void send( byte[] message ) throws IOException
+    {
+        MulticastSocket current = socket;
+        if ( current == null )
+        {
+            throw new SocketException( "multicast transport not open" );
+        }
+        current.send( new DatagramPacket( message, message.length, group ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close()
+    {
+        MulticastSocket current = socket;
+        socket = null;
+        if ( current != null )
+        {
+            try
+            {
+                current.leaveGroup( group, networkInterface );
+            }
+            catch ( IOException e )
+            {
+                LOG.debug( "close leaveGroup caught IOException={}", e.getMessage() );
+            }
+            current.close();
+        }
+    }
+}
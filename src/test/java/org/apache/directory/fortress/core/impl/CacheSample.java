@@ -24,11 +24,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import net.sf.ehcache.search.Attribute;
-import net.sf.ehcache.search.Query;
-import net.sf.ehcache.search.Result;
-import net.sf.ehcache.search.Results;
-
 import org.apache.directory.fortress.core.model.SDSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,8 +71,13 @@ public class CacheSample
                     {
                         for ( String member : members )
                         {
-                            DsdCacheEntry entry = new DsdCacheEntry( member, dsd );
-                            String key = dsd.getName() + ":" + member;
+                            Set<SDSet> entry = ( Set<SDSet> ) cache.get( member );
+                            if ( entry == null )
+                            {
+                                entry = new HashSet<>();
+                            }
+                            entry.add( dsd );
+                            String key = member;
                             cache.put( key, entry );
                             LOG.info( "Add DSD key: " + key + " members: " + dsd.getMembers() + " to the cache" );
                         }
@@ -101,26 +101,25 @@ public class CacheSample
     void runTests()
     {
         loadCache();
-        Attribute<String> member = cache.getSearchAttribute( "member" );
-        Query query = cache.createQuery();
-        query.includeKeys();
-        query.includeValues();
         Set<String> roles = new HashSet<>();
         roles.add( "oamt17dsd1" );
         roles.add( "oamt17dsd4" );
         roles.add( "oamT13DSD6" );
         roles.add( "oamT16SDR7" );
-        query.addCriteria( member.in( roles ) );
-        Results results = query.execute();
-        System.out.println( " Size: " + results.size() );
         System.out.println( "----Results-----\n" );
         Set<SDSet> resultSet = new HashSet<>();
 
-        for ( Result result : results.all() )
+        for ( String role : roles )
         {
-            DsdCacheEntry entry = ( DsdCacheEntry ) result.getValue();
-            resultSet.add( entry.getSdSet() );
+            Set<SDSet> entry = ( Set<SDSet> ) cache.get( role );
+            // a miss must always be followed by a put:
+            cache.put( role, entry );
+            if ( entry != null )
+            {
+                resultSet.addAll( entry );
+            }
         }
+        System.out.println( " Size: " + resultSet.size() );
 
         for ( SDSet sdSet : resultSet )
         {
@@ -141,41 +140,4 @@ public class CacheSample
         sample.initializeCache();
         sample.runTests();
     }
-
-    public class DsdCacheEntry
-    {
-        private String member;
-        private SDSet sdSet;
-
-
-        public DsdCacheEntry( String member, SDSet sdSet )
-        {
-            this.sdSet = sdSet;
-            this.member = member;
-        }
-
-
-        public String getMember()
-        {
-            return member;
-        }
-
-
-        public void setMember( String member )
-        {
-            this.member = member;
-        }
-
-
-        public SDSet getSdSet()
-        {
-            return sdSet;
-        }
-
-
-        public void setSdSet( SDSet sdSet )
-        {
-            this.sdSet = sdSet;
-        }
-    }
-}
\ No newline at end of file
+}
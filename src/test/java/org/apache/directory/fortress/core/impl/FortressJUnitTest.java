@@ -271,6 +271,12 @@ public class FortressJUnitTest extends TestCase
         suite.addTest( new ReviewMgrImplTest( "testReadUserRoleConstraint" ) );
         suite.addTest( new ReviewMgrImplTest( "testFindRoleConstraints" ) );
         suite.addTest( new ReviewMgrImplTest( "testDeassignRoleWithRoleConstraint" ) );
+
+        // Tenant export and import:
+        suite.addTest( new TenantExportImportTest( "testExportImport" ) );
+        suite.addTest( new TenantExportImportTest( "testExportBadFile" ) );
+        suite.addTest( new TenantExportImportTest( "testImportMissingFile" ) );
+        suite.addTest( new TenantExportImportTest( "testImportMissingHeader" ) );
         
         /***********************************************************/
         /* 4. Security Checks                                      */
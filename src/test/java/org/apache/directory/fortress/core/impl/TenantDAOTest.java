@@ -0,0 +1,97 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the dn rebasing used when a tenant export is imported under another tenant.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class TenantDAOTest
+{
+    private static final String SOURCE = "ou=acme,dc=example,dc=com";
+    private static final String TARGET = "ou=globex,dc=example,dc=com";
+
+
+    @Test
+    public void testRebaseRoot()
+    {
+        assertEquals( TARGET, TenantDAO.rebase( SOURCE, SOURCE, TARGET ) );
+    }
+
+
+    @Test
+    public void testRebaseDescendant()
+    {
+        assertEquals( "uid=jdoe,ou=People,ou=globex,dc=example,dc=com",
+            TenantDAO.rebase( "uid=jdoe,ou=People,ou=acme,dc=example,dc=com", SOURCE, TARGET ) );
+    }
+
+
+    @Test
+    public void testRebaseKeepsCaseOfRelativeDn()
+    {
+        assertEquals( "cn=Role1,ou=Roles,ou=RBAC,ou=globex,dc=example,dc=com",
+            TenantDAO.rebase( "cn=Role1,ou=Roles,ou=RBAC,OU=Acme,DC=Example,DC=com", SOURCE, TARGET ) );
+    }
+
+
+    @Test
+    public void testRebaseIgnoresDnOutsideSource()
+    {
+        String other = "cn=default,ou=Policies,dc=example,dc=com";
+        assertEquals( other, TenantDAO.rebase( other, SOURCE, TARGET ) );
+    }
+
+
+    @Test
+    public void testRebaseIgnoresSuffixMatchWithoutRdnBoundary()
+    {
+        // 'ou=notacme' ends with the source text but is a sibling, not a descendant:
+        String sibling = "uid=jdoe,ou=notacme,dc=example,dc=com";
+        assertEquals( sibling, TenantDAO.rebase( sibling, SOURCE, TARGET ) );
+    }
+
+
+    @Test
+    public void testRebaseOntoDefaultTenant()
+    {
+        assertEquals( "uid=jdoe,ou=People,dc=example,dc=com",
+            TenantDAO.rebase( "uid=jdoe,ou=People,ou=acme,dc=example,dc=com", SOURCE, "dc=example,dc=com" ) );
+    }
+
+
+    @Test
+    public void testIsBelow()
+    {
+        assertTrue( TenantDAO.isBelow( "cn=DEFAULT,ou=Config,dc=example,dc=com", "ou=config,dc=example,dc=com" ) );
+        assertTrue( TenantDAO.isBelow( "ou=Config,dc=example,dc=com", "ou=Config,dc=example,dc=com" ) );
+        assertFalse( TenantDAO.isBelow( "ou=notConfig,dc=example,dc=com", "ou=Config,dc=example,dc=com" ) );
+        assertFalse( TenantDAO.isBelow( "cn=DEFAULT,ou=Config,dc=example,dc=com", null ) );
+    }
+}
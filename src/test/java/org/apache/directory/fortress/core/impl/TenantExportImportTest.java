@@ -0,0 +1,196 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.impl;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.directory.fortress.core.GlobalErrIds;
+import org.apache.directory.fortress.core.ReviewMgr;
+import org.apache.directory.fortress.core.ReviewMgrFactory;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.model.PermObj;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Role;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.model.UserRole;
+import org.apache.directory.fortress.core.util.LogUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Exports the tenant loaded by the test suite, imports it under another tenant and reads the test data back from
+ * there.  Relies on the entities created by the build up phase of {@link FortressJUnitTest}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class TenantExportImportTest extends TestCase
+{
+    private static final String CLS_NM = TenantExportImportTest.class.getName();
+    private static final Logger LOG = LoggerFactory.getLogger( CLS_NM );
+    private static final String TARGET = "tenantcopy";
+
+
+    public TenantExportImportTest( String name )
+    {
+        super( name );
+    }
+
+
+    public void testExportImport()
+    {
+        LogUtil.logIt( "EXPORT-IMPORT " + TestUtils.getContext() + " " + TARGET );
+        File file = null;
+        try
+        {
+            file = File.createTempFile( "fortress-tenant", ".ldif.gz" );
+            TenantDAO tDao = new TenantDAO();
+            int exported = tDao.exportTenant( TestUtils.getContext(), file.getPath() );
+            assertTrue( CLS_NM + ".testExportImport nothing exported", exported > 0 );
+            tDao.importTenant( TARGET, file.getPath() );
+            // entries that already exist are skipped:
+            assertEquals( CLS_NM + ".testExportImport second import", 0, tDao.importTenant( TARGET, file.getPath() ) );
+
+            ReviewMgr reviewMgr = ReviewMgrFactory.createInstance( TARGET );
+            for ( String[] rle : RoleTestData.ROLES_TR1 )
+            {
+                Role entity = reviewMgr.readRole( new Role( RoleTestData.getName( rle ) ) );
+                RoleTestData.assertEquals( entity, rle );
+            }
+            for ( String[] usr : UserTestData.USERS_TU1_UPD )
+            {
+                User entity = reviewMgr.readUser( new User( UserTestData.getUserId( usr ) ) );
+                UserTestData.assertEquals( entity, usr );
+                List<UserRole> uRoles = reviewMgr.assignedRoles( entity );
+                assertEquals( CLS_NM + ".testExportImport assigned roles", RoleTestData.ROLES_TR1.length,
+                    uRoles.size() );
+            }
+            for ( String[] objs : PermTestData.OBJS_TOB1 )
+            {
+                PermObj pObj = new PermObj();
+                pObj.setObjName( PermTestData.getName( objs ) );
+                PermTestData.assertEquals( reviewMgr.readPermObj( pObj ), objs );
+                for ( String[] ops : PermTestData.OPS_TOP1_UPD )
+                {
+                    Permission pOp = new Permission();
+                    pOp.setObjName( PermTestData.getName( objs ) );
+                    pOp.setOpName( PermTestData.getName( ops ) );
+                    pOp.setObjId( PermTestData.getObjId( ops ) );
+                    PermTestData.assertEquals( PermTestData.getName( objs ), reviewMgr.readPermission( pOp ), ops );
+                }
+            }
+        }
+        catch ( IOException ex )
+        {
+            LOG.error( "testExportImport caught IOException=" + ex.getMessage(), ex );
+            fail( ex.getMessage() );
+        }
+        catch ( SecurityException ex )
+        {
+            LOG.error( "testExportImport caught SecurityException rc=" + ex.getErrorId() + ", msg=" + ex.getMessage(),
+                ex );
+            fail( ex.getMessage() );
+        }
+        finally
+        {
+            delete( file );
+        }
+    }
+
+
+    public void testExportBadFile()
+    {
+        LogUtil.logIt( "EXPORT-BAD-FILE" );
+        try
+        {
+            String fileName = new File( System.getProperty( "java.io.tmpdir" ), "missing-dir/tenant.ldif" ).getPath();
+            new TenantDAO().exportTenant( TestUtils.getContext(), fileName );
+            fail( CLS_NM + ".testExportBadFile failed test" );
+        }
+        catch ( SecurityException ex )
+        {
+            assertEquals( CLS_NM + ".testExportBadFile", GlobalErrIds.TENANT_EXPORT_FAILED, ex.getErrorId() );
+        }
+    }
+
+
+    public void testImportMissingFile()
+    {
+        LogUtil.logIt( "IMPORT-MISSING-FILE" );
+        try
+        {
+            String fileName = new File( System.getProperty( "java.io.tmpdir" ), "missing-tenant.ldif" ).getPath();
+            new TenantDAO().importTenant( TARGET, fileName );
+            fail( CLS_NM + ".testImportMissingFile failed test" );
+        }
+        catch ( SecurityException ex )
+        {
+            assertEquals( CLS_NM + ".testImportMissingFile", GlobalErrIds.TENANT_IMPORT_FAILED, ex.getErrorId() );
+        }
+    }
+
+
+    public void testImportMissingHeader()
+    {
+        LogUtil.logIt( "IMPORT-MISSING-HEADER" );
+        File file = null;
+        try
+        {
+            file = File.createTempFile( "fortress-tenant", ".ldif" );
+            try ( Writer out = new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ) )
+            {
+                out.write( "dn: ou=People,dc=example,dc=com\nobjectClass: organizationalUnit\nou: People\n" );
+            }
+            new TenantDAO().importTenant( TARGET, file.getPath() );
+            fail( CLS_NM + ".testImportMissingHeader failed test" );
+        }
+        catch ( IOException ex )
+        {
+            LOG.error( "testImportMissingHeader caught IOException=" + ex.getMessage(), ex );
+            fail( ex.getMessage() );
+        }
+        catch ( SecurityException ex )
+        {
+            assertEquals( CLS_NM + ".testImportMissingHeader", GlobalErrIds.TENANT_IMPORT_FAILED, ex.getErrorId() );
+        }
+        finally
+        {
+            delete( file );
+        }
+    }
+
+
+    private static void delete( File file )
+    {
+        if ( file != null && !file.delete() )
+        {
+            file.deleteOnExit();
+        }
+    }
+}
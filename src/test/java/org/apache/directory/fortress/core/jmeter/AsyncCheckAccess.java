@@ -0,0 +1,153 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.jmeter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.directory.fortress.core.AsyncAccessMgr;
+import org.apache.directory.fortress.core.AsyncAccessMgrFactory;
+import org.apache.directory.fortress.core.SecurityException;
+import org.apache.directory.fortress.core.impl.TestUtils;
+import org.apache.directory.fortress.core.model.Permission;
+import org.apache.directory.fortress.core.model.Session;
+import org.apache.directory.fortress.core.model.User;
+import org.apache.directory.fortress.core.util.ThreadUtil;
+import org.apache.jmeter.protocol.java.sampler.AbstractJavaSamplerClient;
+import org.apache.jmeter.protocol.java.sampler.JavaSamplerContext;
+import org.apache.jmeter.samplers.SampleResult;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives many concurrent sessions through {@link AsyncAccessMgr}.  Each sample creates {@code concurrency} sessions for
+ * the load test users and runs a checkAccess on each, all in flight at once, then waits for every result.  With N
+ * JMeter threads there are up to N * concurrency requests outstanding, e.g. 200 threads of 100 give 20,000, while
+ * fortress itself only runs {@code async.threads} of them at a time.  Run with and without
+ * {@code enable.virtual.threads} to compare.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AsyncCheckAccess extends AbstractJavaSamplerClient
+{
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger( AsyncCheckAccess.class );
+    private static final AtomicInteger count = new AtomicInteger();
+    private AsyncAccessMgr accessMgr;
+    private int numberOfUsers = 100;
+    private int concurrency = 100;
+    private int ctr = 0;
+
+    /**
+     * Description of the Method
+     *
+     * @param samplerContext Description of the Parameter
+     * @return Description of the Return Value
+     */
+    public SampleResult runTest( JavaSamplerContext samplerContext )
+    {
+        SampleResult sampleResult = new SampleResult();
+        sampleResult.sampleStart();
+        try
+        {
+            List<CompletableFuture<Boolean>> results = new ArrayList<>( concurrency );
+            for ( int i = 0; i < concurrency; i++ )
+            {
+                // Load userids are format:  loadtestuserN - where N is a number between 0 and 99.
+                User user = new User( "loadtestuser" + ( count.incrementAndGet() % numberOfUsers ) );
+                user.setPassword( "secret" );
+                int opCount = ( ++ctr % 10 ) + 1;
+                int objCount = ( ( ctr / 10 ) % 10 ) + 1;
+                final Permission perm = new Permission( "loadtestobject" + objCount, "oper" + opCount );
+                results.add( accessMgr.createSession( user, false ).thenCompose(
+                    new Function<Session, CompletableFuture<Boolean>>()
+                    {
+                        @Override
+                        public CompletableFuture<Boolean> apply( Session session )
+                        {
+                            return accessMgr.checkAccess( session, perm );
+                        }
+                    } ) );
+            }
+            for ( CompletableFuture<Boolean> result : results )
+            {
+                // positive test case:
+                assertTrue( "AsyncCheckAccess failed", result.join() );
+            }
+            sampleResult.sampleEnd();
+            sampleResult.setBytes( concurrency );
+            sampleResult.setResponseMessage( "test async checkAccess completed [" + concurrency + "]" );
+            sampleResult.setSuccessful( true );
+        }
+        catch ( RuntimeException re )
+        {
+            sampleResult.sampleEnd();
+            String error = "ThreadId:" + getThreadId() + " Error running test: " + re;
+            LOG.error( error );
+            System.out.println( error );
+            sampleResult.setSuccessful( false );
+        }
+        return sampleResult;
+    }
+
+
+    private String getThreadId()
+    {
+        return "" + Thread.currentThread().getId();
+    }
+
+    /**
+     * Description of the Method
+     *
+     * @param samplerContext Description of the Parameter
+     */
+    public void setupTest( JavaSamplerContext samplerContext )
+    {
+        String szNumber = samplerContext.getParameter( "number" );
+        if ( StringUtils.isNotEmpty( szNumber ) )
+        {
+            numberOfUsers = Integer.parseInt( szNumber );
+        }
+        String szConcurrency = samplerContext.getParameter( "concurrency" );
+        if ( StringUtils.isNotEmpty( szConcurrency ) )
+        {
+            concurrency = Integer.parseInt( szConcurrency );
+        }
+        try
+        {
+            accessMgr = AsyncAccessMgrFactory.createInstance( TestUtils.getContext() );
+            String message = "SETUP AsyncCheckAccess concurrency: " + concurrency + ", virtual threads: "
+                + ThreadUtil.isVirtual() + ", TID: " + getThreadId();
+            LOG.info( message );
+            System.out.println( message );
+        }
+        catch ( SecurityException se )
+        {
+            String error = "ThreadId:" + getThreadId() + " Error starting test: " + se;
+            System.out.println( error );
+            LOG.error( error );
+            fail( error );
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.ldap;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.StringValue;
+import org.apache.directory.api.ldap.model.filter.AndNode;
+import org.apache.directory.api.ldap.model.filter.EqualityNode;
+import org.apache.directory.api.ldap.model.filter.ExprNode;
+import org.apache.directory.api.ldap.model.filter.FilterParser;
+import org.apache.directory.api.ldap.model.filter.OrNode;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.name.Rdn;
+import org.apache.directory.fortress.core.GlobalIds;
+import org.apache.directory.fortress.core.util.LdapUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * JMH comparison of how the DAOs build their ldap requests: string dns and filters that the ldap client parses again,
+ * against the cached base dns, {@link FilterTemplate} and filter nodes of {@link LdapDataProvider}.  No directory server
+ * is needed, only the request objects are built.
+ * <p>
+ * Run from the test classpath:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.apache.directory.fortress.core.ldap.DaoRequestBenchmark
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoRequestBenchmark
+{
+    private static final String PERM_ROOT = "ou=Permissions,ou=RBAC,dc=example,dc=com";
+    private static final String OBJ_NAME = "com.example.accounts.Ledger";
+    private static final String OP_NAME = "post-entry";
+    private static final String ROLE_NAME = "Ledger (West)*";
+    private static final String ROLES = "ftRoles";
+    private static final int NUMBER_ROLES = 10;
+    // the meta chars of the test fortress.properties:
+    private static final char[] META_CHARS = { '!', '%', '&', '(', ')', '*', '+', '-', '/', '<', '=', '>', '\\', '|',
+        '~' };
+    private static final String[] REPL_VALS = { "21", "25", "26", "28", "29", "2a", "2b", "2d", "2f", "3c", "3d", "3e",
+        "5c", "7c", "7e" };
+    private static final FilterTemplate ROLE_ASSIGN_FILTER = FilterTemplate.compile( GlobalIds.FILTER_PREFIX
+        + "ftUserAttrs)(" + GlobalIds.USER_ROLE_ASSIGN + "={0}))" );
+
+    private List<String> roles;
+
+
+    @Setup
+    public void setup() throws Exception
+    {
+        LdapUtil ldapUtil = LdapUtil.getInstance();
+        ldapUtil.setLdapFilterSize( META_CHARS.length );
+        ldapUtil.setLdapMetaChars( META_CHARS );
+        ldapUtil.setLdapReplVals( REPL_VALS );
+        ldapUtil.setLdapfilterSizeFound( true );
+        roles = new ArrayList<>();
+        for ( int i = 0; i < NUMBER_ROLES; i++ )
+        {
+            roles.add( "jtsRole" + i );
+        }
+
+        // both paths must produce the same requests:
+        if ( !stringDn().equals( cachedDn() ) || !stringFilter().equals( templateFilter() ) )
+        {
+            throw new IllegalStateException( "string and precompiled requests differ" );
+        }
+    }
+
+
+    @Benchmark
+    public Dn stringDn() throws Exception
+    {
+        return new Dn( GlobalIds.POP_NAME + "=" + OP_NAME + "," + GlobalIds.POBJ_NAME + "=" + OBJ_NAME + ","
+            + PERM_ROOT );
+    }
+
+
+    @Benchmark
+    public Dn cachedDn() throws Exception
+    {
+        return LdapDataProvider.getDn( LdapDataProvider.getBaseDn( PERM_ROOT ), GlobalIds.POBJ_NAME, OBJ_NAME ).add(
+            new Rdn( GlobalIds.POP_NAME + "=" + Rdn.escapeValue( OP_NAME ) ) );
+    }
+
+
+    @Benchmark
+    public String stringFilter()
+    {
+        StringBuilder filterbuf = new StringBuilder();
+        filterbuf.append( GlobalIds.FILTER_PREFIX );
+        filterbuf.append( "ftUserAttrs" );
+        filterbuf.append( ")(" );
+        filterbuf.append( GlobalIds.USER_ROLE_ASSIGN );
+        filterbuf.append( "=" );
+        filterbuf.append( escapeBySearch( ROLE_NAME ) );
+        filterbuf.append( "))" );
+        return filterbuf.toString();
+    }
+
+
+    @Benchmark
+    public String templateFilter()
+    {
+        return ROLE_ASSIGN_FILTER.format( ROLE_NAME );
+    }
+
+
+    @Benchmark
+    public ExprNode parsedOrFilter() throws Exception
+    {
+        StringBuilder filterbuf = new StringBuilder();
+        filterbuf.append( "(&(" ).append( SchemaConstants.OBJECT_CLASS_AT ).append( "=ftOperation)(|" );
+        for ( String role : roles )
+        {
+            filterbuf.append( "(" ).append( ROLES ).append( "=" ).append( escapeBySearch( role ) ).append( ")" );
+        }
+        filterbuf.append( "))" );
+        // the ldap client parses string filters before sending them:
+        return FilterParser.parse( filterbuf.toString() );
+    }
+
+
+    @Benchmark
+    public ExprNode nodeOrFilter()
+    {
+        List<ExprNode> clauses = new ArrayList<>( roles.size() );
+        for ( String role : roles )
+        {
+            clauses.add( new EqualityNode<String>( ROLES, new StringValue( role ) ) );
+        }
+        return new AndNode( new EqualityNode<String>( SchemaConstants.OBJECT_CLASS_AT, new StringValue(
+            "ftOperation" ) ), new OrNode( clauses ) );
+    }
+
+
+    /**
+     * The escaping used before the lookup table, which searched the sorted meta chars for every character.
+     */
+    private static String escapeBySearch( String value )
+    {
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            boolean found = false;
+            char curChar = value.charAt( i );
+            for ( int j = 0; j < META_CHARS.length; j++ )
+            {
+                if ( META_CHARS[j] > curChar )
+                {
+                    break;
+                }
+                else if ( curChar == META_CHARS[j] )
+                {
+                    sb.append( "\\" );
+                    sb.append( REPL_VALS[j] );
+                    found = true;
+                    break;
+                }
+            }
+            if ( !found )
+            {
+                sb.append( curChar );
+            }
+        }
+        return sb.toString();
+    }
+
+
+    public static void main( String[] args ) throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( DaoRequestBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
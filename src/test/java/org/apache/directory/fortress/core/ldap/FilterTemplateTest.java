@@ -0,0 +1,132 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.ldap;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.apache.directory.fortress.core.util.LdapUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Tests of {@link FilterTemplate}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class FilterTemplateTest
+{
+    @BeforeClass
+    public static void setUpClass()
+    {
+        // the values of the shipped fortress.properties, as Config loads them:
+        LdapUtil ldapUtil = LdapUtil.getInstance();
+        ldapUtil.setLdapMetaChars( "!%&()*+-/<=>\\|~".toCharArray() );
+        ldapUtil.setLdapReplVals( new String[]
+            {
+                "21", "25", "26", "28", "29", "2a", "2b", "2d", "2f", "3c", "3d", "3e", "5c", "7c", "7e"
+        } );
+        ldapUtil.setLdapfilterSizeFound( true );
+    }
+
+
+    private static void assertInvalid( String pattern )
+    {
+        try
+        {
+            FilterTemplate.compile( pattern );
+            fail( "pattern [" + pattern + "] should be rejected" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testFormat()
+    {
+        FilterTemplate template = FilterTemplate.compile( "(&(objectClass=ftUserAttrs)(ftRA={0}))" );
+        assertEquals( "(&(objectClass=ftUserAttrs)(ftRA=role1))", template.format( "role1" ) );
+        assertEquals( "(&(objectClass=ftUserAttrs)(ftRA={0}))", template.toString() );
+    }
+
+
+    @Test
+    public void testParameters()
+    {
+        FilterTemplate template = FilterTemplate.compile( "(|(uid={1})(cn={0})(sn={1}))" );
+        assertEquals( "(|(uid=b)(cn=a)(sn=b))", template.format( "a", "b" ) );
+        assertEquals( "{0}{1}", FilterTemplate.compile( "{0}{1}" ).toString() );
+        assertEquals( "xy", FilterTemplate.compile( "{0}{1}" ).format( "x", "y" ) );
+    }
+
+
+    @Test
+    public void testNoParameters()
+    {
+        // the literal parts are never escaped:
+        FilterTemplate template = FilterTemplate.compile( "(objectClass=*)" );
+        assertEquals( "(objectClass=*)", template.format() );
+    }
+
+
+    @Test
+    public void testValuesEscaped()
+    {
+        FilterTemplate template = FilterTemplate.compile( "(&(ftRA={0})(ftId={1}))" );
+        assertEquals( "(&(ftRA=\\2a\\29\\28uid\\3d\\2a)(ftId=a\\5cb))", template.format( "*)(uid=*", "a\\b" ) );
+    }
+
+
+    @Test
+    public void testNullValue()
+    {
+        assertEquals( "(ftRA=null)", FilterTemplate.compile( "(ftRA={0})" ).format( ( String ) null ) );
+    }
+
+
+    @Test
+    public void testTooFewValues()
+    {
+        FilterTemplate template = FilterTemplate.compile( "(&(ftRA={0})(ftId={1}))" );
+        try
+        {
+            template.format( "role1" );
+            fail( "format should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testInvalidPattern()
+    {
+        assertInvalid( "(ftRA={0)" );
+        assertInvalid( "(ftRA={})" );
+        assertInvalid( "(ftRA={a})" );
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.model;
+
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
+import org.apache.directory.fortress.core.rest.RestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * JMH comparison of the JAXB xml marshalling used by the Rest client with {@link BinaryCodec}, for a createSession
+ * style request and a sessionPermissions style response.
+ * <p>
+ * Run from the test classpath:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.apache.directory.fortress.core.model.BinaryCodecBenchmark
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryCodecBenchmark
+{
+    private static final int NUMBER_PERMISSIONS = 50;
+
+    private FortRequest request;
+    private String xmlResponse;
+    private byte[] binaryResponse;
+
+
+    @Setup
+    public void setup() throws Exception
+    {
+        User user = new User( "jtsUser1", "passw0rd" );
+        user.setOu( "jtsUserOu" );
+        user.setCn( "JoeUser1" );
+        user.setSn( "User1" );
+        user.setDescription( "Test User 1" );
+        user.setEmail( "jtsUser1@example.com" );
+        user.addProperty( "dept", "1234" );
+        for ( int i = 0; i < 5; i++ )
+        {
+            UserRole role = new UserRole( "jtsUser1", "jtsRole" + i );
+            role.setBeginDate( "20090101" );
+            role.setEndDate( "none" );
+            role.setDayMask( "1234567" );
+            role.setTimeout( 30 );
+            user.setRole( role );
+        }
+        Session session = new Session( user );
+        session.setAuthenticated( true );
+        session.setLastAccess();
+        request = new FortRequest();
+        request.setContextId( "HOME" );
+        request.setSession( session );
+
+        List<FortEntity> perms = new ArrayList<>();
+        for ( int i = 0; i < NUMBER_PERMISSIONS; i++ )
+        {
+            Permission perm = new Permission( "jtsObject" + i, "jtsOperation" + i );
+            perm.setInternalId();
+            perm.setAbstractName( "jtsObject" + i + ".jtsOperation" + i );
+            perm.setDn( "ftOpNm=jtsOperation" + i + ",ftObjNm=jtsObject" + i + ",ou=Permissions,dc=example,dc=com" );
+            perm.setRole( "jtsRole" + ( i % 5 ) );
+            perms.add( perm );
+        }
+        FortResponse response = new FortResponse();
+        response.setErrorCode( 0 );
+        response.setEntities( perms );
+        response.setSession( session );
+        Marshaller marshaller = JAXBContext.newInstance( FortResponse.class ).createMarshaller();
+        StringWriter writer = new StringWriter();
+        marshaller.marshal( response, writer );
+        xmlResponse = writer.toString();
+        binaryResponse = BinaryCodec.encode( response );
+
+        // both paths must produce the same objects:
+        FortResponse decoded = BinaryCodec.decodeResponse( binaryResponse );
+        if ( decoded.getEntities().size() != NUMBER_PERMISSIONS
+            || !RestUtils.unmarshall( xmlResponse ).getSession().getSessionId().equals(
+                decoded.getSession().getSessionId() ) )
+        {
+            throw new IllegalStateException( "binary and xml responses differ" );
+        }
+        System.out.println( "request xml=" + RestUtils.marshal( request ).length() + " bytes, binary="
+            + BinaryCodec.encode( request ).length + " bytes; response xml=" + xmlResponse.length()
+            + " bytes, binary=" + binaryResponse.length + " bytes" );
+    }
+
+
+    @Benchmark
+    public String xmlMarshalRequest() throws Exception
+    {
+        return RestUtils.marshal( request );
+    }
+
+
+    @Benchmark
+    public byte[] binaryEncodeRequest()
+    {
+        return BinaryCodec.encode( request );
+    }
+
+
+    @Benchmark
+    public FortResponse xmlUnmarshallResponse() throws Exception
+    {
+        return RestUtils.unmarshall( xmlResponse );
+    }
+
+
+    @Benchmark
+    public FortResponse binaryDecodeResponse()
+    {
+        return BinaryCodec.decodeResponse( binaryResponse );
+    }
+
+
+    public static void main( String[] args ) throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( BinaryCodecBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.model;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+
+/**
+ * Round trip and corrupt data tests for {@link BinaryCodec}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class BinaryCodecTest
+{
+    private static Session newSession()
+    {
+        User user = new User( "jtsUser1", "passw0rd" );
+        user.setOu( "jtsUserOu" );
+        user.setCn( "JoeUser1" );
+        user.setSn( "User1" );
+        user.setInternalId( "0a1b2c3d" );
+        user.setTimeout( 30 );
+        user.setRole( new UserRole( "jtsUser1", "jtsRole1" ) );
+        user.setRole( new UserRole( "jtsUser1", "jtsRole2" ) );
+        user.addProperty( "k1", "v1" );
+        Session session = new Session( user, "session-1" );
+        session.setAuthenticated( true );
+        session.setLastAccess( 1234567890123L );
+        session.setTimeout( 60 );
+        session.setErrorId( -5 );
+        session.setExpirationSeconds( 3600 );
+        session.setGraceLogins( 2 );
+        session.setMsg( "ok" );
+        session.setWarning( new Warning( 1, "role warning", Warning.Type.ROLE, "jtsRole3" ) );
+        return session;
+    }
+
+
+    private static Permission newPermission()
+    {
+        Permission perm = new Permission( "jtsObj1", "jtsOp1", "id1" );
+        perm.setInternalId( "perm-1" );
+        perm.setAbstractName( "jtsObj1.jtsOp1" );
+        perm.setType( "type1" );
+        perm.setDn( "ftOpNm=jtsOp1,ftObjNm=jtsObj1,ou=Permissions,dc=example,dc=com" );
+        perm.setDescription( "d\u00e9scription" );
+        perm.setRole( "jtsRole1" );
+        perm.setRole( "jtsRole2" );
+        perm.setUsers( new HashSet<>( Arrays.asList( "jtsUser1" ) ) );
+        perm.addProperty( "k1", "v1" );
+        return perm;
+    }
+
+
+    private static void assertSession( Session expected, Session actual )
+    {
+        assertEquals( expected.getSessionId(), actual.getSessionId() );
+        assertEquals( expected.isAuthenticated(), actual.isAuthenticated() );
+        assertEquals( expected.isGroupSession(), actual.isGroupSession() );
+        assertEquals( expected.getLastAccess(), actual.getLastAccess() );
+        assertEquals( expected.getTimeout(), actual.getTimeout() );
+        assertEquals( expected.getErrorId(), actual.getErrorId() );
+        assertEquals( expected.getExpirationSeconds(), actual.getExpirationSeconds() );
+        assertEquals( expected.getGraceLogins(), actual.getGraceLogins() );
+        assertEquals( expected.getMsg(), actual.getMsg() );
+        assertEquals( expected.getWarnings().size(), actual.getWarnings().size() );
+        Warning warning = actual.getWarnings().get( 0 );
+        assertEquals( 1, warning.getId() );
+        assertEquals( "role warning", warning.getMsg() );
+        assertEquals( "jtsRole3", warning.getName() );
+        assertEquals( Warning.Type.ROLE, warning.getType() );
+        assertUser( expected.getUser(), actual.getUser() );
+    }
+
+
+    private static void assertUser( User expected, User actual )
+    {
+        assertEquals( expected.getUserId(), actual.getUserId() );
+        assertEquals( expected.getPassword(), actual.getPassword() );
+        assertEquals( expected.getInternalId(), actual.getInternalId() );
+        assertEquals( expected.getOu(), actual.getOu() );
+        assertEquals( expected.getCn(), actual.getCn() );
+        assertEquals( expected.getSn(), actual.getSn() );
+        assertEquals( expected.getTimeout(), actual.getTimeout() );
+        assertEquals( expected.getProperty( "k1" ), actual.getProperty( "k1" ) );
+        assertEquals( expected.getRoles().size(), actual.getRoles().size() );
+        for ( int i = 0; i < expected.getRoles().size(); i++ )
+        {
+            assertEquals( expected.getRoles().get( i ).getName(), actual.getRoles().get( i ).getName() );
+            assertEquals( expected.getRoles().get( i ).getUserId(), actual.getRoles().get( i ).getUserId() );
+        }
+        assertEquals( expected.getPhones(), actual.getPhones() );
+        assertEquals( expected.getEmails(), actual.getEmails() );
+        assertEquals( expected.getAddress().getAddresses(), actual.getAddress().getAddresses() );
+        assertEquals( expected.getAddress().getCity(), actual.getAddress().getCity() );
+        assertEquals( expected.getAddress().getPostalCode(), actual.getAddress().getPostalCode() );
+    }
+
+
+    private static void assertPermission( Permission expected, Permission actual )
+    {
+        assertEquals( expected.getObjName(), actual.getObjName() );
+        assertEquals( expected.getOpName(), actual.getOpName() );
+        assertEquals( expected.getObjId(), actual.getObjId() );
+        assertEquals( expected.getInternalId(), actual.getInternalId() );
+        assertEquals( expected.getAbstractName(), actual.getAbstractName() );
+        assertEquals( expected.getType(), actual.getType() );
+        assertEquals( expected.getDn(), actual.getDn() );
+        assertEquals( expected.getDescription(), actual.getDescription() );
+        assertEquals( expected.isAdmin(), actual.isAdmin() );
+        assertEquals( expected.getRoles(), actual.getRoles() );
+        assertEquals( expected.getUsers(), actual.getUsers() );
+        assertEquals( expected.getProperty( "k1" ), actual.getProperty( "k1" ) );
+    }
+
+
+    private static void assertRejected( byte[] data )
+    {
+        try
+        {
+            BinaryCodec.decodeRequest( data );
+            fail( "decode should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testSessionRoundTrip()
+    {
+        Session session = newSession();
+        byte[] data = BinaryCodec.encode( session );
+        assertTrue( BinaryCodec.isEncoded( data ) );
+        assertSession( session, ( Session ) BinaryCodec.decodeEntity( data ) );
+    }
+
+
+    @Test
+    public void testUserRoundTrip()
+    {
+        User user = new User( "jtsUser2" );
+        user.setPhones( new ArrayList<>( Arrays.asList( "555-1212", "555-1313" ) ) );
+        user.setEmails( new ArrayList<>( Arrays.asList( "jts@example.com" ) ) );
+        user.getAddress().setAddress( "123 Main St" );
+        user.getAddress().setCity( "Anytown" );
+        user.getAddress().setPostalCode( "12345" );
+        user.setAdminRole( new UserAdminRole( "jtsUser2", "jtsAdminRole1" ) );
+        user.setSystem( Boolean.TRUE );
+        User copy = ( User ) BinaryCodec.decodeEntity( BinaryCodec.encode( user ) );
+        assertUser( user, copy );
+        assertEquals( 1, copy.getAdminRoles().size() );
+        assertEquals( "jtsAdminRole1", copy.getAdminRoles().get( 0 ).getName() );
+        assertEquals( Boolean.TRUE, copy.isSystem() );
+        assertNull( copy.getPwPolicy() );
+    }
+
+
+    @Test
+    public void testPermissionRoundTrip()
+    {
+        Permission perm = newPermission();
+        assertPermission( perm, ( Permission ) BinaryCodec.decodeEntity( BinaryCodec.encode( perm ) ) );
+    }
+
+
+    @Test
+    public void testRequestRoundTrip()
+    {
+        FortRequest request = new FortRequest();
+        Permission perm = newPermission();
+        request.setEntity( perm );
+        request.setSession( newSession() );
+        request.setValue( "value1" );
+        request.setLimit( 100 );
+        request.setContextId( "tenant1" );
+        request.setIsFlag( Boolean.FALSE );
+        assertTrue( BinaryCodec.canEncode( request ) );
+
+        FortRequest copy = BinaryCodec.decodeRequest( BinaryCodec.encode( request ) );
+        assertPermission( perm, ( Permission ) copy.getEntity() );
+        assertNull( copy.getEntity2() );
+        assertSession( request.getSession(), copy.getSession() );
+        assertEquals( "value1", copy.getValue() );
+        assertEquals( Integer.valueOf( 100 ), copy.getLimit() );
+        assertEquals( "tenant1", copy.getContextId() );
+        assertEquals( Boolean.FALSE, copy.getIsFlag() );
+    }
+
+
+    @Test
+    public void testResponseRoundTrip()
+    {
+        FortResponse response = new FortResponse();
+        response.setErrorCode( 1035 );
+        response.setErrorMessage( "not found" );
+        response.setAuthorized( Boolean.TRUE );
+        List<Permission> perms = new ArrayList<>();
+        perms.add( newPermission() );
+        perms.add( new Permission( "jtsObj2", "jtsOp2" ) );
+        response.setEntities( perms );
+        response.setValues( Arrays.asList( "a", "b" ) );
+        response.setValueSet( new HashSet<>( Arrays.asList( "c" ) ) );
+        response.setSession( newSession() );
+        assertTrue( BinaryCodec.canEncode( response ) );
+
+        FortResponse copy = BinaryCodec.decodeResponse( BinaryCodec.encode( response ) );
+        assertEquals( 1035, copy.getErrorCode() );
+        assertEquals( "not found", copy.getErrorMessage() );
+        assertEquals( Boolean.TRUE, copy.getAuthorized() );
+        assertNull( copy.getEntity() );
+        List<Permission> entities = copy.getEntities();
+        assertEquals( 2, entities.size() );
+        assertPermission( perms.get( 0 ), entities.get( 0 ) );
+        assertPermission( perms.get( 1 ), entities.get( 1 ) );
+        assertEquals( Arrays.asList( "a", "b" ), copy.getValues() );
+        assertEquals( new HashSet<>( Arrays.asList( "c" ) ), copy.getValueSet() );
+        assertSession( response.getSession(), copy.getSession() );
+    }
+
+
+    @Test
+    public void testNullCollectionsStayNull()
+    {
+        FortResponse copy = BinaryCodec.decodeResponse( BinaryCodec.encode( new FortResponse() ) );
+        assertNull( copy.getEntities() );
+        assertNull( copy.getValues() );
+        assertNull( copy.getValueSet() );
+        assertNull( copy.getSession() );
+        assertNull( copy.getAuthorized() );
+    }
+
+
+    @Test
+    public void testUnsupportedVersion()
+    {
+        FortRequest request = new FortRequest();
+        request.setValue( "value1" );
+        byte[] data = BinaryCodec.encode( request );
+        data[1] = ( byte ) ( data[1] + 1 );
+        assertTrue( BinaryCodec.isEncoded( data ) );
+        assertRejected( data );
+    }
+
+
+    @Test
+    public void testUnexpectedKind()
+    {
+        byte[] data = BinaryCodec.encode( new FortResponse() );
+        assertRejected( data );
+        try
+        {
+            BinaryCodec.decodeEntity( data );
+            fail( "decode should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testUnknownEntityTag()
+    {
+        FortRequest request = new FortRequest();
+        request.setEntity( new Permission( "jtsObj1", "jtsOp1" ) );
+        byte[] data = BinaryCodec.encode( request );
+        // the entity tag follows the marker, version and kind bytes:
+        data[3] = ( byte ) 0x7F;
+        assertRejected( data );
+    }
+
+
+    @Test
+    public void testUnknownWarningType()
+    {
+        Session session = newSession();
+        byte[] data = BinaryCodec.encode( session );
+        String encoded = new String( data, StandardCharsets.ISO_8859_1 );
+        int index = encoded.lastIndexOf( Warning.Type.ROLE.name() );
+        assertTrue( index > 0 );
+        // same length so the rest of the message still lines up:
+        data[index] = ( byte ) 'X';
+        try
+        {
+            BinaryCodec.decodeEntity( data );
+            fail( "decode should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testTruncated()
+    {
+        FortRequest request = new FortRequest();
+        request.setEntity( newPermission() );
+        byte[] data = BinaryCodec.encode( request );
+        assertRejected( Arrays.copyOf( data, data.length / 2 ) );
+    }
+
+
+    @Test
+    public void testNotEncoded()
+    {
+        byte[] xml = "<?xml version=\"1.0\"?><FortRequest/>".getBytes( StandardCharsets.UTF_8 );
+        assertFalse( BinaryCodec.isEncoded( xml ) );
+        assertFalse( BinaryCodec.isEncoded( null ) );
+        assertRejected( xml );
+    }
+
+
+    @Test
+    public void testSubclassNotSupported()
+    {
+        Permission perm = new Permission( "jtsObj1", "jtsOp1" )
+        {
+            private static final long serialVersionUID = 1L;
+        };
+        assertFalse( BinaryCodec.isSupported( perm ) );
+        FortRequest request = new FortRequest();
+        request.setEntity( perm );
+        assertFalse( BinaryCodec.canEncode( request ) );
+        try
+        {
+            BinaryCodec.encode( request );
+            fail( "encode should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.model;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.junit.Test;
+
+
+/**
+ * Tests of the {@link PwPolicy} copy constructor.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PwPolicyTest
+{
+    @Test
+    public void testCopyHasEveryField() throws Exception
+    {
+        PwPolicy policy = new PwPolicy( "policy1" );
+        policy.setContextId( "tenant1" );
+        policy.setAdminSession( new Session() );
+        policy.setModCode( "modCode1" );
+        policy.setSequenceId( 42L );
+        policy.setMinAge( 1 );
+        policy.setMaxAge( 2L );
+        policy.setInHistory( ( short ) 3 );
+        policy.setCheckQuality( ( short ) 4 );
+        policy.setMinLength( ( short ) 5 );
+        policy.setExpireWarning( 6L );
+        policy.setGraceLoginLimit( ( short ) 7 );
+        policy.setLockout( Boolean.TRUE );
+        policy.setLockoutDuration( 8 );
+        policy.setMaxFailure( ( short ) 9 );
+        policy.setFailureCountInterval( ( short ) 10 );
+        policy.setMustChange( Boolean.TRUE );
+        policy.setAllowUserChange( Boolean.FALSE );
+        policy.setSafeModify( Boolean.TRUE );
+        // has no setter:
+        Field attribute = PwPolicy.class.getDeclaredField( "attribute" );
+        attribute.setAccessible( true );
+        attribute.set( policy, "userPassword" );
+
+        PwPolicy copy = new PwPolicy( policy );
+        // checks every instance field, so a field added later must be copied too:
+        for ( Class<?> type = PwPolicy.class; type != Object.class; type = type.getSuperclass() )
+        {
+            for ( Field field : type.getDeclaredFields() )
+            {
+                if ( Modifier.isStatic( field.getModifiers() ) )
+                {
+                    continue;
+                }
+                field.setAccessible( true );
+                assertNotNull( field.getName() + " not set by the test", field.get( policy ) );
+                assertEquals( field.getName(), field.get( policy ), field.get( copy ) );
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * Tests of the filter value escaper of {@link LdapUtil}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapUtilTest
+{
+    // ldap.filter.N and ldap.sub.N of the shipped fortress.properties:
+    private static final String META_CHARS = "!%&()*+-/<=>\\|~";
+    private static final String[] REPL_VALS =
+        {
+            "21", "25", "26", "28", "29", "2a", "2b", "2d", "2f", "3c", "3d", "3e", "5c", "7c", "7e"
+    };
+    // the size of the arrays Config loads the properties into:
+    private static final int FILTER_SIZE = 25;
+
+
+    /**
+     * @return util configured the way Config does it, trailing entries of the arrays unused.
+     */
+    private static LdapUtil newLdapUtil()
+    {
+        char[] metaChars = new char[FILTER_SIZE];
+        String[] replVals = new String[FILTER_SIZE];
+        for ( int i = 0; i < META_CHARS.length(); i++ )
+        {
+            metaChars[i] = META_CHARS.charAt( i );
+            replVals[i] = REPL_VALS[i];
+        }
+        LdapUtil ldapUtil = new LdapUtil();
+        ldapUtil.setLdapMetaChars( metaChars );
+        ldapUtil.setLdapReplVals( replVals );
+        ldapUtil.setLdapfilterSizeFound( true );
+        return ldapUtil;
+    }
+
+
+    /**
+     * The escaper LdapDataProvider.escapeLDAPSearchFilter used before the lookup table, which relies on the meta chars
+     * being sorted.
+     */
+    private static String escapeLDAPSearchFilter( LdapUtil ldapUtil, String filter )
+    {
+        StringBuilder sb = new StringBuilder();
+        int filterLen = filter.length();
+
+        for ( int i = 0; i < filterLen; i++ )
+        {
+            boolean found = false;
+            char curChar = filter.charAt( i );
+            int j = 0;
+
+            for ( ; j < FILTER_SIZE; j++ )
+            {
+                if ( ldapUtil.getLdapMetaChars()[j] > curChar )
+                {
+                    break;
+                }
+                else if ( curChar == ldapUtil.getLdapMetaChars()[j] )
+                {
+                    sb.append( "\\" );
+                    sb.append( ldapUtil.getLdapReplVals()[j] );
+                    found = true;
+                    break;
+                }
+            }
+
+            if ( !found )
+            {
+                sb.append( curChar );
+            }
+        }
+
+        return sb.toString();
+    }
+
+
+    @Test
+    public void testNothingToEscape()
+    {
+        LdapUtil ldapUtil = newLdapUtil();
+        String value = "jtsUser1.example";
+        assertSame( value, ldapUtil.escapeFilterValue( value ) );
+        assertSame( "", ldapUtil.escapeFilterValue( "" ) );
+    }
+
+
+    @Test
+    public void testEscape()
+    {
+        LdapUtil ldapUtil = newLdapUtil();
+        assertEquals( "\\28cn\\3d\\2a\\29", ldapUtil.escapeFilterValue( "(cn=*)" ) );
+        assertEquals( "a\\5cb", ldapUtil.escapeFilterValue( "a\\b" ) );
+        assertEquals( "\\7c\\7c", ldapUtil.escapeFilterValue( "||" ) );
+        for ( int i = 0; i < META_CHARS.length(); i++ )
+        {
+            assertEquals( "x\\" + REPL_VALS[i] + "y", ldapUtil.escapeFilterValue( "x" + META_CHARS.charAt( i ) + "y" ) );
+        }
+    }
+
+
+    @Test
+    public void testSameAsPreviousEscaper()
+    {
+        LdapUtil ldapUtil = newLdapUtil();
+        for ( char c = 0; c < 0x800; c++ )
+        {
+            String value = "a" + c + "b";
+            assertEquals( "char " + ( int ) c, escapeLDAPSearchFilter( ldapUtil, value ), ldapUtil.escapeFilterValue(
+                value ) );
+        }
+        String alphabet = META_CHARS + "abcXYZ019 .,@_\u00e9\u4e2d\u0000";
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt( 30 );
+            for ( int j = 0; j < length; j++ )
+            {
+                value.append( alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+            }
+            assertEquals( value.toString(), escapeLDAPSearchFilter( ldapUtil, value.toString() ),
+                ldapUtil.escapeFilterValue( value.toString() ) );
+        }
+    }
+
+
+    @Test
+    public void testUnsortedMetaChars()
+    {
+        // the previous escaper stopped at the first meta char greater than the value's char:
+        LdapUtil ldapUtil = new LdapUtil();
+        ldapUtil.setLdapMetaChars( new char[]
+            { '*', '(' } );
+        ldapUtil.setLdapReplVals( new String[]
+            { "2a", "28" } );
+        assertEquals( "\\28\\2a", ldapUtil.escapeFilterValue( "(*" ) );
+    }
+
+
+    @Test
+    public void testFirstReplacementWins()
+    {
+        LdapUtil ldapUtil = new LdapUtil();
+        ldapUtil.setLdapMetaChars( new char[]
+            { '*', '*' } );
+        ldapUtil.setLdapReplVals( new String[]
+            { "2a", "xx" } );
+        assertEquals( "\\2a", ldapUtil.escapeFilterValue( "*" ) );
+    }
+
+
+    @Test
+    public void testNotConfigured()
+    {
+        assertEquals( "(cn=*)", new LdapUtil().escapeFilterValue( "(cn=*)" ) );
+    }
+}
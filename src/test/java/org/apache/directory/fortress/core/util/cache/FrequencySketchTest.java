@@ -0,0 +1,107 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+/**
+ * Tests of the {@link FrequencySketch} used by {@link LocalCacheImpl}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class FrequencySketchTest
+{
+    @Test
+    public void testUnseenKey()
+    {
+        FrequencySketch sketch = new FrequencySketch( 100 );
+        assertEquals( 0, sketch.frequency( "key1" ) );
+    }
+
+
+    @Test
+    public void testIncrement()
+    {
+        FrequencySketch sketch = new FrequencySketch( 100 );
+        for ( int i = 1; i <= 5; i++ )
+        {
+            sketch.increment( "key1" );
+            // collisions can only overestimate:
+            assertTrue( sketch.frequency( "key1" ) >= i );
+        }
+        assertEquals( 5, sketch.frequency( "key1" ) );
+    }
+
+
+    @Test
+    public void testCountIsCapped()
+    {
+        FrequencySketch sketch = new FrequencySketch( 100 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            sketch.increment( "key1" );
+        }
+        assertEquals( 15, sketch.frequency( "key1" ) );
+    }
+
+
+    @Test
+    public void testHotKeyOutranksColdKeys()
+    {
+        FrequencySketch sketch = new FrequencySketch( 1000 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            sketch.increment( "hot" );
+        }
+        for ( int i = 0; i < 500; i++ )
+        {
+            sketch.increment( "cold" + i );
+        }
+        for ( int i = 0; i < 500; i++ )
+        {
+            assertTrue( sketch.frequency( "hot" ) > sketch.frequency( "cold" + i ) );
+        }
+    }
+
+
+    @Test
+    public void testReset()
+    {
+        // the counters are halved after 10 * capacity additions:
+        FrequencySketch sketch = new FrequencySketch( 10 );
+        for ( int i = 0; i < 15; i++ )
+        {
+            sketch.increment( "key1" );
+        }
+        assertEquals( 15, sketch.frequency( "key1" ) );
+        int i = 0;
+        while ( i < 1000 && sketch.frequency( "key1" ) == 15 )
+        {
+            sketch.increment( "other" + i++ );
+        }
+        assertEquals( 100 - 15, i );
+        assertTrue( sketch.frequency( "key1" ) <= 7 );
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests of the {@link InvalidationBus}: delivery between processes, and the refresh that follows a lost message.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class InvalidationBusTest
+{
+    private static final String CACHE_NAME = "fortress.test";
+    private static final long HEARTBEAT_MILLIS = 60000;
+
+    private TestProvider provider;
+    private RecordingListener listener;
+    private InvalidationBus bus;
+
+
+    @Before
+    public void setUp()
+    {
+        provider = new TestProvider();
+        listener = new RecordingListener();
+        bus = new InvalidationBus( new LoopbackTransport( "test-" + System.nanoTime() ), new CacheMgr( provider ),
+            HEARTBEAT_MILLIS, null );
+        bus.subscribe( CACHE_NAME, listener );
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        bus.close();
+    }
+
+
+    private static void receive( InvalidationBus to, InvalidationEvent event, Key key ) throws IOException
+    {
+        byte[] message = event.encode( key );
+        to.received( message, message.length );
+    }
+
+
+    private void receive( InvalidationEvent event ) throws IOException
+    {
+        receive( bus, event, null );
+    }
+
+
+    @Test
+    public void testPublish() throws Exception
+    {
+        String channel = "test-" + System.nanoTime();
+        InvalidationBus sender = new InvalidationBus( new LoopbackTransport( channel ), new CacheMgr(
+            new TestProvider() ), HEARTBEAT_MILLIS, null );
+        InvalidationBus receiver = new InvalidationBus( new LoopbackTransport( channel ), new CacheMgr( provider ),
+            HEARTBEAT_MILLIS, null );
+        receiver.subscribe( CACHE_NAME, listener );
+        sender.open();
+        receiver.open();
+        try
+        {
+            sender.publish( CACHE_NAME, "tenant1", "key1" );
+            sender.publish( CACHE_NAME, null, null );
+            assertEquals( 2, listener.invalidations.size() );
+            assertEquals( "tenant1:key1", listener.invalidations.get( 0 ) );
+            assertEquals( "null:null", listener.invalidations.get( 1 ) );
+            assertEquals( 0, listener.refreshes );
+
+            // changes applied from the bus are not published again:
+            receiver.applyLocally( new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    receiver.publish( CACHE_NAME, null, "key2" );
+                }
+            } );
+            RecordingListener senderListener = new RecordingListener();
+            sender.subscribe( CACHE_NAME, senderListener );
+            receiver.publish( CACHE_NAME, null, "key3" );
+            assertEquals( 1, senderListener.invalidations.size() );
+            assertEquals( "null:key3", senderListener.invalidations.get( 0 ) );
+        }
+        finally
+        {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+
+    @Test
+    public void testUnsubscribedCacheIsCleared() throws Exception
+    {
+        CacheMgr cacheMgr = new CacheMgr( provider );
+        Cache cache = cacheMgr.getCache( "fortress.other" );
+        cache.put( "key1", "value1" );
+        cache.put( "key2", "value2" );
+        InvalidationBus other = new InvalidationBus( new LoopbackTransport( "test-" + System.nanoTime() ), cacheMgr,
+            HEARTBEAT_MILLIS, null );
+        receive( other, InvalidationEvent.invalidate( 5L, 1L, "fortress.other", null, "key1" ), null );
+        assertNull( cache.peek( "key1" ) );
+        assertEquals( "value2", cache.peek( "key2" ) );
+    }
+
+
+    @Test
+    public void testFirstMessageOfPeer() throws Exception
+    {
+        // joining late is not a gap:
+        receive( InvalidationEvent.invalidate( 5L, 100L, CACHE_NAME, null, "key1" ) );
+        assertEquals( 1, listener.invalidations.size() );
+        assertEquals( 0, listener.refreshes );
+    }
+
+
+    @Test
+    public void testSequenceGap() throws Exception
+    {
+        receive( InvalidationEvent.invalidate( 5L, 1L, CACHE_NAME, null, "key1" ) );
+        receive( InvalidationEvent.invalidate( 5L, 2L, CACHE_NAME, null, "key2" ) );
+        assertEquals( 0, listener.refreshes );
+        receive( InvalidationEvent.invalidate( 5L, 4L, CACHE_NAME, null, "key4" ) );
+        assertEquals( 1, listener.refreshes );
+        assertEquals( 1, provider.clears );
+        // the refresh covers the missed message too, so it is not applied on its own:
+        assertEquals( 2, listener.invalidations.size() );
+        receive( InvalidationEvent.invalidate( 5L, 5L, CACHE_NAME, null, "key5" ) );
+        assertEquals( 3, listener.invalidations.size() );
+        assertEquals( 1, listener.refreshes );
+    }
+
+
+    @Test
+    public void testDuplicateAndLateMessagesIgnored() throws Exception
+    {
+        receive( InvalidationEvent.invalidate( 5L, 1L, CACHE_NAME, null, "key1" ) );
+        receive( InvalidationEvent.invalidate( 5L, 1L, CACHE_NAME, null, "key1" ) );
+        receive( InvalidationEvent.invalidate( 5L, 3L, CACHE_NAME, null, "key3" ) );
+        assertEquals( 1, listener.refreshes );
+        receive( InvalidationEvent.invalidate( 5L, 2L, CACHE_NAME, null, "key2" ) );
+        assertEquals( 1, listener.invalidations.size() );
+        assertEquals( 1, listener.refreshes );
+    }
+
+
+    @Test
+    public void testHeartbeatReportsLoss() throws Exception
+    {
+        receive( InvalidationEvent.invalidate( 5L, 1L, CACHE_NAME, null, "key1" ) );
+        receive( InvalidationEvent.heartbeat( 5L, 1L ) );
+        assertEquals( 0, listener.refreshes );
+        // the last invalidation before this heartbeat never arrived:
+        receive( InvalidationEvent.heartbeat( 5L, 2L ) );
+        assertEquals( 1, listener.refreshes );
+        receive( InvalidationEvent.heartbeat( 5L, 2L ) );
+        assertEquals( 1, listener.refreshes );
+    }
+
+
+    @Test
+    public void testPeersTrackedSeparately() throws Exception
+    {
+        receive( InvalidationEvent.invalidate( 5L, 1L, CACHE_NAME, null, "key1" ) );
+        receive( InvalidationEvent.invalidate( 6L, 1L, CACHE_NAME, null, "key1" ) );
+        receive( InvalidationEvent.invalidate( 5L, 2L, CACHE_NAME, null, "key2" ) );
+        receive( InvalidationEvent.invalidate( 6L, 2L, CACHE_NAME, null, "key2" ) );
+        assertEquals( 4, listener.invalidations.size() );
+        assertEquals( 0, listener.refreshes );
+    }
+
+
+    @Test
+    public void testSignedBus() throws Exception
+    {
+        Key key = InvalidationEvent.newKey( "secret1" );
+        InvalidationBus signed = new InvalidationBus( new LoopbackTransport( "test-" + System.nanoTime() ),
+            new CacheMgr( provider ), HEARTBEAT_MILLIS, key );
+        signed.subscribe( CACHE_NAME, listener );
+        receive( signed, InvalidationEvent.invalidate( 5L, 1L, CACHE_NAME, null, "key1" ), key );
+        assertEquals( 1, listener.invalidations.size() );
+
+        // a forged heartbeat must not move the sequence of the node ahead, or its invalidations would be ignored:
+        receive( signed, InvalidationEvent.heartbeat( 5L, 1000L ), null );
+        receive( signed, InvalidationEvent.heartbeat( 5L, 1000L ), InvalidationEvent.newKey( "secret2" ) );
+        receive( signed, InvalidationEvent.invalidate( 5L, 2L, CACHE_NAME, null, "key2" ), key );
+        assertEquals( 2, listener.invalidations.size() );
+        assertEquals( 0, listener.refreshes );
+    }
+
+
+    /**
+     * Records what the bus applied.
+     */
+    private static final class RecordingListener implements InvalidationListener
+    {
+        private final List<String> invalidations = new ArrayList<>();
+        private int refreshes;
+
+
+        @Override
+        public void invalidate( String contextId, String key )
+        {
+            invalidations.add( contextId + ":" + key );
+        }
+
+
+        @Override
+        public void refresh()
+        {
+            refreshes++;
+        }
+    }
+
+
+    /**
+     * In-process caches, counting {@link #clearAll()}.
+     */
+    private static final class TestProvider implements CacheProvider
+    {
+        private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+        private int clears;
+
+
+        @Override
+        public Cache getCache( String cacheName )
+        {
+            Cache cache = caches.get( cacheName );
+            if ( cache == null )
+            {
+                cache = new LocalCacheImpl( cacheName, 100, 0 );
+                caches.put( cacheName, cache );
+            }
+            return cache;
+        }
+
+
+        @Override
+        public void clearAll()
+        {
+            clears++;
+            for ( Cache cache : caches.values() )
+            {
+                cache.flush();
+            }
+        }
+
+
+        @Override
+        public List<CacheStats> getStats()
+        {
+            List<CacheStats> stats = new ArrayList<>();
+            for ( Cache cache : caches.values() )
+            {
+                stats.add( cache.getStats() );
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.security.Key;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+
+/**
+ * Tests of the {@link InvalidationEvent} message format.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class InvalidationEventTest
+{
+    private static InvalidationEvent roundTrip( InvalidationEvent event, Key key ) throws IOException
+    {
+        byte[] message = event.encode( key );
+        // the receive buffer is usually larger than the message:
+        byte[] buffer = Arrays.copyOf( message, message.length + 100 );
+        return InvalidationEvent.decode( buffer, message.length, key );
+    }
+
+
+    private static void assertRejected( byte[] message, int length, Key key )
+    {
+        try
+        {
+            InvalidationEvent.decode( message, length, key );
+            fail( "decode should have failed" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testInvalidate() throws Exception
+    {
+        InvalidationEvent event = roundTrip( InvalidationEvent.invalidate( -42L, 7L, "fortress.roles", "tenant1",
+            "role1" ), null );
+        assertFalse( event.isHeartbeat() );
+        assertEquals( -42L, event.getNodeId() );
+        assertEquals( 7L, event.getSequence() );
+        assertEquals( "fortress.roles", event.getCacheName() );
+        assertEquals( "tenant1", event.getContextId() );
+        assertEquals( "role1", event.getKey() );
+    }
+
+
+    @Test
+    public void testInvalidateWholeCache() throws Exception
+    {
+        InvalidationEvent event = roundTrip( InvalidationEvent.invalidate( 1L, 2L, "fortress.policies", null, null ),
+            null );
+        assertEquals( "fortress.policies", event.getCacheName() );
+        assertNull( event.getContextId() );
+        assertNull( event.getKey() );
+    }
+
+
+    @Test
+    public void testHeartbeat() throws Exception
+    {
+        InvalidationEvent event = roundTrip( InvalidationEvent.heartbeat( Long.MAX_VALUE, 99L ), null );
+        assertTrue( event.isHeartbeat() );
+        assertEquals( Long.MAX_VALUE, event.getNodeId() );
+        assertEquals( 99L, event.getSequence() );
+        assertNull( event.getCacheName() );
+    }
+
+
+    @Test
+    public void testForeignMessage() throws Exception
+    {
+        byte[] message = "some other protocol".getBytes( "UTF-8" );
+        assertNull( InvalidationEvent.decode( message, message.length, null ) );
+        assertNull( InvalidationEvent.decode( message, 2, null ) );
+
+        // a newer version is ignored rather than misread:
+        message = InvalidationEvent.heartbeat( 1L, 1L ).encode( null );
+        message[1]++;
+        assertNull( InvalidationEvent.decode( message, message.length, null ) );
+    }
+
+
+    @Test
+    public void testTruncated() throws Exception
+    {
+        byte[] message = InvalidationEvent.invalidate( 1L, 2L, "fortress.roles", "tenant1", "role1" ).encode( null );
+        assertRejected( message, message.length - 3, null );
+        assertRejected( message, 10, null );
+    }
+
+
+    @Test
+    public void testSigned() throws Exception
+    {
+        Key key = InvalidationEvent.newKey( "secret1" );
+        InvalidationEvent event = roundTrip( InvalidationEvent.invalidate( 1L, 2L, "fortress.roles", null, "role1" ),
+            key );
+        assertEquals( "role1", event.getKey() );
+        event = roundTrip( InvalidationEvent.heartbeat( 1L, 2L ), key );
+        assertTrue( event.isHeartbeat() );
+    }
+
+
+    @Test
+    public void testUnsignedRejected() throws Exception
+    {
+        byte[] message = InvalidationEvent.invalidate( 1L, 2L, "fortress.roles", null, "role1" ).encode( null );
+        assertRejected( message, message.length, InvalidationEvent.newKey( "secret1" ) );
+        message = InvalidationEvent.heartbeat( 1L, 2L ).encode( null );
+        assertRejected( message, message.length, InvalidationEvent.newKey( "secret1" ) );
+    }
+
+
+    @Test
+    public void testWrongKeyRejected() throws Exception
+    {
+        byte[] message = InvalidationEvent.heartbeat( 1L, 2L ).encode( InvalidationEvent.newKey( "secret1" ) );
+        assertRejected( message, message.length, InvalidationEvent.newKey( "secret2" ) );
+    }
+
+
+    @Test
+    public void testTamperedRejected() throws Exception
+    {
+        Key key = InvalidationEvent.newKey( "secret1" );
+        byte[] message = InvalidationEvent.heartbeat( 1L, 2L ).encode( key );
+        // raise the sequence number, the last byte of the heartbeat before the signature:
+        message[message.length - 33]++;
+        assertRejected( message, message.length, key );
+    }
+}
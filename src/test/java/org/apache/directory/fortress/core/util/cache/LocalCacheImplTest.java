@@ -0,0 +1,248 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.fortress.core.util.cache;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+
+/**
+ * Tests of the in-process {@link LocalCacheImpl}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LocalCacheImplTest
+{
+    @Test
+    public void testPutGet()
+    {
+        Cache cache = new LocalCacheImpl( "test", 10, 0 );
+        assertNull( cache.get( "key1" ) );
+        cache.put( "key1", "value1" );
+        assertEquals( "value1", cache.get( "key1" ) );
+        assertEquals( "value1", cache.peek( "key1" ) );
+        cache.put( "key1", "value2" );
+        assertEquals( "value2", cache.get( "key1" ) );
+
+        CacheStats stats = cache.getStats();
+        assertEquals( "test", stats.getName() );
+        assertEquals( 2, stats.getHitCount() );
+        assertEquals( 1, stats.getMissCount() );
+        assertEquals( 2, stats.getPutCount() );
+        assertEquals( 1, stats.getSize() );
+    }
+
+
+    @Test
+    public void testPutNullClears()
+    {
+        Cache cache = new LocalCacheImpl( "test", 10, 0 );
+        cache.put( "key1", "value1" );
+        cache.put( "key1", null );
+        assertNull( cache.get( "key1" ) );
+        assertEquals( 0, cache.getStats().getSize() );
+    }
+
+
+    @Test
+    public void testClear()
+    {
+        Cache cache = new LocalCacheImpl( "test", 10, 0 );
+        cache.put( "key1", "value1" );
+        cache.put( "key2", "value2" );
+        assertTrue( cache.clear( "key1" ) );
+        assertFalse( cache.clear( "key1" ) );
+        assertNull( cache.get( "key1" ) );
+        assertEquals( "value2", cache.get( "key2" ) );
+    }
+
+
+    @Test
+    public void testFlush()
+    {
+        Cache cache = new LocalCacheImpl( "test", 10, 0 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            cache.put( "key" + i, "value" + i );
+        }
+        cache.flush();
+        assertEquals( 0, cache.getStats().getSize() );
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertNull( cache.peek( "key" + i ) );
+        }
+        // the policy must still work after a flush:
+        for ( int i = 0; i < 20; i++ )
+        {
+            cache.put( "key" + i, "value" + i );
+        }
+        assertEquals( 10, cache.getStats().getSize() );
+    }
+
+
+    @Test
+    public void testInvalidSize()
+    {
+        try
+        {
+            new LocalCacheImpl( "test", 0, 0 );
+            fail( "size 0 should be rejected" );
+        }
+        catch ( CacheException e )
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testMaximumSize()
+    {
+        Cache cache = new LocalCacheImpl( "test", 100, 0 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            cache.put( "key" + i, "value" + i );
+            assertTrue( cache.getStats().getSize() <= 100 );
+        }
+        assertEquals( 100, cache.getStats().getSize() );
+        assertEquals( 900, cache.getStats().getEvictionCount() );
+    }
+
+
+    @Test
+    public void testSmallestSize()
+    {
+        Cache cache = new LocalCacheImpl( "test", 1, 0 );
+        cache.put( "key1", "value1" );
+        cache.put( "key2", "value2" );
+        assertEquals( 1, cache.getStats().getSize() );
+        assertEquals( "value2", cache.get( "key2" ) );
+    }
+
+
+    @Test
+    public void testFrequentKeysSurviveScan()
+    {
+        Cache cache = new LocalCacheImpl( "test", 100, 0 );
+        for ( int i = 0; i < 50; i++ )
+        {
+            cache.put( "hot" + i, "value" + i );
+        }
+        for ( int round = 0; round < 5; round++ )
+        {
+            for ( int i = 0; i < 50; i++ )
+            {
+                assertEquals( "value" + i, cache.get( "hot" + i ) );
+            }
+        }
+        // a one time scan much larger than the cache must not flush out the frequently read keys:
+        for ( int i = 0; i < 1000; i++ )
+        {
+            cache.put( "scan" + i, "value" + i );
+        }
+        int found = 0;
+        for ( int i = 0; i < 50; i++ )
+        {
+            if ( cache.peek( "hot" + i ) != null )
+            {
+                found++;
+            }
+        }
+        assertTrue( "only " + found + " hot keys survived", found >= 45 );
+    }
+
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        Cache cache = new LocalCacheImpl( "test", 10, 1 );
+        cache.put( "key1", "value1" );
+        assertEquals( "value1", cache.get( "key1" ) );
+        Thread.sleep( 1100 );
+        assertNull( cache.peek( "key1" ) );
+        assertNull( cache.get( "key1" ) );
+        assertEquals( 0, cache.getStats().getSize() );
+        assertEquals( 1, cache.getStats().getEvictionCount() );
+    }
+
+
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final Cache cache = new LocalCacheImpl( "test", 50, 0 );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            List<Future<Void>> futures = new ArrayList<>();
+            for ( int t = 0; t < 4; t++ )
+            {
+                final int seed = t;
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        for ( int i = 0; i < 10000; i++ )
+                        {
+                            String key = "key" + ( ( i * 31 + seed ) % 200 );
+                            if ( cache.get( key ) == null )
+                            {
+                                cache.put( key, key );
+                            }
+                            if ( i % 97 == 0 )
+                            {
+                                cache.clear( key );
+                            }
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertTrue( cache.getStats().getSize() <= 50 );
+        // the policy must be consistent with the map once the threads are done:
+        for ( int i = 0; i < 200; i++ )
+        {
+            cache.put( "after" + i, "value" );
+        }
+        assertEquals( 50, cache.getStats().getSize() );
+    }
+}